@@ -24,20 +24,30 @@
 package ie.ibuttimer.dia_crime;
 
 import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.ingest.PartitionManifest;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarInputFormat;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarOutputFormat;
+import ie.ibuttimer.dia_crime.hadoop.misc.DatePartitioner;
 import ie.ibuttimer.dia_crime.misc.*;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.http.util.TextUtils;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -94,7 +104,9 @@ public abstract class AbstractDriver {
         if (inputs.size() > 1) {
             // multiple inputs
             Map<String, String> outputPaths = new HashMap<>();
-            inputs.forEach((section, cfg) -> {
+            for (Map.Entry<String, InputCfg> entry : inputs.entrySet()) {
+                String section = entry.getKey();
+                InputCfg cfg = entry.getValue();
 
                 if (isSubSectionKey(section)) {
                     propertyWrangler.setRoot(getSubSection(section).getLeft());
@@ -104,10 +116,16 @@ public abstract class AbstractDriver {
 
                 String inPathProp = propertyWrangler.getPropertyPath(cfg.inPath);
                 String inPath = conf.get(inPathProp);
-                MultipleInputs.addInputPath(job,
-                    new Path(inPath), TextInputFormat.class, cfg.mapper);
+                if (cfg.inPath.equals(InputCfg.DEFAULT_IN_PATH)) {
+                    for (Path path : getInputPaths(conf, propertyWrangler, section)) {
+                        MultipleInputs.addInputPath(job, path,
+                            getInputFormatClass(job, path, propertyWrangler), cfg.mapper);
+                    }
+                } else {
+                    Path path = new Path(inPath);
+                    MultipleInputs.addInputPath(job, path,
+                        getInputFormatClass(job, path, propertyWrangler), cfg.mapper);
 
-                if (!cfg.inPath.equals(InputCfg.DEFAULT_IN_PATH)) {
                     if (DebugLevel.getSetting(conf, section).showMe(DebugLevel.HIGH)) {
                         getLogger().info(String.format("!! Non-standard mapper input path: %s - [%s] %s",
                             inPathProp, inPath, cfg.mapper.getSimpleName()));
@@ -115,7 +133,7 @@ public abstract class AbstractDriver {
                 }
 
                 outputPaths.put(section, conf.get(propertyWrangler.getPropertyPath(OUT_PATH_PROP)));
-            });
+            }
 
             // check all out paths are the same
             for (String key : outputPaths.keySet()) {
@@ -139,7 +157,10 @@ public abstract class AbstractDriver {
             });
 
             outPath = singleOutPath.get();
-            FileInputFormat.addInputPath(job, new Path(conf.get(propertyWrangler.getPropertyPath(IN_PATH_PROP))));
+            for (Path path : getInputPaths(conf, propertyWrangler, propertyWrangler.getRoot())) {
+                FileInputFormat.addInputPath(job, path);
+                job.setInputFormatClass(getInputFormatClass(job, path, propertyWrangler));
+            }
         }
 
         if (outPath != null) {
@@ -150,12 +171,94 @@ public abstract class AbstractDriver {
         }
 
         outputs.forEach((section, cfg) -> {
-            MultipleOutputs.addNamedOutput(job, cfg.namedOutput, TextOutputFormat.class, cfg.keyClass, cfg.valueClass);
+            MultipleOutputs.addNamedOutput(job, cfg.namedOutput, cfg.outputFormat, cfg.keyClass, cfg.valueClass);
         });
 
         return job;
     }
 
+    /**
+     * Get the input paths for a section. If the section has a date partitioned layout with a manifest, these are the
+     * partitions which overlap the section's filter dates, otherwise it is the section's input path.
+     * @param conf              Job configuration
+     * @param propertyWrangler  Property wrangler for the section
+     * @param section           Section name
+     * @return  List of paths
+     * @throws IOException
+     */
+    protected List<Path> getInputPaths(Configuration conf, PropertyWrangler propertyWrangler, String section)
+                                                                                            throws IOException {
+        List<Path> paths = null;
+        String inPath = conf.get(propertyWrangler.getPropertyPath(IN_PATH_PROP));
+        String partitionedPath = conf.get(propertyWrangler.getPropertyPath(PARTITIONED_PATH_PROP), "");
+        boolean log = DebugLevel.getSetting(conf, section).showMe(DebugLevel.HIGH);
+
+        if (!TextUtils.isEmpty(partitionedPath)) {
+            Optional<PartitionManifest> manifest = PartitionManifest.read(conf, new Path(partitionedPath));
+            if (manifest.isPresent()) {
+                LocalDate start = getFilterDate(conf, propertyWrangler, FILTER_START_DATE_PROP);
+                LocalDate end = getFilterDate(conf, propertyWrangler, FILTER_END_DATE_PROP);
+
+                paths = manifest.get().select(start, end);
+                if (paths.isEmpty()) {
+                    throw new IllegalArgumentException(String.format(
+                        "No partitions of '%s' overlap the date range %s to %s", partitionedPath, start, end));
+                }
+                if (log) {
+                    getLogger().info(String.format("!! Reading %d partitions of %s, %d of %d bytes",
+                        paths.size(), partitionedPath, manifest.get().getBytes(start, end), manifest.get().getBytes()));
+                }
+            } else {
+                getLogger().warn(String.format("No manifest in '%s', reading '%s'. Run the ingest job to create it.",
+                    partitionedPath, inPath));
+            }
+        }
+        if (paths == null) {
+            paths = Collections.singletonList(new Path(inPath));
+        }
+        return paths;
+    }
+
+    /**
+     * Get the input format for an input path. Columnar format inputs are read with the columnar input format,
+     * limited to the filter dates of the section.
+     * @param job               Job
+     * @param path              Input path
+     * @param propertyWrangler  Property wrangler for the section
+     * @return  input format class
+     * @throws IOException
+     */
+    @SuppressWarnings("rawtypes")
+    protected Class<? extends InputFormat> getInputFormatClass(Job job, Path path, PropertyWrangler propertyWrangler)
+                                                                                            throws IOException {
+        Class<? extends InputFormat> format = TextInputFormat.class;
+        Configuration conf = job.getConfiguration();
+        if (ColumnarFormat.isColumnarInput(conf, path)) {
+            format = ColumnarInputFormat.class;
+            ColumnarInputFormat.addDateRange(conf,
+                getFilterDate(conf, propertyWrangler, FILTER_START_DATE_PROP),
+                getFilterDate(conf, propertyWrangler, FILTER_END_DATE_PROP));
+        }
+        return format;
+    }
+
+    /**
+     * Get the output format for the intermediate output of a section
+     * @param conf      Job configuration
+     * @param section   Section name
+     * @return  output format class
+     */
+    @SuppressWarnings("rawtypes")
+    protected Class<? extends OutputFormat> getOutputFormatClass(Configuration conf, String section) {
+        return (ColumnarFormat.getOutputFormat(conf, section) == ColumnarFormat.Format.COLUMNAR ?
+            ColumnarOutputFormat.class : TextOutputFormat.class);
+    }
+
+    private LocalDate getFilterDate(Configuration conf, PropertyWrangler propertyWrangler, String property) {
+        String dateStr = conf.get(propertyWrangler.getPropertyPath(property), "");
+        return (TextUtils.isEmpty(dateStr) ? null : LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+
     /**
      * Initialise a single output job
      * @param name      Job name
@@ -228,6 +331,29 @@ public abstract class AbstractDriver {
         });
     }
 
+    /**
+     * Set up date range partitioning for a job, if multiple reducers are configured
+     * @param job       Job to configure
+     * @param section   Section to read number of reducers and date range from
+     */
+    protected void setDatePartitioning(Job job, String section) {
+        Configuration conf = job.getConfiguration();
+        PropertyWrangler propertyWrangler = new PropertyWrangler(section);
+
+        int numReducers = conf.getInt(propertyWrangler.getPropertyPath(NUM_REDUCERS_PROP), 1);
+        if (numReducers > 1) {
+            job.setNumReduceTasks(numReducers);
+            job.setPartitionerClass(DatePartitioner.class);
+            DatePartitioner.setDateRange(conf,
+                conf.get(propertyWrangler.getPropertyPath(FILTER_START_DATE_PROP), ""),
+                conf.get(propertyWrangler.getPropertyPath(FILTER_END_DATE_PROP), ""));
+
+            if (DebugLevel.getSetting(conf, section).showMe(DebugLevel.HIGH)) {
+                getLogger().info(String.format("!! Date range partitioning over %d reducers", numReducers));
+            }
+        }
+    }
+
     private void updateConfiguration(Configuration conf, String setting, String value, boolean log) {
         conf.set(setting, value);
         if (log) {
@@ -369,15 +495,30 @@ public abstract class AbstractDriver {
         String namedOutput;
         Class<?> keyClass;
         Class<?> valueClass;
+        @SuppressWarnings("rawtypes")
+        Class<? extends OutputFormat> outputFormat;
 
-        public OutputCfg(String namedOutput, Class<?> keyClass, Class<?> valueClass) {
+        @SuppressWarnings("rawtypes")
+        public OutputCfg(String namedOutput, Class<?> keyClass, Class<?> valueClass,
+                         Class<? extends OutputFormat> outputFormat) {
             this.namedOutput = namedOutput;
             this.keyClass = keyClass;
             this.valueClass = valueClass;
+            this.outputFormat = outputFormat;
+        }
+
+        public OutputCfg(String namedOutput, Class<?> keyClass, Class<?> valueClass) {
+            this(namedOutput, keyClass, valueClass, TextOutputFormat.class);
         }
 
         public static OutputCfg of (String namedOutput, Class<?> keyClass, Class<?> valueClass) {
             return new OutputCfg(namedOutput, keyClass, valueClass);
         }
+
+        @SuppressWarnings("rawtypes")
+        public static OutputCfg of (String namedOutput, Class<?> keyClass, Class<?> valueClass,
+                                    Class<? extends OutputFormat> outputFormat) {
+            return new OutputCfg(namedOutput, keyClass, valueClass, outputFormat);
+        }
     }
 }
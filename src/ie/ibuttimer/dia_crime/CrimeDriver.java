@@ -23,8 +23,7 @@
 
 package ie.ibuttimer.dia_crime;
 
-import ie.ibuttimer.dia_crime.hadoop.crime.CrimeMapper;
-import ie.ibuttimer.dia_crime.hadoop.crime.CrimeReducer;
+import ie.ibuttimer.dia_crime.hadoop.crime.*;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
 import ie.ibuttimer.dia_crime.misc.Constants;
 import org.apache.commons.lang3.tuple.Pair;
@@ -72,21 +71,34 @@ public class CrimeDriver extends AbstractDriver {
             Map<String, InputCfg> ipSections = new HashMap<>();
             Map<String, OutputCfg> opSections = new HashMap<>();
 
-            ipSections.put(CRIME_PROP_SECTION, InputCfg.of(CrimeMapper.class));
+            boolean aggregate = conf.getBoolean(
+                generatePropertyName(CRIME_PROP_SECTION, IN_MAPPER_AGGREGATION_PROP), false);
+
+            ipSections.put(CRIME_PROP_SECTION,
+                InputCfg.of(aggregate ? CrimeCountMapper.class : CrimeMapper.class));
 
             opSections.put(CRIME_PROP_SECTION, OutputCfg.of(TYPES_NAMED_OP, DateWritable.class, Text.class));
 
             job = initJob("Crime", conf, ipSections, opSections);
 
-            job.setReducerClass(CrimeReducer.class);
+            if (aggregate) {
+                job.setCombinerClass(CrimeCountCombiner.class);
+                job.setReducerClass(CrimeCountReducer.class);
+            } else {
+                job.setReducerClass(CrimeReducer.class);
+            }
+            setDatePartitioning(job, CRIME_PROP_SECTION);
 
             job.setMapOutputKeyClass(DateWritable.class);
-            job.setMapOutputValueClass(MapWritable.class);
+            job.setMapOutputValueClass(aggregate ? CrimeCountWritable.class : MapWritable.class);
 
             /*
              * Input and Output types of a MapReduce job:
              * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
              * (input) <LongWritable, Text> -> map -> <DateWritable, MapWritable> -> reduce -> <DateWritable, Text> (output)
+             * or, with in-mapper aggregation
+             * (input) <LongWritable, Text> -> map -> <DateWritable, CrimeCountWritable> -> combine ->
+             *      <DateWritable, CrimeCountWritable> -> reduce -> <DateWritable, Text> (output)
              */
             job.setOutputKeyClass(DateWritable.class);
             job.setOutputValueClass(Text.class);
@@ -99,13 +111,19 @@ public class CrimeDriver extends AbstractDriver {
     public int runCrimeJob(JobConfig cfg) throws Exception {
 
         int resultCode = Constants.ECODE_FAIL;
-        Job job = getCrimeJob(cfg.properties);
-        if (job != null) {
-            if (cfg.wait) {
-                resultCode = job.waitForCompletion(cfg.verbose) ? Constants.ECODE_SUCCESS : Constants.ECODE_FAIL;
-            } else {
-                job.submit();
-                resultCode = ECODE_RUNNING;
+        IncrementalRun incremental = IncrementalRun.of(getApp(), cfg, getSectionLists().getLeft(), logger);
+        if (incremental.isEnabled()) {
+            resultCode = incremental.run(List.of(incremental.getInputSource(CRIME_PROP_SECTION)),
+                List.of(DEFAULT_NAMED_OP), List.of(TYPES_NAMED_OP), this::runCrimeJob);
+        } else {
+            Job job = getCrimeJob(cfg.properties);
+            if (job != null) {
+                if (cfg.wait) {
+                    resultCode = job.waitForCompletion(cfg.verbose) ? Constants.ECODE_SUCCESS : Constants.ECODE_FAIL;
+                } else {
+                    job.submit();
+                    resultCode = ECODE_RUNNING;
+                }
             }
         }
 
@@ -25,6 +25,7 @@ package ie.ibuttimer.dia_crime;
 
 import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
 import ie.ibuttimer.dia_crime.hadoop.crime.CrimeMapper;
+import ie.ibuttimer.dia_crime.hadoop.ingest.IngestMapper;
 import ie.ibuttimer.dia_crime.hadoop.matrix.MatrixMapper;
 import ie.ibuttimer.dia_crime.hadoop.normalise.NormaliseMapper;
 import ie.ibuttimer.dia_crime.hadoop.regression.RegressionTrainMapper;
@@ -75,6 +76,7 @@ public class DiaCrimeMain {
         propDefaults.put(VERIFICATION_PROP_SECTION, RegressionValidateMapper.getClsCsvMapperCfg());
         propDefaults.put(MATRIX_PROP_1_SECTION, MatrixMapper.MatrixMapper1.getClsCsvMapperCfg());
         propDefaults.put(MATRIX_PROP_2_SECTION, MatrixMapper.MatrixMapper2.getClsCsvMapperCfg());
+        propDefaults.put(INGEST_PROP_SECTION, IngestMapper.getClsCsvMapperCfg());
     }
 
     private static final String DEFLT_CFG_FILE = "config.properties";
@@ -89,8 +91,10 @@ public class DiaCrimeMain {
     private static final String OPT_MULTI_JOB = "m";
     private static final String OPT_IN_ROOT = "i";
     private static final String OPT_OUT_ROOT = "o";
+    private static final String OPT_PARALLEL = "p";
 
     /* sample argument lists
+        -j ingest -c prod.properties;config.properties
         -j weather -c prod.properties;config.properties
         -j stocks -c prod.properties;config.properties
         -j crime -c prod.properties;config.properties
@@ -101,8 +105,10 @@ public class DiaCrimeMain {
         -j regression_verify -c prod.properties;config.properties;regression.properties;verification.properties
         -j matrix_multiply -c prod.properties;config.properties;matrix.properties
         -m <path to file>
+        -m <path to file> -p 3
      */
 
+    private static final String JOB_INGEST = "ingest";
     private static final String JOB_WEATHER = "weather";
     private static final String JOB_STOCKS = "stocks";
     private static final String JOB_CRIME = "crime";
@@ -116,6 +122,7 @@ public class DiaCrimeMain {
     private static final String jobListFmt;
     static {
         jobList = new ArrayList<>();
+        jobList.add(Triple.of(JOB_INGEST, "partition the input files by date", "Ingest Job"));
         jobList.add(Triple.of(JOB_WEATHER, "process the weather file", "Weather Job"));
         jobList.add(Triple.of(JOB_STOCKS, "process the stock files", "Stocks Job"));
         jobList.add(Triple.of(JOB_CRIME, "process the crime file", "Crime Job"));
@@ -146,6 +153,8 @@ public class DiaCrimeMain {
         options.addOption(OPT_MULTI_JOB, true, "process multiple jobs as per specified file");
         options.addOption(OPT_IN_ROOT, true, "input root folder");
         options.addOption(OPT_OUT_ROOT, true, "output root folder");
+        options.addOption(OPT_PARALLEL, true, "with '" + OPT_MULTI_JOB + "', maximum number of independent " +
+            "jobs to run concurrently, as per their declared stage inputs & outputs");
     }
 
     private String inPathRoot = "";
@@ -168,7 +177,24 @@ public class DiaCrimeMain {
                 app.outPathRoot = cmd.getOptionValue(OPT_OUT_ROOT);
             }
 
-            if (cmd.hasOption(OPT_MULTI_JOB)) {
+            // validate up front, so number format errors from the jobs are not reported as an invalid option
+            int maxInFlight = 0;
+            if (cmd.hasOption(OPT_PARALLEL)) {
+                String parallel = cmd.getOptionValue(OPT_PARALLEL);
+                try {
+                    maxInFlight = Integer.parseInt(parallel);
+                } catch (NumberFormatException nfe) {
+                    maxInFlight = 0;
+                }
+                if (maxInFlight < 1) {
+                    System.out.format("Invalid number of concurrent jobs: %s%n%n", parallel);
+                    resultCode = ECODE_CONFIG_ERROR;
+                }
+            }
+
+            if (resultCode != ECODE_SUCCESS) {
+                app.help();
+            } else if (cmd.hasOption(OPT_MULTI_JOB)) {
                 String jobFile = cmd.getOptionValue(OPT_MULTI_JOB);
                 if (org.apache.http.util.TextUtils.isEmpty(jobFile)) {
                     resultCode = ECODE_CONFIG_ERROR;
@@ -179,11 +205,28 @@ public class DiaCrimeMain {
                 File file = FileUtils.getFile(jobFile);
                 List<String> contents = FileUtils.readLines(file, StandardCharsets.UTF_8);
 
-                for (String jobSpec : contents) {
-                    if (!jobSpec.trim().startsWith(COMMENT_PREFIX)) {
-                        resultCode = app.processJob(jobSpec.split(" "));
-                        if (resultCode != ECODE_SUCCESS) {
-                            break;
+                if (maxInFlight > 0) {
+                    // run independent jobs concurrently
+                    StageScheduler scheduler = StageScheduler.of(app, maxInFlight);
+
+                    for (String jobSpec : contents) {
+                        if (!jobSpec.trim().isEmpty() && !jobSpec.trim().startsWith(COMMENT_PREFIX)) {
+                            resultCode = app.addStage(scheduler, jobSpec.trim().split(" "));
+                            if (resultCode != ECODE_SUCCESS) {
+                                break;
+                            }
+                        }
+                    }
+                    if (resultCode == ECODE_SUCCESS) {
+                        resultCode = scheduler.run();
+                    }
+                } else {
+                    for (String jobSpec : contents) {
+                        if (!jobSpec.trim().startsWith(COMMENT_PREFIX)) {
+                            resultCode = app.processJob(jobSpec.split(" "));
+                            if (resultCode != ECODE_SUCCESS) {
+                                break;
+                            }
                         }
                     }
                 }
@@ -199,7 +242,7 @@ public class DiaCrimeMain {
         System.exit(resultCode);
     }
 
-    private int processJob(String[] args) throws Exception {
+    int processJob(String[] args) throws Exception {
 
         CommandLineParser parser = new BasicParser();
         int resultCode = ECODE_SUCCESS;
@@ -223,14 +266,7 @@ public class DiaCrimeMain {
 
                 if (cmd.hasOption(OPT_JOB)) {
                     // read the config
-                    Properties properties = getResources(resourceFile);
-
-                    if (!TextUtils.isEmpty(inPathRoot)) {
-                        properties.setProperty("global.in_path_root", inPathRoot);
-                    }
-                    if (!TextUtils.isEmpty(outPathRoot)) {
-                        properties.setProperty("global.out_path_root", outPathRoot);
-                    }
+                    Properties properties = getJobProperties(resourceFile);
 
                     if (properties.isEmpty()) {
                         resultCode = ECODE_CONFIG_ERROR;
@@ -248,6 +284,9 @@ public class DiaCrimeMain {
                             .ifPresent(t -> logger.info(Utils.getDialog("Running " + t.getRight())));
 
                         switch (name) {
+                            case JOB_INGEST:
+                                resultCode = IngestDriver.of(this).runIngestJob(jobCfg);
+                                break;
                             case JOB_WEATHER:
                                 resultCode = WeatherDriver.of(this).runWeatherJob(jobCfg);
                                 break;
@@ -295,6 +334,44 @@ public class DiaCrimeMain {
         return resultCode;
     }
 
+    /**
+     * Add a job to a multi-job run
+     * @param scheduler Scheduler to add to
+     * @param args      Job arguments
+     * @return  ECODE_SUCCESS if added, otherwise ECODE_CONFIG_ERROR
+     */
+    private int addStage(StageScheduler scheduler, String[] args) {
+
+        CommandLineParser parser = new BasicParser();
+        int resultCode = ECODE_SUCCESS;
+        try {
+            CommandLine cmd = parser.parse(options, args);
+
+            String name = cmd.getOptionValue(OPT_JOB);
+            if (TextUtils.isEmpty(name)) {
+                System.out.format("No job specified: %s%n%n", String.join(" ", args));
+                resultCode = ECODE_CONFIG_ERROR;
+            } else {
+                Properties properties = getJobProperties(
+                    cmd.hasOption(OPT_CFG) ? cmd.getOptionValue(OPT_CFG) : DEFLT_CFG_FILE);
+
+                // the scheduler needs to know when jobs complete
+                String noWait = "-" + OPT_NO_WAIT;
+                if (Arrays.asList(args).contains(noWait)) {
+                    logger.warn(String.format("Ignoring %s for %s job in multi-job run", noWait, name));
+                    args = Arrays.stream(args).filter(arg -> !arg.equals(noWait)).toArray(String[]::new);
+                }
+
+                scheduler.add(args, name, properties);
+            }
+        } catch (ParseException pe) {
+            System.out.format("%s%n%n", pe.getMessage());
+            help();
+            resultCode = ECODE_CONFIG_ERROR;
+        }
+        return resultCode;
+    }
+
     private void help() {
         HelpFormatter formatter = new HelpFormatter();
         formatter.printHelp("dia_crime", options);
@@ -343,6 +420,23 @@ public class DiaCrimeMain {
         return resultCode;
     }
 
+    /**
+     * Load the properties for a job, with any input/output root overrides applied.
+     * @param filename  Resource filename(s)
+     * @return Properties
+     */
+    private Properties getJobProperties(String filename) {
+        Properties properties = getResources(filename);
+
+        if (!TextUtils.isEmpty(inPathRoot)) {
+            properties.setProperty("global.in_path_root", inPathRoot);
+        }
+        if (!TextUtils.isEmpty(outPathRoot)) {
+            properties.setProperty("global.out_path_root", outPathRoot);
+        }
+        return properties;
+    }
+
     /**
      * Load resources from the specified file(s). Multiple files are separated by ':'.
      * @param filename  Resource filename(s)
@@ -0,0 +1,464 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime;
+
+import ie.ibuttimer.dia_crime.hadoop.incremental.DatePartitionPublisher;
+import ie.ibuttimer.dia_crime.hadoop.incremental.Watermark;
+import ie.ibuttimer.dia_crime.hadoop.ingest.PartitionManifest;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.http.util.TextUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Incremental run of a stage, enabled by 'global.incremental'.
+ * The output of the stage is partitioned by month, with a watermark recording the filter dates, the fingerprints of
+ * the inputs and the months published. On each run only the months which are new, or whose inputs have changed, are
+ * recomputed by running the job over the range of those months in a staging folder, and publishing the result.
+ */
+public class IncrementalRun {
+
+    private static final String STAGING_SUFFIX = "_staging";
+
+    private final DiaCrimeMain app;
+    private final AbstractDriver.JobConfig cfg;
+    private final List<String> sections;
+    private final Logger logger;
+    private final Configuration conf;
+
+    /**
+     * Job runner
+     */
+    @FunctionalInterface
+    public interface JobRunner {
+        int run(AbstractDriver.JobConfig cfg) throws Exception;
+    }
+
+    /**
+     * Range of months to recompute
+     */
+    public static class Plan {
+        private boolean full;
+        private boolean upToDate;
+        private boolean openEnd;
+        private YearMonth first;
+        private YearMonth last;
+
+        private Plan() {
+            this.full = false;
+            this.upToDate = true;
+            this.openEnd = false;
+            this.first = null;
+            this.last = null;
+        }
+
+        private void add(YearMonth month) {
+            upToDate = false;
+            if (first == null || month.isBefore(first)) {
+                first = month;
+            }
+            if (last == null || month.isAfter(last)) {
+                last = month;
+            }
+        }
+
+        private void addFrom(YearMonth month) {
+            add(month);
+            openEnd = true;
+        }
+
+        private void setFull() {
+            upToDate = false;
+            full = true;
+        }
+
+        /**
+         * Clip the plan to the filter range
+         * @param filterFirst   First month of filter, or <code>null</code> if open
+         * @param filterLast    Last month of filter, or <code>null</code> if open
+         */
+        private void clip(YearMonth filterFirst, YearMonth filterLast) {
+            if (full) {
+                first = filterFirst;
+                last = filterLast;
+            } else if (!upToDate) {
+                if (filterFirst != null && first.isBefore(filterFirst)) {
+                    first = filterFirst;
+                }
+                if (openEnd || (filterLast != null && last.isAfter(filterLast))) {
+                    last = filterLast;
+                }
+                if (last != null && first.isAfter(last)) {
+                    upToDate = true;
+                }
+            }
+        }
+
+        public boolean isFull() {
+            return full;
+        }
+
+        public boolean isUpToDate() {
+            return upToDate;
+        }
+
+        /** First month to recompute, or <code>null</code> if open */
+        public YearMonth getFirst() {
+            return first;
+        }
+
+        /** Last month to recompute, or <code>null</code> if open */
+        public YearMonth getLast() {
+            return last;
+        }
+
+        @Override
+        public String toString() {
+            return (upToDate ? "up to date" :
+                (full ? "full" : "incremental") + " " + (first == null ? "*" : first) + " to " +
+                    (last == null ? "*" : last));
+        }
+    }
+
+    private IncrementalRun(DiaCrimeMain app, AbstractDriver.JobConfig cfg, List<String> sections, Logger logger) {
+        this.app = app;
+        this.cfg = cfg;
+        this.sections = new ArrayList<>(sections);
+        this.sections.add(GLOBAL_PROP_SECTION);
+        this.logger = logger;
+        this.conf = new Configuration();
+    }
+
+    /**
+     * Create an incremental run
+     * @param app       Application
+     * @param cfg       Job configuration
+     * @param sections  Property sections of the job, in order of precedence, excluding the global section
+     * @param logger    Logger of the driver
+     * @return  new incremental run
+     */
+    public static IncrementalRun of(DiaCrimeMain app, AbstractDriver.JobConfig cfg, List<String> sections,
+                                    Logger logger) {
+        return new IncrementalRun(app, cfg, sections, logger);
+    }
+
+    public boolean isEnabled() {
+        return Boolean.parseBoolean(getSetting(INCREMENTAL_PROP, "false"));
+    }
+
+    public Configuration getConf() {
+        return conf;
+    }
+
+    /**
+     * Get a setting of the job, following the precedence of DiaCrimeMain.setupJob()
+     * @param property  Property name
+     * @param dfltValue Default value
+     * @return  value
+     */
+    public String getSetting(String property, String dfltValue) {
+        return getSetting(sections, property, dfltValue);
+    }
+
+    /**
+     * Get a setting of a section of the job
+     * @param section   Section name
+     * @param property  Property name
+     * @param dfltValue Default value
+     * @return  value
+     */
+    public String getSectionSetting(String section, String property, String dfltValue) {
+        return getSetting(List.of(section, GLOBAL_PROP_SECTION), property, dfltValue);
+    }
+
+    private String getSetting(List<String> sectionList, String property, String dfltValue) {
+        String value = dfltValue;
+        for (String section : sectionList) {
+            String setting = app.getProperty(cfg.properties, generatePropertyName(section, property), "");
+            if (!TextUtils.isEmpty(setting)) {
+                value = setting;
+            }
+        }
+        return value;
+    }
+
+    public Path getOutPath() {
+        String outPath = getSetting(OUT_PATH_PROP, "");
+        if (TextUtils.isEmpty(outPath)) {
+            throw new IllegalStateException("No output path configured for incremental run");
+        }
+        return new Path(outPath);
+    }
+
+    public Path getStagingPath() {
+        Path outPath = getOutPath();
+        return new Path(outPath.getParent(), outPath.getName() + STAGING_SUFFIX);
+    }
+
+    public LocalDate getFilterStart() {
+        return getDate(getSetting(FILTER_START_DATE_PROP, ""));
+    }
+
+    public LocalDate getFilterEnd() {
+        return getDate(getSetting(FILTER_END_DATE_PROP, ""));
+    }
+
+    private LocalDate getDate(String dateStr) {
+        return (TextUtils.isEmpty(dateStr) ? null : LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+
+    private YearMonth getMonth(LocalDate date) {
+        return (date == null ? null : YearMonth.from(date));
+    }
+
+    public DateTimeFormatter getKeyFormatter() {
+        String pattern = getSetting(OUT_KEY_DATE_FORMAT_PROP, "");
+        return (TextUtils.isEmpty(pattern) ? DateTimeFormatter.ISO_LOCAL_DATE : DateTimeFormatter.ofPattern(pattern));
+    }
+
+    /**
+     * Get the source for the input of a section; the months of its date partitioned layout if it has a manifest,
+     * otherwise the fingerprint of its input path
+     * @param section   Section name
+     * @return  source
+     * @throws IOException
+     */
+    public Watermark.Source getInputSource(String section) throws IOException {
+        Watermark.Source source = null;
+        String partitionedPath = getSectionSetting(section, PARTITIONED_PATH_PROP, "");
+        if (!TextUtils.isEmpty(partitionedPath)) {
+            Optional<PartitionManifest> manifest = PartitionManifest.read(conf, new Path(partitionedPath));
+            if (manifest.isPresent()) {
+                // the ingest job only records the size of a partition
+                Map<YearMonth, String> months = manifest.get().getPartitions().stream()
+                    .collect(Collectors.toMap(PartitionManifest.Partition::getMonth,
+                        partition -> Long.toString(partition.getBytes())));
+                source = Watermark.Source.partitioned(section, manifest.get().getRoot(), months);
+            }
+        }
+        if (source == null) {
+            source = Watermark.Source.whole(section,
+                Watermark.fingerprintOf(conf, new Path(getSectionSetting(section, IN_PATH_PROP, ""))));
+        }
+        return source;
+    }
+
+    /**
+     * Get the source for an input which is the output of a previous stage; the months of its watermark if it was
+     * run incrementally, otherwise the fingerprint of the input path
+     * @param section   Section name
+     * @param property  Input path property name
+     * @return  source
+     * @throws IOException
+     */
+    public Watermark.Source getStageSource(String section, String property) throws IOException {
+        Path path = new Path(getSectionSetting(section, property, ""));
+        Optional<Watermark> watermark = Watermark.find(conf, path);
+        return (watermark.isPresent() ? watermark.get().asSource(section) :
+            Watermark.Source.whole(section, Watermark.fingerprintOf(conf, path)));
+    }
+
+    /**
+     * Plan the months to recompute
+     * @param sources   Current inputs
+     * @param previous  Watermark of the previous run
+     * @return  plan
+     */
+    public Plan plan(List<Watermark.Source> sources, Optional<Watermark> previous) {
+        Plan plan = new Plan();
+        LocalDate start = getFilterStart();
+        LocalDate end = getFilterEnd();
+
+        if (!previous.isPresent()) {
+            plan.setFull();
+        } else {
+            Watermark watermark = previous.get();
+            LocalDate prevStart = watermark.getFilterStart().orElse(null);
+            LocalDate prevEnd = watermark.getFilterEnd().orElse(null);
+
+            if (!Objects.equals(start, prevStart) ||
+                    (end != null && (prevEnd == null || end.isBefore(prevEnd)))) {
+                // start moved or end narrowed, months may need to be removed
+                plan.setFull();
+            } else if (prevEnd != null && (end == null || end.isAfter(prevEnd))) {
+                // end widened, append from the last month of the previous run
+                plan.addFrom(YearMonth.from(prevEnd));
+            }
+
+            YearMonth filterFirst = getMonth(start);
+            YearMonth filterLast = getMonth(end);
+            for (Watermark.Source source : sources) {
+                Optional<Watermark.Source> prevSource = watermark.getInput(source.getName());
+                if (!prevSource.isPresent()) {
+                    plan.setFull();
+                } else if (source.isPartitioned() && prevSource.get().isPartitioned()) {
+                    source.changedMonths(prevSource.get()).stream()
+                        .filter(month -> Watermark.inRange(month, filterFirst, filterLast))
+                        .forEach(plan::add);
+                } else if (source.isChanged(prevSource.get())) {
+                    // unpartitioned inputs are expected to be appended to, recompute from the last month
+                    if (watermark.getOutputs().isEmpty()) {
+                        plan.setFull();
+                    } else {
+                        plan.addFrom(watermark.getOutputs().lastKey());
+                    }
+                }
+            }
+        }
+        plan.clip(getMonth(start), getMonth(end));
+        return plan;
+    }
+
+    /**
+     * Get the properties for a run of the job over a range of months in the staging folder
+     * @param plan      Plan to run
+     * @param staging   Staging folder
+     * @return  properties
+     */
+    public Properties getJobProperties(Plan plan, Path staging) {
+        LocalDate start = getFilterStart();
+        LocalDate end = getFilterEnd();
+        if (plan.getFirst() != null) {
+            // read back a number of days, so values filled forward into the first days are available
+            LocalDate lookback = plan.getFirst().atDay(1)
+                .minusDays(Integer.parseInt(getSetting(INCREMENTAL_LOOKBACK_PROP, "0")));
+            if (start == null || lookback.isAfter(start)) {
+                start = lookback;
+            }
+        }
+        if (plan.getLast() != null) {
+            LocalDate lastDay = plan.getLast().atEndOfMonth();
+            if (end == null || lastDay.isBefore(end)) {
+                end = lastDay;
+            }
+        }
+        return getJobProperties(start, end, staging);
+    }
+
+    /**
+     * Get the properties for a run of the job over a date range in the staging folder
+     * @param start     Start date, or <code>null</code> if open
+     * @param end       End date, or <code>null</code> if open
+     * @param staging   Staging folder
+     * @return  properties
+     */
+    public Properties getJobProperties(LocalDate start, LocalDate end, Path staging) {
+        Properties properties = new Properties();
+        properties.putAll(cfg.properties);
+        properties.setProperty(generatePropertyName(GLOBAL_PROP_SECTION, INCREMENTAL_PROP), "false");
+        properties.setProperty(generatePropertyName(GLOBAL_PROP_SECTION, OUT_PATH_PROP), staging.toString());
+        properties.setProperty(generatePropertyName(GLOBAL_PROP_SECTION, NUM_REDUCERS_PROP), "1");
+        properties.setProperty(generatePropertyName(GLOBAL_PROP_SECTION, FILTER_START_DATE_PROP),
+            (start == null ? "" : start.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        properties.setProperty(generatePropertyName(GLOBAL_PROP_SECTION, FILTER_END_DATE_PROP),
+            (end == null ? "" : end.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        return properties;
+    }
+
+    /**
+     * Get the configuration for a run of the job
+     * @param properties    Properties
+     * @return  job configuration
+     */
+    public AbstractDriver.JobConfig getJobConfig(Properties properties) {
+        AbstractDriver.JobConfig jobCfg = AbstractDriver.JobConfig.of(properties, true, cfg.inPathRoot,
+            cfg.outPathRoot);
+        jobCfg.verbose = cfg.verbose;
+        return jobCfg;
+    }
+
+    /**
+     * Run the job incrementally
+     * @param sources   Current inputs of the job
+     * @param dated     Names of the date keyed outputs of the job
+     * @param shared    Names of the outputs of the job which are merged with the existing output
+     * @param runner    Runner for the job
+     * @return  result code
+     * @throws Exception
+     */
+    public int run(List<Watermark.Source> sources, List<String> dated, List<String> shared, JobRunner runner)
+                                                                                            throws Exception {
+        Path outDir = getOutPath();
+        FileSystem fs = outDir.getFileSystem(conf);
+        Optional<Watermark> previous = Watermark.read(conf, outDir);
+        Plan plan = plan(sources, previous);
+
+        logger.info(String.format("Incremental run of %s: %s", outDir, plan));
+
+        int resultCode = ECODE_SUCCESS;
+        if (!plan.isUpToDate()) {
+            if (!cfg.wait) {
+                logger.warn("Incremental run of " + outDir + " waits for job completion");
+            }
+            Path staging = getStagingPath();
+            resultCode = runner.run(getJobConfig(getJobProperties(plan, staging)));
+            if (resultCode == ECODE_SUCCESS) {
+                if (plan.isFull() && fs.exists(outDir)) {
+                    fs.delete(outDir, true);
+                }
+                TreeMap<YearMonth, String> published = DatePartitionPublisher.of(conf, getKeyFormatter())
+                    .publish(staging, outDir, plan.getFirst(), plan.getLast(), dated, shared);
+
+                commit(Watermark.read(conf, outDir).orElseGet(() -> Watermark.of(outDir)), sources, plan, published);
+                fs.delete(staging, true);
+
+                logger.info(String.format("Published %d months to %s", published.size(), outDir));
+            }
+        } else {
+            fs.mkdirs(outDir);
+            fs.create(new Path(outDir, FileOutputCommitter.SUCCEEDED_FILE_NAME), true).close();
+        }
+        return resultCode;
+    }
+
+    /**
+     * Update and write the watermark of the output, and mark the output as complete
+     * @param watermark Watermark to update
+     * @param sources   Current inputs of the job
+     * @param plan      Plan which was run
+     * @param published Fingerprints of the published months
+     * @throws IOException
+     */
+    public void commit(Watermark watermark, List<Watermark.Source> sources, Plan plan,
+                       Map<YearMonth, String> published) throws IOException {
+        watermark.setFilter(getFilterStart(), getFilterEnd());
+        watermark.setInputs(sources);
+        watermark.replaceOutputs(plan.getFirst(), plan.getLast(), published);
+        watermark.write(conf);
+
+        FileSystem fs = watermark.getRoot().getFileSystem(conf);
+        fs.create(new Path(watermark.getRoot(), FileOutputCommitter.SUCCEEDED_FILE_NAME), true).close();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime;
+
+import ie.ibuttimer.dia_crime.hadoop.ingest.IngestMapper;
+import ie.ibuttimer.dia_crime.hadoop.ingest.PartitionManifest;
+import ie.ibuttimer.dia_crime.misc.Constants;
+import ie.ibuttimer.dia_crime.misc.PropertyWrangler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.http.util.TextUtils;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Hadoop driver class for the ingest of input files into date partitioned layouts.
+ * Each section listed in 'ingest.sources' has its input file rewritten into '<yyyy>/<MM>' partition directories under
+ * its 'partitioned_path', with a manifest. Jobs for the section then only read the partitions which overlap their
+ * filter dates.
+ */
+public class IngestDriver extends AbstractDriver {
+
+    private static final Logger logger = Logger.getLogger(IngestDriver.class);
+
+    public IngestDriver(DiaCrimeMain app) {
+        super(app);
+    }
+
+    public static IngestDriver of(DiaCrimeMain app) {
+        return new IngestDriver(app);
+    }
+
+    /**
+     * Get the sections to ingest
+     * @param properties    Properties
+     * @return  List of sections
+     */
+    public List<String> getSources(Properties properties) {
+        return Arrays.stream(getApp().getProperty(properties,
+                    generatePropertyName(INGEST_PROP_SECTION, SOURCES_PROP), "").split(","))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .collect(Collectors.toList());
+    }
+
+    public Job getIngestJob(Properties properties, String source) throws Exception {
+
+        List<String> supplementary = new ArrayList<>();
+        supplementary.add(source);
+        if (StockDriver.STOCK_SECTIONS.contains(source)) {
+            supplementary.add(STOCK_PROP_SECTION);
+        }
+        supplementary.add(GLOBAL_PROP_SECTION);
+
+        Job job = null;
+        Configuration conf = new Configuration();
+        int resultCode = getApp().setupJob(conf, properties, INGEST_PROP_SECTION, supplementary);
+
+        if (resultCode == Constants.ECODE_SUCCESS) {
+            PropertyWrangler propertyWrangler = new PropertyWrangler(INGEST_PROP_SECTION);
+            Path inPath = new Path(conf.get(propertyWrangler.getPropertyPath(IN_PATH_PROP)));
+            Path outPath = new Path(conf.get(propertyWrangler.getPropertyPath(PARTITIONED_PATH_PROP)));
+
+            // the header line is written to each partition file, so partitions are read with the same configuration
+            if (conf.getBoolean(propertyWrangler.getPropertyPath(HAS_HEADER_PROP), false)) {
+                String header = readFirstLine(conf, inPath);
+                if (!TextUtils.isEmpty(header)) {
+                    conf.set(propertyWrangler.getPropertyPath(HEADER_PROP), header);
+                }
+            }
+
+            // the layout is completely rewritten
+            FileSystem fs = outPath.getFileSystem(conf);
+            if (fs.exists(outPath)) {
+                fs.delete(outPath, true);
+            }
+
+            job = Job.getInstance(conf);
+            job.setJarByClass(AbstractDriver.class);
+            job.setJobName("Ingest " + source);
+
+            job.setMapperClass(IngestMapper.class);
+            job.setNumReduceTasks(0);
+
+            FileInputFormat.addInputPath(job, inPath);
+            FileOutputFormat.setOutputPath(job, outPath);
+            // only the partition files are written
+            LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+
+            /*
+             * Input and Output types of a MapReduce job:
+             * (input) <k1, v1> -> map -> <k2, v2> (output)
+             * (input) <LongWritable, Text> -> map -> <NullWritable, Text> (output)
+             */
+            job.setOutputKeyClass(NullWritable.class);
+            job.setOutputValueClass(Text.class);
+        }
+
+        return job;
+    }
+
+    private String readFirstLine(Configuration conf, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(path), StandardCharsets.UTF_8))) {
+            return reader.readLine();
+        }
+    }
+
+    public int runIngestJob(JobConfig cfg) throws Exception {
+
+        int resultCode = Constants.ECODE_SUCCESS;
+        List<String> sources = getSources(cfg.properties);
+        if (sources.isEmpty()) {
+            logger.error("No sources to ingest specified, set '" +
+                generatePropertyName(INGEST_PROP_SECTION, SOURCES_PROP) + "'");
+            resultCode = Constants.ECODE_CONFIG_ERROR;
+        }
+
+        for (String source : sources) {
+            Job job = getIngestJob(cfg.properties, source);
+            if (job == null) {
+                resultCode = Constants.ECODE_FAIL;
+            } else if (job.waitForCompletion(cfg.verbose)) {
+                // the manifest is required to read the layout, so always wait for completion
+                Configuration conf = job.getConfiguration();
+                PropertyWrangler propertyWrangler = new PropertyWrangler(INGEST_PROP_SECTION);
+                PartitionManifest manifest = PartitionManifest.scan(conf, FileOutputFormat.getOutputPath(job));
+                manifest.write(conf, conf.get(propertyWrangler.getPropertyPath(IN_PATH_PROP)));
+
+                logger.info(String.format("Ingested %s to %d partitions, %d bytes",
+                    source, manifest.getPartitions().size(), manifest.getBytes()));
+            } else {
+                resultCode = Constants.ECODE_FAIL;
+            }
+            if (resultCode != Constants.ECODE_SUCCESS) {
+                break;
+            }
+        }
+
+        return resultCode;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return logger;
+    }
+}
@@ -24,6 +24,7 @@
 package ie.ibuttimer.dia_crime;
 
 import ie.ibuttimer.dia_crime.hadoop.ITagger;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarInputFormat;
 import ie.ibuttimer.dia_crime.hadoop.io.FileReader;
 import ie.ibuttimer.dia_crime.hadoop.regression.*;
 import ie.ibuttimer.dia_crime.misc.*;
@@ -46,9 +47,10 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_KV_SEPARATOR;
-import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_SEPARATOR;
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.*;
 import static ie.ibuttimer.dia_crime.hadoop.regression.RegressionTrainReducer.COST;
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
@@ -95,19 +97,35 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
         if (resultCode == ECODE_SUCCESS) {
             Map<String, InputCfg> ipSections = new HashMap<>();
 
-            ipSections.put(REGRESSION_PROP_SECTION, InputCfg.of(RegressionTrainMapper.class));
+            // mini-batch optimisers train a model per mapper, which are averaged by the reducer
+            boolean miniBatch = (Optimiser.getMode(conf, new ConfigReader(REGRESSION_PROP_SECTION)) != Optimiser.Mode.BATCH);
+
+            ipSections.put(REGRESSION_PROP_SECTION,
+                InputCfg.of(miniBatch ? MiniBatchTrainMapper.class : RegressionTrainMapper.class));
 
             job = initJob("Linear Regression", conf, ipSections);
 
-            job.setReducerClass(RegressionTrainReducer.class);
+            // row values are packed by index as per the schema resolved from the regression section
+            RegressionSchema.configure(job.getConfiguration(), REGRESSION_PROP_SECTION);
+            setInputProjection(job, REGRESSION_PROP_SECTION);
 
             job.setMapOutputKeyClass(Text.class);
-            job.setMapOutputValueClass(RegressionWritable.class);
+            if (miniBatch) {
+                job.setCombinerClass(ParameterCombiner.class);
+                job.setReducerClass(ParameterAverageReducer.class);
+                job.setMapOutputValueClass(ParameterPartial.class);
+            } else {
+                job.setCombinerClass(GradientCombiner.class);
+                job.setReducerClass(RegressionTrainReducer.class);
+                job.setMapOutputValueClass(GradientPartial.class);
+            }
 
             /*
              * Input and Output types of a MapReduce job:
              * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
-             * (input) <LongWritable, Text> -> map -> <Text, RegressionWritable> -> reduce -> <Text, Text> (output)
+             * (input) <LongWritable, Text> -> map -> <Text, GradientPartial> -> combine -> <Text, GradientPartial> -> reduce -> <Text, Text> (output)
+             * or for mini-batch
+             * (input) <LongWritable, Text> -> map -> <Text, ParameterPartial> -> combine -> <Text, ParameterPartial> -> reduce -> <Text, Text> (output)
              */
             job.setOutputKeyClass(Text.class);
             job.setOutputValueClass(Text.class);
@@ -116,6 +134,126 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
         return job;
     }
 
+    /**
+     * Get a job to sum the normal equation terms for a closed-form solution
+     * @param properties    Configuration properties
+     * @return  Job or null if unable to configure
+     * @throws Exception
+     */
+    public Job getGramMatrixJob(Properties properties) throws Exception {
+
+        Pair<List<String>, List<String>> sectionLists = getSectionLists();
+
+        // update training path if required
+        updatePropertyWithTimestamp(properties, TRAIN_OUTPUT_PATH_PROP, PropertyWrangler.of(REGRESSION_PROP_SECTION));
+
+        Job job = null;
+        Configuration conf = new Configuration();
+        int resultCode = readConfigs(conf, properties, sectionLists.getLeft(), sectionLists.getRight());
+
+        if (resultCode == ECODE_SUCCESS) {
+            Map<String, InputCfg> ipSections = new HashMap<>();
+
+            ipSections.put(REGRESSION_PROP_SECTION, InputCfg.of(GramMatrixMapper.class));
+
+            job = initJob("Linear Regression Normal Equation", conf, ipSections);
+
+            // row values are packed by index as per the schema resolved from the regression section
+            RegressionSchema.configure(job.getConfiguration(), REGRESSION_PROP_SECTION);
+            setInputProjection(job, REGRESSION_PROP_SECTION);
+
+            job.setCombinerClass(GramMatrixCombiner.class);
+            job.setReducerClass(GramMatrixReducer.class);
+
+            job.setMapOutputKeyClass(Text.class);
+            job.setMapOutputValueClass(GramPartial.class);
+
+            /*
+             * Input and Output types of a MapReduce job:
+             * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
+             * (input) <LongWritable, Text> -> map -> <Text, GramPartial> -> combine -> <Text, GramPartial> -> reduce -> <Text, Text> (output)
+             */
+            job.setOutputKeyClass(Text.class);
+            job.setOutputValueClass(Text.class);
+        }
+
+        return job;
+    }
+
+    /**
+     * Load the training set for in-process training if it fits within the configured memory limit
+     * @param properties    Configuration properties
+     * @return  Pair of configuration and engine, or null if MapReduce should be used
+     * @throws Exception
+     */
+    public Pair<Configuration, GradientDescentEngine> getInMemoryEngine(Properties properties) throws Exception {
+
+        Pair<Configuration, GradientDescentEngine> inMemory = null;
+        Configuration conf = getRegressionConf(properties);
+        if (conf != null) {
+            Optional<GradientDescentEngine> engine = loadInMemoryEngine(conf);
+            if (engine.isPresent()) {
+                inMemory = Pair.of(conf, engine.get());
+            }
+        }
+        return inMemory;
+    }
+
+    /**
+     * Read the regression configuration
+     * @param properties    Configuration properties
+     * @return  Configuration or null if unable to read
+     * @throws Exception
+     */
+    private Configuration getRegressionConf(Properties properties) throws Exception {
+
+        Pair<List<String>, List<String>> sectionLists = getSectionLists();
+
+        // update training path if required
+        updatePropertyWithTimestamp(properties, TRAIN_OUTPUT_PATH_PROP, PropertyWrangler.of(REGRESSION_PROP_SECTION));
+
+        Configuration conf = new Configuration();
+        int resultCode = readConfigs(conf, properties, sectionLists.getLeft(), sectionLists.getRight());
+
+        return (resultCode == ECODE_SUCCESS ? conf : null);
+    }
+
+    /**
+     * Load the training set for in-process training if it fits within the configured memory limit
+     * @param conf  Regression configuration
+     * @return  Engine or empty if MapReduce should be used
+     * @throws IOException
+     */
+    private Optional<GradientDescentEngine> loadInMemoryEngine(Configuration conf) throws IOException {
+
+        Optional<GradientDescentEngine> engine = Optional.empty();
+        ConfigReader cfgReader = new ConfigReader(REGRESSION_PROP_SECTION);
+        long limitMb = cfgReader.getConfigProperty(conf, IN_MEMORY_LIMIT_PROP, 0L).longValue();
+        if (limitMb > 0) {
+            engine = GradientDescentEngine.load(conf, limitMb * 1024 * 1024);
+            engine.ifPresent(e -> logger.info(getSpacedDialog(String.format("Training in-process: %s", e))));
+        }
+        return engine;
+    }
+
+    /**
+     * Read the learning rates for a sweep
+     * @param conf  Regression configuration
+     * @return  List of learning rates, empty if not sweeping
+     */
+    private List<Double> getSweepLearningRates(Configuration conf) {
+        List<Double> rates = new ArrayList<>();
+        if (conf != null) {
+            ConfigReader cfgReader = new ConfigReader(REGRESSION_PROP_SECTION);
+            Arrays.stream(cfgReader.getConfigProperty(conf, SWEEP_LEARNING_RATES_PROP, "").split(","))
+                .map(String::trim)
+                .filter(r -> !r.isEmpty())
+                .map(Double::parseDouble)
+                .forEach(rates::add);
+        }
+        return rates;
+    }
+
     public int runLinearRegressionJob(JobConfig cfg) throws Exception {
 
         ConfigReader cfgReader = new ConfigReader(REGRESSION_PROP_SECTION);
@@ -138,7 +276,19 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
         Map<String, Long> lastCoef = new HashMap<>();
         Map<String, Long> thisCoef = new HashMap<>();
 
-        if (cfg.wait) {
+        Configuration regressionConf = getRegressionConf(cfg.properties);
+        // learning rate sweeps train all models in the same pass over the training set
+        List<Double> sweepRates = getSweepLearningRates(cfg.wait ? regressionConf : null);
+
+        if ((regressionConf != null) && SOLVER_NORMAL_EQUATION.equals(
+                    cfgReader.getConfigProperty(regressionConf, SOLVER_PROP, SOLVER_GRADIENT_DESCENT))) {
+            resultCode = runNormalEquationJob(cfg);
+        } else if (!sweepRates.isEmpty()) {
+            resultCode = runRegressionSweep(cfg, sweepRates);
+        } else if (cfg.wait) {
+            // run in-process if the training set fits in memory, otherwise a job per epoch
+            Pair<Configuration, GradientDescentEngine> inMemory = getInMemoryEngine(cfg.properties);
+
             Map<String, String> epochSetting = null;
             do {
                 if (steadyTarget > 0 && steadyLimit > 0) {
@@ -182,9 +332,10 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
                     }
                 }
 
-                Job job = getLinearRegressionJob(cfg.properties);
-                if (job != null) {
-                    Configuration conf = job.getConfiguration();
+                Job job = (inMemory == null ? getLinearRegressionJob(cfg.properties) : null);
+                Configuration conf = (inMemory != null ? inMemory.getLeft() :
+                                        (job != null ? job.getConfiguration() : null));
+                if (conf != null) {
                     if (epoch == 0) {
                         maxEpochs = cfgReader.getConfigProperty(conf, EPOCH_LIMIT_PROP, 0L).longValue();
                         targetCost = cfgReader.getConfigProperty(conf, TARGET_COST_PROP, 0.0).doubleValue();
@@ -199,7 +350,7 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
 
                         steadyTarget = Math.pow(10, steadyDecimalPlaces);
 
-                        clearResults(job, cfgReader);
+                        clearResults(conf, cfgReader);
                     } else {
                         // update settings
                         epochSetting.forEach((key, value) -> conf.set(cfgReader.getPropertyPath(key), value));
@@ -211,11 +362,21 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
 
                     logger.info(getSpacedDialog(String.format("Running epoch %d of a maximum of %d", epoch, maxEpochs)));
 
-                    resultCode = job.waitForCompletion(cfg.verbose) ? ECODE_SUCCESS : ECODE_FAIL;
+                    if (inMemory != null) {
+                        String line = HADOOP_KEY_VAL.stringifyElement(Long.toString(epoch),
+                            MAP_STRINGIFIER.stringify(inMemory.getRight().epoch()));
 
-                    if (resultCode == ECODE_SUCCESS) {
-                        epochSetting = regressionJobReport(job, cfgReader, epoch);
+                        epochSetting = recordEpochResult(conf, cfgReader, epoch, List.of(timestamped(line)));
+                        resultCode = ECODE_SUCCESS;
+                    } else {
+                        resultCode = job.waitForCompletion(cfg.verbose) ? ECODE_SUCCESS : ECODE_FAIL;
 
+                        if (resultCode == ECODE_SUCCESS) {
+                            epochSetting = regressionJobReport(job, cfgReader, epoch);
+                        }
+                    }
+
+                    if (resultCode == ECODE_SUCCESS) {
                         cost = Double.parseDouble(epochSetting.get(COST));
 
                         if (cost < min.getRight()) {
@@ -270,13 +431,253 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
         return resultCode;
     }
 
+    /**
+     * State of a model in a learning rate sweep
+     */
+    private static class SweepModel {
+        final int id;
+        final double learningRate;
+        final GradientDescentEngine engine;     // null if training via MapReduce
+        Map<String, String> setting;
+        Pair<Long, Double> min = Pair.of(0L, Double.MAX_VALUE);
+        int consecutiveIncrease = 0;
+        String status = null;                   // reason model stopped, null while active
+
+        SweepModel(int id, double learningRate, GradientDescentEngine engine, Map<String, String> setting) {
+            this.id = id;
+            this.learningRate = learningRate;
+            this.engine = engine;
+            this.setting = setting;
+        }
+
+        boolean isActive() {
+            return status == null;
+        }
+
+        String getConfigSetting() {
+            return getSweepModelSetting(setting.get(WEIGHT_PROP), setting.get(BIAS_PROP), Double.toString(learningRate));
+        }
+
+        void update(long epoch, Map<String, String> result, double targetCost, int increaseLimit) {
+            setting = result;
+
+            double cost = Double.parseDouble(result.get(COST));
+            if (!Double.isFinite(cost)) {
+                status = String.format("Diverged at epoch %d", epoch);
+            } else if (cost < min.getRight()) {
+                min = Pair.of(epoch, cost);
+                consecutiveIncrease = 0;
+            } else if (++consecutiveIncrease >= increaseLimit) {
+                status = String.format("Consecutive cost increase limit exceeded at epoch %d", epoch);
+            }
+            if (isActive() && (cost <= targetCost)) {
+                status = String.format("Target cost condition satisfied at %f", cost);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Model %d: learning rate %s, minimum cost [%f] at epoch %d, %s - %s",
+                id, learningRate, min.getRight(), min.getLeft(), (isActive() ? "Active" : status), setting);
+        }
+    }
+
+    /**
+     * Train a model for each learning rate concurrently. Each epoch is a single pass over the training set for all
+     * models still active, and models which diverge are dropped as soon as detected.
+     * @param cfg           Job configuration
+     * @param learningRates Learning rates
+     * @return  Result code
+     * @throws Exception
+     */
+    private int runRegressionSweep(JobConfig cfg, List<Double> learningRates) throws Exception {
+
+        ConfigReader cfgReader = new ConfigReader(REGRESSION_PROP_SECTION);
+        int resultCode = ECODE_FAIL;
+        String terminateCondition = null;
+
+        Configuration sweepConf = getRegressionConf(cfg.properties);
+        if (sweepConf != null) {
+            long maxEpochs = cfgReader.getConfigProperty(sweepConf, EPOCH_LIMIT_PROP, 0L).longValue();
+            double targetCost = cfgReader.getConfigProperty(sweepConf, TARGET_COST_PROP, 0.0).doubleValue();
+            int increaseLimit = cfgReader.getConfigProperty(sweepConf, INCREASE_LIMIT_PROP, 0).intValue();
+            int minutes = cfgReader.getConfigProperty(sweepConf, TARGET_TIME_PROP, 0).intValue();
+            LocalDateTime startTime = LocalDateTime.now();
+            LocalDateTime endTime = (minutes > 0 ? startTime.plus(Duration.ofMinutes(minutes)) : null);
+
+            // run in-process if the training set fits in memory, otherwise a job per epoch
+            Optional<GradientDescentEngine> inMemory = loadInMemoryEngine(sweepConf);
+
+            Map<String, String> initial = new HashMap<>();
+            initial.put(WEIGHT_PROP, getProperty(sweepConf, cfgReader, WEIGHT_PROP, ""));
+            initial.put(BIAS_PROP, getProperty(sweepConf, cfgReader, BIAS_PROP, "0"));
+
+            Map<Integer, SweepModel> models = new TreeMap<>();
+            for (int i = 0; i < learningRates.size(); i++) {
+                double rate = learningRates.get(i);
+                models.put(i, new SweepModel(i, rate, inMemory.map(e -> e.withLearningRate(rate)).orElse(null),
+                    initial));
+            }
+
+            clearResults(sweepConf, cfgReader);
+
+            resultCode = ECODE_SUCCESS;
+            long epoch = 0;
+            do {
+                List<SweepModel> active = models.values().stream()
+                    .filter(SweepModel::isActive)
+                    .collect(Collectors.toList());
+
+                if (active.isEmpty()) {
+                    terminateCondition = "No active models remaining";
+                } else if (epoch >= maxEpochs) {
+                    terminateCondition = String.format("Max epoch condition satisfied at %d", epoch);
+                } else if ((endTime != null) && LocalDateTime.now().isAfter(endTime)) {
+                    terminateCondition = String.format("Run time expired (%d min)",
+                        ChronoUnit.MINUTES.between(startTime, LocalDateTime.now()));
+                } else {
+                    ++epoch;
+                    String epochStr = Long.toString(epoch);
+
+                    logger.info(getSpacedDialog(String.format("Running epoch %d of a maximum of %d for %d models",
+                        epoch, maxEpochs, active.size())));
+
+                    Configuration conf;
+                    List<String> lines = new ArrayList<>();
+                    if (inMemory.isPresent()) {
+                        conf = sweepConf;
+                        for (SweepModel model : active) {
+                            Map<String, String> result = new HashMap<>(model.engine.epoch());
+                            result.put(LEARNING_RATE_PROP, Double.toString(model.learningRate));
+
+                            lines.add(timestamped(HADOOP_KEY_VAL.stringifyElement(
+                                getModelKey(epochStr, model.id), MAP_STRINGIFIER.stringify(result))));
+                        }
+                    } else {
+                        Job job = getLinearRegressionJob(cfg.properties);
+                        if (job == null) {
+                            resultCode = ECODE_FAIL;
+                            break;
+                        }
+                        conf = job.getConfiguration();
+                        conf.set(cfgReader.getPropertyPath(CURRENT_EPOCH_PROP), epochStr);
+                        conf.set(CONF_PROPERTY_ROOT, cfgReader.getRoot());
+                        conf.set(cfgReader.getPropertyPath(SWEEP_MODELS_PROP), active.stream()
+                            .map(m -> Integer.toString(m.id))
+                            .collect(Collectors.joining(",")));
+                        active.forEach(m ->
+                            conf.set(cfgReader.getPropertyPath(SWEEP_MODEL_PROP_PREFIX + m.id), m.getConfigSetting()));
+
+                        if (!job.waitForCompletion(cfg.verbose)) {
+                            resultCode = ECODE_FAIL;
+                            break;
+                        }
+                        lines = readJobResult(job, cfgReader);
+                    }
+
+                    appendHistory(conf, cfgReader, epoch, lines);
+
+                    // update each model with its result
+                    for (String line : lines) {
+                        Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(line);
+                        SweepModel model = models.get(splitModelKey(keyVal.getLeft()).getRight());
+                        if (model != null) {
+                            Map<String, String> map = MAP_STRINGIFIER.mapify(keyVal.getRight());
+                            Map<String, String> result = new HashMap<>();
+                            List.of(WEIGHT_PROP, BIAS_PROP, COST).forEach(prop -> result.put(prop, map.get(prop)));
+
+                            model.update(epoch, result, targetCost, increaseLimit);
+
+                            logger.info(getSpacedDialog(String.format("Epoch %s - %s", keyVal.getLeft(), model)));
+                        }
+                    }
+                }
+            } while (terminateCondition == null);
+
+            if (terminateCondition != null) {
+                List<String> msg = new ArrayList<>(List.of("Regression Sweep Complete", terminateCondition));
+                models.values().forEach(m -> msg.add(m.toString()));
+                models.values().stream()
+                    .min(Comparator.comparingDouble(m -> m.min.getRight()))
+                    .ifPresent(m -> msg.add(String.format("Best model %d with learning rate %s", m.id, m.learningRate)));
+                logger.info(Utils.getDialog(msg));
+            }
+        }
+        return resultCode;
+    }
+
+    /**
+     * Train a model with the closed-form solution of the normal equations. The normal equation terms are summed in a
+     * single job and solved in the driver, so the solution requires waiting for the job to complete.
+     * @param cfg   Job configuration
+     * @return  Result code
+     * @throws Exception
+     */
+    private int runNormalEquationJob(JobConfig cfg) throws Exception {
+
+        ConfigReader cfgReader = new ConfigReader(REGRESSION_PROP_SECTION);
+        int resultCode = ECODE_FAIL;
+
+        if (!cfg.wait) {
+            logger.warn("Normal equation solver requires the job result, waiting for job completion");
+        }
+
+        Job job = getGramMatrixJob(cfg.properties);
+        if (job != null) {
+            resultCode = job.waitForCompletion(cfg.verbose) ? ECODE_SUCCESS : ECODE_FAIL;
+
+            if (resultCode == ECODE_SUCCESS) {
+                Configuration conf = job.getConfiguration();
+
+                Optional<GramPartial> gram = readJobResult(job, cfgReader, l -> l).stream()
+                    .findFirst()
+                    .map(l -> GramPartial.parse(HADOOP_KEY_VAL.destringifyElement(l).getRight()));
+
+                if (gram.isPresent()) {
+                    List<String> independents = cfgReader.readCommaSeparatedProperty(conf, INDEPENDENTS_PROP);
+                    Map<String, String> result = NormalEquationSolver.solve(gram.get(), independents);
+
+                    // record as a single epoch, in the same format as gradient descent training
+                    clearResults(conf, cfgReader);
+                    String line = HADOOP_KEY_VAL.stringifyElement("1", MAP_STRINGIFIER.stringify(result));
+                    recordEpochResult(conf, cfgReader, 1, List.of(timestamped(line)));
+
+                    List<String> msg = List.of("Regression Complete",
+                        String.format("Normal equation solved for %d rows", gram.get().getCount()),
+                        result.toString()
+                    );
+                    logger.info(Utils.getDialog(msg));
+                } else {
+                    logger.warn("No normal equation result, check training set dates");
+                    resultCode = ECODE_FAIL;
+                }
+            }
+        }
+        return resultCode;
+    }
+
     private Map<String, String> regressionJobReport(Job job, ConfigReader cfgReader, long epoch) throws IOException {
+        return recordEpochResult(job.getConfiguration(), cfgReader, epoch, readJobResult(job, cfgReader));
+    }
 
-        Map<String, String> result = new HashMap<>();
+    private List<String> readJobResult(Job job, ConfigReader cfgReader) throws IOException {
+        return readJobResult(job, cfgReader, this::timestamped);
+    }
+
+    /**
+     * Read the result of a regression job
+     * @param job       Job
+     * @param cfgReader Configuration reader
+     * @param mapper    Function to apply to each result line
+     * @return  Result lines
+     * @throws IOException
+     */
+    private List<String> readJobResult(Job job, ConfigReader cfgReader,
+                                       Function<? super String, ? extends String> mapper) throws IOException {
+
+        List<String> lines = new ArrayList<>();
 
         Configuration conf = job.getConfiguration();
-        DebugLevel debugLevel = DebugLevel.getSetting(conf, cfgReader);
-        boolean showHighDebug = DebugLevel.HIGH.showMe(debugLevel);
 
         Path outDir = new Path(conf.get(cfgReader.getPropertyPath(OUT_PATH_PROP)));
         FileReader reader = new FileReader(outDir, conf);
@@ -291,60 +692,95 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
         }
 
         if (reader.wasSuccess()) {
-            // read result
-            reader.open("part-r-00000");
-            String timestamp = LocalDateTime.now().toString();
-            List<String> lines = reader.getAllLines(l -> !l.startsWith(COMMENT_PREFIX),
-                                                    l -> timestamp + "  " + l);
+            // read result, from all the part files if run with multiple reducers
+            reader.open("part-r-*");
+            lines = reader.getAllLines(l -> !l.startsWith(COMMENT_PREFIX), mapper);
 
             reader.close();
+        }
+        return lines;
+    }
 
-            if (epoch == 1) {
-                // add param info header
-                List<String> linesPlus = new ArrayList<>();
-                List<String> rawLines = new ArrayList<>(getTagStrings(conf, cfgReader));
-                List.of(FILTER_START_DATE_PROP, FILTER_END_DATE_PROP, TRAIN_START_DATE_PROP, TRAIN_END_DATE_PROP,
-                        INDEPENDENTS_PROP, DEPENDENT_PROP)
-                    .forEach(p -> {
-                        String setting = cfgReader.getConfigProperty(conf, p, "");
-                        rawLines.add(String.format("%s : %s", p, setting));
-                    });
-                rawLines.forEach(l -> linesPlus.add(String.format("%s %s", COMMENT_PREFIX, l)));
-                linesPlus.addAll(lines);
-                lines = linesPlus;
-            }
+    private String timestamped(String line) {
+        return LocalDateTime.now().toString() + "  " + line;
+    }
 
-            // append to result history
-            Files.write(Paths.get(getResultsPath(job, cfgReader)), lines, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    /**
+     * Append the result of an epoch to the training history and read the settings for the next epoch
+     * @param conf      Configuration
+     * @param cfgReader Configuration reader
+     * @param epoch     Epoch number
+     * @param lines     Timestamped result lines
+     * @return  Map of the epoch weights, bias and cost
+     * @throws IOException
+     */
+    private Map<String, String> recordEpochResult(Configuration conf, ConfigReader cfgReader, long epoch,
+                                                  List<String> lines) throws IOException {
 
-            // update config for next epoch
-            lines.stream()
-                .filter(l -> !l.startsWith(COMMENT_PREFIX))
-                .findFirst().ifPresent(l -> {
-                    Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(l);
+        Map<String, String> result = new HashMap<>();
 
-                    logger.info(getSpacedDialog(String.format("Epoch %s - %s", keyVal.getLeft(), keyVal.getRight())));
+        lines = appendHistory(conf, cfgReader, epoch, lines);
 
-                    Map<String, String> map = MAP_STRINGIFIER.mapify(keyVal.getRight());
+        // update config for next epoch
+        lines.stream()
+            .filter(l -> !l.startsWith(COMMENT_PREFIX))
+            .findFirst().ifPresent(l -> {
+                Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(l);
 
-                    List.of(WEIGHT_PROP, BIAS_PROP, COST).forEach(prop -> {
-                        result.put(prop, map.get(prop));
-                    });
+                logger.info(getSpacedDialog(String.format("Epoch %s - %s", keyVal.getLeft(), keyVal.getRight())));
+
+                Map<String, String> map = MAP_STRINGIFIER.mapify(keyVal.getRight());
+
+                List.of(WEIGHT_PROP, BIAS_PROP, COST).forEach(prop -> {
+                    result.put(prop, map.get(prop));
                 });
-        }
+            });
         return result;
     }
 
-    private void clearResults(Job job, ConfigReader cfgReader) throws IOException {
-        Files.deleteIfExists(Paths.get(getResultsPath(job, cfgReader)));
+    /**
+     * Append the result lines of an epoch to the training history, preceded by the param info header for the first
+     * epoch
+     * @param conf      Configuration
+     * @param cfgReader Configuration reader
+     * @param epoch     Epoch number
+     * @param lines     Timestamped result lines
+     * @return  Lines written
+     * @throws IOException
+     */
+    private List<String> appendHistory(Configuration conf, ConfigReader cfgReader, long epoch,
+                                       List<String> lines) throws IOException {
+        if (epoch == 1) {
+            // add param info header
+            List<String> linesPlus = new ArrayList<>();
+            List<String> rawLines = new ArrayList<>(getTagStrings(conf, cfgReader));
+            List.of(FILTER_START_DATE_PROP, FILTER_END_DATE_PROP, TRAIN_START_DATE_PROP, TRAIN_END_DATE_PROP,
+                    INDEPENDENTS_PROP, DEPENDENT_PROP)
+                .forEach(p -> {
+                    String setting = cfgReader.getConfigProperty(conf, p, "");
+                    rawLines.add(String.format("%s : %s", p, setting));
+                });
+            rawLines.forEach(l -> linesPlus.add(String.format("%s %s", COMMENT_PREFIX, l)));
+            linesPlus.addAll(lines);
+            lines = linesPlus;
+        }
+
+        // append to result history
+        Files.write(Paths.get(getResultsPath(conf, cfgReader)), lines, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        return lines;
+    }
+
+    private void clearResults(Configuration conf, ConfigReader cfgReader) throws IOException {
+        Files.deleteIfExists(Paths.get(getResultsPath(conf, cfgReader)));
     }
-    private String getResultsPath(Job job, ConfigReader cfgReader) {
-        return getProperty(job, cfgReader, TRAIN_OUTPUT_PATH_PROP, "regression.txt");
+    private String getResultsPath(Configuration conf, ConfigReader cfgReader) {
+        return getProperty(conf, cfgReader, TRAIN_OUTPUT_PATH_PROP, "regression.txt");
     }
 
-    private String getProperty(Job job, ConfigReader cfgReader, String property, String dfltValue) {
-        return job.getConfiguration().get(cfgReader.getPropertyPath(property), dfltValue);
+    private String getProperty(Configuration conf, ConfigReader cfgReader, String property, String dfltValue) {
+        return conf.get(cfgReader.getPropertyPath(property), dfltValue);
     }
 
 
@@ -390,15 +826,20 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
 
             job = initJob("Regression Verification", conf, ipSections);
 
+            // values are packed by index as per the schema resolved from the verification section
+            RegressionSchema.configure(job.getConfiguration(), VERIFICATION_PROP_SECTION);
+            setInputProjection(job, VERIFICATION_PROP_SECTION);
+
+            job.setCombinerClass(ValidationStatsCombiner.class);
             job.setReducerClass(RegressionValidateReducer.class);
 
             job.setMapOutputKeyClass(Text.class);
-            job.setMapOutputValueClass(RegressionWritable.class);
+            job.setMapOutputValueClass(ValidationStats.class);
 
             /*
              * Input and Output types of a MapReduce job:
              * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
-             * (input) <LongWritable, Text> -> map -> <Text, RegressionWritable> -> reduce -> <Text, Text> (output)
+             * (input) <LongWritable, Text> -> map -> <Text, ValidationStats> -> combine -> <Text, ValidationStats> -> reduce -> <Text, Text> (output)
              */
             job.setOutputKeyClass(Text.class);
             job.setOutputValueClass(Text.class);
@@ -444,14 +885,31 @@ public class LinearRegressionDriver extends AbstractDriver implements ITagger {
             }
         }
         if (reader.wasSuccess()) {
-            // read result
-            Files.copy(Paths.get(conf.get(cfgReader.getPropertyPath(OUT_PATH_PROP)), "part-r-00000"),
-                Paths.get(getProperty(job, cfgReader, VERIFY_OUTPUT_PATH_PROP, "verification.txt")));
+            // read result, from all the part files if run with multiple reducers
+            List<String> lines = reader.open("part-r-*").getAllLines();
+            if (lines != null) {
+                Files.write(Paths.get(
+                    getProperty(job.getConfiguration(), cfgReader, VERIFY_OUTPUT_PATH_PROP, "verification.txt")), lines);
+            }
         }
 
         reader.close();
     }
 
+    /**
+     * Restrict columnar format input to the regression variables
+     * @param job       Job to configure
+     * @param section   Section to read variables from
+     */
+    private void setInputProjection(Job job, String section) {
+        Configuration conf = job.getConfiguration();
+        ConfigReader cfgReader = new ConfigReader(section);
+
+        List<String> columns = new ArrayList<>(cfgReader.readCommaSeparatedProperty(conf, INDEPENDENTS_PROP));
+        columns.add(cfgReader.getConfigProperty(conf, DEPENDENT_PROP));
+        ColumnarInputFormat.setProjection(conf, columns);
+    }
+
     @Override
     protected Logger getLogger() {
         return logger;
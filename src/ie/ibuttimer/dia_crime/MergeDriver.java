@@ -24,19 +24,31 @@
 package ie.ibuttimer.dia_crime;
 
 import ie.ibuttimer.dia_crime.hadoop.crime.CrimeWrapMapper;
+import ie.ibuttimer.dia_crime.hadoop.incremental.Watermark;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat;
 import ie.ibuttimer.dia_crime.hadoop.merge.CSWWrapperWritable;
+import ie.ibuttimer.dia_crime.hadoop.merge.DailyWrapMapper;
+import ie.ibuttimer.dia_crime.hadoop.merge.FillForwardStitcher;
 import ie.ibuttimer.dia_crime.hadoop.merge.MergeReducer;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
 import ie.ibuttimer.dia_crime.hadoop.stock.DowJonesStockWrapMapper;
 import ie.ibuttimer.dia_crime.hadoop.stock.NasdaqStockWrapMapper;
 import ie.ibuttimer.dia_crime.hadoop.stock.SP500StockWrapMapper;
 import ie.ibuttimer.dia_crime.hadoop.weather.WeatherWrapMapper;
+import ie.ibuttimer.dia_crime.misc.ConfigReader;
 import ie.ibuttimer.dia_crime.misc.Constants;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
+import ie.ibuttimer.dia_crime.misc.PropertyWrangler;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.http.util.TextUtils;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -90,20 +102,41 @@ public class MergeDriver extends AbstractDriver {
 
             addStockSpecificsToConfig(conf);
 
-            ipSections.put(NASDAQ_PROP_SECTION, InputCfg.of(NasdaqStockWrapMapper.class));
-            ipSections.put(DOWJONES_PROP_SECTION, InputCfg.of(DowJonesStockWrapMapper.class));
-            ipSections.put(SP500_PROP_SECTION, InputCfg.of(SP500StockWrapMapper.class));
-            ipSections.put(CRIME_PROP_SECTION, InputCfg.of(CrimeWrapMapper.class));
-            ipSections.put(WEATHER_PROP_SECTION, InputCfg.of(WeatherWrapMapper.class));
+            /* if the daily output of a previous job is specified, read that rather than re-processing the raw input;
+                all stocks are in the same stocks job output, so it is read via the first stock section */
+            if (hasDailyInput(conf, NASDAQ_PROP_SECTION)) {
+                ipSections.put(NASDAQ_PROP_SECTION,
+                    InputCfg.of(DailyWrapMapper.StockDailyWrapMapper.class, DAILY_IN_PATH_PROP));
+            } else {
+                ipSections.put(NASDAQ_PROP_SECTION, InputCfg.of(NasdaqStockWrapMapper.class));
+                ipSections.put(DOWJONES_PROP_SECTION, InputCfg.of(DowJonesStockWrapMapper.class));
+                ipSections.put(SP500_PROP_SECTION, InputCfg.of(SP500StockWrapMapper.class));
+            }
+            if (hasDailyInput(conf, CRIME_PROP_SECTION)) {
+                ipSections.put(CRIME_PROP_SECTION,
+                    InputCfg.of(DailyWrapMapper.CrimeDailyWrapMapper.class, DAILY_IN_PATH_PROP));
+            } else {
+                ipSections.put(CRIME_PROP_SECTION, InputCfg.of(CrimeWrapMapper.class));
+            }
+            if (hasDailyInput(conf, WEATHER_PROP_SECTION)) {
+                ipSections.put(WEATHER_PROP_SECTION,
+                    InputCfg.of(DailyWrapMapper.WeatherDailyWrapMapper.class, DAILY_IN_PATH_PROP));
+            } else {
+                ipSections.put(WEATHER_PROP_SECTION, InputCfg.of(WeatherWrapMapper.class));
+            }
 
+            // merged outputs are the input to the following stages, so are written in the intermediate format
             MergeReducer.MERGE_SECTIONS.forEach(s -> {
-                opSections.put(s, OutputCfg.of(s, DateWritable.class, Text.class));
+                opSections.put(s, OutputCfg.of(s, DateWritable.class, Text.class,
+                    getOutputFormatClass(conf, CRIME_PROP_SECTION)));
             });
             opSections.put(STOCK_PROP_SECTION, OutputCfg.of(TYPES_NAMED_OP, DateWritable.class, Text.class));
+            opSections.put(BOUNDARY_NAMED_OP, OutputCfg.of(BOUNDARY_NAMED_OP, DateWritable.class, Text.class));
 
             job = initJob("Merge", conf, ipSections, opSections);
 
             job.setReducerClass(MergeReducer.class);
+            setDatePartitioning(job, CRIME_PROP_SECTION);
 
             job.setMapOutputKeyClass(DateWritable.class);
             job.setMapOutputValueClass(CSWWrapperWritable.class);
@@ -119,22 +152,91 @@ public class MergeDriver extends AbstractDriver {
     }
 
 
+    /**
+     * Check if the daily output of a previous job is specified as input for a section
+     * @param conf      Job configuration
+     * @param section   Section to check
+     * @return  True if daily input specified
+     */
+    private boolean hasDailyInput(Configuration conf, String section) {
+        PropertyWrangler propertyWrangler = new PropertyWrangler(section);
+        return !TextUtils.isBlank(conf.get(propertyWrangler.getPropertyPath(DAILY_IN_PATH_PROP), ""));
+    }
+
     public int runMergeJob(JobConfig cfg) throws Exception {
 
         int resultCode = Constants.ECODE_FAIL;
-        Job job = getMergeJob(cfg.properties);
-        if (job != null) {
-            if (cfg.wait) {
-                resultCode = job.waitForCompletion(cfg.verbose) ? Constants.ECODE_SUCCESS : Constants.ECODE_FAIL;
-            } else {
-                job.submit();
-                resultCode = ECODE_RUNNING;
+        IncrementalRun incremental = IncrementalRun.of(getApp(), cfg, List.of(CRIME_PROP_SECTION), logger);
+        if (incremental.isEnabled()) {
+            resultCode = incremental.run(getIncrementalSources(incremental),
+                MergeReducer.MERGE_SECTIONS, List.of(TYPES_NAMED_OP), this::runMergeJob);
+        } else {
+            Job job = getMergeJob(cfg.properties);
+            if (job != null) {
+                if (cfg.wait) {
+                    resultCode = job.waitForCompletion(cfg.verbose) ? Constants.ECODE_SUCCESS : Constants.ECODE_FAIL;
+
+                    if ((resultCode == ECODE_SUCCESS) && (job.getNumReduceTasks() > 1)) {
+                        stitchFillForward(job);
+                    }
+                } else {
+                    if (job.getNumReduceTasks() > 1) {
+                        logger.warn("Merge job not waited for, fill forward across date range partitions will not be completed");
+                    }
+                    job.submit();
+                    resultCode = ECODE_RUNNING;
+                }
             }
         }
 
         return resultCode;
     }
 
+    /**
+     * Get the inputs of an incremental merge; the watermarked outputs of the previous jobs if their daily output is
+     * specified as input, otherwise the raw inputs
+     * @param incremental   Incremental run
+     * @return  List of sources
+     * @throws IOException
+     */
+    private List<Watermark.Source> getIncrementalSources(IncrementalRun incremental) throws IOException {
+        List<Watermark.Source> sources = new ArrayList<>();
+        if (!TextUtils.isBlank(incremental.getSectionSetting(STOCK_PROP_SECTION, DAILY_IN_PATH_PROP, ""))) {
+            sources.add(incremental.getStageSource(STOCK_PROP_SECTION, DAILY_IN_PATH_PROP));
+        } else {
+            for (String section : StockDriver.STOCK_SECTIONS) {
+                sources.add(incremental.getInputSource(section));
+            }
+        }
+        for (String section : List.of(CRIME_PROP_SECTION, WEATHER_PROP_SECTION)) {
+            if (!TextUtils.isBlank(incremental.getSectionSetting(section, DAILY_IN_PATH_PROP, ""))) {
+                sources.add(incremental.getStageSource(section, DAILY_IN_PATH_PROP));
+            } else {
+                sources.add(incremental.getInputSource(section));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Complete the fill forward of entries at the start of each reducer's range of dates
+     * @param job   Completed merge job
+     * @throws IOException
+     */
+    private void stitchFillForward(Job job) throws IOException {
+        Configuration conf = job.getConfiguration();
+        DateTimeFormatter keyFormatter = new ConfigReader(CRIME_PROP_SECTION)
+            .getDateTimeFormatter(conf, OUT_KEY_DATE_FORMAT_PROP, DateTimeFormatter.ISO_LOCAL_DATE);
+
+        int count = FillForwardStitcher.stitch(conf, FileOutputFormat.getOutputPath(job), keyFormatter,
+            ColumnarFormat.getOutputFormat(conf, CRIME_PROP_SECTION));
+
+        if (DebugLevel.getSetting(conf, CRIME_PROP_SECTION).showMe(DebugLevel.HIGH)) {
+            logger.info(String.format("Completed %d entries across %d date range partitions", count,
+                job.getNumReduceTasks()));
+        }
+    }
+
     @Override
     protected Logger getLogger() {
         return logger;
@@ -29,7 +29,8 @@ import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
 import ie.ibuttimer.dia_crime.hadoop.normalise.NormaliseMapper;
 import ie.ibuttimer.dia_crime.hadoop.normalise.NormalisePartitioner;
 import ie.ibuttimer.dia_crime.hadoop.normalise.NormaliseReducer;
-import ie.ibuttimer.dia_crime.hadoop.regression.RegressionWritable;
+import ie.ibuttimer.dia_crime.hadoop.regression.PackedRegressionWritable;
+import ie.ibuttimer.dia_crime.hadoop.regression.RegressionSchema;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
@@ -86,6 +87,9 @@ public class NormaliseDriver extends AbstractDriver implements ITagger {
 
             job = initJob("Normalise", conf, ipSections, opSections);
 
+            // normalised values are packed by index as per the schema resolved from the normalise section
+            RegressionSchema.configure(job.getConfiguration(), NORMALISE_PROP_SECTION);
+
             job.setReducerClass(NormaliseReducer.class);
 
             // Creates reduce instances
@@ -94,15 +98,16 @@ public class NormaliseDriver extends AbstractDriver implements ITagger {
             job.setPartitionerClass(NormalisePartitioner.class);
 
             job.setMapOutputKeyClass(DateWritable.class);
-            job.setMapOutputValueClass(RegressionWritable.class);
+            job.setMapOutputValueClass(PackedRegressionWritable.class);
 
             /*
              * Input and Output types of a MapReduce job:
              * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
-             * (input) <LongWritable, Text> -> map -> <DateWritable, RegressionWritable> -> reduce -> <DateWritable, Text> (output)
+             * (input) <LongWritable, Text> -> map -> <DateWritable, PackedRegressionWritable> -> reduce -> <DateWritable, Text> (output)
              */
             job.setOutputKeyClass(DateWritable.class);
             job.setOutputValueClass(Text.class);
+            job.setOutputFormatClass(getOutputFormatClass(job.getConfiguration(), NORMALISE_PROP_SECTION));
         }
 
         return job;
@@ -0,0 +1,364 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime;
+
+import ie.ibuttimer.dia_crime.misc.Utils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Scheduler for multi-job runs.
+ * Each job in a job file is a stage whose inputs and outputs are declared in its properties, as
+ * 'stage.<job>.inputs' and 'stage.<job>.outputs'. A stage depends on the earlier stages which write its inputs,
+ * write the same outputs or read its outputs. Independent stages are run concurrently, up to the in-flight limit,
+ * and a dependant stage is run as soon as the outputs it reads have been committed, so the overall run time is
+ * bounded by the critical path rather than the sum of the stages.
+ * A stage without declarations is run after all earlier stages and before all later stages.
+ */
+public class StageScheduler {
+
+    private static final Logger logger = Logger.getLogger(StageScheduler.class);
+
+    /* multiple paths are separated by ';' as a ',' is part of a 'property-sum' */
+    public static final String STAGE_PATH_SEPARATOR = ";";
+
+    private static final String RESOLVE_KEY = "stage.resolve";
+    private static final int MAX_RESOLVE_DEPTH = 5;
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    enum State { PENDING, RUNNING, SUCCEEDED, FAILED }
+
+    private final DiaCrimeMain app;
+    private final int maxInFlight;
+    private final List<Stage> stages;
+
+    public StageScheduler(DiaCrimeMain app, int maxInFlight) {
+        this.app = app;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.stages = new ArrayList<>();
+    }
+
+    public static StageScheduler of(DiaCrimeMain app, int maxInFlight) {
+        return new StageScheduler(app, maxInFlight);
+    }
+
+    /**
+     * Add a stage to the run
+     * @param args          Job arguments
+     * @param name          Job name
+     * @param properties    Job properties
+     */
+    public void add(String[] args, String name, Properties properties) {
+
+        Optional<List<String>> inputs = getPaths(properties, name, STAGE_INPUTS_PROP);
+        Optional<List<String>> outputs = getPaths(properties, name, STAGE_OUTPUTS_PROP);
+
+        Stage stage = new Stage(stages.size() + 1, args, name,
+            inputs.orElse(List.of()), outputs.orElse(List.of()), inputs.isPresent() || outputs.isPresent());
+
+        stages.forEach(earlier -> {
+            if (!stage.declared || !earlier.declared ||
+                    overlaps(stage.inputs, earlier.outputs) ||     // reads earlier output
+                    overlaps(stage.outputs, earlier.outputs) ||    // overwrites earlier output
+                    overlaps(stage.outputs, earlier.inputs)) {     // overwrites earlier input
+                stage.dependencies.add(earlier);
+            }
+        });
+        stages.add(stage);
+
+        logger.info(String.format("Stage %s depends on [%s]", stage,
+            stage.dependencies.stream().map(Stage::toString).collect(Collectors.joining(", "))));
+    }
+
+    /**
+     * Run all stages
+     * @return  ECODE_SUCCESS if all stages were successful, otherwise the result code of the first failure
+     * @throws InterruptedException if interrupted waiting for a stage
+     */
+    public int run() throws InterruptedException {
+
+        int resultCode = ECODE_SUCCESS;
+        LocalDateTime startTime = LocalDateTime.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight);
+        CompletionService<Pair<Stage, Integer>> completion = new ExecutorCompletionService<>(executor);
+        int inFlight = 0;
+        try {
+            do {
+                if (resultCode == ECODE_SUCCESS) {
+                    // start all ready stages, the executor limits the number in flight
+                    for (Stage stage : stages) {
+                        if (stage.state == State.PENDING && stage.isReady()) {
+                            if (inputsCommitted(stage)) {
+                                stage.state = State.RUNNING;
+                                completion.submit(() -> runStage(stage));
+                                ++inFlight;
+                            } else {
+                                stage.state = State.FAILED;
+                                resultCode = ECODE_FAIL;
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (inFlight > 0) {
+                    Pair<Stage, Integer> result = getResult(completion.take());
+                    --inFlight;
+
+                    Stage stage = result.getLeft();
+                    if (result.getRight() == ECODE_SUCCESS) {
+                        stage.state = State.SUCCEEDED;
+                    } else {
+                        stage.state = State.FAILED;
+                        if (resultCode == ECODE_SUCCESS) {
+                            // stop starting stages, but let those in flight finish
+                            resultCode = result.getRight();
+                        }
+                    }
+                }
+            } while (inFlight > 0);
+        } finally {
+            executor.shutdown();
+        }
+
+        List<String> report = new ArrayList<>();
+        report.add("Multi-job run " + (resultCode == ECODE_SUCCESS ? "complete" : "failed"));
+        stages.forEach(stage -> report.add(String.format("%s: %s %s", stage, stage.state,
+            (stage.elapsed != null ? formatDuration(stage.elapsed) : ""))));
+        report.add("Elapsed " + formatDuration(Duration.between(startTime, LocalDateTime.now())));
+        logger.info(Utils.getDialog(report));
+
+        return resultCode;
+    }
+
+    private Pair<Stage, Integer> runStage(Stage stage) {
+        logger.info(String.format("Starting stage %s", stage));
+
+        LocalDateTime start = LocalDateTime.now();
+        int resultCode;
+        try {
+            resultCode = app.processJob(stage.args);
+        } catch (Exception e) {
+            logger.error(String.format("Stage %s failed", stage), e);
+            resultCode = ECODE_FAIL;
+        }
+        stage.elapsed = Duration.between(start, LocalDateTime.now());
+
+        logger.info(String.format("Finished stage %s in %s, result %d", stage, formatDuration(stage.elapsed),
+            resultCode));
+        return Pair.of(stage, resultCode);
+    }
+
+    private Pair<Stage, Integer> getResult(Future<Pair<Stage, Integer>> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // runStage handles all exceptions
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Check the inputs of a stage which are written by its dependencies have been committed, i.e. their output
+     * folder has a success marker or, for outputs not written by a job, that the input exists.
+     * @param stage     Stage to check
+     * @return  true if all inputs are available
+     */
+    private boolean inputsCommitted(Stage stage) {
+        boolean committed = true;
+        for (String input : stage.inputs) {
+            for (Stage dependency : stage.dependencies) {
+                for (String output : dependency.outputs) {
+                    if (overlaps(input, output)) {
+                        try {
+                            committed = isCommitted(output, input);
+                        } catch (IOException e) {
+                            logger.error(String.format("Unable to check input %s of stage %s", input, stage), e);
+                            committed = false;
+                        }
+                        if (!committed) {
+                            logger.error(String.format("Input %s of stage %s not available from stage %s",
+                                input, stage, dependency));
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return committed;
+    }
+
+    private boolean isCommitted(String output, String input) throws IOException {
+        Configuration conf = new Configuration();
+        Path outPath = new Path(output);
+        FileSystem fs = outPath.getFileSystem(conf);
+
+        boolean committed = fs.exists(new Path(outPath, FileOutputCommitter.SUCCEEDED_FILE_NAME));
+        if (!committed) {
+            FileStatus[] statuses = fs.globStatus(new Path(input));
+            committed = (statuses != null && statuses.length > 0);
+        }
+        return committed;
+    }
+
+    /**
+     * Get the declared stage paths
+     * @param properties    Job properties
+     * @param name          Job name
+     * @param property      Stage property
+     * @return  Normalised paths, or empty if not declared
+     */
+    private Optional<List<String>> getPaths(Properties properties, String name, String property) {
+        String value = properties.getProperty(
+            generatePropertyName(generatePropertyName(STAGE_PROP_SECTION, name), property));
+        Optional<List<String>> paths;
+        if (value == null) {
+            paths = Optional.empty();
+        } else {
+            Properties lookup = new Properties(properties);
+            paths = Optional.of(Arrays.stream(value.split(STAGE_PATH_SEPARATOR))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(s -> resolve(lookup, s))
+                .filter(s -> !s.isEmpty())
+                .map(StageScheduler::normalise)
+                .collect(Collectors.toList()));
+        }
+        return paths;
+    }
+
+    /**
+     * Resolve a path, which may be a 'property-alias' or 'property-sum'
+     * @param lookup    Properties to resolve from
+     * @param path      Path to resolve
+     * @return  Resolved path
+     */
+    private String resolve(Properties lookup, String path) {
+        String resolved = path;
+        for (int depth = 0; depth < MAX_RESOLVE_DEPTH &&
+                (resolved.startsWith(PROPERTY_ALIAS) || resolved.startsWith(PROPERTY_SUM)); ++depth) {
+            lookup.setProperty(RESOLVE_KEY, resolved);
+            resolved = app.getProperty(lookup, RESOLVE_KEY, "");
+        }
+        return resolved;
+    }
+
+    /**
+     * Normalise a path for comparison, a glob is replaced by the folder containing it
+     * @param path  Path to normalise
+     * @return  Normalised path
+     */
+    static String normalise(String path) {
+        String normalised = path;
+        int glob = -1;
+        for (char chr : GLOB_CHARS.toCharArray()) {
+            int index = normalised.indexOf(chr);
+            if (index >= 0 && (glob < 0 || index < glob)) {
+                glob = index;
+            }
+        }
+        if (glob >= 0) {
+            normalised = normalised.substring(0, Math.max(0, normalised.lastIndexOf('/', glob)));
+        }
+        normalised = new Path(normalised.isEmpty() ? "." : normalised).toUri().normalize().toString();
+        while (normalised.length() > 1 && normalised.endsWith("/")) {
+            normalised = normalised.substring(0, normalised.length() - 1);
+        }
+        return normalised;
+    }
+
+    /**
+     * Check if two paths overlap, i.e. they are the same or one contains the other
+     * @param path1     First path
+     * @param path2     Second path
+     * @return  true if overlapping
+     */
+    static boolean overlaps(String path1, String path2) {
+        return path1.equals(path2) || isParent(path1, path2) || isParent(path2, path1);
+    }
+
+    private static boolean isParent(String parent, String path) {
+        return path.startsWith(parent.endsWith("/") ? parent : parent + "/");
+    }
+
+    private static boolean overlaps(List<String> paths1, List<String> paths2) {
+        return paths1.stream().anyMatch(path1 -> paths2.stream().anyMatch(path2 -> overlaps(path1, path2)));
+    }
+
+    private static String formatDuration(Duration duration) {
+        return String.format("%d:%02d:%02d", duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
+    }
+
+
+    /**
+     * A job in a multi-job run
+     */
+    private static class Stage {
+        final int index;
+        final String[] args;
+        final String name;
+        final List<String> inputs;
+        final List<String> outputs;
+        final boolean declared;
+        final Set<Stage> dependencies;
+        volatile State state;
+        volatile Duration elapsed;
+
+        Stage(int index, String[] args, String name, List<String> inputs, List<String> outputs, boolean declared) {
+            this.index = index;
+            this.args = args;
+            this.name = name;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.declared = declared;
+            this.dependencies = new LinkedHashSet<>();
+            this.state = State.PENDING;
+        }
+
+        boolean isReady() {
+            return dependencies.stream().allMatch(stage -> stage.state == State.SUCCEEDED);
+        }
+
+        @Override
+        public String toString() {
+            return index + ":" + name;
+        }
+    }
+}
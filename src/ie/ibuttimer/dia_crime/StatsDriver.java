@@ -24,20 +24,27 @@
 package ie.ibuttimer.dia_crime;
 
 import ie.ibuttimer.dia_crime.hadoop.ITagger;
+import ie.ibuttimer.dia_crime.hadoop.incremental.Watermark;
+import ie.ibuttimer.dia_crime.hadoop.ingest.PartitionManifest;
 import ie.ibuttimer.dia_crime.hadoop.io.FileWriter;
 import ie.ibuttimer.dia_crime.hadoop.stats.*;
 import ie.ibuttimer.dia_crime.misc.DebugLevel;
 import ie.ibuttimer.dia_crime.misc.PropertyWrangler;
 import ie.ibuttimer.dia_crime.misc.Utils;
-import ie.ibuttimer.dia_crime.misc.Value;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
@@ -77,20 +84,38 @@ public class StatsDriver extends AbstractDriver implements ITagger {
 
         if (resultCode == ECODE_SUCCESS) {
             Map<String, InputCfg> ipSections = new HashMap<>();
+            Map<String, OutputCfg> opSections = new HashMap<>();
 
-            ipSections.put(STATS_PROP_SECTION, InputCfg.of(StatsMapper.class));
+            boolean dense = conf.getBoolean(
+                generatePropertyName(STATS_PROP_SECTION, DENSE_ACCUMULATOR_PROP), false);
 
-            job = initJob("Stats", conf, ipSections);
+            ipSections.put(STATS_PROP_SECTION,
+                InputCfg.of(dense ? StatsMatrixMapper.class : StatsMapper.class));
 
-            job.setReducerClass(StatsReducer.class);
+            // partial aggregates, so the statistics of separate runs may be merged
+            opSections.put(AGGREGATE_NAMED_OP, OutputCfg.of(AGGREGATE_NAMED_OP, Text.class, StatsPartial.class,
+                SequenceFileOutputFormat.class));
+
+            job = initJob("Stats", conf, ipSections, opSections);
+
+            if (dense) {
+                job.setCombinerClass(StatsMatrixCombiner.class);
+                job.setReducerClass(StatsMatrixReducer.class);
+            } else {
+                job.setCombinerClass(StatsCombiner.class);
+                job.setReducerClass(StatsReducer.class);
+            }
 
             job.setMapOutputKeyClass(Text.class);
-            job.setMapOutputValueClass(Value.class);
+            job.setMapOutputValueClass(dense ? StatsMatrixPartial.class : StatsPartial.class);
 
             /*
              * Input and Output types of a MapReduce job:
              * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
-             * (input) <LongWritable, Text> -> map -> <Text, Value> -> reduce -> <Text, Text> (output)
+             * (input) <LongWritable, Text> -> map -> <Text, StatsPartial> -> combine -> <Text, StatsPartial> -> reduce -> <Text, Text> (output)
+             * or, with dense accumulator
+             * (input) <LongWritable, Text> -> map -> <Text, StatsMatrixPartial> -> combine ->
+             *      <Text, StatsMatrixPartial> -> reduce -> <Text, Text> (output)
              */
             job.setOutputKeyClass(Text.class);
             job.setOutputValueClass(Text.class);
@@ -102,13 +127,25 @@ public class StatsDriver extends AbstractDriver implements ITagger {
 
     public int runStatsJob(JobConfig cfg) throws Exception {
 
+        int resultCode;
+        IncrementalRun incremental = IncrementalRun.of(getApp(), cfg, getSectionLists().getLeft(), logger);
+        if (incremental.isEnabled()) {
+            resultCode = runIncrementalStatsJob(cfg, incremental);
+        } else {
+            resultCode = runStatsJob(cfg, true);
+        }
+        return resultCode;
+    }
+
+    private int runStatsJob(JobConfig cfg, boolean report) throws Exception {
+
         int resultCode = ECODE_FAIL;
         Job job = getStatsJob(cfg.properties);
         if (job != null) {
             if (cfg.wait) {
                 resultCode = job.waitForCompletion(cfg.verbose) ? ECODE_SUCCESS : ECODE_FAIL;
-                if (resultCode == ECODE_SUCCESS) {
-                    statsJobReport(job);
+                if ((resultCode == ECODE_SUCCESS) && report) {
+                    statsJobReport(job.getConfiguration());
                 }
             } else {
                 job.submit();
@@ -119,11 +156,146 @@ public class StatsDriver extends AbstractDriver implements ITagger {
         return resultCode;
     }
 
-    private void statsJobReport(Job job) {
+    /**
+     * Run the statistics job incrementally. The partial aggregates of each month of the merge output are saved in
+     * '<output>/<yyyy>/<MM>', and only the months which are new or changed are recomputed, by a single job over those
+     * months which keys its partial aggregates by month. The statistics for the filter dates are then calculated by
+     * folding the partial aggregates of all the months.
+     * @param cfg           Job configuration
+     * @param incremental   Incremental run
+     * @return  result code
+     * @throws Exception
+     */
+    private int runIncrementalStatsJob(JobConfig cfg, IncrementalRun incremental) throws Exception {
+
+        Configuration conf = incremental.getConf();
+        Path outDir = incremental.getOutPath();
+        FileSystem fs = outDir.getFileSystem(conf);
+
+        Watermark.Source source = incremental.getStageSource(STATS_PROP_SECTION, IN_PATH_PROP);
+        if (!source.getRoot().isPresent()) {
+            logger.warn("Statistics input is not month partitioned, running in full");
+            Properties properties = new Properties();
+            properties.putAll(cfg.properties);
+            properties.setProperty(generatePropertyName(GLOBAL_PROP_SECTION, INCREMENTAL_PROP), "false");
+            return runStatsJob(incremental.getJobConfig(properties), true);
+        }
 
-        PropertyWrangler propertyWrangler = new PropertyWrangler();
+        Optional<Watermark> previous = Watermark.read(conf, outDir);
+        IncrementalRun.Plan plan = incremental.plan(List.of(source), previous);
+        logger.info(String.format("Incremental run of %s: %s", outDir, plan));
+
+        int resultCode = ECODE_SUCCESS;
+        if (!plan.isUpToDate()) {
+            Path staging = incremental.getStagingPath();
+            String inFile = new Path(incremental.getSectionSetting(STATS_PROP_SECTION, IN_PATH_PROP, "")).getName();
+            LocalDate filterStart = incremental.getFilterStart();
+            LocalDate filterEnd = incremental.getFilterEnd();
+            TreeMap<YearMonth, String> published = new TreeMap<>();
+            if (fs.exists(staging)) {
+                fs.delete(staging, true);   // left by a failed run
+            }
+
+            List<String> partitionDirs = source.getMonths().keySet().stream()
+                .filter(month -> Watermark.inRange(month, plan.getFirst(), plan.getLast()))
+                .map(month -> PartitionManifest.getPartitionDir(month.atDay(1)))
+                .collect(Collectors.toList());
+            if (!partitionDirs.isEmpty()) {
+                LocalDate start = filterStart;
+                LocalDate end = filterEnd;
+                if (plan.getFirst() != null && (start == null || plan.getFirst().atDay(1).isAfter(start))) {
+                    start = plan.getFirst().atDay(1);
+                }
+                if (plan.getLast() != null && (end == null || plan.getLast().atEndOfMonth().isBefore(end))) {
+                    end = plan.getLast().atEndOfMonth();
+                }
+
+                // a single job over all the months in the range, with the partial aggregates routed by month
+                Properties properties = incremental.getJobProperties(start, end, staging);
+                properties.setProperty(generatePropertyName(STATS_PROP_SECTION, IN_PATH_PROP),
+                    new Path(new Path(source.getRoot().get(), "{" + String.join(",", partitionDirs) + "}"),
+                        inFile).toString());
+                properties.setProperty(generatePropertyName(STATS_PROP_SECTION, AGGREGATE_BY_MONTH_PROP), "true");
+
+                resultCode = runStatsJob(incremental.getJobConfig(properties), false);
+            }
+
+            if (resultCode == ECODE_SUCCESS) {
+                // the existing output is only changed once the job has succeeded, so the watermark stays valid if it
+                // fails, and the watermark is removed until the new one is committed, in case publishing fails.
+                // Months in the range are replaced, months no longer in the input are removed
+                Watermark.invalidate(conf, outDir);
+                if (plan.isFull() && fs.exists(outDir)) {
+                    fs.delete(outDir, true);
+                }
+                fs.mkdirs(outDir);
+                for (PartitionManifest.Partition partition : PartitionManifest.scan(conf, outDir).getPartitions()) {
+                    if (Watermark.inRange(partition.getMonth(), plan.getFirst(), plan.getLast())) {
+                        fs.delete(new Path(outDir, partition.getPath()), true);
+                    }
+                }
+            }
+
+            if ((resultCode == ECODE_SUCCESS) && fs.exists(staging)) {
+                for (PartitionManifest.Partition partition : PartitionManifest.scan(conf, staging).getPartitions()) {
+                    Path monthDir = new Path(outDir, partition.getPath());
+                    fs.mkdirs(monthDir);
+                    FileStatus[] aggregates = fs.globStatus(
+                        new Path(new Path(staging, partition.getPath()), AGGREGATE_NAMED_OP + "-r-*"));
+                    if (aggregates != null) {
+                        for (FileStatus status : aggregates) {
+                            Path target = new Path(monthDir, status.getPath().getName());
+                            if (!fs.rename(status.getPath(), target)) {
+                                throw new IOException("Unable to publish " + target);
+                            }
+                        }
+                    }
+                    published.put(partition.getMonth(), Watermark.fingerprintContents(fs, monthDir));
+                }
+            }
+
+            if (resultCode == ECODE_SUCCESS) {
+                // fold the aggregates of all months into the statistics for the filter dates
+                Properties properties = incremental.getJobProperties(filterStart, filterEnd, staging);
+                Configuration reportConf = new Configuration();
+                resultCode = readConfigs(reportConf, properties, getSectionLists().getLeft(),
+                    getSectionLists().getRight());
+                if (resultCode == ECODE_SUCCESS) {
+                    reportConf.set(generatePropertyName(STATS_PROP_SECTION, OUT_PATH_PROP), outDir.toString());
+
+                    StatsAggregates statsAggregates = StatsAggregates.of();
+                    for (PartitionManifest.Partition partition : PartitionManifest.scan(conf, outDir).getPartitions()) {
+                        FileStatus[] aggregates = fs.globStatus(
+                            new Path(new Path(outDir, partition.getPath()), AGGREGATE_NAMED_OP + "-r-*"));
+                        if (aggregates != null) {
+                            for (FileStatus status : aggregates) {
+                                statsAggregates.read(conf, status.getPath());
+                            }
+                        }
+                    }
+                    statsAggregates.write(conf, new Path(outDir, "part-r-00000"),
+                        getTagStrings(reportConf, STATS_PROP_SECTION));
 
-        Configuration conf = job.getConfiguration();
+                    incremental.commit((plan.isFull() ? Optional.<Watermark>empty() : previous)
+                            .orElseGet(() -> Watermark.of(outDir)),
+                        List.of(source), plan, published);
+                    fs.delete(staging, true);
+
+                    logger.info(String.format("Published %d months to %s, %d statistics keys",
+                        published.size(), outDir, statsAggregates.size()));
+
+                    statsJobReport(reportConf);
+                }
+            }
+        } else {
+            fs.create(new Path(outDir, FileOutputCommitter.SUCCEEDED_FILE_NAME), true).close();
+        }
+        return resultCode;
+    }
+
+    private void statsJobReport(Configuration conf) {
+
+        PropertyWrangler propertyWrangler = new PropertyWrangler();
 
         StatsConfigReader cfgReader = new StatsConfigReader(StatsMapper.getClsCsvMapperCfg());
 
@@ -137,7 +309,7 @@ public class StatsDriver extends AbstractDriver implements ITagger {
             boolean showHighDebug = DebugLevel.HIGH.showMe(debugLevel);
 
             Path outDir = new Path(conf.get(propertyWrangler.getPropertyPath(OUT_PATH_PROP)));
-            StatsCalc statsCalc = new StatsCalc(outDir, conf, "part-r-00000");
+            StatsCalc statsCalc = new StatsCalc(outDir, conf, "part-r-*");
             String outPath = conf.get(propertyWrangler.getPropertyPath(STATS_PATH_PROP), section + "_stats.txt");
             String dependent = conf.get(propertyWrangler.getPropertyPath(DEPENDENT_PROP), "");
             FileWriter writer = new FileWriter(outDir, conf);
@@ -211,8 +383,12 @@ public class StatsDriver extends AbstractDriver implements ITagger {
 
             writer.write(Utils.heading("Correlation array"));
             try {
-                int count = numericTypes.size();
-                String[][] resultArray = new String[count][count];
+                List<String> sortedNumerics = numericTypes.stream().sorted().collect(Collectors.toList());
+                int count = sortedNumerics.size();
+                double[][] corMatrix = new double[count][count];
+                for (double[] row : corMatrix) {
+                    Arrays.fill(row, Double.NaN);
+                }
 
                 AtomicInteger width = new AtomicInteger(0);
                 numericTypes.stream().mapToInt(String::length).max().ifPresent(width::set);
@@ -222,14 +398,9 @@ public class StatsDriver extends AbstractDriver implements ITagger {
                 String strFmt = "%" + width.get() + "s ";
                 String corFmt = "%" + width.get() + ".2f";
 
-                List<String> sortedNumerics = numericTypes.stream().sorted().collect(Collectors.toList());
-
-                // calc all correlations
-                List<Map.Entry<String, Result>> corList = statsCalc.calcAllCorrelation(numericTypes,
-                                                                            (showHighDebug ? logger : null))
-                    .entryList().stream()
-                    .sorted(Map.Entry.comparingByKey())
-                    .collect(Collectors.toList());
+                // calc all correlations, index-addressed in sorted order
+                Result[][] corResults = statsCalc.calcCorrelationMatrix(sortedNumerics, numericTypes,
+                    Runtime.getRuntime().availableProcessors(), (showHighDebug ? logger : null));
 
                 List<CorResults> resultsMap = new ArrayList<>(List.of(
                     new CorResults(0.9, 1.001),
@@ -240,50 +411,38 @@ public class StatsDriver extends AbstractDriver implements ITagger {
                     new CorResults(0.0, 0.5)
                 ));
                 CorResults anomalies = new CorResults(0.0, 0.0);
-                AtomicInteger kpWidth = new AtomicInteger(0);
-                List<String> skipList = new ArrayList<>();
+                int kpWidth = 0;
+                List<Map.Entry<String, Result>> corList = new ArrayList<>();
 
-                sortedNumerics.forEach(id1 -> {
-                    sortedNumerics.stream()
-                        .filter(id2 -> !id1.equals(id2))
-                        .filter(id2 ->
-                            // reversed properties are not in skip list
-                            skipList.stream()
-                                .noneMatch(NameTag.getKeyPair(id1, id2)::equals)
-                        )
-                        .forEach(id2 -> {
-
-                            String leftRightPair = NameTag.getKeyPair(id1, id2);
-                            String rightLeftPair = NameTag.getKeyPair(id2, id1);
-
-                            // no need to calc right-left as its the same as left-right
-                            skipList.add(rightLeftPair);
-
-                            if (leftRightPair.length() > kpWidth.get()) {
-                                kpWidth.set(leftRightPair.length());
-                            }
+                for (int idx1 = 0; idx1 < count; ++idx1) {
+                    // no need to calc right-left as its the same as left-right
+                    for (int idx2 = idx1 + 1; idx2 < count; ++idx2) {
+                        String leftRightPair = NameTag.getKeyPair(sortedNumerics.get(idx1), sortedNumerics.get(idx2));
+
+                        kpWidth = Math.max(kpWidth, leftRightPair.length());
 
-                            corList.stream()
-                                .filter(e -> e.getKey().equals(leftRightPair) || e.getKey().equals(rightLeftPair))
+                        Result result = corResults[idx1][idx2];
+                        if (result == null) {
+                            continue;
+                        }
+                        corList.add(Map.entry(leftRightPair, result));
+
+                        Optional<Double> correlation = result.getCorrelation();
+                        if (correlation.isPresent()) {
+                            double v = correlation.get();
+                            corMatrix[idx1][idx2] = v;
+                            corMatrix[idx2][idx1] = v;
+
+                            double absV = Math.abs(v);
+                            resultsMap.stream()
+                                .filter(cor -> (cor.min <= absV) && (absV < cor.max))
                                 .findFirst()
-                                .ifPresent(e -> {
-                                    Pair<String, String> keyPair = NameTag.splitKeyPair(e.getKey());
-                                    int idx1 = sortedNumerics.indexOf(keyPair.getLeft());
-                                    int idx2 = sortedNumerics.indexOf(keyPair.getRight());
-                                    e.getValue().getCorrelation().ifPresent(v -> {
-                                        resultArray[idx1][idx2] = String.format(corFmt, v);
-                                        resultArray[idx2][idx1] = resultArray[idx1][idx2];
-
-                                        double absV = Math.abs(v);
-                                        resultsMap.stream()
-                                            .filter(cor -> (cor.min <= absV) && (absV < cor.max))
-                                            .findFirst()
-                                            .orElseGet(() -> anomalies)
-                                            .entries.put(leftRightPair, v);
-                                    });
-                                });
-                        });
-                });
+                                .orElse(anomalies)
+                                .entries.put(leftRightPair, v);
+                        }
+                    }
+                }
+                corList.sort(Map.Entry.comparingByKey());
 
                 StringBuilder sb = new StringBuilder(String.format(strFmt, ""));
                 sortedNumerics.forEach(id1 -> {
@@ -293,22 +452,20 @@ public class StatsDriver extends AbstractDriver implements ITagger {
                 String arrayBanner = Utils.banner(arrayHeader.length(), '*');;
                 writer.write(String.format("%s%n%s", arrayHeader, arrayBanner));
 
-                sortedNumerics.forEach(id1 -> {
+                for (int idx1 = 0; idx1 < count; ++idx1) {
+                    String id1 = sortedNumerics.get(idx1);
                     sb.delete(0, sb.capacity());
-                    int idx1 = sortedNumerics.indexOf(id1);
 
-                    sortedNumerics.forEach(id2 -> {
-                        if (sb.length() == 0) {
-                            if (id1.equals(dependent)) {
-                                sb.append(String.format("%s%n%s%n%s%n", arrayBanner, arrayHeader, arrayBanner));
-                            }
-                            sb.append(String.format(strFmt, id1));
-                        }
-                        int idx2 = sortedNumerics.indexOf(id2);
-                        sb.append(String.format(strFmt, resultArray[idx1][idx2]));
-                    });
+                    if (id1.equals(dependent)) {
+                        sb.append(String.format("%s%n%s%n%s%n", arrayBanner, arrayHeader, arrayBanner));
+                    }
+                    sb.append(String.format(strFmt, id1));
+                    for (int idx2 = 0; idx2 < count; ++idx2) {
+                        double v = corMatrix[idx1][idx2];
+                        sb.append(String.format(strFmt, Double.isNaN(v) ? null : String.format(corFmt, v)));
+                    }
                     writer.write(sb.toString());
-                });
+                }
                 writer.newline();
 
                 List<Pair<String, Predicate<? super Map.Entry<String, Double>>>> tierFocus = new ArrayList<>();
@@ -319,6 +476,7 @@ public class StatsDriver extends AbstractDriver implements ITagger {
                 }
                 tierFocus.add(Pair.of("", x -> true));  // list all
                 resultsMap.add(anomalies);
+                int finalKpWidth = kpWidth;
 
                 tierFocus.forEach(focus -> {
                     writer.write(Utils.heading("Correlation tiers" + focus.getLeft()));
@@ -347,7 +505,7 @@ public class StatsDriver extends AbstractDriver implements ITagger {
                                 return 0;
                             })
                             .forEach(es ->
-                                writer.write(String.format("  %-" + kpWidth.get() + "s : %f", es.getKey(), es.getValue()))
+                                writer.write(String.format("  %-" + finalKpWidth + "s : %f", es.getKey(), es.getValue()))
                             );
                         writer.newline();
                     });
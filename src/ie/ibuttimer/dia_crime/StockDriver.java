@@ -23,6 +23,7 @@
 
 package ie.ibuttimer.dia_crime;
 
+import ie.ibuttimer.dia_crime.hadoop.incremental.Watermark;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
 import ie.ibuttimer.dia_crime.hadoop.stock.DowJonesStockMapper;
 import ie.ibuttimer.dia_crime.hadoop.stock.NasdaqStockMapper;
@@ -94,6 +95,7 @@ public class StockDriver extends AbstractDriver {
             job = initJob("Stocks", conf, ipSections);
 
             job.setReducerClass(StockReducer.class);
+            setDatePartitioning(job, NASDAQ_PROP_SECTION);
 
             job.setMapOutputKeyClass(DateWritable.class);
             job.setMapOutputValueClass(MapWritable.class);
@@ -113,13 +115,26 @@ public class StockDriver extends AbstractDriver {
     public int runStockJob(JobConfig cfg) throws Exception {
 
         int resultCode = Constants.ECODE_FAIL;
-        Job job = getStockJob(cfg.properties);
-        if (job != null) {
-            if (cfg.wait) {
-                resultCode = job.waitForCompletion(cfg.verbose) ? Constants.ECODE_SUCCESS : Constants.ECODE_FAIL;
-            } else {
-                job.submit();
-                resultCode = ECODE_RUNNING;
+        Pair<List<String>, List<String>> sectionLists = getSectionLists();
+        List<String> sections = new ArrayList<>(sectionLists.getLeft());
+        sections.addAll(sectionLists.getRight());
+
+        IncrementalRun incremental = IncrementalRun.of(getApp(), cfg, sections, logger);
+        if (incremental.isEnabled()) {
+            List<Watermark.Source> sources = new ArrayList<>();
+            for (String section : STOCK_SECTIONS) {
+                sources.add(incremental.getInputSource(section));
+            }
+            resultCode = incremental.run(sources, List.of(DEFAULT_NAMED_OP), List.of(), this::runStockJob);
+        } else {
+            Job job = getStockJob(cfg.properties);
+            if (job != null) {
+                if (cfg.wait) {
+                    resultCode = job.waitForCompletion(cfg.verbose) ? Constants.ECODE_SUCCESS : Constants.ECODE_FAIL;
+                } else {
+                    job.submit();
+                    resultCode = ECODE_RUNNING;
+                }
             }
         }
 
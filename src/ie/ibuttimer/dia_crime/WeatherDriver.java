@@ -24,16 +24,18 @@
 package ie.ibuttimer.dia_crime;
 
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
-import ie.ibuttimer.dia_crime.hadoop.weather.WeatherMapper;
-import ie.ibuttimer.dia_crime.hadoop.weather.WeatherReducer;
+import ie.ibuttimer.dia_crime.hadoop.weather.*;
 import ie.ibuttimer.dia_crime.misc.Constants;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
 import java.util.*;
 
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
@@ -70,22 +72,35 @@ public class WeatherDriver extends AbstractDriver {
             Map<String, InputCfg> ipSections = new HashMap<>();
             Map<String, OutputCfg> opSections = new HashMap<>();
 
-            ipSections.put(WEATHER_PROP_SECTION, InputCfg.of(WeatherMapper.class));
+            boolean aggregate = conf.getBoolean(
+                generatePropertyName(WEATHER_PROP_SECTION, IN_MAPPER_AGGREGATION_PROP), false);
+
+            ipSections.put(WEATHER_PROP_SECTION,
+                InputCfg.of(aggregate ? WeatherPartialMapper.class : WeatherMapper.class));
 
             opSections.put(WEATHER_PROP_SECTION,
                 OutputCfg.of(WEATHER_ID_NAMED_OP, DateWritable.class, Text.class));
 
             job = initJob("Weather", conf, ipSections, opSections);
 
-            job.setReducerClass(WeatherReducer.class);
+            if (aggregate) {
+                job.setCombinerClass(WeatherPartialCombiner.class);
+                job.setReducerClass(WeatherPartialReducer.class);
+            } else {
+                job.setReducerClass(WeatherReducer.class);
+            }
+            setDatePartitioning(job, WEATHER_PROP_SECTION);
 
             job.setMapOutputKeyClass(DateWritable.class);
-            job.setMapOutputValueClass(MapWritable.class);
+            job.setMapOutputValueClass(aggregate ? WeatherPartialWritable.class : MapWritable.class);
 
             /*
              * Input and Output types of a MapReduce job:
              * (input) <k1, v1> -> map -> <k2, v2> -> combine -> <k2, v2> -> reduce -> <k3, v3> (output)
              * (input) <LongWritable, Text> -> map -> <DateWritable, MapWritable> -> reduce -> <DateWritable, Text> (output)
+             * or, with in-mapper aggregation
+             * (input) <LongWritable, Text> -> map -> <DateWritable, WeatherPartialWritable> -> combine ->
+             *      <DateWritable, WeatherPartialWritable> -> reduce -> <DateWritable, Text> (output)
              */
             job.setOutputKeyClass(DateWritable.class);
             job.setOutputValueClass(Text.class);
@@ -97,19 +112,49 @@ public class WeatherDriver extends AbstractDriver {
     public int runWeatherJob(JobConfig cfg) throws Exception {
 
         int resultCode = ECODE_FAIL;
-        Job job = getWeatherJob(cfg.properties);
-        if (job != null) {
-            if (cfg.wait) {
-                resultCode = job.waitForCompletion(cfg.verbose) ? ECODE_SUCCESS : ECODE_FAIL;
-            } else {
-                job.submit();
-                resultCode = ECODE_RUNNING;
+        IncrementalRun incremental = IncrementalRun.of(getApp(), cfg, getSectionLists().getLeft(), logger);
+        if (incremental.isEnabled()) {
+            resultCode = incremental.run(List.of(incremental.getInputSource(WEATHER_PROP_SECTION)),
+                List.of(DEFAULT_NAMED_OP), List.of(WEATHER_ID_NAMED_OP), this::runWeatherJob);
+        } else {
+            Job job = getWeatherJob(cfg.properties);
+            if (job != null) {
+                if (cfg.wait) {
+                    resultCode = job.waitForCompletion(cfg.verbose) ? ECODE_SUCCESS : ECODE_FAIL;
+
+                    if ((resultCode == ECODE_SUCCESS) && (job.getNumReduceTasks() > 1)) {
+                        mergeWeatherIds(job);
+                    }
+                } else {
+                    if (job.getNumReduceTasks() > 1) {
+                        logger.warn("Weather job not waited for, weather ids across date range partitions will not be merged");
+                    }
+                    job.submit();
+                    resultCode = ECODE_RUNNING;
+                }
             }
         }
 
         return resultCode;
     }
 
+    /**
+     * Merge and renumber the weather ids saved by each of the reducers of a weather job run with date range
+     * partitioning, so the merge job reads a single consistent list of ids
+     * @param job   Completed weather job
+     * @throws IOException
+     */
+    private void mergeWeatherIds(Job job) throws IOException {
+        Configuration conf = job.getConfiguration();
+
+        int count = WeatherIdMerger.merge(conf, FileOutputFormat.getOutputPath(job));
+
+        if (DebugLevel.getSetting(conf, WEATHER_PROP_SECTION).showMe(DebugLevel.HIGH)) {
+            logger.info(String.format("Merged %d weather ids across %d date range partitions", count,
+                job.getNumReduceTasks()));
+        }
+    }
+
     @Override
     protected Logger getLogger() {
         return logger;
@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.benchmark;
+
+import ie.ibuttimer.dia_crime.hadoop.CsvTokenizer;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark of the byte level csv tokenizer against the String.split() path previously used by the csv mappers.
+ * Reads a csv input file (e.g. the crime or weather input file) and extracts the specified columns from each line
+ * with both methods, reporting the time taken and the number of lines where the extracted columns differ (e.g. due to
+ * quoted fields containing the separator).
+ * <p>
+ * Usage: CsvTokenizerBenchmark &lt;csv file&gt; &lt;separator&gt; &lt;comma separated column indices&gt; [passes] [max lines]
+ */
+public class CsvTokenizerBenchmark {
+
+    private static final int DEFAULT_PASSES = 5;
+
+    private final List<Text> lines;
+    private final String separator;
+    private final int[] columns;
+    private final int maxIndex;
+
+    /* sink for extracted values so the work isn't optimised away */
+    private long sink = 0;
+
+    public CsvTokenizerBenchmark(List<Text> lines, String separator, int[] columns) {
+        this.lines = lines;
+        this.separator = separator;
+        this.columns = columns;
+        this.maxIndex = Arrays.stream(columns).max().orElse(0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println(
+                "Usage: CsvTokenizerBenchmark <csv file> <separator> <comma separated column indices> [passes] [max lines]");
+            System.exit(1);
+        }
+        int[] columns = Arrays.stream(args[2].split(","))
+            .map(String::trim)
+            .mapToInt(Integer::parseInt)
+            .toArray();
+        int passes = (args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PASSES);
+        long maxLines = (args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE);
+
+        List<Text> lines;
+        try (Stream<String> stream = Files.lines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            lines = stream
+                .skip(1)    // header
+                .limit(maxLines)
+                .map(Text::new)
+                .collect(Collectors.toList());
+        }
+
+        new CsvTokenizerBenchmark(lines, args[1], columns).run(passes);
+    }
+
+    private void run(int passes) {
+        System.out.println(String.format("Csv tokenizer benchmark, %d lines, columns %s, %d passes",
+            lines.size(), Arrays.toString(columns), passes));
+
+        long mismatches = compare();
+
+        // first pass of each is warm up
+        long splitNanos = 0;
+        long tokenizerNanos = 0;
+        for (int pass = 0; pass <= passes; ++pass) {
+            long start = System.nanoTime();
+            splitPass();
+            long split = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            tokenizerPass();
+            long tokenizer = System.nanoTime() - start;
+
+            if (pass > 0) {
+                splitNanos += split;
+                tokenizerNanos += tokenizer;
+            }
+        }
+
+        System.out.println(String.format("%-10s %12s %12s", "method", "ms/pass", "ns/line"));
+        for (Object[] result : List.of(
+                new Object[] { "split", splitNanos }, new Object[] { "tokenizer", tokenizerNanos })) {
+            long nanos = (Long) result[1];
+            System.out.println(String.format("%-10s %12.2f %12.2f", result[0],
+                nanos / (passes * 1e6), nanos / ((double) passes * Math.max(lines.size(), 1))));
+        }
+        System.out.println(String.format("speedup %.2fx, lines with differing columns %d (sink %d)",
+            (double) splitNanos / Math.max(tokenizerNanos, 1), mismatches, sink));
+    }
+
+    /**
+     * Extract columns using String.split(), as the csv mappers did
+     */
+    private void splitPass() {
+        for (Text line : lines) {
+            String[] splits = line.toString().split(separator);
+            if (splits.length > maxIndex) {
+                for (int column : columns) {
+                    sink += splits[column].length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Extract columns using the tokenizer
+     */
+    private void tokenizerPass() {
+        CsvTokenizer tokenizer = CsvTokenizer.of(separator);
+        for (Text line : lines) {
+            if (tokenizer.tokenize(line, maxIndex) > maxIndex) {
+                for (int column : columns) {
+                    sink += tokenizer.getString(column).length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the lines where the extracted columns differ between the two methods
+     * @return  number of lines
+     */
+    private long compare() {
+        CsvTokenizer tokenizer = CsvTokenizer.of(separator);
+        long mismatches = 0;
+        for (Text line : lines) {
+            String[] splits = line.toString().split(separator);
+            int count = tokenizer.tokenize(line, maxIndex);
+            boolean match = (splits.length > maxIndex) == (count > maxIndex);
+            if (match && (count > maxIndex)) {
+                for (int column : columns) {
+                    match = match && splits[column].equals(tokenizer.getString(column));
+                }
+            }
+            if (!match) {
+                ++mismatches;
+            }
+        }
+        return mismatches;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.benchmark;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ILineReader;
+import ie.ibuttimer.dia_crime.misc.LazyRecord;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Benchmark of the lazy record reader against the MapStringifier.mapify() path previously used by the stats,
+ * normalise and regression mappers.
+ * Reads a merge or normalise output file, in text or columnar format, (e.g. 'results/merge/csw-r-00000') and extracts the specified
+ * fields from each line with both methods, reporting the time taken and the number of lines where the extracted
+ * values differ.
+ * <p>
+ * Usage: LazyRecordBenchmark &lt;merged file&gt; &lt;comma separated field names&gt; [passes] [max lines]
+ */
+public class LazyRecordBenchmark {
+
+    private static final int DEFAULT_PASSES = 5;
+
+    private final List<String> lines;
+    private final List<String> fields;
+
+    /* sink for extracted values so the work isn't optimised away */
+    private long sink = 0;
+
+    public LazyRecordBenchmark(List<String> lines, List<String> fields) {
+        this.lines = lines;
+        this.fields = fields;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println(
+                "Usage: LazyRecordBenchmark <merged file> <comma separated field names> [passes] [max lines]");
+            System.exit(1);
+        }
+        List<String> fields = Arrays.stream(args[1].split(","))
+            .map(String::trim)
+            .collect(Collectors.toList());
+        int passes = (args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PASSES);
+        long maxLines = (args.length > 3 ? Long.parseLong(args[3]) : Long.MAX_VALUE);
+
+        // columnar files are read as text lines, so both methods are measured on the same input
+        List<String> lines = new ArrayList<>();
+        Path path = new Path(args[0]);
+        try (ILineReader reader = ILineReader.open(path.getFileSystem(new Configuration()), path, null)) {
+            String line;
+            while ((lines.size() < maxLines) && ((line = reader.readLine()) != null)) {
+                if (!line.startsWith(COMMENT_PREFIX)) {
+                    Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(line);
+                    if (keyVal.getRight() != null) {
+                        lines.add(keyVal.getRight());
+                    }
+                }
+            }
+        }
+
+        new LazyRecordBenchmark(lines, fields).run(passes);
+    }
+
+    private void run(int passes) {
+        System.out.println(String.format("Lazy record benchmark, %d lines, fields %s, %d passes",
+            lines.size(), fields, passes));
+
+        long mismatches = compare();
+
+        // first pass of each is warm up
+        long mapifyNanos = 0;
+        long lazyNanos = 0;
+        for (int pass = 0; pass <= passes; ++pass) {
+            long start = System.nanoTime();
+            mapifyPass();
+            long mapify = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            lazyPass();
+            long lazy = System.nanoTime() - start;
+
+            if (pass > 0) {
+                mapifyNanos += mapify;
+                lazyNanos += lazy;
+            }
+        }
+
+        System.out.println(String.format("%-10s %12s %12s", "method", "ms/pass", "ns/line"));
+        for (Object[] result : List.of(
+                new Object[] { "mapify", mapifyNanos }, new Object[] { "lazy", lazyNanos })) {
+            long nanos = (Long) result[1];
+            System.out.println(String.format("%-10s %12.2f %12.2f", result[0],
+                nanos / (passes * 1e6), nanos / ((double) passes * Math.max(lines.size(), 1))));
+        }
+        System.out.println(String.format("speedup %.2fx, lines with differing values %d (sink %d)",
+            (double) mapifyNanos / Math.max(lazyNanos, 1), mismatches, sink));
+    }
+
+    /**
+     * Extract fields using MapStringifier.mapify(), as the mappers did
+     */
+    private void mapifyPass() {
+        for (String line : lines) {
+            Map<String, String> map = MAP_STRINGIFIER.mapify(line);
+            for (String field : fields) {
+                sink += map.getOrDefault(field, "").length();
+            }
+        }
+    }
+
+    /**
+     * Extract fields using the lazy record
+     */
+    private void lazyPass() {
+        LazyRecord record = LazyRecord.of(fields);
+        for (String line : lines) {
+            record.reset(line);
+            for (int i = 0; i < record.size(); i++) {
+                sink += record.getOrDefault(i, "").length();
+            }
+        }
+    }
+
+    /**
+     * Count the lines where the extracted values differ between the two methods
+     * @return  number of lines
+     */
+    private long compare() {
+        LazyRecord record = LazyRecord.of(fields);
+        long mismatches = 0;
+        for (String line : lines) {
+            Map<String, String> map = MAP_STRINGIFIER.mapify(line);
+            record.reset(line);
+            boolean match = true;
+            for (int i = 0; match && (i < record.size()); i++) {
+                match = Objects.equals(map.get(record.getField(i)), record.get(i));
+            }
+            if (!match) {
+                ++mismatches;
+            }
+        }
+        return mismatches;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.benchmark;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ILineReader;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Benchmark of the Value binary encoding against the legacy class name encoding.
+ * Reads a merge job output file, in text or columnar format, (e.g. results/merge/csw-r-00000) and reports the serialised Value bytes the
+ * stats, normalise and regression mappers would shuffle for it, with both encodings.
+ * <p>
+ * Usage: ValueEncodingBenchmark &lt;merge output file&gt; [max lines]
+ */
+public class ValueEncodingBenchmark {
+
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
+    private static final Pattern DECIMAL = Pattern.compile("-?\\d*\\.\\d+([eE][-+]?\\d+)?");
+
+    private final DataOutputBuffer legacyBuffer = new DataOutputBuffer();
+    private final DataOutputBuffer compactBuffer = new DataOutputBuffer();
+    private final DataInputBuffer inputBuffer = new DataInputBuffer();
+
+    private static class Tally {
+        final String job;
+        long records = 0;
+        long values = 0;
+        long legacyBytes = 0;
+        long compactBytes = 0;
+        long legacyNanos = 0;
+        long compactNanos = 0;
+
+        Tally(String job) {
+            this.job = job;
+        }
+
+        @Override
+        public String toString() {
+            double saving = legacyBytes == 0 ? 0 : (100.0 * (legacyBytes - compactBytes)) / legacyBytes;
+            return String.format("%-12s %10d %12d %14d %14d %8.2f%% %12.2f %12.2f",
+                job, records, values, legacyBytes, compactBytes, saving,
+                legacyNanos / 1e6, compactNanos / 1e6);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: ValueEncodingBenchmark <merge output file> [max lines]");
+            System.exit(1);
+        }
+        long maxLines = (args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE);
+
+        List<Map<String, Value>> rows = new ArrayList<>();
+        Path path = new Path(args[0]);
+        try (ILineReader reader = ILineReader.open(path.getFileSystem(new Configuration()), path, null)) {
+            long count = 0;
+            String line;
+            while ((count < maxLines) && ((line = reader.readLine()) != null)) {
+                if (!line.startsWith(COMMENT_PREFIX)) {
+                    ++count;
+                    Map<String, Value> row = parse(line);
+                    if (!row.isEmpty()) {
+                        rows.add(row);
+                    }
+                }
+            }
+        }
+
+        new ValueEncodingBenchmark().run(rows);
+    }
+
+    /**
+     * Parse a merge output line to a map of numeric values
+     * @param line  Line to parse
+     * @return  map of property name and value
+     */
+    private static Map<String, Value> parse(String line) {
+        Map<String, Value> values = new TreeMap<>();
+        Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(line);
+        if (keyVal.getRight() != null) {
+            MAP_STRINGIFIER.mapify(keyVal.getRight()).forEach((name, str) -> {
+                if (INTEGER.matcher(str).matches()) {
+                    values.put(name, Value.of(Long.valueOf(str)));
+                } else if (DECIMAL.matcher(str).matches()) {
+                    values.put(name, Value.of(Double.valueOf(str)));
+                }
+            });
+        }
+        return values;
+    }
+
+    private void run(List<Map<String, Value>> rows) throws IOException {
+        Tally stats = new Tally("stats");
+        Tally normalise = new Tally("normalise");
+        Tally regression = new Tally("regression");
+
+        for (Map<String, Value> row : rows) {
+            // normalise & regression mappers output a RegressionWritable of all the values
+            for (Tally tally : List.of(normalise, regression)) {
+                tally.records += 1;
+                for (Value value : row.values()) {
+                    measure(tally, value);
+                }
+            }
+
+            // stats mapper outputs a partial per property (sum, sum of squares, min, max) and per property pair
+            // (sum, min, max)
+            List<String> names = new ArrayList<>(row.keySet());
+            for (int i = 0; i < names.size(); ++i) {
+                Value value = row.get(names.get(i));
+                Value sum = Value.of(value.doubleValue());
+                Value squared = value.copyOf();
+                squared.pow(2);
+                Value sumOfSq = Value.of(squared.doubleValue());
+                stats.records += 1;
+                for (Value v : List.of(sum, sumOfSq, value, value)) {
+                    measure(stats, v);
+                }
+                for (int j = i + 1; j < names.size(); ++j) {
+                    Value product = value.copyOf();
+                    product.multiply(row.get(names.get(j)));
+                    Value prdSum = Value.of(product.doubleValue());
+                    stats.records += 1;
+                    for (Value v : List.of(prdSum, product, product)) {
+                        measure(stats, v);
+                    }
+                }
+            }
+        }
+
+        System.out.println(String.format("Value encoding benchmark, %d rows", rows.size()));
+        System.out.println(String.format("%-12s %10s %12s %14s %14s %9s %12s %12s",
+            "job", "records", "values", "legacy bytes", "compact bytes", "saving", "legacy ms", "compact ms"));
+        for (Tally tally : List.of(stats, normalise, regression)) {
+            System.out.println(tally);
+        }
+    }
+
+    /**
+     * Serialise and deserialise a value with both encodings
+     * @param tally     Tally to update
+     * @param value     Value to measure
+     * @throws IOException
+     */
+    private void measure(Tally tally, Value value) throws IOException {
+        Value read = new Value();
+
+        long start = System.nanoTime();
+        legacyBuffer.reset();
+        value.writeLegacy(legacyBuffer);
+        inputBuffer.reset(legacyBuffer.getData(), legacyBuffer.getLength());
+        read.readFields(inputBuffer);
+        tally.legacyNanos += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        compactBuffer.reset();
+        value.write(compactBuffer);
+        inputBuffer.reset(compactBuffer.getData(), compactBuffer.getLength());
+        read.readFields(inputBuffer);
+        tally.compactNanos += System.nanoTime() - start;
+
+        tally.values += 1;
+        tally.legacyBytes += legacyBuffer.getLength();
+        tally.compactBytes += compactBuffer.getLength();
+    }
+}
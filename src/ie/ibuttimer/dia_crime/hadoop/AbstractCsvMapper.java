@@ -23,6 +23,7 @@
 
 package ie.ibuttimer.dia_crime.hadoop;
 
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
 import ie.ibuttimer.dia_crime.misc.*;
 import org.apache.commons.lang3.tuple.Pair;
@@ -64,6 +65,8 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
     private DateTimeFormatter dateTimeFormatter;
     // date time formatter for outputting date keys
     private DateTimeFormatter keyOutDateTimeFormatter;
+    // fast parser for the date time input format, or null if the format is not supported
+    private FastDateTimeParser dateTimeParser;
 
     public static final List<String> DATE_FILTER_PROPS = Arrays.asList(
         FILTER_START_DATE_PROP, FILTER_END_DATE_PROP
@@ -74,6 +77,9 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
     private final Map<String, Integer> indices = new HashMap<>();
     private int maxIndex = -1;
 
+    // byte level tokenizer for input lines, created on first use
+    private CsvTokenizer tokenizer = null;
+
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
         Configuration conf = context.getConfiguration();
@@ -89,6 +95,9 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
         ConfigReader cfgReader = new ConfigReader(getMapperCfg());
         dateTimeFormatter = cfgReader.getDateTimeFormatter(conf, DATE_FORMAT_PROP, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
         keyOutDateTimeFormatter = cfgReader.getDateTimeFormatter(conf, OUT_KEY_DATE_FORMAT_PROP, DateTimeFormatter.ISO_LOCAL_DATE);
+        dateTimeParser = FastDateTimeParser.of(conf.get(getPropertyPath(DATE_FORMAT_PROP), ""),
+                conf.getInt(getPropertyPath(DATE_CACHE_SIZE_PROP), FastDateTimeParser.DEFAULT_CACHE_SIZE))
+            .orElse(null);
 
         // get date filter
         dateFilter = new DateFilter(conf.get(getPropertyPath(FILTER_START_DATE_PROP), ""),
@@ -101,6 +110,16 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
         }
     }
 
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        if ((dateTimeParser != null) && show(DebugLevel.MEDIUM)) {
+            getLogger().info(String.format("%s date parser %s: cache hits %d, misses %d", getMapperCfg().getRoot(),
+                dateTimeParser.getLayout(), dateTimeParser.getHits(), dateTimeParser.getMisses()));
+        }
+    }
+
     /**
      * Initialise property indices
      * @param context
@@ -152,6 +171,128 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
         return maxIndex;
     }
 
+    /**
+     * Get the tokenizer for input lines
+     * @return tokenizer
+     */
+    public CsvTokenizer getTokenizer() {
+        if (tokenizer == null) {
+            tokenizer = CsvTokenizer.of(separator);
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Tokenize an input line up to and including the column at the maximum property index.
+     * The columns may then be read using the get*Field() methods.
+     * @param value Line
+     * @return  Number of columns found
+     */
+    public int tokenize(Text value) {
+        return tokenize(value, maxIndex);
+    }
+
+    /**
+     * Tokenize an input line up to and including the specified column.
+     * The columns may then be read using the get*Field() methods.
+     * @param value     Line
+     * @param maxIndex  Index of last column required
+     * @return  Number of columns found
+     */
+    public int tokenize(Text value, int maxIndex) {
+        return getTokenizer().tokenize(value, maxIndex);
+    }
+
+    /**
+     * Get a column of the last tokenized line as a string
+     * @param index Column index
+     * @return  Column string
+     */
+    public String getField(int index) {
+        return tokenizer.getString(index);
+    }
+
+    /**
+     * Get a column of the last tokenized line as an int
+     * @param index Column index
+     * @return  Column value or zero if empty or invalid
+     */
+    public int getIntField(int index) {
+        int value = 0;
+        if (!tokenizer.isEmpty(index)) {
+            try {
+                value = tokenizer.getInt(index);
+            } catch (NumberFormatException nfe) {
+                getLogger().error("Unable to parse " + tokenizer.getString(index) + " as int", nfe);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get a column of the last tokenized line as a long
+     * @param index Column index
+     * @return  Column value or zero if empty or invalid
+     */
+    public long getLongField(int index) {
+        long value = 0;
+        if (!tokenizer.isEmpty(index)) {
+            try {
+                value = tokenizer.getLong(index);
+            } catch (NumberFormatException nfe) {
+                getLogger().error("Unable to parse " + tokenizer.getString(index) + " as long", nfe);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get a column of the last tokenized line as a float
+     * @param index Column index
+     * @return  Column value or zero if empty or invalid
+     */
+    public float getFloatField(int index) {
+        float value = 0;
+        if (!tokenizer.isEmpty(index)) {
+            try {
+                value = tokenizer.getFloat(index);
+            } catch (NumberFormatException nfe) {
+                getLogger().error("Unable to parse " + tokenizer.getString(index) + " as float", nfe);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get a column of the last tokenized line as a double
+     * @param index Column index
+     * @return  Column value or zero if empty or invalid
+     */
+    public double getDoubleField(int index) {
+        double value = 0;
+        if (!tokenizer.isEmpty(index)) {
+            try {
+                value = tokenizer.getDouble(index);
+            } catch (NumberFormatException nfe) {
+                getLogger().error("Unable to parse " + tokenizer.getString(index) + " as double", nfe);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the specified columns of the last tokenized line as strings
+     * @param fields    Array to fill, columns not in the list of indices are not set
+     * @param columns   Indices of columns to get
+     * @return  fields array
+     */
+    public String[] getFields(String[] fields, Collection<Integer> columns) {
+        for (int column : columns) {
+            fields[column] = tokenizer.getString(column);
+        }
+        return fields;
+    }
+
     /**
      * Check if the specified key is a header line and if it should be skipped
      * @param key   Key; line number
@@ -222,7 +363,11 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
      * @return  Converted date and time
      */
     public LocalDateTime getDateTime(String dateTime) {
-        return Utils.getDateTime(dateTime, getDateTimeFormatter(), getLogger());
+        LocalDateTime ldt = (dateTimeParser != null ? dateTimeParser.parse(dateTime) : null);
+        if (ldt == null) {
+            ldt = Utils.getDateTime(dateTime, getDateTimeFormatter(), getLogger());
+        }
+        return ldt;
     }
 
     /**
@@ -240,7 +385,71 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
      * @return  Pair of filter result (TRUE if passes filter) and converted date and time
      */
     public Pair<Boolean, LocalDateTime> getZonedDateTimeAndFilter(String dateTime) {
-        LocalDateTime ldt = getZonedDateTime(dateTime).toLocalDateTime();
+        LocalDateTime ldt = (dateTimeParser != null ? dateTimeParser.parse(dateTime) : null);
+        if (ldt == null) {
+            ldt = getZonedDateTime(dateTime).toLocalDateTime();
+        }
+        return Pair.of(dateFilter.filter(ldt), ldt);
+    }
+
+    /**
+     * Get the date and time from a column of the last tokenized line and check if it is filtered.
+     * The column bytes are parsed directly if the date format has a fast parser.
+     * @param index Column index
+     * @param zoned Date format includes a zone
+     * @return  Pair of filter result (TRUE if passes filter) and converted date and time
+     */
+    public Pair<Boolean, LocalDateTime> getDateTimeFieldAndFilter(int index, boolean zoned) {
+        LocalDateTime ldt = null;
+        if (dateTimeParser != null) {
+            CsvTokenizer tokenizer = getTokenizer();
+            ldt = dateTimeParser.parse(tokenizer.getBytes(), tokenizer.getStart(index), tokenizer.getLength(index));
+        }
+        Pair<Boolean, LocalDateTime> result;
+        if (ldt != null) {
+            result = Pair.of(dateFilter.filter(ldt), ldt);
+        } else if (zoned) {
+            result = getZonedDateTimeAndFilter(getField(index));
+        } else {
+            result = getDateTimeAndFilter(getField(index));
+        }
+        return result;
+    }
+
+    /**
+     * Get the date from a column of the last tokenized line, for a date, date and time or zoned date and time format.
+     * For a zoned format, this is the date as written in the text.
+     * @param index Column index
+     * @return  Converted date or null if the column could not be parsed
+     */
+    public LocalDate getDateField(int index) {
+        LocalDate date = null;
+        if (dateTimeParser != null) {
+            CsvTokenizer tokenizer = getTokenizer();
+            LocalDateTime ldt = dateTimeParser.parse(tokenizer.getBytes(), tokenizer.getStart(index),
+                tokenizer.getLength(index));
+            if (ldt != null) {
+                date = ldt.toLocalDate();
+            }
+        }
+        if (date == null) {
+            String text = getField(index);
+            try {
+                date = LocalDate.from(dateTimeFormatter.parse(text));
+            } catch (DateTimeException dte) {
+                getLogger().error("Cannot parse '" + text + "' using format " + dateTimeFormatter.toString(), dte);
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Get the date and time from a unix epoch time and check if it is filtered
+     * @param epochSecond   Seconds since the epoch
+     * @return  Pair of filter result (TRUE if passes filter) and converted UTC date and time
+     */
+    public Pair<Boolean, LocalDateTime> getEpochDateTimeAndFilter(long epochSecond) {
+        LocalDateTime ldt = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
         return Pair.of(dateFilter.filter(ldt), ldt);
     }
 
@@ -274,6 +483,16 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
         return getDateAndFilter(date, dateFilter);
     }
 
+    /**
+     * Get the date from an output key, e.g. from a previous job's output, and check if it is filtered
+     * @param date  String of the date in output key format
+     * @return  Pair of filter result (TRUE if passes filter) and converted date
+     */
+    public Pair<Boolean, LocalDate> getKeyDateAndFilter(String date) {
+        LocalDate ld = Utils.getDate(date, keyOutDateTimeFormatter, getLogger());
+        return Pair.of(dateFilter.filter(ld), ld);
+    }
+
     /**
      * Return the text to use as an output key
      * @param date
@@ -349,7 +568,11 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
             propDefault.put(SEPARATOR_PROP, DEFAULT_SEPARATOR);
             propDefault.put(HAS_HEADER_PROP, Boolean.toString(DEFAULT_HAS_HEADER));
             propDefault.put(DATE_FORMAT_PROP, "");
+            propDefault.put(DATE_CACHE_SIZE_PROP, Integer.toString(FastDateTimeParser.DEFAULT_CACHE_SIZE));
             propDefault.put(NUM_INDICES_PROP, "0");
+            propDefault.put(NUM_REDUCERS_PROP, "1");
+            propDefault.put(PARTITIONED_PATH_PROP, "");
+            propDefault.put(OUT_FORMAT_PROP, ColumnarFormat.Format.TEXT.getSetting());
             DATE_FILTER_PROPS.forEach((p -> propDefault.put(p, "")));
             propDefault.put(OUT_KEY_DATE_FORMAT_PROP, "");
             getPropertyIndices().forEach(p -> propDefault.put(p, "-1"));
@@ -372,6 +595,14 @@ public abstract class AbstractCsvMapper<K, V> extends AbstractMapper<LongWritabl
                 }
             }
 
+            // check separator can be tokenized
+            String separator = conf.get(getPropertyPath(SEPARATOR_PROP), DEFAULT_SEPARATOR);
+            if (!CsvTokenizer.isValidSeparator(separator)) {
+                errors.add("Error: Invalid '" + SEPARATOR_PROP + "' specified, '" + separator +
+                    "', must be a single character.");
+                resultCode = ECODE_CONFIG_ERROR;
+            }
+
             // check for date filtering
             Pair<Integer, List<String>> dateRes = checkDatePairConfiguration(
                                                     conf, FILTER_START_DATE_PROP, FILTER_END_DATE_PROP);
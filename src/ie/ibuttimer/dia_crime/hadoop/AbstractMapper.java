@@ -23,6 +23,7 @@
 
 package ie.ibuttimer.dia_crime.hadoop;
 
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarRow;
 import ie.ibuttimer.dia_crime.hadoop.merge.IDecorator;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
 import ie.ibuttimer.dia_crime.misc.Constants;
@@ -37,6 +38,7 @@ import org.apache.http.util.TextUtils;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Base class for Mapper's
@@ -165,16 +167,28 @@ public abstract class AbstractMapper<KI, VI, KO, VO> extends Mapper<KI, VI, KO,
      * @return      True if line should be skipped
      */
     public boolean skipComment(Text line) {
-        return line.toString().startsWith(Constants.COMMENT_PREFIX);
+        // typed columnar rows are not comments, no need to render them
+        if (ColumnarRow.isTyped(line)) {
+            return false;
+        }
+        // compare bytes, no need to decode the whole line
+        boolean comment = (line.getLength() >= COMMENT_PREFIX_BYTES.length);
+        byte[] bytes = line.getBytes();
+        for (int i = 0; comment && (i < COMMENT_PREFIX_BYTES.length); i++) {
+            comment = (bytes[i] == COMMENT_PREFIX_BYTES[i]);
+        }
+        return comment;
     }
 
+    private static final byte[] COMMENT_PREFIX_BYTES = Constants.COMMENT_PREFIX.getBytes(StandardCharsets.UTF_8);
+
     /**
      * Check if the line is a empty should be skipped
      * @param line  line
      * @return      True if line should be skipped
      */
     public boolean skipEmpty(Text line) {
-        return TextUtils.isEmpty(line.toString());
+        return !ColumnarRow.isTyped(line) && TextUtils.isEmpty(line.toString());
     }
 
 
@@ -40,6 +40,7 @@ public enum CountersEnum {
     CRIME_REDUCER_COUNT,
 
     // Merge
+    MERGE_MAPPER_COUNT,
     MERGE_REDUCER_COUNT,
     MERGE_REDUCER_GROUP_IN_COUNT,
     MERGE_REDUCER_GROUP_OUT_COUNT,
@@ -60,6 +61,9 @@ public enum CountersEnum {
     NORMALISE_MAPPER_COUNT,
     NORMALISE_REDUCER_COUNT,
 
+    // Ingest
+    INGEST_MAPPER_COUNT,
+
     // Stats
     STATS_MAPPER_COUNT,
     STATS_REDUCER_COUNT,
@@ -0,0 +1,453 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop;
+
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte level tokenizer for a csv line.
+ * Tokenizing records the start and end offsets of the fields in the line's bytes, no strings are created. Fields may
+ * be retrieved as byte slices, strings or parsed primitives, so only the columns a mapper reads are decoded.
+ * Fields enclosed in double quotes may contain the separator, and a doubled quote within a quoted field is an escaped
+ * quote.
+ * <p>
+ * The tokenizer reuses its offset arrays and holds a reference to the tokenized bytes, so a field is only valid until
+ * the next call to tokenize() or a change to the underlying Text.
+ */
+public class CsvTokenizer {
+
+    public static final byte QUOTE = '"';
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    /* largest mantissa that can be represented exactly */
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final int MAX_EXACT_FLOAT = 1 << 24;
+
+    /* powers of ten that can be represented exactly */
+    private static final double[] DOUBLE_POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POW10 = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private final byte separator;
+
+    private byte[] bytes;
+    private int count;
+    private int[] starts;       // field start offsets, excluding any enclosing quote
+    private int[] ends;         // field end offsets (exclusive), excluding any enclosing quote
+    private boolean[] escaped;  // field contains escaped quotes
+
+    /**
+     * Constructor
+     * @param separator Field separator
+     */
+    public CsvTokenizer(byte separator) {
+        this.separator = separator;
+        this.bytes = new byte[0];
+        this.count = 0;
+        this.starts = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.escaped = new boolean[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Create a tokenizer for the specified separator
+     * @param separator Separator, either a single ASCII character or a backslash escaped ASCII character as would be
+     *                  used with String.split()
+     * @return tokenizer
+     * @throws IllegalArgumentException if the separator is not a single ASCII character
+     */
+    public static CsvTokenizer of(String separator) {
+        return new CsvTokenizer(toSeparatorByte(separator));
+    }
+
+    /**
+     * Check if a separator can be used with a tokenizer
+     * @param separator Separator
+     * @return True if separator is valid
+     */
+    public static boolean isValidSeparator(String separator) {
+        boolean valid;
+        try {
+            toSeparatorByte(separator);
+            valid = true;
+        } catch (IllegalArgumentException iae) {
+            valid = false;
+        }
+        return valid;
+    }
+
+    private static byte toSeparatorByte(String separator) {
+        String sep = separator;
+        if ((sep != null) && (sep.length() == 2) && (sep.charAt(0) == '\\')) {
+            sep = sep.substring(1);
+        }
+        if ((sep == null) || (sep.length() != 1) || (sep.charAt(0) > 0x7f) || (sep.charAt(0) == QUOTE)) {
+            throw new IllegalArgumentException("Separator must be a single ASCII character: '" + separator + "'");
+        }
+        return (byte) sep.charAt(0);
+    }
+
+    /**
+     * Tokenize a line
+     * @param text  Line to tokenize
+     * @return  Number of fields
+     */
+    public int tokenize(Text text) {
+        return tokenize(text.getBytes(), text.getLength(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tokenize a line, stopping after the specified field. The remainder of the line is not scanned.
+     * @param text      Line to tokenize
+     * @param maxIndex  Index of the last field required
+     * @return  Number of fields, at most maxIndex + 1
+     */
+    public int tokenize(Text text, int maxIndex) {
+        return tokenize(text.getBytes(), text.getLength(), maxIndex);
+    }
+
+    /**
+     * Tokenize a line, stopping after the specified field. The remainder of the line is not scanned.
+     * @param line      Bytes of the line to tokenize
+     * @param length    Number of valid bytes in line
+     * @param maxIndex  Index of the last field required
+     * @return  Number of fields, at most maxIndex + 1
+     */
+    public int tokenize(byte[] line, int length, int maxIndex) {
+        bytes = line;
+        count = 0;
+
+        int limit = (maxIndex < 0 ? Integer.MAX_VALUE : maxIndex);
+        int pos = 0;
+        boolean more = (length > 0);
+        while (more) {
+            ensureCapacity(count + 1);
+
+            int start;
+            int end;
+            boolean hasEscape = false;
+            if (line[pos] == QUOTE) {
+                // quoted field, ends at the next unescaped quote
+                start = pos + 1;
+                end = length;
+                pos = start;
+                while (pos < length) {
+                    if (line[pos] == QUOTE) {
+                        if ((pos + 1 < length) && (line[pos + 1] == QUOTE)) {
+                            hasEscape = true;
+                            pos += 2;
+                        } else {
+                            end = pos;
+                            ++pos;
+                            break;
+                        }
+                    } else {
+                        ++pos;
+                    }
+                }
+                // skip anything between the closing quote and the separator
+                while ((pos < length) && (line[pos] != separator)) {
+                    ++pos;
+                }
+            } else {
+                start = pos;
+                while ((pos < length) && (line[pos] != separator)) {
+                    ++pos;
+                }
+                end = pos;
+            }
+
+            starts[count] = start;
+            ends[count] = end;
+            escaped[count] = hasEscape;
+            ++count;
+
+            if (pos < length) {
+                ++pos;  // skip separator
+                if (count > limit) {
+                    more = false;
+                } else if (pos == length) {
+                    // trailing separator, final field is empty
+                    ensureCapacity(count + 1);
+                    starts[count] = pos;
+                    ends[count] = pos;
+                    escaped[count] = false;
+                    ++count;
+                    more = false;
+                }
+            } else {
+                more = false;
+            }
+        }
+        return count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int size = Math.max(capacity, starts.length * 2);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            escaped = Arrays.copyOf(escaped, size);
+        }
+    }
+
+    /**
+     * Get the number of fields found by the last tokenize
+     * @return  Number of fields
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the bytes of the last tokenized line
+     * @return  Line bytes
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the start offset of a field in the line bytes
+     * @param index Field index
+     * @return  Offset
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * Get the length in bytes of a field in the line bytes. For a quoted field with escaped quotes, this is the raw
+     * length including the escapes.
+     * @param index Field index
+     * @return  Length
+     */
+    public int getLength(int index) {
+        checkIndex(index);
+        return ends[index] - starts[index];
+    }
+
+    /**
+     * Check if a field is empty
+     * @param index Field index
+     * @return  True if empty
+     */
+    public boolean isEmpty(int index) {
+        return getLength(index) == 0;
+    }
+
+    /**
+     * Check if a field matches the specified bytes
+     * @param index Field index
+     * @param match Bytes to match
+     * @return  True if match
+     */
+    public boolean equals(int index, byte[] match) {
+        checkIndex(index);
+        boolean equal = false;
+        if (!escaped[index]) {
+            int length = ends[index] - starts[index];
+            if (length == match.length) {
+                equal = true;
+                for (int i = 0, j = starts[index]; equal && (i < length); ++i, ++j) {
+                    equal = (bytes[j] == match[i]);
+                }
+            }
+        } else {
+            equal = getString(index).equals(new String(match, StandardCharsets.UTF_8));
+        }
+        return equal;
+    }
+
+    /**
+     * Get a field as a string
+     * @param index Field index
+     * @return  Field string
+     */
+    public String getString(int index) {
+        checkIndex(index);
+        String str = new String(bytes, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+        if (escaped[index]) {
+            str = str.replace("\"\"", "\"");
+        }
+        return str;
+    }
+
+    /**
+     * Get a field as an int
+     * @param index Field index
+     * @return  Field value
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int getInt(int index) {
+        long value = getLong(index);
+        if ((value < Integer.MIN_VALUE) || (value > Integer.MAX_VALUE)) {
+            throw new NumberFormatException("Value out of int range: " + getString(index));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Get a field as a long
+     * @param index Field index
+     * @return  Field value
+     * @throws NumberFormatException if the field is not a valid long
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        int pos = starts[index];
+        int end = ends[index];
+        boolean negative = false;
+        if ((pos < end) && ((bytes[pos] == '-') || (bytes[pos] == '+'))) {
+            negative = (bytes[pos] == '-');
+            ++pos;
+        }
+        // more than 18 digits may overflow, leave it to the library
+        if ((pos == end) || (end - pos > 18)) {
+            return Long.parseLong(getString(index));
+        }
+        long value = 0;
+        for (; pos < end; ++pos) {
+            int digit = bytes[pos] - '0';
+            if ((digit < 0) || (digit > 9)) {
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            }
+            value = (value * 10) + digit;
+        }
+        return (negative ? -value : value);
+    }
+
+    /**
+     * Get a field as a double. Plain decimals with up to 15 significant digits are converted without creating a
+     * string, with the same result as Double.parseDouble(); anything else is passed to Double.parseDouble().
+     * @param index Field index
+     * @return  Field value
+     * @throws NumberFormatException if the field is not a valid double
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        DecimalParts parts = scanDecimal(index, MAX_EXACT_DOUBLE, DOUBLE_POW10.length - 1);
+        double value;
+        if (parts != null) {
+            // mantissa and power of ten are exact, so a single division is correctly rounded
+            value = (double) parts.mantissa / DOUBLE_POW10[parts.scale];
+            if (parts.negative) {
+                value = -value;
+            }
+        } else {
+            value = Double.parseDouble(getString(index));
+        }
+        return value;
+    }
+
+    /**
+     * Get a field as a float. Plain decimals with up to 7 significant digits are converted without creating a
+     * string, with the same result as Float.parseFloat(); anything else is passed to Float.parseFloat().
+     * @param index Field index
+     * @return  Field value
+     * @throws NumberFormatException if the field is not a valid float
+     */
+    public float getFloat(int index) {
+        checkIndex(index);
+        DecimalParts parts = scanDecimal(index, MAX_EXACT_FLOAT, FLOAT_POW10.length - 1);
+        float value;
+        if (parts != null) {
+            // mantissa and power of ten are exact, so a single division is correctly rounded
+            value = (float) parts.mantissa / FLOAT_POW10[parts.scale];
+            if (parts.negative) {
+                value = -value;
+            }
+        } else {
+            value = Float.parseFloat(getString(index));
+        }
+        return value;
+    }
+
+    private final DecimalParts decimalParts = new DecimalParts();
+
+    private static class DecimalParts {
+        long mantissa;
+        int scale;
+        boolean negative;
+    }
+
+    /**
+     * Scan a field for a plain decimal, i.e. optional sign, digits and optional fraction
+     * @param index         Field index
+     * @param maxMantissa   Exclusive limit for an exact mantissa
+     * @param maxScale      Maximum number of fraction digits for an exact power of ten
+     * @return  Decimal parts or null if the field is not a plain decimal that can be converted exactly
+     */
+    private DecimalParts scanDecimal(int index, long maxMantissa, int maxScale) {
+        int pos = starts[index];
+        int end = ends[index];
+        boolean negative = false;
+        if ((pos < end) && ((bytes[pos] == '-') || (bytes[pos] == '+'))) {
+            negative = (bytes[pos] == '-');
+            ++pos;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;     // -1 until the decimal point is found
+        for (; pos < end; ++pos) {
+            byte b = bytes[pos];
+            if ((b >= '0') && (b <= '9')) {
+                mantissa = (mantissa * 10) + (b - '0');
+                ++digits;
+                if (scale >= 0) {
+                    ++scale;
+                }
+                if ((mantissa >= maxMantissa) || (scale > maxScale)) {
+                    return null;
+                }
+            } else if ((b == '.') && (scale < 0)) {
+                scale = 0;
+            } else {
+                return null;    // exponent, special value or invalid, leave it to the library
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        decimalParts.mantissa = mantissa;
+        decimalParts.scale = Math.max(scale, 0);
+        decimalParts.negative = negative;
+        return decimalParts;
+    }
+
+    private void checkIndex(int index) {
+        if ((index < 0) || (index >= count)) {
+            throw new IndexOutOfBoundsException("Field " + index + " out of range, " + count + " fields");
+        }
+    }
+}
@@ -29,6 +29,7 @@ import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 
@@ -38,11 +39,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 
 /**
  * Base Mapper for a crime entry. Parses input line and generates a custom writable.
+ * Only the crime fields in the configured projection are parsed and set.
  * - input key : csv file line number
  * - input value : csv file line text
  * - output key : date
@@ -55,6 +58,11 @@ public abstract class AbstractCrimeMapper<VO> extends AbstractCsvMapper<DateWrit
     private Map<String, Integer> indices = new HashMap<>();
     private int maxIndex = -1;
 
+    private int projection;
+    private List<String> projectedFields;
+    private int[] projectedIndices;
+    private int dateIndex;
+
     // names of config properties for indices of data in input csv file
     public static final List<String> CRIME_PROPERTY_INDICES = Arrays.asList(
         DATE_PROP, PRIMARYTYPE_PROP, DESCRIPTION_PROP, LOCATIONDESCRIPTION_PROP, IUCR_PROP, FBICODE_PROP
@@ -70,7 +78,23 @@ public abstract class AbstractCrimeMapper<VO> extends AbstractCsvMapper<DateWrit
         super.initIndices(context, CRIME_PROPERTY_INDICES);
 
         indices = getIndices();
-        maxIndex = getMaxIndex();
+
+        // only the date and projected fields are required
+        Configuration conf = context.getConfiguration();
+        projection = CrimeWritable.getProjection(
+            Arrays.stream(conf.get(getPropertyPath(PROJECTION_PROP), "").split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toList()));
+        projectedFields = CrimeWritable.getProjectedFields(projection);
+
+        dateIndex = indices.get(DATE_PROP);
+        maxIndex = dateIndex;
+        projectedIndices = new int[projectedFields.size()];
+        for (int i = 0; i < projectedIndices.length; i++) {
+            projectedIndices[i] = indices.get(projectedFields.get(i));
+            maxIndex = Math.max(maxIndex, projectedIndices[i]);
+        }
 
         builder = CrimeWritable.getBuilder();
 
@@ -92,24 +116,21 @@ public abstract class AbstractCrimeMapper<VO> extends AbstractCsvMapper<DateWrit
             /* ID;Case Number;Date;Block;IUCR;Primary Type;Description;Location Description;Arrest;Domestic;Beat;District;
                 Ward;Community Area;FBI Code;X Coordinate;Y Coordinate;Year;Updated On;Latitude;Longitude;Location
              */
-            String line = value.toString();
-            String[] splits = line.split(getSeparator());
-            // if the line ends with separators, they are ignored and consequently the num of splits doesn't match
-            // num of columns in csv file
-            if (splits.length > maxIndex) {
-                Pair<Boolean, LocalDateTime> filterRes = getDateTimeAndFilter(splits[indices.get(DATE_PROP)]);
+            // no need to tokenize beyond the last required column
+            int columns = tokenize(value, maxIndex);
+            if (columns > maxIndex) {
+                Pair<Boolean, LocalDateTime> filterRes = getDateTimeFieldAndFilter(dateIndex, false);
 
                 if (filterRes.getLeft()) {
                     LocalDateTime dateTime = filterRes.getRight();
 
                     CrimeWritable entry = builder.clear()
+                            .setProjection(projection)
                             .setLocalDateTime(dateTime)
-                            .setPrimaryType(splits[indices.get(PRIMARYTYPE_PROP)])
-                            .setDescription(splits[indices.get(DESCRIPTION_PROP)])
-                            .setLocationDescription(splits[indices.get(LOCATIONDESCRIPTION_PROP)])
-                            .setIucr(splits[indices.get(IUCR_PROP)])
-                            .setFbiCode(splits[indices.get(FBICODE_PROP)])
                             .build();
+                    for (int i = 0; i < projectedFields.size(); i++) {
+                        entry.setField(projectedFields.get(i), getField(projectedIndices[i]));
+                    }
 
                     counter.increment();
 
@@ -119,7 +140,7 @@ public abstract class AbstractCrimeMapper<VO> extends AbstractCsvMapper<DateWrit
                     writeOutput(context, keyOut, entry);
                 }
             } else {
-                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + splits.length);
+                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + columns);
             }
         }
     }
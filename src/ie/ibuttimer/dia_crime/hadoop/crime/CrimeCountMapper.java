@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.crime;
+
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.AGGREGATION_THRESHOLD_PROP;
+
+/**
+ * Mapper for crime entries performing in-mapper aggregation. Parses input line and accumulates counts per FBI code
+ * category per day, which are emitted when the cache size threshold is reached and in cleanup.
+ * - input key : csv file line number
+ * - input value : csv file line text
+ * - output key : date
+ * - output value : CrimeCountWritable
+ */
+public class CrimeCountMapper extends AbstractCrimeMapper<CrimeCountWritable> {
+
+    public static final int DEFAULT_AGGREGATION_THRESHOLD = 100000;
+
+    private final Map<LocalDate, CrimeCountWritable> cache = new HashMap<>();
+
+    /** number of category counts in the cache */
+    private int cacheSize;
+    /** max number of category counts to hold in the cache before flushing */
+    private int threshold;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        setLogger(getClass());
+
+        threshold = context.getConfiguration().getInt(
+            getPropertyPath(AGGREGATION_THRESHOLD_PROP), DEFAULT_AGGREGATION_THRESHOLD);
+        cacheSize = 0;
+    }
+
+    @Override
+    protected void writeOutput(Context context, DateWritable key, CrimeWritable value) throws IOException, InterruptedException {
+        LocalDate date = key.getLocalDate();
+        CrimeCountWritable counts = cache.get(date);
+        if (counts == null) {
+            counts = new CrimeCountWritable();
+            counts.setLocalDate(date);
+            cache.put(date, counts);
+        }
+
+        int size = counts.size();
+        counts.increment(value.getFbiCode());
+        cacheSize += (counts.size() - size);
+
+        if (cacheSize >= threshold) {
+            flush(context);
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        flush(context);
+        super.cleanup(context);
+    }
+
+    /**
+     * Write the cached counts
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void flush(Context context) throws IOException, InterruptedException {
+        if (show(DebugLevel.HIGH)) {
+            getLogger().info(String.format("Flushing %d days, %d counts", cache.size(), cacheSize));
+        }
+        for (Map.Entry<LocalDate, CrimeCountWritable> entry : cache.entrySet()) {
+            // return the day as the key and the category counts as the value
+            write(context, getDateOutKey(entry.getKey()), entry.getValue());
+        }
+        cache.clear();
+        cacheSize = 0;
+    }
+
+    @Override
+    public ICsvMapperCfg getMapperCfg() {
+        return CrimeMapper.getClsCsvMapperCfg();
+    }
+
+    public static ICsvMapperCfg getClsCsvMapperCfg() {
+        return CrimeMapper.getClsCsvMapperCfg();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.crime;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractReducer;
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Reducer for crime counts, producing the same output as CrimeReducer
+ * - input key : date
+ * - input value : CrimeCountWritable
+ * - output key : date
+ * - output value : value string of <category>:<count> separated by ','
+ */
+public class CrimeCountReducer extends AbstractReducer<DateWritable, CrimeCountWritable, DateWritable, Text> implements IOutputType {
+
+    private Map<String, OpTypeEntry> outputTypes;
+
+    private MultipleOutputs<DateWritable, Text> mos;
+
+    private final CrimeCountWritable combined = new CrimeCountWritable();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        setSection(CRIME_PROP_SECTION);
+
+        super.setup(context);
+        setLogger(getClass());
+        outputTypes = newOutputTypeMap();
+
+        mos = new MultipleOutputs<>(context);
+    }
+
+    /**
+     * Reduce the values for a key
+     * @param key       Key value; date string
+     * @param values    Values for the specified key
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    protected void reduce(DateWritable key, Iterable<CrimeCountWritable> values, Context context) throws IOException, InterruptedException {
+
+        Counters.ReducerCounter counter = getCounter(context, CountersEnum.CRIME_REDUCER_COUNT);
+
+        combined.clear();
+        for (CrimeCountWritable value : values) {
+            combined.add(value);
+        }
+
+        Map<String, Integer> map = CrimeReducer.totalsPerCategory(combined.getCounts(), this);
+
+        counter.incrementValue(map.get(TOTAL_PROP));
+
+        // create value string of <category>:<count> separated by ',' with <total>:<count> at the end
+        write(context, key, new Text(MAP_STRINGIFIER.stringify(map)));
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        if (context.getProgress() == 1.0) {
+
+            CrimeReducer.formatOutputTypes(this).forEach(s -> {
+                try {
+                    write(mos, TYPES_NAMED_OP, DateWritable.COMMENT_KEY, new Text(s));
+                } catch (IOException | InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+        } else {
+            getLogger().info("Skipping generation of output types file, job incomplete: " + context.getProgress());
+        }
+
+        mos.close();
+    }
+
+    @Override
+    public Map<String, OpTypeEntry> getOutputTypeMap() {
+        return outputTypes;
+    }
+
+    @Override
+    protected DateWritable newKey(String key) {
+        return DateWritable.ofDate(key);
+    }
+
+    @Override
+    protected Text newValue(String value) {
+        return new Text(value);
+    }
+}
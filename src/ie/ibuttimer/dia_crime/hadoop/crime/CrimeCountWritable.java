@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.crime;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractBaseWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact custom writable class for crime counts per FBI code category, for a single day
+ */
+public class CrimeCountWritable extends AbstractBaseWritable<CrimeCountWritable> implements Writable {
+
+    private final Map<String, Integer> counts;
+
+    // Default constructor to allow (de)serialization
+    public CrimeCountWritable() {
+        super();
+        this.counts = new TreeMap<>();
+    }
+
+    @Override
+    public CrimeCountWritable getInstance() {
+        return new CrimeCountWritable();
+    }
+
+    public static CrimeCountWritable read(DataInput dataInput) throws IOException {
+        CrimeCountWritable writable = new CrimeCountWritable();
+        writable.readFields(dataInput);
+        return writable;
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        super.write(dataOutput);
+        WritableUtils.writeVInt(dataOutput, counts.size());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            Text.writeString(dataOutput, entry.getKey());
+            WritableUtils.writeVInt(dataOutput, entry.getValue());
+        }
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        super.readFields(dataInput);
+        counts.clear();
+        int size = WritableUtils.readVInt(dataInput);
+        for (int i = 0; i < size; i++) {
+            String category = Text.readString(dataInput);
+            counts.put(category, WritableUtils.readVInt(dataInput));
+        }
+    }
+
+    /**
+     * Increment the count for a category
+     * @param category  Category to increment
+     */
+    public void increment(String category) {
+        increment(category, 1);
+    }
+
+    /**
+     * Increment the count for a category
+     * @param category  Category to increment
+     * @param count     Amount to increment by
+     */
+    public void increment(String category, int count) {
+        counts.merge(category, count, Integer::sum);
+    }
+
+    /**
+     * Get the counts per category
+     * @return  Map of category and count
+     */
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Get the total count of all categories
+     * @return  Total count
+     */
+    public int getTotal() {
+        return counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Number of categories
+     * @return  Number of categories
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+
+    @Override
+    public void add(CrimeCountWritable other) {
+        other.counts.forEach(this::increment);
+    }
+
+    @Override
+    public void set(CrimeCountWritable other) {
+        super.set(other);
+        this.counts.clear();
+        this.counts.putAll(other.counts);
+    }
+
+    @Override
+    public CrimeCountWritable copyOf() {
+        CrimeCountWritable other = new CrimeCountWritable();
+        other.set(this);
+        return other;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                super.toString() +
+                ", counts=" + counts +
+                '}';
+    }
+}
@@ -31,7 +31,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import static ie.ibuttimer.dia_crime.misc.Constants.CRIME_PROP_SECTION;
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
 
 /**
  * Mapper for a crime entry. Parses input line and generates a custom writable.
@@ -64,13 +64,18 @@ public class CrimeMapper extends AbstractCrimeMapper<MapWritable> {
         @Override
         public List<Property> getAdditionalProps() {
             List<Property> list = new ArrayList<>(super.getAdditionalProps());
+            list.add(Property.of(IN_MAPPER_AGGREGATION_PROP, "aggregate counts per category in mapper", "false"));
+            list.add(Property.of(AGGREGATION_THRESHOLD_PROP, "max number of counts to cache in mapper",
+                Integer.toString(CrimeCountMapper.DEFAULT_AGGREGATION_THRESHOLD)));
+            list.add(Property.of(PROJECTION_PROP, "comma separated list of crime fields to read, all if empty", ""));
+            list.add(Property.of(DAILY_IN_PATH_PROP, "path to daily crime totals input file", ""));
             return list;
         }
 
         @Override
         public List<Property> getRequiredProps() {
             List<Property> list = new ArrayList<>(super.getRequiredProps());
-            list.addAll(getAdditionalProps());
+            list.addAll(super.getAdditionalProps());
             return list;
         }
 
@@ -124,21 +124,24 @@ public class CrimeReducer extends AbstractReducer<DateWritable, MapWritable, Dat
 
         // get counts for each category
         values.forEach(value -> {
-            String category = value.getFbiCode();
-
-            if (!counts.containsKey(category)) {
-                counts.put(category, 0);
-
-                // add category to output name/type info
-                reducer.putOutputType(category, Integer.class, CRIME_PROP_SECTION);
-            }
-            counts.put(category, counts.get(category) + 1);
+            counts.merge(value.getFbiCode(), 1, Integer::sum);
 
             if (counter != null) {
                 counter.increment();
             }
         });
 
+        return totalsPerCategory(counts, reducer);
+    }
+
+    /**
+     * Convert counts per FBI code category to sorted totals per category
+     * @param counts    Counts per category
+     * @param reducer
+     * @return
+     */
+    public static Map<String, Integer> totalsPerCategory(Map<String, Integer> counts, IOutputType reducer) {
+
         // sort based on category
         int total = 0;  // total crimes for the day
         Map<String, Integer> map = new TreeMap<>();
@@ -146,6 +149,9 @@ public class CrimeReducer extends AbstractReducer<DateWritable, MapWritable, Dat
             int count = counts.get(category);
             total += count;
             map.put(category, count);
+
+            // add category to output name/type info
+            reducer.putOutputType(category, Integer.class, CRIME_PROP_SECTION);
         }
         map.put(TOTAL_PROP, total);
 
@@ -40,17 +40,25 @@ import static ie.ibuttimer.dia_crime.misc.Constants.*;
 import static ie.ibuttimer.dia_crime.misc.Constants.DESCRIPTION_PROP;
 
 /**
- * Custom writable class for crime entries
+ * Custom writable class for crime entries.
+ * A projection specifies which of the crime specific fields are set, and only those fields are serialized.
  */
 public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implements Writable {
 
+    /** Crime specific fields, in projection bit order */
+    public static final List<String> CRIME_FIELDS = List.of(PRIMARYTYPE_PROP, DESCRIPTION_PROP,
+        LOCATIONDESCRIPTION_PROP, IUCR_PROP, FBICODE_PROP);
+
+    public static final int ALL_FIELDS = (1 << CRIME_FIELDS.size()) - 1;
+
     public static List<String> FIELDS;
     static {
         FIELDS = new ArrayList<>(AbstractBaseWritable.FIELDS);
-        FIELDS.addAll(Arrays.asList(PRIMARYTYPE_PROP, DESCRIPTION_PROP, LOCATIONDESCRIPTION_PROP, IUCR_PROP,
-            FBICODE_PROP));
+        FIELDS.addAll(CRIME_FIELDS);
     }
 
+    private int projection;                 // bit set of crime fields present
+
     private String primaryType;
     private String description;
     private String locationDescription;
@@ -64,6 +72,7 @@ public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implement
     // Default constructor to allow (de)serialization
     public CrimeWritable() {
         super();
+        this.projection = ALL_FIELDS;
         this.primaryType = "";
         this.description = "";
         this.locationDescription = "";
@@ -82,24 +91,87 @@ public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implement
         return writable;
     }
 
+    /**
+     * Get the projection for a list of crime fields
+     * @param fields    Crime fields, empty for all fields
+     * @return  projection
+     * @throws IllegalArgumentException if a field is not a crime field
+     */
+    public static int getProjection(Collection<String> fields) {
+        int projection = 0;
+        for (String field : fields) {
+            int index = CRIME_FIELDS.indexOf(field);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown crime field '" + field + "', expected one of " + CRIME_FIELDS);
+            }
+            projection |= (1 << index);
+        }
+        return (projection == 0 ? ALL_FIELDS : projection);
+    }
+
+    /**
+     * Get the crime fields in a projection
+     * @param projection    Projection
+     * @return  list of fields
+     */
+    public static List<String> getProjectedFields(int projection) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < CRIME_FIELDS.size(); i++) {
+            if ((projection & (1 << i)) != 0) {
+                fields.add(CRIME_FIELDS.get(i));
+            }
+        }
+        return fields;
+    }
+
+    public int getProjection() {
+        return projection;
+    }
+
+    public void setProjection(int projection) {
+        this.projection = projection & ALL_FIELDS;
+    }
+
+    /**
+     * Check if a crime field is in the projection
+     * @param field     Crime field
+     * @return  true if projected
+     */
+    public boolean isProjected(String field) {
+        int index = CRIME_FIELDS.indexOf(field);
+        return (index >= 0) && ((projection & (1 << index)) != 0);
+    }
+
+    private void writeProjected(DataOutput dataOutput, int index, String value) throws IOException {
+        if ((projection & (1 << index)) != 0) {
+            Text.writeString(dataOutput, value);
+        }
+    }
+
+    private String readProjected(DataInput dataInput, int index) throws IOException {
+        return ((projection & (1 << index)) != 0 ? Text.readString(dataInput) : "");
+    }
+
     @Override
     public void write(DataOutput dataOutput) throws IOException {
         super.write(dataOutput);
-        Text.writeString(dataOutput, primaryType);
-        Text.writeString(dataOutput, description);
-        Text.writeString(dataOutput, locationDescription);
-        Text.writeString(dataOutput, iucr);
-        Text.writeString(dataOutput, fbiCode);
+        dataOutput.writeByte(projection);
+        writeProjected(dataOutput, 0, primaryType);
+        writeProjected(dataOutput, 1, description);
+        writeProjected(dataOutput, 2, locationDescription);
+        writeProjected(dataOutput, 3, iucr);
+        writeProjected(dataOutput, 4, fbiCode);
     }
 
     @Override
     public void readFields(DataInput dataInput) throws IOException {
         super.readFields(dataInput);
-        this.primaryType = Text.readString(dataInput);
-        this.description = Text.readString(dataInput);
-        this.locationDescription = Text.readString(dataInput);
-        this.iucr = Text.readString(dataInput);
-        this.fbiCode = Text.readString(dataInput);
+        this.projection = dataInput.readByte() & ALL_FIELDS;
+        this.primaryType = readProjected(dataInput, 0);
+        this.description = readProjected(dataInput, 1);
+        this.locationDescription = readProjected(dataInput, 2);
+        this.iucr = readProjected(dataInput, 3);
+        this.fbiCode = readProjected(dataInput, 4);
     }
 
     public String getPrimaryType() {
@@ -145,6 +217,7 @@ public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implement
     @Override
     public void set(CrimeWritable other) {
         super.set(other);
+        this.projection = other.projection;
         this.primaryType = other.primaryType;
         this.description = other.description;
         this.locationDescription = other.locationDescription;
@@ -162,7 +235,9 @@ public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implement
     @Override
     public Optional<Value> getField(String field) {
         Optional<Value> value = super.getField(field);
-        if (value.isEmpty()) {
+        if (value.isEmpty() && CRIME_FIELDS.contains(field) && !isProjected(field)) {
+            value = Value.empty();
+        } else if (value.isEmpty()) {
             switch (field) {
                 case PRIMARYTYPE_PROP:          value = Value.ofOptional(primaryType);          break;
                 case DESCRIPTION_PROP:          value = Value.ofOptional(description);          break;
@@ -213,6 +288,7 @@ public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implement
     public String toString() {
         return getClass().getSimpleName() + "{" +
                 super.toString() +
+                ", projection=" + projection +
                 ", primaryType='" + primaryType + '\'' +
                 ", description='" + description + '\'' +
                 ", locationDescription='" + locationDescription + '\'' +
@@ -237,6 +313,11 @@ public class CrimeWritable extends AbstractBaseWritable<CrimeWritable> implement
             super(logger);
         }
 
+        public CrimeWritableBuilder setProjection(int projection) {
+            getWritable().setProjection(projection);
+            return this;
+        }
+
         public CrimeWritableBuilder setPrimaryType(String primaryType) {
             getWritable().setPrimaryType(primaryType);
             return this;
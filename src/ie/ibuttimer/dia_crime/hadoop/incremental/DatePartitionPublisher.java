@@ -0,0 +1,314 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.incremental;
+
+import ie.ibuttimer.dia_crime.hadoop.ITagger;
+import ie.ibuttimer.dia_crime.hadoop.ingest.PartitionManifest;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarWriter;
+import ie.ibuttimer.dia_crime.hadoop.io.ILineReader;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Publishes the output of an incremental run of a stage to its date partitioned output.
+ * The rows of the date keyed outputs are split by month into '<output>/<yyyy>/<MM>/<file name>' files, in the same
+ * format as the job output, replacing the partitions of the months in the range of the run. Shared outputs which are
+ * not date keyed, such as the output types, are merged with the existing file in the output folder.
+ * Date range tags are not copied to the partitions, as each only covers a month; the range is in the watermark.
+ */
+public class DatePartitionPublisher {
+
+    private static final Logger logger = Logger.getLogger(DatePartitionPublisher.class);
+
+    private static final String WORK_DIR = "_publish";
+
+    private final Configuration conf;
+    private final DateTimeFormatter keyFormatter;
+
+    private DatePartitionPublisher(Configuration conf, DateTimeFormatter keyFormatter) {
+        this.conf = conf;
+        this.keyFormatter = keyFormatter;
+    }
+
+    public static DatePartitionPublisher of(Configuration conf, DateTimeFormatter keyFormatter) {
+        return new DatePartitionPublisher(conf, keyFormatter);
+    }
+
+    /**
+     * Publish the output of a job
+     * @param jobDir    Job output folder
+     * @param outDir    Partitioned output folder
+     * @param first     First month to publish, or <code>null</code> if open
+     * @param last      Last month to publish, or <code>null</code> if open
+     * @param dated     Names of the date keyed outputs, e.g. 'part'
+     * @param shared    Names of the outputs merged with the existing output, e.g. 'types'
+     * @return  Fingerprints of the published months
+     * @throws IOException
+     */
+    public TreeMap<YearMonth, String> publish(Path jobDir, Path outDir, YearMonth first, YearMonth last,
+                                              List<String> dated, List<String> shared) throws IOException {
+        FileSystem fs = outDir.getFileSystem(conf);
+        Path workDir = new Path(jobDir, WORK_DIR);
+        if (fs.exists(workDir)) {
+            fs.delete(workDir, true);
+        }
+
+        for (String name : dated) {
+            for (FileStatus status : getOutputFiles(fs, jobDir, name)) {
+                split(fs, status.getPath(), workDir, first, last);
+            }
+        }
+
+        // replace the months in the range, months without rows are removed
+        fs.mkdirs(outDir);
+        for (PartitionManifest.Partition partition : PartitionManifest.scan(conf, outDir).getPartitions()) {
+            if (Watermark.inRange(partition.getMonth(), first, last)) {
+                fs.delete(new Path(outDir, partition.getPath()), true);
+            }
+        }
+        TreeMap<YearMonth, String> published = new TreeMap<>();
+        if (fs.exists(workDir)) {
+            for (PartitionManifest.Partition partition : PartitionManifest.scan(conf, workDir).getPartitions()) {
+                Path target = new Path(outDir, partition.getPath());
+                fs.mkdirs(target.getParent());
+                if (!fs.rename(new Path(workDir, partition.getPath()), target)) {
+                    throw new IOException("Unable to publish " + target);
+                }
+                published.put(partition.getMonth(), Watermark.fingerprintContents(fs, target));
+            }
+            fs.delete(workDir, true);
+        }
+
+        for (String name : shared) {
+            for (FileStatus status : getOutputFiles(fs, jobDir, name)) {
+                merge(fs, status.getPath(), new Path(outDir, status.getPath().getName()));
+            }
+        }
+        return published;
+    }
+
+    private FileStatus[] getOutputFiles(FileSystem fs, Path jobDir, String name) throws IOException {
+        FileStatus[] statuses = fs.globStatus(new Path(jobDir, name + "-r-*"));
+        if (statuses == null) {
+            statuses = new FileStatus[0];
+        }
+        Arrays.sort(statuses, Comparator.comparing(FileStatus::getPath));
+        return statuses;
+    }
+
+    /**
+     * Split a date keyed output file into month partitions
+     * @param fs        File system
+     * @param file      File to split
+     * @param workDir   Folder to write partitions to
+     * @param first     First month to write, or <code>null</code> if open
+     * @param last      Last month to write, or <code>null</code> if open
+     * @throws IOException
+     */
+    private void split(FileSystem fs, Path file, Path workDir, YearMonth first, YearMonth last) throws IOException {
+        boolean columnar = ColumnarFormat.isColumnar(fs, file);
+        List<Pair<String, String>> tags = new ArrayList<>();
+        Map<YearMonth, PartitionWriter> writers = new TreeMap<>();
+
+        try (ILineReader reader = ILineReader.open(fs, file, null)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Pair<String, String> keyVal = splitLine(line);
+                String key = keyVal.getLeft();
+                String value = keyVal.getRight();
+
+                if (key.startsWith(COMMENT_PREFIX)) {
+                    if (!value.startsWith(ITagger.DATE_RANGE_TAG)) {
+                        tags.add(Pair.of(key, value));
+                        for (PartitionWriter writer : writers.values()) {
+                            writer.writeTag(key, value);
+                        }
+                    }
+                    continue;
+                }
+
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(key, keyFormatter);
+                } catch (DateTimeParseException dtpe) {
+                    logger.warn("Ignoring entry without date key in " + file + ": " + key);
+                    continue;
+                }
+                YearMonth month = YearMonth.from(date);
+                if (Watermark.inRange(month, first, last)) {
+                    PartitionWriter writer = writers.get(month);
+                    if (writer == null) {
+                        Path partition = new Path(new Path(workDir, PartitionManifest.getPartitionDir(date)),
+                            file.getName());
+                        writer = new PartitionWriter(fs.create(partition, true), (columnar ?
+                            conf.getInt(ColumnarFormat.CHUNK_ROWS, ColumnarFormat.DEFAULT_CHUNK_ROWS) : 0));
+                        for (Pair<String, String> tag : tags) {
+                            writer.writeTag(tag.getLeft(), tag.getRight());
+                        }
+                        writers.put(month, writer);
+                    }
+                    writer.write(key, date, value, line);
+                }
+            }
+        } finally {
+            for (PartitionWriter writer : writers.values()) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Merge a shared output file with the existing output file; the tags are taken from the new file and the
+     * remaining lines are the union of the lines of both
+     * @param fs        File system
+     * @param file      New file
+     * @param target    Existing file
+     * @throws IOException
+     */
+    private void merge(FileSystem fs, Path file, Path target) throws IOException {
+        if (ColumnarFormat.isColumnar(fs, file) || !fs.exists(target)) {
+            fs.delete(target, false);
+            if (!fs.rename(file, target)) {
+                throw new IOException("Unable to publish " + target);
+            }
+        } else {
+            List<String> tags = new ArrayList<>();
+            Set<String> lines = new LinkedHashSet<>();
+            readLines(fs, target, null, lines);
+            readLines(fs, file, tags, lines);
+
+            Path temp = new Path(target.getParent(), "_" + target.getName());
+            try (FSDataOutputStream out = fs.create(temp, true)) {
+                StringBuilder sb = new StringBuilder();
+                tags.forEach(tag -> sb.append(tag).append('\n'));
+                lines.forEach(line -> sb.append(line).append('\n'));
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            fs.delete(target, false);
+            if (!fs.rename(temp, target)) {
+                throw new IOException("Unable to publish " + target);
+            }
+        }
+    }
+
+    private void readLines(FileSystem fs, Path file, List<String> tags, Set<String> lines) throws IOException {
+        try (ILineReader reader = ILineReader.open(fs, file, null)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(COMMENT_PREFIX)) {
+                    if (tags != null && !splitLine(line).getRight().startsWith(ITagger.DATE_RANGE_TAG)) {
+                        tags.add(line);
+                    }
+                } else if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a line into its key and value at the first tab
+     * @param line  Line to split
+     * @return  key and value, value is empty if there is no tab
+     */
+    private static Pair<String, String> splitLine(String line) {
+        int tab = line.indexOf('\t');
+        return (tab < 0 ? Pair.of(line, "") : Pair.of(line.substring(0, tab), line.substring(tab + 1)));
+    }
+
+    /**
+     * Writer for a month partition, in text or columnar format
+     */
+    private static class PartitionWriter implements Closeable {
+
+        private final FSDataOutputStream out;
+        private final ColumnarWriter columnar;
+
+        /**
+         * Constructor
+         * @param out       Stream to write to
+         * @param chunkRows Max number of rows per chunk if columnar, or 0 if text
+         * @throws IOException
+         */
+        PartitionWriter(FSDataOutputStream out, int chunkRows) throws IOException {
+            this.out = out;
+            this.columnar = (chunkRows > 0 ? new ColumnarWriter(out, chunkRows) : null);
+        }
+
+        void writeTag(String key, String value) throws IOException {
+            if (columnar != null) {
+                columnar.writeTag(key, value);
+            } else {
+                writeLine(key, value);
+            }
+        }
+
+        void write(String key, LocalDate date, String value, String line) throws IOException {
+            if (columnar != null) {
+                columnar.write(key, date, MAP_STRINGIFIER.mapify(value, new TreeMap<>()));
+            } else {
+                writeLine(line);
+            }
+        }
+
+        private void writeLine(String key, String value) throws IOException {
+            writeLine(HADOOP_KEY_VAL.stringifyElement(key, value));
+        }
+
+        private void writeLine(String line) throws IOException {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (columnar != null) {
+                columnar.close();
+            } else {
+                out.close();
+            }
+        }
+    }
+}
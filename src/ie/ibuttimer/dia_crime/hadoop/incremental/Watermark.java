@@ -0,0 +1,412 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.incremental;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.http.util.TextUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.Constants.WATERMARK_FILE;
+
+/**
+ * Watermark of a date partitioned stage output.
+ * Records the filter dates the output was produced for, the fingerprints of the inputs it was produced from, and the
+ * fingerprints of its '<output>/<yyyy>/<MM>' month partitions, which in turn are the inputs of the following stages.
+ * The watermark is saved in '<output>/_watermark', one entry per line in the format
+ * - 'filter\t<start>\t<end>' - filter dates, empty if open
+ * - 'input\t<source>\t<yyyy-MM>\t<fingerprint>' - input month, '*' for the whole of an unpartitioned input
+ * - 'output\t<yyyy-MM>\t<fingerprint>' - output month partition
+ */
+public class Watermark {
+
+    private static final String SEPARATOR = "\t";
+    private static final String FILTER_ENTRY = "filter";
+    private static final String INPUT_ENTRY = "input";
+    private static final String OUTPUT_ENTRY = "output";
+    private static final String WHOLE = "*";
+    private static final DateTimeFormatter MONTH_FMT = DateTimeFormatter.ofPattern("uuuu-MM");
+    private static final String GLOB_CHARS = "*?[{";
+
+    private final Path root;
+    private LocalDate filterStart;
+    private LocalDate filterEnd;
+    private final Map<String, Source> inputs;
+    private final TreeMap<YearMonth, String> outputs;
+
+    /**
+     * Fingerprints of an input
+     */
+    public static class Source {
+        private final String name;
+        private final Path root;        // root of partitioned input, if known
+        private final TreeMap<YearMonth, String> months;
+        private String whole;           // fingerprint of unpartitioned input
+
+        private Source(String name, Path root) {
+            this.name = name;
+            this.root = root;
+            this.months = new TreeMap<>();
+            this.whole = null;
+        }
+
+        /**
+         * Create a month partitioned source
+         * @param name      Source name
+         * @param root      Root of partitioned input
+         * @param months    Fingerprints of months
+         * @return  new source
+         */
+        public static Source partitioned(String name, Path root, Map<YearMonth, String> months) {
+            Source source = new Source(name, root);
+            source.months.putAll(months);
+            return source;
+        }
+
+        /**
+         * Create an unpartitioned source
+         * @param name          Source name
+         * @param fingerprint   Fingerprint of input
+         * @return  new source
+         */
+        public static Source whole(String name, String fingerprint) {
+            Source source = new Source(name, null);
+            source.whole = fingerprint;
+            return source;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Optional<Path> getRoot() {
+            return Optional.ofNullable(root);
+        }
+
+        public boolean isPartitioned() {
+            return whole == null;
+        }
+
+        public TreeMap<YearMonth, String> getMonths() {
+            return months;
+        }
+
+        /**
+         * Get the months which are new, removed or whose fingerprint has changed since a previous record
+         * @param previous  Previous record of source
+         * @return  Set of months
+         */
+        public Set<YearMonth> changedMonths(Source previous) {
+            Set<YearMonth> changed = new TreeSet<>();
+            Set<YearMonth> all = new TreeSet<>(months.keySet());
+            all.addAll(previous.months.keySet());
+            all.forEach(month -> {
+                if (!Objects.equals(months.get(month), previous.months.get(month))) {
+                    changed.add(month);
+                }
+            });
+            return changed;
+        }
+
+        /**
+         * Check if an unpartitioned source has changed since a previous record
+         * @param previous  Previous record of source
+         * @return  True if changed
+         */
+        public boolean isChanged(Source previous) {
+            return !Objects.equals(whole, previous.whole) || (isPartitioned() != previous.isPartitioned());
+        }
+    }
+
+    private Watermark(Path root) {
+        this.root = root;
+        this.filterStart = null;
+        this.filterEnd = null;
+        this.inputs = new TreeMap<>();
+        this.outputs = new TreeMap<>();
+    }
+
+    /**
+     * Create an empty watermark for an output
+     * @param root  Root of output
+     * @return  new watermark
+     */
+    public static Watermark of(Path root) {
+        return new Watermark(root);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Optional<LocalDate> getFilterStart() {
+        return Optional.ofNullable(filterStart);
+    }
+
+    public Optional<LocalDate> getFilterEnd() {
+        return Optional.ofNullable(filterEnd);
+    }
+
+    public void setFilter(LocalDate start, LocalDate end) {
+        this.filterStart = start;
+        this.filterEnd = end;
+    }
+
+    public Optional<Source> getInput(String name) {
+        return Optional.ofNullable(inputs.get(name));
+    }
+
+    public void setInputs(Collection<Source> sources) {
+        inputs.clear();
+        sources.forEach(source -> inputs.put(source.getName(), source));
+    }
+
+    public TreeMap<YearMonth, String> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Replace the output month partitions in a range
+     * @param first     First month of range, or <code>null</code> if open
+     * @param last      Last month of range, or <code>null</code> if open
+     * @param published Fingerprints of the published months in the range
+     */
+    public void replaceOutputs(YearMonth first, YearMonth last, Map<YearMonth, String> published) {
+        outputs.keySet().removeIf(month -> inRange(month, first, last));
+        outputs.putAll(published);
+    }
+
+    /**
+     * Get this output as the source of a following stage
+     * @param name  Source name
+     * @return  source
+     */
+    public Source asSource(String name) {
+        return Source.partitioned(name, root, outputs);
+    }
+
+    /**
+     * Check if a month is within a range
+     * @param month     Month to check
+     * @param first     First month of range, or <code>null</code> if open
+     * @param last      Last month of range, or <code>null</code> if open
+     * @return  True if within range
+     */
+    public static boolean inRange(YearMonth month, YearMonth first, YearMonth last) {
+        return ((first == null) || !month.isBefore(first)) && ((last == null) || !month.isAfter(last));
+    }
+
+    /**
+     * Write the watermark to '<root>/_watermark'
+     * @param conf  Configuration
+     * @throws IOException
+     */
+    public void write(Configuration conf) throws IOException {
+        FileSystem fs = root.getFileSystem(conf);
+        try (FSDataOutputStream stream = fs.create(new Path(root, WATERMARK_FILE), true)) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(COMMENT_PREFIX).append(" updated: ").append(LocalDateTime.now()).append('\n');
+            sb.append(String.join(SEPARATOR, FILTER_ENTRY, dateStr(filterStart), dateStr(filterEnd))).append('\n');
+            inputs.values().forEach(source -> {
+                if (source.isPartitioned()) {
+                    source.months.forEach((month, fingerprint) ->
+                        sb.append(String.join(SEPARATOR, INPUT_ENTRY, source.name, month.format(MONTH_FMT), fingerprint))
+                            .append('\n'));
+                } else {
+                    sb.append(String.join(SEPARATOR, INPUT_ENTRY, source.name, WHOLE, source.whole)).append('\n');
+                }
+            });
+            outputs.forEach((month, fingerprint) ->
+                sb.append(String.join(SEPARATOR, OUTPUT_ENTRY, month.format(MONTH_FMT), fingerprint)).append('\n'));
+            stream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Remove the watermark of an output, before the output is changed. If the change does not complete, the next run
+     * of the output is in full rather than trusting the months recorded by the removed watermark.
+     * @param conf  Configuration
+     * @param root  Root of output
+     * @throws IOException
+     */
+    public static void invalidate(Configuration conf, Path root) throws IOException {
+        FileSystem fs = root.getFileSystem(conf);
+        fs.delete(new Path(root, WATERMARK_FILE), false);
+        fs.delete(new Path(root, FileOutputCommitter.SUCCEEDED_FILE_NAME), false);
+    }
+
+    /**
+     * Read the watermark of an output
+     * @param conf  Configuration
+     * @param root  Root of output
+     * @return  watermark, or empty if there is no watermark
+     * @throws IOException
+     */
+    public static Optional<Watermark> read(Configuration conf, Path root) throws IOException {
+        Optional<Watermark> result = Optional.empty();
+        FileSystem fs = root.getFileSystem(conf);
+        Path watermarkPath = new Path(root, WATERMARK_FILE);
+        if (fs.exists(watermarkPath)) {
+            Watermark watermark = new Watermark(root);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fs.open(watermarkPath), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!TextUtils.isEmpty(line) && !line.startsWith(COMMENT_PREFIX)) {
+                        try {
+                            watermark.readEntry(line.split(SEPARATOR, -1));
+                        } catch (DateTimeParseException | IllegalArgumentException e) {
+                            throw new IOException("Invalid watermark entry in " + watermarkPath + ": " + line, e);
+                        }
+                    }
+                }
+            }
+            result = Optional.of(watermark);
+        }
+        return result;
+    }
+
+    private void readEntry(String[] splits) {
+        if (FILTER_ENTRY.equals(splits[0]) && splits.length == 3) {
+            filterStart = parseDate(splits[1]);
+            filterEnd = parseDate(splits[2]);
+        } else if (INPUT_ENTRY.equals(splits[0]) && splits.length == 4) {
+            if (WHOLE.equals(splits[2])) {
+                inputs.put(splits[1], Source.whole(splits[1], splits[3]));
+            } else {
+                inputs.computeIfAbsent(splits[1], name -> new Source(name, null))
+                    .months.put(YearMonth.parse(splits[2], MONTH_FMT), splits[3]);
+            }
+        } else if (OUTPUT_ENTRY.equals(splits[0]) && splits.length == 3) {
+            outputs.put(YearMonth.parse(splits[1], MONTH_FMT), splits[2]);
+        } else {
+            throw new IllegalArgumentException("Unknown entry");
+        }
+    }
+
+    /**
+     * Find the watermark of the output containing an input path, by searching up from the path
+     * @param conf  Configuration
+     * @param path  Input path, may be a glob
+     * @return  watermark, or empty if the path is not in a watermarked output
+     * @throws IOException
+     */
+    public static Optional<Watermark> find(Configuration conf, Path path) throws IOException {
+        Optional<Watermark> watermark = Optional.empty();
+        for (Path dir = path; dir != null && !watermark.isPresent(); dir = dir.getParent()) {
+            if (!isGlob(dir.getName())) {
+                watermark = read(conf, dir);
+            }
+        }
+        return watermark;
+    }
+
+    private static boolean isGlob(String name) {
+        return name.chars().anyMatch(chr -> GLOB_CHARS.indexOf(chr) >= 0);
+    }
+
+    /**
+     * Get the fingerprint of the files matching a path, from their count, total size and last modification time
+     * @param conf  Configuration
+     * @param path  Path, may be a glob
+     * @return  fingerprint
+     * @throws IOException
+     */
+    public static String fingerprintOf(Configuration conf, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        long count = 0;
+        long bytes = 0;
+        long modified = 0;
+        FileStatus[] statuses = fs.globStatus(path);
+        if (statuses != null) {
+            for (FileStatus status : statuses) {
+                for (FileStatus file : status.isDirectory() ? fs.listStatus(status.getPath()) : new FileStatus[] { status }) {
+                    if (file.isFile() && !isHidden(file.getPath().getName())) {
+                        ++count;
+                        bytes += file.getLen();
+                        modified = Math.max(modified, file.getModificationTime());
+                    }
+                }
+            }
+        }
+        return count + ":" + bytes + ":" + modified;
+    }
+
+    /**
+     * Get the fingerprint of the contents of the files in a folder, from a checksum of their contents
+     * @param fs    File system
+     * @param dir   Folder
+     * @return  fingerprint
+     * @throws IOException
+     */
+    public static String fingerprintContents(FileSystem fs, Path dir) throws IOException {
+        CRC32 crc = new CRC32();
+        long bytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        FileStatus[] statuses = fs.listStatus(dir);
+        Arrays.sort(statuses, Comparator.comparing(FileStatus::getPath));
+        for (FileStatus file : statuses) {
+            if (file.isFile() && !isHidden(file.getPath().getName())) {
+                crc.update(file.getPath().getName().getBytes(StandardCharsets.UTF_8));
+                try (FSDataInputStream stream = fs.open(file.getPath())) {
+                    int read;
+                    while ((read = stream.read(buffer)) > 0) {
+                        crc.update(buffer, 0, read);
+                        bytes += read;
+                    }
+                }
+            }
+        }
+        return bytes + ":" + Long.toHexString(crc.getValue());
+    }
+
+    private static boolean isHidden(String name) {
+        return name.startsWith("_") || name.startsWith(".");
+    }
+
+    private static String dateStr(LocalDate date) {
+        return (date == null ? "" : date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+
+    private static LocalDate parseDate(String date) {
+        return (TextUtils.isEmpty(date) ? null : LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+}
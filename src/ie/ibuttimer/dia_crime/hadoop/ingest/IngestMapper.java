@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.ingest;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractCsvMapper;
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.http.util.TextUtils;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Mapper for the ingest of an input csv file into a date partitioned layout. Only the date column is parsed, and each
+ * line is written unchanged to the '<yyyy>/<MM>' partition directory for its date. If the input file has a header
+ * line, it is written at the start of each partition file so the partition files may be read with the same
+ * configuration as the input file.
+ * - input key : csv file line number
+ * - input value : csv file line text
+ * - output key : null
+ * - output value : csv file line text
+ */
+public class IngestMapper extends AbstractCsvMapper<NullWritable, Text> {
+
+    public static final String PARTITION_FILE_BASE = "part";
+
+    // names of config properties for indices of data in input csv file
+    public static final List<String> INGEST_PROPERTY_INDICES = List.of(DATE_PROP);
+
+    private MultipleOutputs<NullWritable, Text> mos;
+
+    private int dateIndex;
+
+    private Text header;
+
+    // partitions this task has started writing
+    private final Set<String> started = new HashSet<>();
+
+    private Counters.MapperCounter counter;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        super.initIndices(context, INGEST_PROPERTY_INDICES);
+        setLogger(getClass());
+
+        dateIndex = getIndices().get(DATE_PROP);
+
+        String headerLine = context.getConfiguration().get(getPropertyPath(HEADER_PROP), "");
+        header = (isHasHeader() && !TextUtils.isEmpty(headerLine) ? new Text(headerLine) : null);
+
+        mos = new MultipleOutputs<>(context);
+
+        counter = getCounter(context, CountersEnum.INGEST_MAPPER_COUNT);
+    }
+
+    /**
+     * Map lines from a csv file
+     * @param key       Key; line number
+     * @param value     Text for specified line in file
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+
+        if (!skip(key, value)) {
+            int columns = tokenize(value, dateIndex);
+            if (columns > dateIndex) {
+                LocalDate date = getDateField(dateIndex);
+                if (date != null) {
+                    String partition = PartitionManifest.getPartitionDir(date) + "/" + PARTITION_FILE_BASE;
+                    if (started.add(partition) && (header != null)) {
+                        mos.write(NullWritable.get(), header, partition);
+                    }
+                    mos.write(NullWritable.get(), value, partition);
+
+                    counter.increment();
+                } else {
+                    getLogger().warn("Line " + key.get() + " ignored, invalid date");
+                }
+            } else {
+                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + columns);
+            }
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+        mos.close();
+    }
+
+    private static ICsvMapperCfg sCfgChk = new AbstractCsvMapperCfg(INGEST_PROP_SECTION) {
+
+        @Override
+        public List<Property> getAdditionalProps() {
+            List<Property> list = new ArrayList<>(super.getAdditionalProps());
+            list.add(Property.of(SOURCES_PROP, "comma separated list of sections whose input files are ingested", ""));
+            return list;
+        }
+
+        @Override
+        public List<Property> getRequiredProps() {
+            // the partitioned path is the output, the section's out path is not used
+            return List.of(
+                Property.of(IN_PATH_PROP, "input path", ""),
+                Property.of(PARTITIONED_PATH_PROP, "date partitioned layout path", "")
+            );
+        }
+
+        @Override
+        public List<String> getPropertyIndices() {
+            return INGEST_PROPERTY_INDICES;
+        }
+    };
+
+    @Override
+    public ICsvMapperCfg getMapperCfg() {
+        return getClsCsvMapperCfg();
+    }
+
+    public static ICsvMapperCfg getClsCsvMapperCfg() {
+        return sCfgChk;
+    }
+}
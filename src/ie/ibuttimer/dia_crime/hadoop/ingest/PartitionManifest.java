@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.ingest;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.http.util.TextUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.Constants.MANIFEST_FILE;
+
+/**
+ * Manifest of a date partitioned input layout.
+ * The rows of an input file are partitioned by month into '<root>/<yyyy>/<MM>' directories, and the manifest in
+ * '<root>/_manifest' lists the partitions, one per line in the format '<yyyy-MM>\t<relative path>\t<bytes>'.
+ */
+public class PartitionManifest {
+
+    private static final String SEPARATOR = "\t";
+    private static final DateTimeFormatter MONTH_FMT = DateTimeFormatter.ofPattern("uuuu-MM");
+    private static final DateTimeFormatter DIR_FMT = DateTimeFormatter.ofPattern("uuuu/MM");
+
+    private final Path root;
+    private final TreeMap<YearMonth, Partition> partitions;
+
+    /**
+     * Partition details
+     */
+    public static class Partition {
+        private final YearMonth month;
+        private final String path;     // relative to root
+        private final long bytes;
+
+        public Partition(YearMonth month, String path, long bytes) {
+            this.month = month;
+            this.path = path;
+            this.bytes = bytes;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Check if the partition overlaps a date range
+         * @param start Range start inclusive, or null if open
+         * @param end   Range end inclusive, or null if open
+         * @return  True if overlaps
+         */
+        public boolean overlaps(LocalDate start, LocalDate end) {
+            return ((start == null) || !month.atEndOfMonth().isBefore(start)) &&
+                ((end == null) || !month.atDay(1).isAfter(end));
+        }
+
+        @Override
+        public String toString() {
+            return month.format(MONTH_FMT) + SEPARATOR + path + SEPARATOR + bytes;
+        }
+    }
+
+    private PartitionManifest(Path root) {
+        this.root = root;
+        this.partitions = new TreeMap<>();
+    }
+
+    /**
+     * Get the relative partition directory for a date
+     * @param date  Date
+     * @return  directory path
+     */
+    public static String getPartitionDir(LocalDate date) {
+        return date.format(DIR_FMT);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public List<Partition> getPartitions() {
+        return new ArrayList<>(partitions.values());
+    }
+
+    /**
+     * Select the partitions which overlap a date range
+     * @param start Range start inclusive, or null if open
+     * @param end   Range end inclusive, or null if open
+     * @return  Paths of the selected partitions
+     */
+    public List<Path> select(LocalDate start, LocalDate end) {
+        return partitions.values().stream()
+            .filter(p -> p.overlaps(start, end))
+            .map(p -> new Path(root, p.getPath()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the total size of the partitions
+     * @return  Size in bytes
+     */
+    public long getBytes() {
+        return partitions.values().stream().mapToLong(Partition::getBytes).sum();
+    }
+
+    /**
+     * Get the total size of the partitions which overlap a date range
+     * @param start Range start inclusive, or null if open
+     * @param end   Range end inclusive, or null if open
+     * @return  Size in bytes
+     */
+    public long getBytes(LocalDate start, LocalDate end) {
+        return partitions.values().stream()
+            .filter(p -> p.overlaps(start, end))
+            .mapToLong(Partition::getBytes)
+            .sum();
+    }
+
+    /**
+     * Create a manifest by scanning the partition directories of a layout
+     * @param conf  Configuration
+     * @param root  Root of layout
+     * @return  manifest
+     * @throws IOException
+     */
+    public static PartitionManifest scan(Configuration conf, Path root) throws IOException {
+        PartitionManifest manifest = new PartitionManifest(root);
+        FileSystem fs = root.getFileSystem(conf);
+
+        for (FileStatus yearDir : fs.listStatus(root)) {
+            if (yearDir.isDirectory() && isPartitionName(yearDir.getPath().getName(), 4)) {
+                for (FileStatus monthDir : fs.listStatus(yearDir.getPath())) {
+                    if (monthDir.isDirectory() && isPartitionName(monthDir.getPath().getName(), 2)) {
+                        String relative = yearDir.getPath().getName() + Path.SEPARATOR + monthDir.getPath().getName();
+                        YearMonth month = YearMonth.parse(relative, DIR_FMT);
+                        long bytes = 0;
+                        for (FileStatus file : fs.listStatus(monthDir.getPath())) {
+                            if (file.isFile() && !isHidden(file.getPath().getName())) {
+                                bytes += file.getLen();
+                            }
+                        }
+                        manifest.partitions.put(month, new Partition(month, relative, bytes));
+                    }
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private static boolean isPartitionName(String name, int length) {
+        return (name.length() == length) && name.chars().allMatch(Character::isDigit);
+    }
+
+    private static boolean isHidden(String name) {
+        return name.startsWith("_") || name.startsWith(".");
+    }
+
+    /**
+     * Write the manifest to '<root>/_manifest'
+     * @param conf      Configuration
+     * @param source    Input file the layout was created from
+     * @throws IOException
+     */
+    public void write(Configuration conf, String source) throws IOException {
+        FileSystem fs = root.getFileSystem(conf);
+        try (FSDataOutputStream stream = fs.create(new Path(root, MANIFEST_FILE), true)) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(COMMENT_PREFIX).append(" source: ").append(source).append('\n');
+            partitions.values().forEach(p -> sb.append(p).append('\n'));
+            stream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Read the manifest of a layout
+     * @param conf  Configuration
+     * @param root  Root of layout
+     * @return  manifest, or empty if there is no manifest
+     * @throws IOException
+     */
+    public static Optional<PartitionManifest> read(Configuration conf, Path root) throws IOException {
+        Optional<PartitionManifest> result = Optional.empty();
+        FileSystem fs = root.getFileSystem(conf);
+        Path manifestPath = new Path(root, MANIFEST_FILE);
+        if (fs.exists(manifestPath)) {
+            PartitionManifest manifest = new PartitionManifest(root);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fs.open(manifestPath), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!TextUtils.isEmpty(line) && !line.startsWith(COMMENT_PREFIX)) {
+                        String[] splits = line.split(SEPARATOR);
+                        if (splits.length != 3) {
+                            throw new IOException("Invalid manifest entry in " + manifestPath + ": " + line);
+                        }
+                        try {
+                            YearMonth month = YearMonth.parse(splits[0], MONTH_FMT);
+                            manifest.partitions.put(month, new Partition(month, splits[1], Long.parseLong(splits[2])));
+                        } catch (DateTimeParseException | NumberFormatException e) {
+                            throw new IOException("Invalid manifest entry in " + manifestPath + ": " + line, e);
+                        }
+                    }
+                }
+            }
+            result = Optional.of(manifest);
+        }
+        return result;
+    }
+}
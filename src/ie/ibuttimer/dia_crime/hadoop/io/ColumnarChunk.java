@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.ColumnType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoded chunk of a columnar format file, restricted to the projected columns.
+ * Values are held in typed arrays indexed by row, with a presence flag for each row.
+ */
+final class ColumnarChunk {
+
+    /** Source of chunk ids, unique across readers so a schema is identified by its chunk id */
+    private static final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Decoded column chunk, only the values array for the column type is allocated
+     */
+    static final class Column {
+        final String name;
+        final ColumnType type;
+        final boolean[] present;
+        final long[] longs;
+        final double[] doubles;
+        final String[] strings;
+
+        Column(String name, ColumnType type, int numRows) {
+            this.name = name;
+            this.type = type;
+            this.present = new boolean[numRows];
+            this.longs = (type == ColumnType.LONG ? new long[numRows] : null);
+            this.doubles = (type == ColumnType.DOUBLE ? new double[numRows] : null);
+            this.strings = (type == ColumnType.STRING ? new String[numRows] : null);
+        }
+
+        /**
+         * Get the text of a value, as it was written
+         * @param row   Row index
+         * @return  text or <code>null</code> if the row has no value
+         */
+        String getString(int row) {
+            String value = null;
+            if (present[row]) {
+                switch (type) {
+                    case LONG:
+                        value = Long.toString(longs[row]);
+                        break;
+                    case DOUBLE:
+                        value = Double.toString(doubles[row]);
+                        break;
+                    default:
+                        value = strings[row];
+                        break;
+                }
+            }
+            return value;
+        }
+    }
+
+    final long id;
+    final String[] keys;
+    final Column[] columns;
+    private final Map<String, Integer> indices;
+
+    ColumnarChunk(String[] keys, List<Column> columns) {
+        this.id = ids.incrementAndGet();
+        this.keys = keys;
+        this.columns = columns.toArray(new Column[0]);
+        this.indices = new HashMap<>();
+        for (int i = 0; i < this.columns.length; i++) {
+            indices.put(this.columns[i].name, i);
+        }
+    }
+
+    /**
+     * Get the index of a column
+     * @param name  Column name
+     * @return  index or -1 if not in the chunk
+     */
+    int indexOf(String name) {
+        Integer index = indices.get(name);
+        return (index == null ? -1 : index);
+    }
+}
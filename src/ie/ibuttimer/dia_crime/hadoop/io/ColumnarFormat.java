@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import ie.ibuttimer.dia_crime.misc.PropertyWrangler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.OUT_FORMAT_PROP;
+
+/**
+ * Binary columnar format for the intermediate files passed between pipeline stages, i.e. the merge output read by
+ * the stats and normalise jobs, and the normalise output read by the regression jobs.
+ * <p>
+ * A file consists of a magic number and version, followed by a sequence of blocks:
+ * <ul>
+ *     <li>tag block: the comment lines, e.g. configuration tags, in the order they were written</li>
+ *     <li>chunk block: a group of rows with a schema header of column names and types, the min/max date of the
+ *     rows' keys, the row keys, and a column chunk for each column</li>
+ * </ul>
+ * Each chunk and each column chunk is length prefixed, so readers may skip chunks outside their date range and
+ * columns they do not require without decoding them.
+ * Column values are typed as long, double or string, where a numeric type is only used if all the values in the
+ * column chunk convert back to exactly the same text, so the text form of a file is always reproduced exactly.
+ */
+public class ColumnarFormat {
+
+    public static final byte[] MAGIC = new byte[] { 'D', 'C', 'C', 'F' };
+    public static final byte VERSION = 1;
+
+    static final byte TAG_BLOCK = 1;
+    static final byte CHUNK_BLOCK = 2;
+
+    /** Job configuration key for the number of rows per chunk */
+    public static final String CHUNK_ROWS = "columnar.chunk_rows";
+    public static final int DEFAULT_CHUNK_ROWS = 1024;
+
+    private ColumnarFormat() {
+        // class can't be externally instantiated
+    }
+
+    /**
+     * Intermediate file formats
+     */
+    public enum Format {
+        TEXT("text"),       // human readable 'date\tkey:value,key:value' lines
+        COLUMNAR("columnar");
+
+        private final String setting;
+
+        Format(String setting) {
+            this.setting = setting;
+        }
+
+        public String getSetting() {
+            return setting;
+        }
+
+        /**
+         * Get the format corresponding to a setting
+         * @param setting   Setting
+         * @return  Format, or TEXT if the setting is not recognised
+         */
+        public static Format of(String setting) {
+            return Arrays.stream(values())
+                .filter(f -> f.setting.equalsIgnoreCase(setting.trim()))
+                .findFirst()
+                .orElse(TEXT);
+        }
+    }
+
+    /**
+     * Column types
+     */
+    public enum ColumnType {
+        LONG, DOUBLE, STRING;
+
+        /**
+         * Get the narrowest type which reproduces all the values in a column chunk exactly
+         * @param values    Values, entries may be <code>null</code> for rows without a value
+         * @return  type
+         */
+        public static ColumnType infer(List<String> values) {
+            boolean isLong = true;
+            boolean isDouble = true;
+            for (String value : values) {
+                if (value != null) {
+                    if (isLong) {
+                        isLong = isLong(value);
+                    }
+                    if (!isLong) {
+                        isDouble = isDouble(value);
+                        if (!isDouble) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return (isLong ? LONG : (isDouble ? DOUBLE : STRING));
+        }
+
+        private static boolean isLong(String value) {
+            boolean result;
+            try {
+                result = Long.toString(Long.parseLong(value)).equals(value);
+            } catch (NumberFormatException nfe) {
+                result = false;
+            }
+            return result;
+        }
+
+        private static boolean isDouble(String value) {
+            boolean result;
+            try {
+                result = Double.toString(Double.parseDouble(value)).equals(value);
+            } catch (NumberFormatException nfe) {
+                result = false;
+            }
+            return result;
+        }
+
+        public static ColumnType of(int ordinal) {
+            ColumnType[] types = values();
+            if (ordinal < 0 || ordinal >= types.length) {
+                throw new IllegalStateException("Unknown column type " + ordinal);
+            }
+            return types[ordinal];
+        }
+    }
+
+    /**
+     * Get the configured output format for a section
+     * @param conf      Job configuration
+     * @param section   Section name
+     * @return  Format
+     */
+    public static Format getOutputFormat(Configuration conf, String section) {
+        return Format.of(conf.get(PropertyWrangler.of(section).getPropertyPath(OUT_FORMAT_PROP), ""));
+    }
+
+    /**
+     * Check if a file starts with the columnar format magic number
+     * @param fs    File system
+     * @param file  File to check
+     * @return  True if columnar
+     * @throws IOException
+     */
+    public static boolean isColumnar(FileSystem fs, Path file) throws IOException {
+        boolean columnar = false;
+        if (fs.getFileStatus(file).getLen() >= MAGIC.length) {
+            byte[] magic = new byte[MAGIC.length];
+            try (FSDataInputStream in = fs.open(file)) {
+                in.readFully(magic);
+            }
+            columnar = Arrays.equals(magic, MAGIC);
+        }
+        return columnar;
+    }
+
+    /**
+     * Check if an input path, which may be a file, directory or glob, is in columnar format.
+     * The first non-empty data file found is checked, so all the files in an input are expected to be in the
+     * same format.
+     * @param conf  Job configuration
+     * @param path  Input path
+     * @return  True if columnar
+     * @throws IOException
+     */
+    public static boolean isColumnarInput(Configuration conf, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        FileStatus[] matches = fs.globStatus(path);
+        Boolean columnar = null;
+        if (matches != null) {
+            for (int i = 0; (columnar == null) && (i < matches.length); i++) {
+                FileStatus[] statuses = (matches[i].isDirectory() ?
+                    fs.listStatus(matches[i].getPath()) : new FileStatus[] { matches[i] });
+                for (FileStatus status : statuses) {
+                    if (status.isFile() && (status.getLen() > 0) && !isHidden(status.getPath())) {
+                        columnar = isColumnar(fs, status.getPath());
+                        break;
+                    }
+                }
+            }
+        }
+        return (columnar != null && columnar);
+    }
+
+    private static boolean isHidden(Path path) {
+        String name = path.getName();
+        return name.startsWith("_") || name.startsWith(".");
+    }
+}
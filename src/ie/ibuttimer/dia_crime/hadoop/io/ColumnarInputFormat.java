@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.http.util.TextUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * InputFormat reading the binary columnar intermediate format.
+ * Records are presented as for TextInputFormat, i.e. a line number key and 'key\tname:value,name:value' line value,
+ * so mappers may read either format. The values are {@link ColumnarRow}s, so mappers may instead read the decoded
+ * typed columns directly, and the line text is only rendered if requested. Only the projected columns are decoded,
+ * and chunks outside the configured date range are skipped.
+ * Files are not split, as intermediate files are of the order of one row per day.
+ */
+public class ColumnarInputFormat extends FileInputFormat<LongWritable, Text> {
+
+    private static final Logger logger = Logger.getLogger(ColumnarInputFormat.class);
+
+    /** Job configuration key for the comma separated list of columns to read */
+    public static final String PROJECTION = "columnar.projection";
+    /** Job configuration keys for the date range to read, empty for no limit */
+    public static final String START_DATE = "columnar.start_date";
+    public static final String END_DATE = "columnar.end_date";
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new ColumnarRecordReader();
+    }
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path filename) {
+        return false;
+    }
+
+    /**
+     * Set the columns to read
+     * @param conf      Job configuration
+     * @param columns   Column names
+     */
+    public static void setProjection(Configuration conf, Collection<String> columns) {
+        conf.set(PROJECTION, String.join(",", columns));
+    }
+
+    /**
+     * Get the columns to read
+     * @param conf  Job configuration
+     * @return  Column names, or <code>null</code> for all
+     */
+    public static List<String> getProjection(Configuration conf) {
+        String columns = conf.get(PROJECTION, "");
+        return (TextUtils.isBlank(columns) ? null : Arrays.stream(columns.split(","))
+            .map(String::trim)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Add a date range to read, widening any previously added range so all inputs of a job are covered
+     * @param conf  Job configuration
+     * @param start Start date (inclusive), or <code>null</code> for no limit
+     * @param end   End date (inclusive), or <code>null</code> for no limit
+     */
+    public static void addDateRange(Configuration conf, LocalDate start, LocalDate end) {
+        conf.set(START_DATE, widen(conf.get(START_DATE), start, true));
+        conf.set(END_DATE, widen(conf.get(END_DATE), end, false));
+    }
+
+    private static String widen(String current, LocalDate date, boolean isStart) {
+        String setting;
+        if (current == null) {
+            setting = (date == null ? "" : date.toString());
+        } else if (current.isEmpty() || date == null) {
+            setting = "";
+        } else {
+            LocalDate currentDate = LocalDate.parse(current);
+            boolean wider = (isStart ? date.isBefore(currentDate) : date.isAfter(currentDate));
+            setting = (wider ? date : currentDate).toString();
+        }
+        return setting;
+    }
+
+    private static LocalDate getDate(Configuration conf, String key) {
+        String date = conf.get(key, "");
+        return (TextUtils.isEmpty(date) ? null : LocalDate.parse(date));
+    }
+
+
+    /**
+     * Record reader for columnar files
+     */
+    public static class ColumnarRecordReader extends RecordReader<LongWritable, Text> {
+
+        private FSDataInputStream stream;
+        private ColumnarReader reader;
+        private long length;
+
+        private final LongWritable key = new LongWritable();
+        private final ColumnarRow value = new ColumnarRow();
+        private long lineNumber;
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            FileSplit fileSplit = (FileSplit) split;
+            Configuration conf = context.getConfiguration();
+            Path file = fileSplit.getPath();
+            FileSystem fs = file.getFileSystem(conf);
+
+            length = fileSplit.getLength();
+            stream = fs.open(file);
+            reader = new ColumnarReader(stream, getProjection(conf),
+                getDate(conf, START_DATE), getDate(conf, END_DATE));
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            boolean next = reader.next(value);
+            if (next) {
+                // line numbers start at 0 as for the text format, so header skipping is unchanged
+                key.set(lineNumber++);
+            }
+            return next;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return (length == 0 ? 1.0f : Math.min(1.0f, stream.getPos() / (float) length));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Read %d chunks, skipped %d chunks",
+                        reader.getChunksRead(), reader.getChunksSkipped()));
+                }
+                reader.close();
+            }
+        }
+    }
+}
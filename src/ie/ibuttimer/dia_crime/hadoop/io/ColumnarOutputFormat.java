@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+import java.util.TreeMap;
+
+import static ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.CHUNK_ROWS;
+import static ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.DEFAULT_CHUNK_ROWS;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * OutputFormat writing the binary columnar intermediate format.
+ * Accepts the same date key and 'name:value,name:value' value as written to the text format, with comment keys
+ * written as tags.
+ */
+public class ColumnarOutputFormat extends FileOutputFormat<DateWritable, Text> {
+
+    @Override
+    public RecordWriter<DateWritable, Text> getRecordWriter(TaskAttemptContext job) throws IOException {
+        Configuration conf = job.getConfiguration();
+        Path file = getDefaultWorkFile(job, "");
+        FileSystem fs = file.getFileSystem(conf);
+
+        return new ColumnarRecordWriter(
+            new ColumnarWriter(fs.create(file, false), conf.getInt(CHUNK_ROWS, DEFAULT_CHUNK_ROWS)));
+    }
+
+    public static class ColumnarRecordWriter extends RecordWriter<DateWritable, Text> {
+
+        private final ColumnarWriter writer;
+
+        public ColumnarRecordWriter(ColumnarWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(DateWritable key, Text value) throws IOException {
+            if (key.isAltString()) {
+                writer.writeTag(key.toString(), value.toString());
+            } else {
+                writer.write(key.toString(), key.getLocalDate(),
+                    MAP_STRINGIFIER.mapify(value.toString(), new TreeMap<>()));
+            }
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            writer.close();
+        }
+    }
+}
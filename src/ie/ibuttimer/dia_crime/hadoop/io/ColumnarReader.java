@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.ColumnType;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.*;
+
+import static ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.*;
+import static ie.ibuttimer.dia_crime.hadoop.io.ColumnarWriter.NO_DATE;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+
+/**
+ * Reader for the binary columnar intermediate format.
+ * Rows are read as {@link ColumnarRow}s with typed accessors for the projected columns, or as lines in the same
+ * 'key\tname:value,name:value' form as the text format. Chunks whose date range does not overlap the reader's date
+ * range are skipped without being decoded.
+ */
+public class ColumnarReader implements ILineReader {
+
+    private final DataInputStream in;
+    private final Set<String> projection;
+    private final long startDay;
+    private final long endDay;
+
+    private final DataInputBuffer chunkBuffer = new DataInputBuffer();
+    private byte[] chunkBytes = new byte[0];
+
+    // current chunk
+    private ColumnarChunk chunk;
+    private int row;
+
+    private final ColumnarRow lineRow = new ColumnarRow();
+
+    private long chunksRead;
+    private long chunksSkipped;
+
+    /**
+     * Constructor, reads and verifies the file header
+     * @param in            Stream to read
+     * @param projection    Names of the columns to read, or <code>null</code> for all
+     * @param start         Start date (inclusive) of rows required, or <code>null</code> for no limit
+     * @param end           End date (inclusive) of rows required, or <code>null</code> for no limit
+     * @throws IOException
+     */
+    public ColumnarReader(InputStream in, Collection<String> projection, LocalDate start, LocalDate end)
+                                                                                            throws IOException {
+        this.in = (in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in));
+        this.projection = (projection == null ? null : new HashSet<>(projection));
+        this.startDay = (start == null ? Long.MIN_VALUE : start.toEpochDay());
+        this.endDay = (end == null ? Long.MAX_VALUE : end.toEpochDay());
+
+        byte[] magic = new byte[MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a columnar format file");
+        }
+        byte version = this.in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported columnar format version " + version);
+        }
+    }
+
+    /**
+     * Read the next row
+     * @param next  Row to set
+     * @return  True if a row was read, false if the end of the file has been reached
+     * @throws IOException
+     */
+    public boolean next(ColumnarRow next) throws IOException {
+        boolean read = false;
+        while (!read) {
+            if ((chunk != null) && (row < chunk.keys.length)) {
+                next.setRow(chunk, row++);
+                read = true;
+            } else {
+                int blockType = in.read();
+                if (blockType < 0) {
+                    break;  // end of file
+                } else if (blockType == TAG_BLOCK) {
+                    String key = Text.readString(in);
+                    next.setLine(HADOOP_KEY_VAL.stringifyElement(key, Text.readString(in)));
+                    read = true;
+                } else if (blockType == CHUNK_BLOCK) {
+                    readChunk();
+                } else {
+                    throw new IOException("Unknown columnar format block type " + blockType);
+                }
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return (next(lineRow) ? lineRow.toString() : null);
+    }
+
+    /**
+     * Read the next chunk, skipping it if it is outside the required date range
+     * @throws IOException
+     */
+    private void readChunk() throws IOException {
+        int length = in.readInt();
+
+        int numRows = WritableUtils.readVInt(in);
+        long minDay = WritableUtils.readVLong(in);
+        long maxDay = WritableUtils.readVLong(in);
+        int consumed = WritableUtils.getVIntSize(numRows) +
+            WritableUtils.getVIntSize(minDay) + WritableUtils.getVIntSize(maxDay);
+
+        row = 0;
+        chunk = null;
+
+        boolean inRange = (minDay == NO_DATE) || ((maxDay >= startDay) && (minDay <= endDay));
+        if (!inRange) {
+            skipFully(length - consumed);
+            ++chunksSkipped;
+        } else {
+            int remaining = length - consumed;
+            if (chunkBytes.length < remaining) {
+                chunkBytes = new byte[remaining];
+            }
+            in.readFully(chunkBytes, 0, remaining);
+            chunkBuffer.reset(chunkBytes, remaining);
+
+            String[] chunkKeys = new String[numRows];
+            for (int i = 0; i < numRows; i++) {
+                chunkKeys[i] = Text.readString(chunkBuffer);
+            }
+
+            int numColumns = WritableUtils.readVInt(chunkBuffer);
+            List<ColumnarChunk.Column> columns = new ArrayList<>(numColumns);
+            for (int i = 0; i < numColumns; i++) {
+                String name = Text.readString(chunkBuffer);
+                ColumnType type = ColumnType.of(chunkBuffer.readByte());
+                int columnLength = WritableUtils.readVInt(chunkBuffer);
+
+                if ((projection == null) || projection.contains(name)) {
+                    columns.add(readColumn(name, numRows, type));
+                } else {
+                    chunkBuffer.skipBytes(columnLength);
+                }
+            }
+            chunk = new ColumnarChunk(chunkKeys, columns);
+            ++chunksRead;
+        }
+    }
+
+    private ColumnarChunk.Column readColumn(String name, int numRows, ColumnType type) throws IOException {
+        byte[] presence = new byte[(numRows + 7) / 8];
+        chunkBuffer.readFully(presence);
+
+        ColumnarChunk.Column column = new ColumnarChunk.Column(name, type, numRows);
+        for (int i = 0; i < numRows; i++) {
+            if ((presence[i / 8] & (1 << (i % 8))) != 0) {
+                column.present[i] = true;
+                switch (type) {
+                    case LONG:
+                        column.longs[i] = WritableUtils.readVLong(chunkBuffer);
+                        break;
+                    case DOUBLE:
+                        column.doubles[i] = chunkBuffer.readDouble();
+                        break;
+                    default:
+                        column.strings[i] = Text.readString(chunkBuffer);
+                        break;
+                }
+            }
+        }
+        return column;
+    }
+
+    private void skipFully(int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of columnar format chunk");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Get the number of chunks read
+     * @return  count
+     */
+    public long getChunksRead() {
+        return chunksRead;
+    }
+
+    /**
+     * Get the number of chunks skipped as outside the date range
+     * @return  count
+     */
+    public long getChunksSkipped() {
+        return chunksSkipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
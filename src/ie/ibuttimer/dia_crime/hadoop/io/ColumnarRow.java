@@ -0,0 +1,253 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.ColumnType;
+import org.apache.hadoop.io.Text;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.KVP_SEPARATOR;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.KV_SEPARATOR;
+
+/**
+ * Row read from a columnar format file, with indexed typed accessors for its column values.
+ * Rows are presented to mappers as {@link Text} so mappers may read either intermediate format, but the
+ * 'key\tname:value,name:value' text of a row is only rendered when it is requested, e.g. by a mapper which does not
+ * use the typed accessors, or when exporting. Comment lines read from tag blocks are plain text lines.
+ * Column indices are per chunk, and remain valid while {@link #getSchemaId()} is unchanged. Rows are read only.
+ */
+public class ColumnarRow extends Text {
+
+    private ColumnarChunk chunk;    // chunk of a typed row, or null for a comment line
+    private int row;
+    private boolean rendered;
+
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Set a comment line
+     * @param line  Line text
+     */
+    void setLine(String line) {
+        chunk = null;
+        super.set(line);
+        rendered = true;
+    }
+
+    /**
+     * Set a typed row
+     * @param chunk Chunk containing the row
+     * @param row   Row index
+     */
+    void setRow(ColumnarChunk chunk, int row) {
+        this.chunk = chunk;
+        this.row = row;
+        rendered = false;
+    }
+
+    /**
+     * Check if this is a typed row, rather than a comment line
+     * @return  True if typed row
+     */
+    public boolean isTyped() {
+        return chunk != null;
+    }
+
+    /**
+     * Check if a line is a typed columnar row
+     * @param line  Line
+     * @return  True if typed row
+     */
+    public static boolean isTyped(Text line) {
+        return (line instanceof ColumnarRow) && ((ColumnarRow) line).isTyped();
+    }
+
+    /**
+     * Get the id of the schema of the row
+     * @return  id
+     */
+    public long getSchemaId() {
+        return chunk.id;
+    }
+
+    /**
+     * Get the row key
+     * @return  key
+     */
+    public String getKey() {
+        return chunk.keys[row];
+    }
+
+    /**
+     * Get the number of columns
+     * @return  number of columns
+     */
+    public int size() {
+        return chunk.columns.length;
+    }
+
+    /**
+     * Get the name of a column
+     * @param column    Column index
+     * @return  name
+     */
+    public String getName(int column) {
+        return chunk.columns[column].name;
+    }
+
+    /**
+     * Get the index of a column
+     * @param name  Column name
+     * @return  index or -1 if the row's chunk does not have the column
+     */
+    public int indexOf(String name) {
+        return chunk.indexOf(name);
+    }
+
+    /**
+     * Get the type of a column
+     * @param column    Column index
+     * @return  type
+     */
+    public ColumnType getType(int column) {
+        return chunk.columns[column].type;
+    }
+
+    /**
+     * Check if the row has a value for a column
+     * @param column    Column index
+     * @return  True if has value
+     */
+    public boolean has(int column) {
+        return chunk.columns[column].present[row];
+    }
+
+    /**
+     * Get the value of a {@link ColumnType#LONG} column
+     * @param column    Column index
+     * @return  value
+     */
+    public long getLong(int column) {
+        return chunk.columns[column].longs[row];
+    }
+
+    /**
+     * Get the value of a {@link ColumnType#DOUBLE} column
+     * @param column    Column index
+     * @return  value
+     */
+    public double getDouble(int column) {
+        return chunk.columns[column].doubles[row];
+    }
+
+    /**
+     * Get the text of the value of a column, as it was written
+     * @param column    Column index
+     * @return  value or <code>null</code> if the row does not have a value for the column
+     */
+    public String getString(int column) {
+        return chunk.columns[column].getString(row);
+    }
+
+    /**
+     * Get the 'name:value,name:value' text of the row's values
+     * @return  text
+     */
+    public String getValues() {
+        sb.setLength(0);
+        appendValues(sb);
+        return sb.toString();
+    }
+
+    private void appendValues(StringBuilder builder) {
+        boolean first = true;
+        for (ColumnarChunk.Column column : chunk.columns) {
+            String value = column.getString(row);
+            if (value != null) {
+                if (!first) {
+                    builder.append(KVP_SEPARATOR);
+                }
+                builder.append(column.name).append(KV_SEPARATOR).append(value);
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Render the text of a typed row if it has not been already
+     */
+    private void render() {
+        if (!rendered) {
+            sb.setLength(0);
+            sb.append(getKey()).append('\t');
+            appendValues(sb);
+            super.set(sb.toString());
+            rendered = true;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() {
+        render();
+        return super.getBytes();
+    }
+
+    @Override
+    public int getLength() {
+        render();
+        return super.getLength();
+    }
+
+    @Override
+    public byte[] copyBytes() {
+        render();
+        return super.copyBytes();
+    }
+
+    @Override
+    public int charAt(int position) {
+        render();
+        return super.charAt(position);
+    }
+
+    @Override
+    public int find(String what, int start) {
+        render();
+        return super.find(what, start);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        render();
+        super.write(out);
+    }
+
+    @Override
+    public String toString() {
+        render();
+        return super.toString();
+    }
+}
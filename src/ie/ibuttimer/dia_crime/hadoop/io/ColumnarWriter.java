@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.ColumnType;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.*;
+
+import static ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat.*;
+
+/**
+ * Writer for the binary columnar intermediate format.
+ * Rows are buffered until a chunk is full, and written as a chunk with a schema header of the columns in the
+ * buffered rows.
+ */
+public class ColumnarWriter implements Closeable {
+
+    /** Min/max date for a chunk whose rows have no dates */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    private final DataOutputStream out;
+    private final int chunkRows;
+
+    private final List<String> keys;
+    private final List<Map<String, String>> rows;
+    private long minDay;
+    private long maxDay;
+
+    private final DataOutputBuffer chunkBuffer = new DataOutputBuffer();
+    private final DataOutputBuffer columnBuffer = new DataOutputBuffer();
+
+    /**
+     * Constructor, writes the file header
+     * @param out       Stream to write to
+     * @param chunkRows Max number of rows per chunk
+     * @throws IOException
+     */
+    public ColumnarWriter(OutputStream out, int chunkRows) throws IOException {
+        this.out = (out instanceof DataOutputStream ? (DataOutputStream) out : new DataOutputStream(out));
+        this.chunkRows = Math.max(chunkRows, 1);
+        this.keys = new ArrayList<>(this.chunkRows);
+        this.rows = new ArrayList<>(this.chunkRows);
+        resetRange();
+
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    public ColumnarWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_CHUNK_ROWS);
+    }
+
+    private void resetRange() {
+        minDay = Long.MAX_VALUE;
+        maxDay = Long.MIN_VALUE;
+    }
+
+    /**
+     * Write a comment line, e.g. a configuration tag. Any buffered rows are written first, so comments keep their
+     * position relative to the rows.
+     * @param key   Comment key
+     * @param value Comment text
+     * @throws IOException
+     */
+    public void writeTag(String key, String value) throws IOException {
+        flush();
+        out.writeByte(TAG_BLOCK);
+        Text.writeString(out, key);
+        Text.writeString(out, value);
+    }
+
+    /**
+     * Write a row
+     * @param key       Row key
+     * @param date      Date of the row key, or <code>null</code> if not a date
+     * @param values    Map of column name and value
+     * @throws IOException
+     */
+    public void write(String key, LocalDate date, Map<String, String> values) throws IOException {
+        keys.add(key);
+        rows.add(values);
+        if (date != null) {
+            long day = date.toEpochDay();
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+        if (rows.size() >= chunkRows) {
+            flush();
+        }
+    }
+
+    /**
+     * Write any buffered rows as a chunk
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        int numRows = rows.size();
+        if (numRows > 0) {
+            // schema of the chunk is the union of the columns in its rows
+            Set<String> columns = new TreeSet<>();
+            rows.forEach(row -> columns.addAll(row.keySet()));
+
+            chunkBuffer.reset();
+            WritableUtils.writeVInt(chunkBuffer, numRows);
+            boolean dated = (minDay <= maxDay);
+            WritableUtils.writeVLong(chunkBuffer, dated ? minDay : NO_DATE);
+            WritableUtils.writeVLong(chunkBuffer, dated ? maxDay : NO_DATE);
+            for (String key : keys) {
+                Text.writeString(chunkBuffer, key);
+            }
+
+            WritableUtils.writeVInt(chunkBuffer, columns.size());
+            List<String> values = new ArrayList<>(numRows);
+            for (String column : columns) {
+                values.clear();
+                rows.forEach(row -> values.add(row.get(column)));
+
+                ColumnType type = ColumnType.infer(values);
+                writeColumn(values, type);
+
+                Text.writeString(chunkBuffer, column);
+                chunkBuffer.writeByte(type.ordinal());
+                WritableUtils.writeVInt(chunkBuffer, columnBuffer.getLength());
+                chunkBuffer.write(columnBuffer.getData(), 0, columnBuffer.getLength());
+            }
+
+            out.writeByte(CHUNK_BLOCK);
+            out.writeInt(chunkBuffer.getLength());
+            out.write(chunkBuffer.getData(), 0, chunkBuffer.getLength());
+
+            keys.clear();
+            rows.clear();
+            resetRange();
+        }
+    }
+
+    /**
+     * Encode a column chunk; a presence bitmap followed by the values of the rows which have a value
+     * @param values    Column values
+     * @param type      Column type
+     * @throws IOException
+     */
+    private void writeColumn(List<String> values, ColumnType type) throws IOException {
+        columnBuffer.reset();
+
+        byte[] presence = new byte[(values.size() + 7) / 8];
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != null) {
+                presence[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        columnBuffer.write(presence);
+
+        for (String value : values) {
+            if (value != null) {
+                switch (type) {
+                    case LONG:
+                        WritableUtils.writeVLong(columnBuffer, Long.parseLong(value));
+                        break;
+                    case DOUBLE:
+                        columnBuffer.writeDouble(Double.parseDouble(value));
+                        break;
+                    default:
+                        Text.writeString(columnBuffer, value);
+                        break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
@@ -25,11 +25,11 @@ package ie.ibuttimer.dia_crime.hadoop.io;
 
 import com.google.common.base.Charsets;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.Path;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.List;
@@ -43,12 +43,15 @@ import java.util.stream.Collectors;
  */
 public class FileReader {
 
+    private Path path;
+    private Path openPath;
     private FileUtil fileUtil;
-    private FSDataInputStream stream;
+    private InputStream stream;
     private InputStreamReader inputStreamReader;
     private BufferedReader bufferedReader;
 
     public FileReader(Path path, Configuration conf) {
+        this.path = path;
         fileUtil = new FileUtil(path, conf);
     }
 
@@ -61,8 +64,9 @@ public class FileReader {
     }
 
     public FileReader open(Path filePath) {
+        openPath = filePath;
         try {
-            stream = fileUtil.fileReadOpen(filePath);
+            stream = fileUtil.fileReadOpenAll(filePath);
         } catch (IOException e) {
             e.printStackTrace();
             close();
@@ -70,24 +74,17 @@ public class FileReader {
         return this;
     }
 
+    /**
+     * Open a file in the folder for reading
+     * @param filename  Name of file, or glob to read all matching files, e.g. 'part-r-*'
+     * @return
+     */
     public FileReader open(String filename) {
-        try {
-            stream = fileUtil.fileReadOpen(filename);
-        } catch (IOException e) {
-            e.printStackTrace();
-            close();
-        }
-        return this;
+        return open(new Path(path, filename));
     }
 
     public FileReader open() {
-        try {
-            stream = fileUtil.fileReadOpen();
-        } catch (IOException e) {
-            e.printStackTrace();
-            close();
-        }
-        return this;
+        return open(path);
     }
 
     /**
@@ -177,9 +174,11 @@ public class FileReader {
             inputStreamReader = new InputStreamReader(stream, Charsets.UTF_8);
             bufferedReader = new BufferedReader(inputStreamReader);
         } else {
-            bufferedReader.reset();
-            inputStreamReader.reset();
-            stream.seek(0);
+            // the stream may span multiple files, so reopen rather than seek
+            bufferedReader.close();
+            stream = fileUtil.fileReadOpenAll(openPath);
+            inputStreamReader = new InputStreamReader(stream, Charsets.UTF_8);
+            bufferedReader = new BufferedReader(inputStreamReader);
         }
     }
 
@@ -28,6 +28,7 @@ import org.apache.hadoop.fs.*;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -91,6 +92,55 @@ public class FileUtil {
         return stream;
     }
 
+    /**
+     * Get the files matching a path, which may be a single file or a glob, e.g. 'results/stats/part-r-*'
+     * @param filePath  Path to match
+     * @return  Matching files in name order
+     * @throws IOException
+     */
+    public List<Path> getMatchingFiles(Path filePath) throws IOException {
+        FileStatus[] statuses = getFileSystem().globStatus(filePath);
+        List<Path> files = (statuses == null ? List.of() : Arrays.stream(statuses)
+            .filter(FileStatus::isFile)
+            .map(FileStatus::getPath)
+            .sorted()
+            .collect(Collectors.toList()));
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("File not found: " + filePath);
+        }
+        return files;
+    }
+
+    /**
+     * Open all the files matching a path, which may be a single file or a glob, for reading as a single stream,
+     * e.g. the part files of a job run with multiple reducers
+     * @param filePath  Path to match
+     * @return  Stream of the contents of the files in name order
+     * @throws IOException
+     */
+    public InputStream fileReadOpenAll(Path filePath) throws IOException {
+        List<InputStream> streams = new ArrayList<>();
+        try {
+            for (Path file : getMatchingFiles(filePath)) {
+                streams.add(fileSystem.open(file));
+            }
+        } catch (IOException e) {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+            throw e;
+        }
+        return (streams.size() == 1 ? streams.get(0) : new SequenceInputStream(Collections.enumeration(streams)));
+    }
+
+    public InputStream fileReadOpenAll(String filename) throws IOException {
+        return fileReadOpenAll(new Path(path, filename));
+    }
+
+    public InputStream fileReadOpenAll() throws IOException {
+        return fileReadOpenAll(path);
+    }
+
     public FSDataOutputStream fileAppendOpen(Path filePath, boolean overwrite) throws IOException {
         if (fileExists(filePath) && !overwrite) {
             throw new InvalidRequestException("Unable to create '" + filePath + "' as it already exists. " +
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.io;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Interface for line-by-line readers of intermediate files, in either text or columnar format
+ */
+public interface ILineReader extends Closeable {
+
+    /**
+     * Read the next line
+     * @return  Line, or <code>null</code> if the end of the file has been reached
+     * @throws IOException
+     */
+    String readLine() throws IOException;
+
+    /**
+     * Open a reader for a file, in whichever format it was written
+     * @param fs            File system
+     * @param file          File to read
+     * @param projection    Names of the columns required from a columnar file, or <code>null</code> for all
+     * @return  reader
+     * @throws IOException
+     */
+    static ILineReader open(FileSystem fs, Path file, Collection<String> projection) throws IOException {
+        ILineReader reader;
+        if (ColumnarFormat.isColumnar(fs, file)) {
+            reader = new ColumnarReader(fs.open(file), projection, null, null);
+        } else {
+            BufferedReader bufferedReader = new BufferedReader(
+                new InputStreamReader(fs.open(file), StandardCharsets.UTF_8));
+            reader = new ILineReader() {
+                @Override
+                public String readLine() throws IOException {
+                    return bufferedReader.readLine();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    bufferedReader.close();
+                }
+            };
+        }
+        return reader;
+    }
+}
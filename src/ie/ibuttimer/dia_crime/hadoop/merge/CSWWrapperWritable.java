@@ -34,34 +34,41 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 /**
- * Custom writable wrapper which may contain one of: CrimeWritable, StockWritable or WeatherWritable
+ * Custom writable wrapper which may contain one of: CrimeWritable, StockWritable, WeatherWritable or
+ * DailyEntryWritable
  */
 public class CSWWrapperWritable implements Writable {
 
     private CrimeWritable crime;
     private StockWritable stock;
     private WeatherWritable weather;
+    private DailyEntryWritable daily;
 
     public CSWWrapperWritable() {
-        init(null, null, null);
+        init(null, null, null, null);
     }
 
     public CSWWrapperWritable(CrimeWritable crime) {
-        init(crime, null, null);
+        init(crime, null, null, null);
     }
 
     public CSWWrapperWritable(StockWritable stock) {
-        init(null, stock, null);
+        init(null, stock, null, null);
     }
 
     public CSWWrapperWritable(WeatherWritable weather) {
-        init(null, null, weather);
+        init(null, null, weather, null);
     }
 
-    private void init(CrimeWritable crime, StockWritable stock, WeatherWritable weather) {
+    public CSWWrapperWritable(DailyEntryWritable daily) {
+        init(null, null, null, daily);
+    }
+
+    private void init(CrimeWritable crime, StockWritable stock, WeatherWritable weather, DailyEntryWritable daily) {
         this.crime = crime;
         this.stock = stock;
         this.weather = weather;
+        this.daily = daily;
     }
 
     @Override
@@ -69,6 +76,10 @@ public class CSWWrapperWritable implements Writable {
         AbstractBaseWritable.writeNullable(dataOutput, crime);
         AbstractBaseWritable.writeNullable(dataOutput, stock);
         AbstractBaseWritable.writeNullable(dataOutput, weather);
+        dataOutput.writeBoolean(daily != null);
+        if (daily != null) {
+            daily.write(dataOutput);
+        }
     }
 
     @Override
@@ -76,6 +87,11 @@ public class CSWWrapperWritable implements Writable {
         crime = AbstractBaseWritable.readNullable(dataInput, new CrimeWritable());
         stock = AbstractBaseWritable.readNullable(dataInput, new StockWritable());
         weather = AbstractBaseWritable.readNullable(dataInput, new WeatherWritable());
+        daily = null;
+        if (dataInput.readBoolean()) {
+            daily = new DailyEntryWritable();
+            daily.readFields(dataInput);
+        }
     }
 
     public static CSWWrapperWritable read(DataInput dataInput) throws IOException {
@@ -89,7 +105,7 @@ public class CSWWrapperWritable implements Writable {
     }
 
     public void setCrime(CrimeWritable crime) {
-        init(crime, null, null);
+        init(crime, null, null, null);
     }
 
     public StockWritable getStock() {
@@ -97,7 +113,7 @@ public class CSWWrapperWritable implements Writable {
     }
 
     public void setStock(StockWritable stock) {
-        init(null, stock, null);
+        init(null, stock, null, null);
     }
 
     public WeatherWritable getWeather() {
@@ -105,7 +121,15 @@ public class CSWWrapperWritable implements Writable {
     }
 
     public void setWeather(WeatherWritable weather) {
-        init(null, null, weather);
+        init(null, null, weather, null);
+    }
+
+    public DailyEntryWritable getDaily() {
+        return daily;
+    }
+
+    public void setDaily(DailyEntryWritable daily) {
+        init(null, null, null, daily);
     }
 
     public boolean isCrime() {
@@ -120,6 +144,10 @@ public class CSWWrapperWritable implements Writable {
         return weather != null;
     }
 
+    public boolean isDaily() {
+        return daily != null;
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer("CSWWrapperWritable{");
@@ -129,6 +157,8 @@ public class CSWWrapperWritable implements Writable {
             sb.append("stock=").append(stock);
         } else if (weather != null) {
             sb.append("weather=").append(weather);
+        } else if (daily != null) {
+            sb.append("daily=").append(daily);
         }
         sb.append("}");
         return sb.toString();
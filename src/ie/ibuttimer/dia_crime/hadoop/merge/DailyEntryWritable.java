@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.merge;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Custom writable for a daily entry read from the output of a previous crime, weather or stock job.
+ * The entry value is carried as the <property>:<value> string from the previous job output, and is only parsed in
+ * the reducer.
+ */
+public class DailyEntryWritable implements Writable {
+
+    public enum Source { CRIME, WEATHER, STOCK }
+
+    private static final Source[] SOURCES = Source.values();
+
+    private Source source;
+    private String values;
+
+    // Default constructor to allow (de)serialization
+    public DailyEntryWritable() {
+        this(Source.CRIME, "");
+    }
+
+    public DailyEntryWritable(Source source, String values) {
+        set(source, values);
+    }
+
+    public static DailyEntryWritable of(Source source, String values) {
+        return new DailyEntryWritable(source, values);
+    }
+
+    public void set(Source source, String values) {
+        this.source = source;
+        this.values = values;
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeByte(source.ordinal());
+        Text.writeString(dataOutput, values);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        source = SOURCES[dataInput.readByte()];
+        values = Text.readString(dataInput);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public String getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "DailyEntryWritable{" +
+            "source=" + source +
+            ", values='" + values + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.merge;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractCsvMapper;
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.crime.CrimeMapper;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarRow;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import ie.ibuttimer.dia_crime.hadoop.stock.NasdaqStockMapper;
+import ie.ibuttimer.dia_crime.hadoop.weather.WeatherMapper;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+
+/**
+ * Base mapper for the merge job reading the daily output of a previous crime, weather or stock job, rather than
+ * the raw csv files.
+ * - input key : file line number
+ * - input value : file line text, e.g. 2001-01-01	01A:2, 02:87, ..., total:1819, or typed columnar row
+ * - output key : date
+ * - output value : CSWWrapperWritable wrapping a DailyEntryWritable
+ */
+public abstract class DailyWrapMapper extends AbstractCsvMapper<DateWritable, CSWWrapperWritable> {
+
+    private final DailyEntryWritable.Source source;
+
+    private final DailyEntryWritable dailyOut = new DailyEntryWritable();
+    private final CSWWrapperWritable wrapOut = new CSWWrapperWritable();
+
+    private Counters.MapperCounter counter;
+
+    public DailyWrapMapper(DailyEntryWritable.Source source) {
+        super();
+        this.source = source;
+    }
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        setLogger(getClass());
+
+        counter = getCounter(context, CountersEnum.MERGE_MAPPER_COUNT);
+    }
+
+    /**
+     * Map lines from a previous job output
+     * @param key       Key; line number
+     * @param value     Text for specified line in file
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+
+        // previous job outputs have no header, but may have comment lines
+        if (!skipComment(value) && !skipEmpty(value)) {
+
+            // the values of a typed columnar row are only rendered if the row passes the filter
+            ColumnarRow row = null;
+            Pair<String, String> hKeyVal;
+            if (ColumnarRow.isTyped(value)) {
+                row = (ColumnarRow) value;
+                hKeyVal = Pair.of(row.getKey(), "");
+            } else {
+                hKeyVal = HADOOP_KEY_VAL.destringifyElement(value.toString());
+            }
+            if (hKeyVal.getLeft() != null) {
+                Pair<Boolean, LocalDate> filterRes = getKeyDateAndFilter(hKeyVal.getLeft());
+                if (filterRes.getLeft()) {
+                    dailyOut.set(source, (row != null ? row.getValues() : hKeyVal.getRight()));
+                    wrapOut.setDaily(dailyOut);
+
+                    // return the day as the key and the daily entry as the value
+                    write(context, getDateOutKey(filterRes.getRight()), wrapOut);
+
+                    counter.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Mapper for the daily crime totals output of the crime job
+     */
+    public static class CrimeDailyWrapMapper extends DailyWrapMapper {
+
+        public CrimeDailyWrapMapper() {
+            super(DailyEntryWritable.Source.CRIME);
+        }
+
+        @Override
+        public ICsvMapperCfg getMapperCfg() {
+            return CrimeMapper.getClsCsvMapperCfg();
+        }
+    }
+
+    /**
+     * Mapper for the daily weather averages output of the weather job
+     */
+    public static class WeatherDailyWrapMapper extends DailyWrapMapper {
+
+        public WeatherDailyWrapMapper() {
+            super(DailyEntryWritable.Source.WEATHER);
+        }
+
+        @Override
+        public ICsvMapperCfg getMapperCfg() {
+            return WeatherMapper.getClsCsvMapperCfg();
+        }
+    }
+
+    /**
+     * Mapper for the daily output of the stocks job; all stocks are in the same output, so any stock section may
+     * be used for configuration
+     */
+    public static class StockDailyWrapMapper extends DailyWrapMapper {
+
+        public StockDailyWrapMapper() {
+            super(DailyEntryWritable.Source.STOCK);
+        }
+
+        @Override
+        public ICsvMapperCfg getMapperCfg() {
+            return NasdaqStockMapper.getClsCsvMapperCfg();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.merge;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarWriter;
+import ie.ibuttimer.dia_crime.misc.Utils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static ie.ibuttimer.dia_crime.hadoop.merge.MergeReducer.*;
+import static ie.ibuttimer.dia_crime.misc.Constants.BOUNDARY_NAMED_OP;
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Completes the fill forward of stock values for a merge job run with date range partitioning over multiple reducers.
+ * Each reducer saves its first and last available stock values, and the entries at the start of its range which it
+ * was unable to complete, to the boundary named output. The incomplete entries are completed with the last stock
+ * values from the preceding ranges, or the first available values if there are none, and written to a
+ * '<named output>-r-stitched' file in the job output directory, in the same format as the named output.
+ */
+public class FillForwardStitcher {
+
+    private static final Logger logger = Logger.getLogger(FillForwardStitcher.class);
+
+    public static final String STITCHED_SUFFIX = "-r-stitched";
+
+    private FillForwardStitcher() {
+        // class can't be externally instantiated
+    }
+
+    /**
+     * Complete the incomplete entries from a merge job
+     * @param conf          Job configuration
+     * @param outputDir     Job output directory
+     * @param keyFormatter  Formatter for output keys
+     * @param format        Format of the named outputs
+     * @return  number of entries completed
+     * @throws IOException
+     */
+    public static int stitch(Configuration conf, Path outputDir, DateTimeFormatter keyFormatter,
+                             ColumnarFormat.Format format) throws IOException {
+
+        FileSystem fs = outputDir.getFileSystem(conf);
+
+        TreeMap<LocalDate, String> firstValues = new TreeMap<>();
+        TreeMap<LocalDate, String> lastValues = new TreeMap<>();
+        // named output and list of key/value of incomplete entries
+        Map<String, List<Pair<String, String>>> incomplete = new TreeMap<>();
+
+        FileStatus[] boundaries = fs.globStatus(new Path(outputDir, BOUNDARY_NAMED_OP + "-r-*"));
+        if (boundaries != null) {
+            for (FileStatus status : boundaries) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(fs.open(status.getPath()), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(COMMENT_PREFIX)) {
+                            continue;
+                        }
+                        Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(line);
+                        Pair<String, String> tagVal = (keyVal.getRight() != null ?
+                            BOUNDARY_STRINGIFIER.destringifyElement(keyVal.getRight()) : Pair.of(null, null));
+                        if (tagVal.getLeft() == null) {
+                            logger.warn("Ignoring unrecognised boundary entry: " + line);
+                        } else if (tagVal.getLeft().equals(BOUNDARY_FIRST)) {
+                            firstValues.put(Utils.getDate(keyVal.getLeft(), keyFormatter), tagVal.getRight());
+                        } else if (tagVal.getLeft().equals(BOUNDARY_LAST)) {
+                            lastValues.put(Utils.getDate(keyVal.getLeft(), keyFormatter), tagVal.getRight());
+                        } else {
+                            incomplete.computeIfAbsent(tagVal.getLeft(), k -> new ArrayList<>())
+                                .add(Pair.of(keyVal.getLeft(), tagVal.getRight()));
+                        }
+                    }
+                }
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<String, List<Pair<String, String>>> entry : incomplete.entrySet()) {
+            List<Pair<String, String>> entries = entry.getValue();
+            entries.sort(Comparator.comparing(e -> Utils.getDate(e.getLeft(), keyFormatter)));
+
+            Path stitchedPath = new Path(outputDir, entry.getKey() + STITCHED_SUFFIX);
+            try (FSDataOutputStream out = fs.create(stitchedPath, true);
+                 ColumnarWriter columnar = (format == ColumnarFormat.Format.COLUMNAR ?
+                     new ColumnarWriter(out, conf.getInt(ColumnarFormat.CHUNK_ROWS, ColumnarFormat.DEFAULT_CHUNK_ROWS)) :
+                     null)) {
+                for (Pair<String, String> keyVal : entries) {
+                    LocalDate date = Utils.getDate(keyVal.getLeft(), keyFormatter);
+
+                    // fill forward from the last values before the entry, or back from the first available values
+                    Map.Entry<LocalDate, String> fill = lastValues.lowerEntry(date);
+                    if (fill == null) {
+                        fill = firstValues.firstEntry();
+                    }
+
+                    Map<String, String> map = new TreeMap<>(MAP_STRINGIFIER.mapify(keyVal.getRight()));
+                    if (fill != null) {
+                        map.putAll(MAP_STRINGIFIER.mapify(fill.getValue()));
+                    } else {
+                        logger.warn("No values available to complete " + entry.getKey() + " entry for " + date);
+                    }
+
+                    if (columnar != null) {
+                        columnar.write(keyVal.getLeft(), date, map);
+                    } else {
+                        out.write((HADOOP_KEY_VAL.stringifyElement(keyVal.getLeft(), MAP_STRINGIFIER.stringify(map)) + "\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    }
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -30,10 +30,12 @@ import ie.ibuttimer.dia_crime.hadoop.crime.CrimeWritable;
 import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import ie.ibuttimer.dia_crime.hadoop.stock.StockReducer;
 import ie.ibuttimer.dia_crime.hadoop.stock.StockWritable;
 import ie.ibuttimer.dia_crime.hadoop.weather.WeatherReducer;
 import ie.ibuttimer.dia_crime.hadoop.weather.WeatherWritable;
 import ie.ibuttimer.dia_crime.misc.ConfigReader;
+import ie.ibuttimer.dia_crime.misc.MapStringifier;
 import ie.ibuttimer.dia_crime.misc.Utils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
@@ -53,7 +55,8 @@ import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
 /**
  * Reducer to merge crime, weather and stock data to a single output file
  * - input key : date
- * - input value : CSWWrapperWritable wrapper for crime/weather/stock data
+ * - input value : CSWWrapperWritable wrapper for crime/weather/stock data, or daily entries from previous
+ *                 crime/weather/stock job outputs
  * - output key : date
  * - output value : value string of <property>:<value> separated by ','
  */
@@ -69,19 +72,21 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
 
     private DateTimeFormatter keyOutDateTimeFormatter;
 
+    /* boundary state tags, see FillForwardStitcher */
+    public static final String BOUNDARY_FIRST = "first";
+    public static final String BOUNDARY_LAST = "last";
+    public static final MapStringifier.ElementStringify BOUNDARY_STRINGIFIER = MapStringifier.ElementStringify.of(">");
+
     /* ValueCache is used to cache incomplete data entries, so they can be completed which the info is available.
         e.g. there is no stock data for non-working days the a fill forward approach is used to populate non-working
         days with the data from the last previous working day.
+        Note: the cache is per reducer, as with date range partitioning each reducer has its own range of dates.
      */
-    protected static ValueCache<
+    protected ValueCache<
             Long,                   // key: epoch day
             Map<String, Object>,    // cache value: stock map
             List<MultipleOutputsWriteEntry<DateWritable, Map<String, Object>>>  // required cache: write entry less missing cache value
-        > cache = new ValueCache<>(
-        Long::compareTo,
-        k -> k - 1,     // previous epoch day
-        k -> k + 1      // next epoch day
-    );
+        > cache;
 
     private Counters.ReducerCounter counter;
     private Counters.ReducerCounter dayInCounter;
@@ -91,6 +96,9 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
 
     private MultipleOutputs<DateWritable, Text> mos;
 
+    private final MapStringifier.ElementStringify stockIdStringifier =
+        MapStringifier.ElementStringify.of(StockReducer.STOCK_ID_SEPARATOR);
+
     public MergeReducer() {
         super();
     }
@@ -101,6 +109,12 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
         setLogger(getClass());
         categorySet = newOutputTypeMap();
 
+        cache = new ValueCache<>(
+            Long::compareTo,
+            k -> k - 1,     // previous epoch day
+            k -> k + 1      // next epoch day
+        );
+
         // stocks and weather fields are known in advance so add to categories
 
         // add weather fields to categories
@@ -183,7 +197,12 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
         List<WeatherWritable> weatherList = new ArrayList<>(24);
         List<StockWritable> stockList = new ArrayList<>();
 
-        values.forEach(iter_value -> {
+        // daily entries from previous crime/weather/stock job outputs
+        Map<String, Integer> crimeCounts = new HashMap<>();
+        Map<String, Object> weatherDaily = null;
+        Map<String, Object> stockDaily = new HashMap<>();
+
+        for (CSWWrapperWritable iter_value : values) {
             if (iter_value.getCrime() != null) {
                 crimeList.add(iter_value.getCrime());
             } else if (iter_value.getWeather() != null) {
@@ -193,15 +212,32 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
                 weatherList.add(weather);
             } else if (iter_value.getStock() != null) {
                 stockList.add(iter_value.getStock());
+            } else if (iter_value.getDaily() != null) {
+                DailyEntryWritable daily = iter_value.getDaily();
+                switch (daily.getSource()) {
+                    case CRIME:
+                        readDailyCrime(daily.getValues(), crimeCounts);
+                        break;
+                    case WEATHER:
+                        weatherDaily = readDailyWeather(daily.getValues());
+                        break;
+                    case STOCK:
+                        readDailyStock(daily.getValues(), stockDaily);
+                        break;
+                }
+                counter.increment();
             } else {
                 throw new IllegalArgumentException("Unknown wrapped object: " + iter_value.getClass().getName());
             }
-        });
+        }
 
-        // reduce crime to daily totals
-        Map<String, Integer> crimeMap = CrimeReducer.reduceToTotalsPerCategory(crimeList, counter, this);
-        // reduce weather to daily averages
-        Map<String, Object> weatherMap = WeatherReducer.reduceToAverages(weatherList, counter);
+        // reduce crime to daily totals, unless already totalled by the crime job
+        Map<String, Integer> crimeMap = crimeCounts.isEmpty() ?
+            CrimeReducer.reduceToTotalsPerCategory(crimeList, counter, this) :
+            CrimeReducer.totalsPerCategory(crimeCounts, this);
+        // reduce weather to daily averages, unless already averaged by the weather job
+        Map<String, Object> weatherMap = (weatherDaily == null ?
+            WeatherReducer.reduceToAverages(weatherList, counter) : weatherDaily);
 
         Map<String, Object> crimeWeatherStockMap = new TreeMap<>(crimeMap);
         Map<String, Object> crimeWeatherMap = new TreeMap<>(crimeMap);
@@ -214,7 +250,7 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
         // Note: no stock data for non-working day
 
         // combine stocks to single map
-        Map<String, Object> stockMap = new HashMap<>();
+        Map<String, Object> stockMap = new HashMap<>(stockDaily);
         stockList.forEach(stock -> {
             String id = stock.getId();
             stock.toMap().entrySet().stream()
@@ -269,6 +305,53 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
         writeOutput(toWrite, context);
     }
 
+    /**
+     * Read the daily totals per category from a crime job output entry
+     * @param values    Entry value string of <category>:<count>
+     * @param counts    Map to add counts per category to
+     */
+    private void readDailyCrime(String values, Map<String, Integer> counts) {
+        // e.g. 01A:2, 02:87, 03:41, ..., 26:211, total:1819; total is regenerated from the categories
+        MAP_STRINGIFIER.mapify(values).forEach((category, count) -> {
+            if (!category.equals(TOTAL_PROP)) {
+                counts.merge(category, Integer.parseInt(count), Integer::sum);
+            }
+        });
+    }
+
+    /**
+     * Read the daily averages from a weather job output entry
+     * @param values    Entry value string of <field>:<value>
+     * @return  map of averages
+     */
+    private Map<String, Object> readDailyWeather(String values) {
+        // e.g. clouds_all:47, date:2001-01-01, feels_like:-11.464583, ..., weather_id:804, ...
+        Map<String, Object> weather = new HashMap<>(MAP_STRINGIFIER.mapify(values));
+
+        // convert the weather id to its corresponding ordinal
+        Object wid = weather.get(WEATHER_ID_PROP);
+        if (wid != null) {
+            weather.put(WEATHER_ID_PROP, widsMap.get(Integer.parseInt(wid.toString())));
+        }
+        return weather;
+    }
+
+    /**
+     * Read the stock values from a stocks job output entry
+     * @param values    Entry value string of <field>:<value> with leading stock id marker
+     * @param stockMap  Map to add stock values to
+     */
+    private void readDailyStock(String values, Map<String, Object> stockMap) {
+        // e.g. DJI>adjclose:10646.150391, close:10646.150391, date:2001-01-02, ..., volume:253300000
+        Pair<String, String> idVal = stockIdStringifier.destringifyElement(values);
+        if (idVal.getLeft() != null) {
+            String id = idVal.getLeft();
+            MAP_STRINGIFIER.mapify(idVal.getRight()).entrySet().stream()
+                .filter(es -> !es.getKey().equals(ID_PROP))
+                .forEach(es -> stockMap.put(genStockOutputKey(id, es.getKey()), es.getValue()));
+        }
+    }
+
     protected void writeOutputEntry(MultipleOutputsWriteEntry<DateWritable, Map<String, Object>> toWrite, Context context) {
 
         // create value string of <property>:<value> separated by ','
@@ -287,6 +370,40 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
         toWrite.forEach(t -> writeOutputEntry(t, context));
     }
 
+    /**
+     * Write the boundary state of this reducer's range of dates; the first and last available stock values and the
+     * incomplete entries, to the boundary named output
+     * @return  number of incomplete entries
+     */
+    private int writeBoundaryState() {
+        int incomplete = 0;
+        try {
+            Pair<Long, Map<String, Object>> first = cache.getMinValue();
+            Pair<Long, Map<String, Object>> last = cache.getMaxValue();
+            if (first != null) {
+                writeBoundary(DateWritable.ofDate(LocalDate.ofEpochDay(first.getLeft()), keyOutDateTimeFormatter),
+                    BOUNDARY_FIRST, first.getRight());
+                writeBoundary(DateWritable.ofDate(LocalDate.ofEpochDay(last.getLeft()), keyOutDateTimeFormatter),
+                    BOUNDARY_LAST, last.getRight());
+            }
+            for (Pair<Long, List<MultipleOutputsWriteEntry<DateWritable, Map<String, Object>>>> required :
+                                                                                            cache.getRequired()) {
+                for (MultipleOutputsWriteEntry<DateWritable, Map<String, Object>> we : required.getRight()) {
+                    writeBoundary(we.getKey(), we.getNamedOutput(), we.getValue());
+                    ++incomplete;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+        return incomplete;
+    }
+
+    private void writeBoundary(DateWritable key, String tag, Map<String, Object> map) throws IOException, InterruptedException {
+        // e.g. 2001-01-01	csw>01A:2, 02:87, ..., wind_speed:3.619583
+        write(mos, BOUNDARY_NAMED_OP, key, new Text(BOUNDARY_STRINGIFIER.stringifyElement(tag, MAP_STRINGIFIER.stringify(map))));
+    }
+
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
         super.cleanup(context);
@@ -302,14 +419,21 @@ public class MergeReducer extends AbstractReducer<DateWritable, CSWWrapperWritab
                 }
             });
 
-            // save incomplete entries using min entry in value cache
-            // anything added here will end up at the end of the output so not necessarily in chronological order
-            cache.getRequiredAsMin().stream()
-                .map(t -> {
-                    t.getRight().forEach(we -> we.getValue().putAll(t.getMiddle()));
-                    return t.getRight();
-                })
-                .forEach(t -> writeOutput(t, context));
+            if (context.getNumReduceTasks() > 1) {
+                /* dates are range partitioned, so the values to fill forward to the incomplete entries at the start
+                    of this reducer's range are in the previous reducer's range; save the boundary state so the
+                    entries can be completed after the job */
+                dayOutCounter.incrementValue(writeBoundaryState());
+            } else if (cache.getMinValue() != null) {
+                // save incomplete entries using min entry in value cache
+                // anything added here will end up at the end of the output so not necessarily in chronological order
+                cache.getRequiredAsMin().stream()
+                    .map(t -> {
+                        t.getRight().forEach(we -> we.getValue().putAll(t.getMiddle()));
+                        return t.getRight();
+                    })
+                    .forEach(t -> writeOutput(t, context));
+            }
 
             dayOutCounter.getCount().ifPresent(c -> dayOutCounter.setValue(c / MERGE_SECTIONS.size()));
 
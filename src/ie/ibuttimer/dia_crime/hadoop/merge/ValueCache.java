@@ -142,6 +142,37 @@ public class ValueCache<K, VC, VR> {
         return result;
     }
 
+    /**
+     * Return the entry with the minimum key added to the cache
+     * @return  entry or null if nothing added
+     */
+    public Pair<K, VC> getMinValue() {
+        return minValue;
+    }
+
+    /**
+     * Return the entry with the maximum key added to the cache
+     * @return  entry or null if nothing added
+     */
+    public Pair<K, VC> getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Return the required entries
+     * @return
+     */
+    public List<Pair<K, VR>> getRequired() {
+        List<Pair<K, VR>> result = new ArrayList<>();
+        lock.lock();
+        try {
+            requiredCache.forEach((key, val) -> result.add(Pair.of(key, val)));
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
     /**
      * Add a required entry
      * @param key
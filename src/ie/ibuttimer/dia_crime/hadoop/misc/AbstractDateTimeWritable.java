@@ -26,6 +26,8 @@ package ie.ibuttimer.dia_crime.hadoop.misc;
 import ie.ibuttimer.dia_crime.hadoop.AbstractBaseWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -77,9 +79,20 @@ public abstract class AbstractDateTimeWritable<T extends AbstractBaseWritable<?>
         super.readFields(dataInput);
         if (dataInput.readBoolean()) {
             altString = Text.readString(dataInput);
+        } else {
+            // instances are reused by the framework, so clear any previous value
+            altString = null;
         }
     }
 
+    /**
+     * Check if this instance represents an alternative string, e.g. a comment key, rather than a date
+     * @return  True if alternative string
+     */
+    public boolean isAltString() {
+        return altString != null;
+    }
+
     @Override
     public T copyOf() {
         T copy = getInstance();
@@ -114,15 +127,52 @@ public abstract class AbstractDateTimeWritable<T extends AbstractBaseWritable<?>
 
         AbstractDateTimeWritable<?> that = (AbstractDateTimeWritable<?>) o;
 
+        // the output formatter is not serialised, so is not part of the identity of the date
         if (!Objects.equals(altString, that.altString)) return false;
-        if (!Objects.equals(getLocalDateTime(), that.getLocalDateTime())) return false;
-        return Objects.equals(outputFormatter, that.outputFormatter);
+        return Objects.equals(getLocalDateTime(), that.getLocalDateTime());
     }
 
     @Override
     public int hashCode() {
+        // stable across JVMs, so the default hash partitioner sends a date to the same reducer
         int result = altString != null ? altString.hashCode() : 0;
-        result = 31 * result + (outputFormatter != null ? outputFormatter.hashCode() : 0);
+        result = 31 * result + (getLocalDateTime() != null ? getLocalDateTime().hashCode() : 0);
         return result;
     }
+
+
+    /**
+     * Raw comparator for date writable's, comparing the serialised form without deserialising.
+     * Serialised form is: epoch second (long), alt string flag (boolean), [alt string (Text)]
+     */
+    public static class Comparator extends WritableComparator {
+
+        private static final int ALT_FLAG_OFFSET = Long.BYTES;
+        private static final int ALT_STRING_OFFSET = ALT_FLAG_OFFSET + 1;
+
+        public Comparator(Class<? extends WritableComparable> keyClass) {
+            super(keyClass);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            boolean alt1 = (b1[s1 + ALT_FLAG_OFFSET] != 0);
+            boolean alt2 = (b2[s2 + ALT_FLAG_OFFSET] != 0);
+            int result;
+            if (!alt1 && !alt2) {
+                result = Long.compare(readLong(b1, s1), readLong(b2, s2));
+            } else if (alt1 && alt2) {
+                // Text.writeString writes a vint length followed by the utf-8 bytes
+                int n1 = WritableUtils.decodeVIntSize(b1[s1 + ALT_STRING_OFFSET]);
+                int n2 = WritableUtils.decodeVIntSize(b2[s2 + ALT_STRING_OFFSET]);
+                int start1 = s1 + ALT_STRING_OFFSET + n1;
+                int start2 = s2 + ALT_STRING_OFFSET + n2;
+                result = compareBytes(b1, start1, l1 - (start1 - s1), b2, start2, l2 - (start2 - s2));
+            } else {
+                // same as compareTo()
+                result = 0;
+            }
+            return result;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.misc;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.http.util.TextUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Date range partitioner, which assigns contiguous ranges of days to each reducer. Combined with the sorting of
+ * DateWritable keys, this results in each part file containing a sorted, contiguous date range.
+ * - comment keys are always assigned to partition 0
+ * - if the date range is not configured, days are assigned to partitions on a round robin basis
+ * @param <V>   Map output value class
+ */
+public class DatePartitioner<V> extends Partitioner<DateWritable, V> implements Configurable {
+
+    public static final String PARTITION_START_DATE = "date_partitioner.start_date";
+    public static final String PARTITION_END_DATE = "date_partitioner.end_date";
+
+    private Configuration conf;
+
+    private long startDay;
+    private long numDays;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+
+        LocalDate start = getDate(conf.get(PARTITION_START_DATE, ""));
+        LocalDate end = getDate(conf.get(PARTITION_END_DATE, ""));
+        if ((start != null) && (end != null) && !end.isBefore(start)) {
+            startDay = start.toEpochDay();
+            numDays = end.toEpochDay() - startDay + 1;
+        } else {
+            startDay = 0;
+            numDays = 0;
+        }
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(DateWritable key, V value, int numPartitions) {
+        int partition;
+
+        if (key.isAltString() || (numPartitions <= 1)) {
+            partition = 0;
+        } else {
+            long day = key.getLocalDate().toEpochDay();
+            if (numDays > 0) {
+                long offset = Math.min(Math.max(day - startDay, 0), numDays - 1);
+                partition = (int) ((offset * numPartitions) / numDays);
+            } else {
+                partition = (int) Math.floorMod(day, (long) numPartitions);
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * Set the date range to partition over
+     * @param conf      Job configuration
+     * @param startDate Start date in ISO Local Date format (yyyy-mm-dd)
+     * @param endDate   End date in ISO Local Date format (yyyy-mm-dd)
+     */
+    public static void setDateRange(Configuration conf, String startDate, String endDate) {
+        conf.set(PARTITION_START_DATE, startDate);
+        conf.set(PARTITION_END_DATE, endDate);
+    }
+
+    private static LocalDate getDate(String dateStr) {
+        LocalDate date = null;
+        if (!TextUtils.isEmpty(dateStr)) {
+            try {
+                date = LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE);
+            } catch (DateTimeParseException dpte) {
+                date = null;
+            }
+        }
+        return date;
+    }
+}
@@ -23,6 +23,8 @@
 
 package ie.ibuttimer.dia_crime.hadoop.misc;
 
+import org.apache.hadoop.io.WritableComparator;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -40,6 +42,11 @@ public class DateTimeWritable extends AbstractDateTimeWritable<DateTimeWritable>
     public static final DateTimeWritable MIN = DateTimeWritable.ofDateTime(LocalDateTime.MIN);
     public static final DateTimeWritable MAX = DateTimeWritable.ofDateTime(LocalDateTime.MAX);
 
+    static {
+        // register raw comparator
+        WritableComparator.define(DateTimeWritable.class, new Comparator(DateTimeWritable.class));
+    }
+
     public DateTimeWritable() {
         super();
     }
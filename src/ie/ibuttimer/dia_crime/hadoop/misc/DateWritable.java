@@ -23,6 +23,8 @@
 
 package ie.ibuttimer.dia_crime.hadoop.misc;
 
+import org.apache.hadoop.io.WritableComparator;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -40,6 +42,11 @@ public class DateWritable extends AbstractDateTimeWritable<DateWritable> {
     public static final DateWritable MIN = DateWritable.ofDate(LocalDate.MIN);
     public static final DateWritable MAX = DateWritable.ofDate(LocalDate.MAX);
 
+    static {
+        // register raw comparator
+        WritableComparator.define(DateWritable.class, new Comparator(DateWritable.class));
+    }
+
     public DateWritable() {
         super();
         setOutputFormatter(DateTimeFormatter.ISO_LOCAL_DATE);
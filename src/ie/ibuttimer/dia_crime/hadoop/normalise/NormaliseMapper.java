@@ -27,12 +27,15 @@ import ie.ibuttimer.dia_crime.hadoop.AbstractCsvMapper;
 import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
 import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
 import ie.ibuttimer.dia_crime.hadoop.ITagger;
-import ie.ibuttimer.dia_crime.hadoop.io.FileReader;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
 import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import ie.ibuttimer.dia_crime.hadoop.regression.PackedRegressionWritable;
+import ie.ibuttimer.dia_crime.hadoop.regression.RegressionSchema;
 import ie.ibuttimer.dia_crime.hadoop.regression.RegressionWritable;
 import ie.ibuttimer.dia_crime.hadoop.stats.NameTag;
 import ie.ibuttimer.dia_crime.hadoop.stats.StatsConfigReader;
+import ie.ibuttimer.dia_crime.hadoop.stats.StatsIndex;
+import ie.ibuttimer.dia_crime.misc.LazyRecord;
 import ie.ibuttimer.dia_crime.misc.Value;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
@@ -42,18 +45,16 @@ import org.apache.hadoop.io.Text;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static ie.ibuttimer.dia_crime.hadoop.merge.MergeReducer.*;
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.COMMA;
 import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
-import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
 
 /**
  * Statistics mapper that outputs property value, property value squared and, property product values
  * - input key : file line number
- * - input value : file line text
+ * - input value : file line text, or typed columnar row
  * - output key : date
  * - output value : normalised file line text
  */
@@ -65,9 +66,13 @@ public class NormaliseMapper extends AbstractCsvMapper<DateWritable, RegressionW
 
     private List<String> variables;
 
+    private LazyRecord record;
+
     private Map<String, Double> stats;
 
-    private final RegressionWritable<String, Value> valuesOut = new RegressionWritable<>();
+    private RegressionSchema schema;
+
+    private RegressionWritable<String, Value> valuesOut;
     private final Map<DateWritable, RegressionWritable<String, Value>> outputList = new TreeMap<>();
 
     private boolean wroteTypes;
@@ -86,6 +91,10 @@ public class NormaliseMapper extends AbstractCsvMapper<DateWritable, RegressionW
 
         variables = cfgReader.readVariables(conf);
         outputTypes = cfgReader.readOutputTypes(conf);
+        record = LazyRecord.of(outputTypes.keySet());
+
+        schema = RegressionSchema.forConf(conf);
+        valuesOut = PackedRegressionWritable.of(schema);
 
         stats = readStats(cfgReader.getConfigProperty(conf, STATS_INPUT_PATH_PROP), conf,
             List.of(NameTag.MIN, NameTag.MAX), variables);
@@ -127,28 +136,24 @@ public class NormaliseMapper extends AbstractCsvMapper<DateWritable, RegressionW
                 total:1143, weather_description:sky is clear, weather_id:800, weather_main:Clear, wind_deg:277,
                 wind_speed:4.224999
              */
-            Pair<String, String> hKeyVal = HADOOP_KEY_VAL.destringifyElement(value.toString());
-            Pair<Boolean, LocalDate> filterRes = getDateAndFilter(hKeyVal.getLeft());
+            record.reset(value);
+            Pair<Boolean, LocalDate> filterRes = getDateAndFilter(record.getKey());
             if (filterRes.getLeft()) {
                 outputList.clear();
                 valuesOut.clear();
 
-                Map<String, String> map = MAP_STRINGIFIER.mapify(hKeyVal.getRight());
-
                 // load the result with current values
 
-                DateWritable outKey = DateWritable.ofDate(hKeyVal.getLeft(), getKeyOutDateTimeFormatter());
+                DateWritable outKey = DateWritable.ofDate(record.getKey(), getKeyOutDateTimeFormatter());
 
-                map.forEach((key1, value1) ->
-                    outputTypes.entrySet().stream()
-                        .filter(es -> es.getKey().equals(key1))
-                        .findFirst()
-                        .ifPresent(es -> {
-                            String name = es.getKey();
-                            Class<?> cls = es.getValue().getCls();
+                for (int i = 0; i < record.size(); i++) {
+                    if (record.has(i)) {
+                        String name = record.getField(i);
+                        Class<?> cls = outputTypes.get(name).getCls();
 
-                            valuesOut.put(name, Value.of(value1, cls, getDateTimeFormatter(), getLogger()));
-                        }));
+                        valuesOut.put(name, record.getValue(i, cls, null, getDateTimeFormatter(), getLogger()));
+                    }
+                }
 
                 // read and normalise the variables
                 variables.forEach(var -> {
@@ -180,7 +185,7 @@ public class NormaliseMapper extends AbstractCsvMapper<DateWritable, RegressionW
                 outputList.put(outKey, valuesOut);
 
                 if (!wroteTypes) {
-                    RegressionWritable<String, Value> types = new RegressionWritable<>();
+                    RegressionWritable<String, Value> types = PackedRegressionWritable.of(schema);
 
                     // set class names in 'types'
                     outputTypes.forEach((key1, value1) -> {
@@ -222,26 +227,11 @@ public class NormaliseMapper extends AbstractCsvMapper<DateWritable, RegressionW
      * @return
      */
     protected Map<String, Double> readStats(String statsPath, Configuration conf, List<NameTag> tags, List<String> prefixes) {
-        FileReader fileReader = new FileReader(statsPath, conf);
         Map<String, Double> stats = new HashMap<>();
-
-        List<String> tagRegex = tags.stream()
-            .map(t -> t.getKeyTag("\\w+") + ".*")
-            .collect(Collectors.toList());
-
         try {
-            List<String> allStats = fileReader.open()
-                .getAllLines(l -> tagRegex.stream().anyMatch(l::matches));
-            allStats.stream()
-                .filter(l -> prefixes.stream().anyMatch(Objects.requireNonNull(l)::startsWith))
-                .forEach(l -> {
-                    Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(l);
-                    stats.put(keyVal.getLeft(), Double.parseDouble(keyVal.getRight()));
-                });
+            stats.putAll(StatsIndex.load(statsPath, conf).getDoubles(tags, prefixes));
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            fileReader.close();
         }
         return stats;
     }
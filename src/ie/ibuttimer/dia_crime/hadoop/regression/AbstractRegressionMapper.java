@@ -27,8 +27,6 @@ import ie.ibuttimer.dia_crime.hadoop.AbstractCsvMapper;
 import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
 import ie.ibuttimer.dia_crime.hadoop.ITagger;
 import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
-import ie.ibuttimer.dia_crime.hadoop.io.FileReader;
-import ie.ibuttimer.dia_crime.hadoop.stats.NameTag;
 import ie.ibuttimer.dia_crime.hadoop.stats.StatsConfigReader;
 import ie.ibuttimer.dia_crime.misc.*;
 import org.apache.commons.lang3.tuple.Pair;
@@ -50,13 +48,12 @@ import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
 /**
  * Base regression mapper class
  * - input key : csv file line number
- * - input value : csv file line text
- * - output value : RegressionWritable containing individual values
+ * - input value : csv file line text, or typed columnar row
+ * - output value : regression values
  * @param <K>   output key type
- * @param <R>   output key type of RegressionWritable
- * @param <V>   output value type of RegressionWritable
+ * @param <V>   output value type
  */
-public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends AbstractCsvMapper<K, RegressionWritable<R, V>> {
+public abstract class AbstractRegressionMapper<K, V extends Writable> extends AbstractCsvMapper<K, V> {
 
     public static final String REGRESSOR = "regressor";
 
@@ -66,10 +63,14 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
 
     protected Map<String, IOutputType.OpTypeEntry> outputTypes;
 
-    protected Map<String, Double> counts;
-
     protected LinearRegressor regressor;
 
+    protected RegressionSchema schema;
+
+    /** Reader for the variables in an input line, and their classes by field index */
+    private LazyRecord record;
+    private Class<?>[] recordClasses;
+
     @Override
     @SuppressWarnings("unchecked")
     protected void setup(Context context) throws IOException, InterruptedException {
@@ -83,6 +84,8 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
         Configuration conf = context.getConfiguration();
         StatsConfigReader cfgReader = new StatsConfigReader(mapperCfg);
 
+        schema = RegressionSchema.forConf(conf);
+
         // TODO numeric variables added to config, unnecessary setting properties file, but need a better way
         conf.set(getMapperCfg().getPropertyPath(VARIABLES_PROP), VARIABLES_NUMERIC);
         outputTypes = cfgReader.readOutputTypes(conf);
@@ -96,12 +99,91 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
         allVariables = new ArrayList<>(independents);
         allVariables.add(dependent);
 
-        counts = readCounts(getConfigProperty(conf, STATS_INPUT_PATH_PROP, getMapperCfg()), conf, independents);
+        List<String> fields = outputTypes.keySet().stream()
+            .filter(allVariables::contains)
+            .collect(Collectors.toList());
+        record = LazyRecord.of(fields);
+        recordClasses = fields.stream()
+            .map(name -> outputTypes.get(name).getCls())
+            .toArray(Class<?>[]::new);
     }
 
     public static final String WEIGHT_SEPARATOR = "/";
     public static final String WEIGHT_KV_SEPARATOR = "=";
 
+    /** Model id used when not sweeping */
+    public static final int NO_MODEL = -1;
+    public static final String MODEL_KEY_SEPARATOR = "-m";
+
+    /**
+     * Get the reduce key for a sweep model
+     * @param epoch     Epoch number
+     * @param model     Model id
+     * @return  key
+     */
+    public static String getModelKey(String epoch, int model) {
+        return (model == NO_MODEL ? epoch : epoch + MODEL_KEY_SEPARATOR + model);
+    }
+
+    /**
+     * Split a reduce key into epoch and model id
+     * @param key   Key
+     * @return  Pair of epoch and model id, which is NO_MODEL if not a sweep model key
+     */
+    public static Pair<String, Integer> splitModelKey(String key) {
+        Pair<String, Integer> split;
+        int index = key.lastIndexOf(MODEL_KEY_SEPARATOR);
+        if (index > 0) {
+            split = Pair.of(key.substring(0, index),
+                Integer.parseInt(key.substring(index + MODEL_KEY_SEPARATOR.length())));
+        } else {
+            split = Pair.of(key, NO_MODEL);
+        }
+        return split;
+    }
+
+    /**
+     * Get the setting string for a sweep model
+     * @param weights       Weights
+     * @param bias          Bias
+     * @param learningRate  Learning rate
+     * @return  setting
+     */
+    public static String getSweepModelSetting(String weights, String bias, String learningRate) {
+        Map<String, String> setting = new HashMap<>();
+        setting.put(WEIGHT_PROP, weights);
+        setting.put(BIAS_PROP, bias);
+        setting.put(LEARNING_RATE_PROP, learningRate);
+        return MAP_STRINGIFIER.stringify(setting);
+    }
+
+    /**
+     * Read the regressors for the active sweep models
+     * @param conf      Current configuration
+     * @param cfgReader Configuration reader
+     * @return  Map of model id to regressor, empty if not sweeping
+     */
+    public static Map<Integer, LinearRegressor> getSweepRegressors(Configuration conf, ConfigReader cfgReader) {
+        Map<Integer, LinearRegressor> regressors = new TreeMap<>();
+        String models = cfgReader.getConfigProperty(conf, SWEEP_MODELS_PROP, "");
+        if (!models.isEmpty()) {
+            MapStringifier weightStringifier = MapStringifier.of(WEIGHT_SEPARATOR, WEIGHT_KV_SEPARATOR);
+            Arrays.stream(models.split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .forEach(model -> {
+                    Map<String, String> setting = MAP_STRINGIFIER.mapify(
+                        cfgReader.getConfigProperty(conf, SWEEP_MODEL_PROP_PREFIX + model));
+
+                    regressors.put(model, new LinearRegressor(
+                        stringToDoubleMap(weightStringifier.mapify(setting.get(WEIGHT_PROP))),
+                        Double.parseDouble(setting.get(BIAS_PROP)),
+                        Double.parseDouble(setting.get(LEARNING_RATE_PROP))));
+                });
+        }
+        return regressors;
+    }
+
     /**
      * Read regression setup
      * @param conf
@@ -158,7 +240,8 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
     }
 
     /**
-     * Filter an input line, checking header and comments
+     * Filter an input line, checking header and comments. The values of a line which passes are read for
+     * {@link #collectValues()}.
      * @param key
      * @param value
      * @param context
@@ -167,11 +250,11 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
     public FilterResult filter(LongWritable key, Text value, Context context) {
         FilterResult filterRes = null;
         if (!skipHeader(key)) {
-            Pair<String, String> hKeyVal = HADOOP_KEY_VAL.destringifyElement(value.toString());
             boolean pass = !skipComment(value);
             if (!pass) {
                 // verify parameters specified in input file
                 ICsvMapperCfg cfg = getMapperCfg();
+                Pair<String, String> hKeyVal = HADOOP_KEY_VAL.destringifyElement(value.toString());
 
                 cfg.verifyTags(context.getConfiguration(), cfg, hKeyVal.getRight(), ITagger.DateRangeMode.WITHIN);
                 /* 2001-01-02	02:3, 03:35, 04A:15, 04B:21, 05:68, 06:221, 07:65, 08A:51, 08B:122, 10:9, 11:65, 12:2, 13:2,
@@ -186,8 +269,11 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
                     total:1143, weather_description:sky is clear, weather_id:800, weather_main:Clear, wind_deg:277,
                     wind_speed:4.224999
                  */
+                filterRes = new FilterResult(false, hKeyVal.getLeft());     // don't pass comment
+            } else {
+                record.reset(value);
+                filterRes = new FilterResult(true, record.getKey());
             }
-            filterRes = new FilterResult(pass, hKeyVal.getLeft(), hKeyVal.getRight()); // don't pass comment
         }
         if (filterRes == null) {
             filterRes = FilterResult.FAIL;
@@ -206,61 +292,29 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
         FilterResult filterRes = filter(key, value, context);
         if (filterRes.pass) {
             Pair<Boolean, LocalDate> dateFilter = getDateAndFilter(filterRes.key);
-            filterRes = new FilterResult(dateFilter.getLeft(), dateFilter.getRight(), filterRes.value);
+            filterRes = new FilterResult(dateFilter.getLeft(), dateFilter.getRight());
         }
         return filterRes;
     }
 
 
-    protected RegressionWritable<String, Value> collectValues(String value) {
-        RegressionWritable<String, Value> entry = new RegressionWritable<>();
-
-        Map<String, String> map = MAP_STRINGIFIER.mapify(value);
+    /**
+     * Collect the values of the line last passed by {@link #filter(LongWritable, Text, Context)}
+     * @return  values
+     */
+    protected RegressionWritable<String, Value> collectValues() {
+        RegressionWritable<String, Value> entry = PackedRegressionWritable.of(schema);
 
         // collect the value for each property
-        outputTypes.entrySet().stream()
-            .filter(es -> allVariables.stream().anyMatch(v -> v.equals(es.getKey())))
-            .forEach(es -> {
-                String name = es.getKey();
-                Class<?> cls = es.getValue().getCls();
-                String readValue = map.getOrDefault(name, Value.getDefaultValueStr(cls));
-
-                Value wrapped = Value.of(readValue, cls, getDateTimeFormatter(), getLogger());
+        for (int i = 0; i < record.size(); i++) {
+            Class<?> cls = recordClasses[i];
+            Value wrapped = record.getValue(i, cls, Value.getDefaultValueStr(cls), getDateTimeFormatter(), getLogger());
 
-                entry.put(name, wrapped);
-            });
-        return entry;
-    }
-
-    /**
-     * Read the feature counts from the stats output
-     * @param statsPath
-     * @param conf
-     * @param prefixes
-     * @return
-     */
-    protected Map<String, Double> readCounts(String statsPath, Configuration conf, List<String> prefixes) {
-        FileReader fileReader = new FileReader(statsPath, conf);
-        Map<String, Double> counts = new HashMap<>();
-
-        try {
-            List<String> allCounts = fileReader.open()
-                .getAllLines(l -> l.matches(NameTag.CNT.getKeyTag("\\w+") + ".*"));
-            allCounts.stream()
-                .filter(l -> prefixes.stream().anyMatch(Objects.requireNonNull(l)::startsWith))
-                .forEach(l -> {
-                    Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(l);
-                    counts.put(NameTag.splitKeyTag(keyVal.getLeft()).getLeft(), Double.parseDouble(keyVal.getRight()));
-                });
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            fileReader.close();
+            entry.put(record.getField(i), wrapped);
         }
-        return counts;
+        return entry;
     }
 
-
     protected static class RegressionMapperCfg extends AbstractCsvMapperCfg {
 
         private static final Property trainPathProp = Property.of(TRAIN_OUTPUT_PATH_PROP, "path to output training file", "");
@@ -359,24 +413,21 @@ public abstract class AbstractRegressionMapper<K, R, V extends Writable> extends
         boolean pass;
         LocalDate date;
         String key;
-        String value;
 
         public FilterResult() {
-            this(false, (String)null, null);
+            this(false, (String)null);
         }
 
-        public FilterResult(boolean pass, String key, String value) {
+        public FilterResult(boolean pass, String key) {
             this.pass = pass;
             this.date = null;
             this.key = key;
-            this.value = value;
         }
 
-        public FilterResult(boolean pass, LocalDate date, String value) {
+        public FilterResult(boolean pass, LocalDate date) {
             this.pass = pass;
             this.date = date;
             this.key = null;
-            this.value = value;
         }
 
         static final FilterResult FAIL = new FilterResult();
@@ -35,6 +35,7 @@ import java.util.Map;
 
 import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.REGRESSOR;
 import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.getRegressionSetup;
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.getSweepRegressors;
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 
 /**
@@ -50,6 +51,7 @@ public abstract class AbstractRegressionReducer<KI, VI, KO, VO> extends Abstract
     protected String dependent;
 
     protected LinearRegressor regressor;
+    protected Map<Integer, LinearRegressor> sweepRegressors;
 
     @Override
     @SuppressWarnings("unchecked")
@@ -70,6 +72,8 @@ public abstract class AbstractRegressionReducer<KI, VI, KO, VO> extends Abstract
         dependent = (String) regressionSetup.get(DEPENDENT_PROP);
         regressor = (LinearRegressor) regressionSetup.get(REGRESSOR);
 
+        sweepRegressors = getSweepRegressors(conf, cfgReader);
+
         List<String> missing = regressor.getMissingCoefficients(independents);
         if (missing.size() > 0) {
             throw new IllegalArgumentException("Missing weight setting for " + missing);
@@ -0,0 +1,380 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractCsvMapper;
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
+import ie.ibuttimer.dia_crime.hadoop.io.ILineReader;
+import ie.ibuttimer.dia_crime.hadoop.stats.StatsConfigReader;
+import ie.ibuttimer.dia_crime.misc.*;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.*;
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+
+/**
+ * In-process gradient descent for linear regression.
+ * The training set is loaded once into column-major primitive arrays, and each epoch is calculated in parallel
+ * over blocks of rows. The results of an epoch are equivalent to a RegressionTrainMapper/RegressionTrainReducer job.
+ */
+public class GradientDescentEngine {
+
+    private static final Logger logger = Logger.getLogger(GradientDescentEngine.class);
+
+    private static final int BLOCK_SIZE = 4096;
+
+    private final List<String> independents;
+    private final double[][] x;     // x[independent][row]
+    private final double[] y;
+    private final int rows;
+    private final double learningRate;
+    private final Optimiser optimiser;
+
+    private final double[] weights;
+    private double bias;
+
+    private final Random random;     // mini-batch row order
+
+    private GradientDescentEngine(List<String> independents, double[][] x, double[] y, int rows,
+                                  double[] weights, double bias, Optimiser optimiser) {
+        this.independents = independents;
+        this.x = x;
+        this.y = y;
+        this.rows = rows;
+        this.weights = weights;
+        this.bias = bias;
+        this.learningRate = optimiser.getLearningRate();
+        this.optimiser = optimiser;
+        this.random = new Random(rows);
+    }
+
+    /**
+     * Load the training set as per the configuration of the regression section
+     * @param conf      Configuration
+     * @param maxBytes  Maximum memory to use for the training set
+     * @return  Engine or empty if the training set exceeds the memory limit
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static Optional<GradientDescentEngine> load(Configuration conf, long maxBytes) throws IOException {
+
+        ICsvMapperCfg mapperCfg = RegressionTrainMapper.getClsCsvMapperCfg();
+        Configuration confLocal = new Configuration(conf);
+        StatsConfigReader cfgReader = new StatsConfigReader(mapperCfg);
+
+        // same variable setup as AbstractRegressionMapper
+        confLocal.set(mapperCfg.getPropertyPath(VARIABLES_PROP), VARIABLES_NUMERIC);
+        Map<String, IOutputType.OpTypeEntry> outputTypes = cfgReader.readOutputTypes(confLocal);
+
+        Map<String, Object> regressionSetup = getRegressionSetup(confLocal, cfgReader, mapperCfg,
+            new DebugLevel.AbstractDebuggable(DebugLevel.getSetting(confLocal, mapperCfg)) {});
+        List<String> independents = (List<String>) regressionSetup.get(INDEPENDENTS_PROP);
+        String dependent = (String) regressionSetup.get(DEPENDENT_PROP);
+        Map<String, Double> coefficients = (Map<String, Double>) regressionSetup.get(WEIGHT_PROP);
+
+        boolean hasHeader = confLocal.getBoolean(mapperCfg.getPropertyPath(HAS_HEADER_PROP),
+                                                    AbstractCsvMapper.DEFAULT_HAS_HEADER);
+        DateTimeFormatter formatter = cfgReader.getDateTimeFormatter(confLocal, DATE_FORMAT_PROP,
+                                                    DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        DateFilter dateFilter = new DateFilter(cfgReader.getConfigProperty(confLocal, FILTER_START_DATE_PROP, ""),
+                                                cfgReader.getConfigProperty(confLocal, FILTER_END_DATE_PROP, ""));
+
+        int numCols = independents.size() + 1;  // independents plus dependent
+        int dependentCol = independents.size();
+        List<Pair<Integer, Class<?>>> columns = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int col = 0; col < numCols; col++) {
+            String name = (col < dependentCol ? independents.get(col) : dependent);
+            IOutputType.OpTypeEntry typeEntry = outputTypes.get(name);
+            if (typeEntry == null) {
+                throw new IllegalStateException("No numeric output type for '" + name + "'");
+            }
+            columns.add(Pair.of(col, typeEntry.getCls()));
+            names.add(name);
+        }
+
+        LazyRecord record = LazyRecord.of(names);
+        int[] indices = names.stream().mapToInt(record::indexOf).toArray();
+
+        double[][] data = new double[numCols][BLOCK_SIZE];
+        int rows = 0;
+        boolean fits = true;
+
+        Path inPath = new Path(cfgReader.getConfigProperty(confLocal, IN_PATH_PROP));
+        FileSystem fs = inPath.getFileSystem(confLocal);
+        for (Path file : listInputFiles(fs, inPath)) {
+            try (ILineReader reader = ILineReader.open(fs, file, names)) {
+
+                boolean first = true;
+                String line;
+                while (fits && ((line = reader.readLine()) != null)) {
+                    boolean skip = (first && hasHeader) || line.startsWith(COMMENT_PREFIX);
+                    first = false;
+                    if (skip) {
+                        continue;
+                    }
+
+                    Pair<String, String> hKeyVal = HADOOP_KEY_VAL.destringifyElement(line);
+                    LocalDate date = Utils.getDate(hKeyVal.getLeft(), formatter, logger);
+                    if (!dateFilter.filter(date)) {
+                        continue;
+                    }
+
+                    if (rows == data[0].length) {
+                        long bytes = (long) rows * 2 * numCols * Double.BYTES;
+                        if (bytes > maxBytes) {
+                            fits = false;
+                            break;
+                        }
+                        for (int col = 0; col < numCols; col++) {
+                            data[col] = Arrays.copyOf(data[col], rows * 2);
+                        }
+                    }
+
+                    // same value conversion as AbstractRegressionMapper.collectValues()
+                    record.reset(hKeyVal.getRight());
+                    for (Pair<Integer, Class<?>> column : columns) {
+                        Class<?> cls = column.getRight();
+                        String readValue = record.getOrDefault(indices[column.getLeft()], Value.getDefaultValueStr(cls));
+                        data[column.getLeft()][rows] = Value.of(readValue, cls, formatter, logger).doubleValue();
+                    }
+                    ++rows;
+                }
+            }
+            if (!fits) {
+                break;
+            }
+        }
+
+        Optional<GradientDescentEngine> engine;
+        if (fits) {
+            double[][] x = new double[dependentCol][];
+            for (int col = 0; col < dependentCol; col++) {
+                x[col] = data[col];
+            }
+
+            double[] weights = new double[independents.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = coefficients.get(independents.get(i));
+            }
+
+            engine = Optional.of(new GradientDescentEngine(independents, x, data[dependentCol], rows,
+                weights, (Double) regressionSetup.get(BIAS_PROP),
+                Optimiser.of(confLocal, cfgReader, (Double) regressionSetup.get(LEARNING_RATE_PROP))));
+        } else {
+            logger.info(String.format("Training set exceeds in-memory limit of %d bytes", maxBytes));
+            engine = Optional.empty();
+        }
+        return engine;
+    }
+
+    private static List<Path> listInputFiles(FileSystem fs, Path inPath) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (fs.getFileStatus(inPath).isDirectory()) {
+            for (FileStatus status : fs.listStatus(inPath)) {
+                String name = status.getPath().getName();
+                if (status.isFile() && !name.startsWith("_") && !name.startsWith(".")) {
+                    files.add(status.getPath());
+                }
+            }
+            files.sort(Comparator.naturalOrder());
+        } else {
+            files.add(inPath);
+        }
+        return files;
+    }
+
+    /**
+     * Partial gradient sums for a block of rows
+     */
+    private static class Partial {
+        final double[] pdWeight;
+        double pdBias;
+        double sqError;
+
+        Partial(int numIndependents) {
+            pdWeight = new double[numIndependents];
+        }
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < pdWeight.length; i++) {
+                pdWeight[i] += other.pdWeight[i];
+            }
+            pdBias += other.pdBias;
+            sqError += other.sqError;
+            return this;
+        }
+    }
+
+    private Partial calcBlock(int block) {
+        int start = block * BLOCK_SIZE;
+        int end = Math.min(start + BLOCK_SIZE, rows);
+        int len = end - start;
+
+        // error for each row: ei = ((weight * xi) + bias) - yi
+        double[] error = new double[len];
+        Arrays.fill(error, bias);
+        for (int col = 0; col < weights.length; col++) {
+            double weight = weights[col];
+            double[] column = x[col];
+            for (int r = 0; r < len; r++) {
+                error[r] += weight * column[start + r];
+            }
+        }
+
+        Partial partial = new Partial(weights.length);
+        for (int r = 0; r < len; r++) {
+            double ei = error[r] - y[start + r];
+            error[r] = ei;
+            partial.pdBias += ei;
+            partial.sqError += ei * ei;
+        }
+        for (int col = 0; col < weights.length; col++) {
+            double[] column = x[col];
+            double sum = 0;
+            for (int r = 0; r < len; r++) {
+                sum += column[start + r] * error[r];
+            }
+            partial.pdWeight[col] = sum;
+        }
+        return partial;
+    }
+
+    /**
+     * Run an epoch, updating the weights and bias
+     * @return  Map of the updated weights, bias and cost of the weights prior to update, in the same format as
+     *          RegressionTrainReducer output
+     */
+    public Map<String, String> epoch() {
+        return (optimiser.isMiniBatch() ? miniBatchEpoch() : batchEpoch());
+    }
+
+    private Map<String, String> batchEpoch() {
+        int blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        Partial total = IntStream.range(0, blocks)
+            .parallel()
+            .mapToObj(this::calcBlock)
+            .reduce(Partial::merge)
+            .orElseGet(() -> new Partial(weights.length));
+
+        double cost = total.sqError / (2 * (long) rows);
+
+        // subtract because the derivatives point in direction of steepest ascent
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] -= ((total.pdWeight[i] / rows) * learningRate);
+        }
+        bias -= ((total.pdBias / rows) * learningRate);
+
+        return getResult(cost);
+    }
+
+    /**
+     * Run an epoch of mini-batch updates over the rows in random order. The optimiser history is retained between
+     * epochs.
+     * @return  Map of the updated weights, bias and running cost of the epoch
+     */
+    private Map<String, String> miniBatchEpoch() {
+        int[] order = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            order[r] = r;
+        }
+        for (int r = rows - 1; r > 0; r--) {
+            int swap = random.nextInt(r + 1);
+            int tmp = order[r];
+            order[r] = order[swap];
+            order[swap] = tmp;
+        }
+
+        MiniBatchTrainer trainer = new MiniBatchTrainer(weights, bias, optimiser);
+        double[] xi = new double[weights.length];
+        for (int row : order) {
+            for (int col = 0; col < xi.length; col++) {
+                xi[col] = x[col][row];
+            }
+            trainer.accumulate(xi, y[row]);
+        }
+        trainer.flush();
+
+        System.arraycopy(trainer.getWeights(), 0, weights, 0, weights.length);
+        bias = trainer.getBias();
+
+        return getResult(trainer.getSqError() / (2 * (long) rows));
+    }
+
+    private Map<String, String> getResult(double cost) {
+        Map<String, Double> updated = new HashMap<>();
+        for (int i = 0; i < weights.length; i++) {
+            updated.put(independents.get(i), weights[i]);
+        }
+
+        Map<String, String> result = new HashMap<>();
+        result.put(WEIGHT_PROP, MapStringifier.of(WEIGHT_SEPARATOR, WEIGHT_KV_SEPARATOR).stringify(updated));
+        result.put(BIAS_PROP, Double.toString(bias));
+        result.put(RegressionTrainReducer.COST, Double.toString(cost));
+        return result;
+    }
+
+    /**
+     * Get an engine which shares the training set of this engine, starting from the current weights and bias of this
+     * engine but with a different learning rate
+     * @param learningRate  Learning rate
+     * @return  New engine
+     */
+    public GradientDescentEngine withLearningRate(double learningRate) {
+        return new GradientDescentEngine(independents, x, y, rows, weights.clone(), bias,
+            optimiser.withLearningRate(learningRate));
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    @Override
+    public String toString() {
+        return "GradientDescentEngine{" +
+            "independents=" + independents +
+            ", rows=" + rows +
+            ", bias=" + bias +
+            ", optimiser=" + optimiser +
+            '}';
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable partial sums of the gradient descent terms for a set of training rows.
+ * Holds the sum of the weight partial derivatives (indexed as per the independents), the sum of the bias partial
+ * derivatives, the sum of squared errors and the row count, all of which may be merged in any order, so partials
+ * may be combined map-side before the shuffle.
+ */
+public class GradientPartial implements Writable {
+
+    private double[] pdWeight;
+    private double pdBias;
+    private double sqError;
+    private long count;
+
+    // Default constructor to allow (de)serialization
+    public GradientPartial() {
+        this(0);
+    }
+
+    public GradientPartial(int numIndependents) {
+        pdWeight = new double[numIndependents];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(pdWeight, 0.0);
+        pdBias = 0.0;
+        sqError = 0.0;
+        count = 0;
+    }
+
+    /**
+     * Accumulate a training row
+     * @param xi    Independent values, indexed as per the independents
+     * @param ei    Error for the row, i.e. prediction minus actual
+     */
+    public void accumulate(double[] xi, double ei) {
+        ensureSize(xi.length);
+        for (int i = 0; i < xi.length; i++) {
+            pdWeight[i] += xi[i] * ei;
+        }
+        pdBias += ei;
+        sqError += ei * ei;
+        ++count;
+    }
+
+    /**
+     * Merge another partial into this partial
+     * @param other     Partial to merge
+     */
+    public void merge(GradientPartial other) {
+        ensureSize(other.pdWeight.length);
+        for (int i = 0; i < other.pdWeight.length; i++) {
+            pdWeight[i] += other.pdWeight[i];
+        }
+        pdBias += other.pdBias;
+        sqError += other.sqError;
+        count += other.count;
+    }
+
+    private void ensureSize(int size) {
+        if (pdWeight.length < size) {
+            pdWeight = Arrays.copyOf(pdWeight, size);
+        }
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        WritableUtils.writeVLong(dataOutput, count);
+        WritableUtils.writeVInt(dataOutput, pdWeight.length);
+        for (double value : pdWeight) {
+            dataOutput.writeDouble(value);
+        }
+        dataOutput.writeDouble(pdBias);
+        dataOutput.writeDouble(sqError);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        count = WritableUtils.readVLong(dataInput);
+        int size = WritableUtils.readVInt(dataInput);
+        if (pdWeight.length != size) {
+            pdWeight = new double[size];
+        }
+        for (int i = 0; i < size; i++) {
+            pdWeight[i] = dataInput.readDouble();
+        }
+        pdBias = dataInput.readDouble();
+        sqError = dataInput.readDouble();
+    }
+
+    /**
+     * Get the sum of the weight partial derivative for an independent
+     * @param index     Index of independent
+     * @return  sum
+     */
+    public double getPdWeight(int index) {
+        return (index < pdWeight.length ? pdWeight[index] : 0.0);
+    }
+
+    public double getPdBias() {
+        return pdBias;
+    }
+
+    public double getSqError() {
+        return sqError;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "GradientPartial{" +
+            "pdWeight=" + Arrays.toString(pdWeight) +
+            ", pdBias=" + pdBias +
+            ", sqError=" + sqError +
+            ", count=" + count +
+            '}';
+    }
+}
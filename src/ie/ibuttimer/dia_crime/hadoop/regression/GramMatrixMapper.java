@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+
+/**
+ * Regression mapper for closed-form model generation, which accumulates the normal equation terms for all rows seen
+ * by the mapper
+ * - input key : csv file line number
+ * - input value : csv file line text, or typed columnar row
+ * - output key : GRAM_KEY
+ * - output value : GramPartial containing the normal equation terms sums
+ */
+public class GramMatrixMapper extends AbstractRegressionMapper<Text, GramPartial> {
+
+    public static final String GRAM_KEY = "gram";
+
+    private Counters.MapperCounter counter;
+
+    private GramPartial partial;
+    private double[] xiValues;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+
+        counter = getCounter(context, CountersEnum.REGRESSION_MAPPER_COUNT);
+
+        partial = new GramPartial(independents.size());
+        xiValues = new double[independents.size()];
+    }
+
+    /**
+     * Map lines from file
+     * @param key       Key; line number
+     * @param value     Text for specified line in file
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+
+        FilterResult filterRes = filterDate(key, value, context);
+        if (filterRes.pass) {
+            // collect the value for each property
+            RegressionWritable<String, Value> entry = collectValues();
+
+            double yi = entry.getProperty(dependent).doubleValue();
+            for (int i = 0; i < xiValues.length; i++) {
+                xiValues[i] = entry.getProperty(independents.get(i)).doubleValue();
+            }
+
+            partial.accumulate(xiValues, yi);
+
+            counter.increment();
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        // one partial per mapper
+        if (!partial.isEmpty()) {
+            context.write(new Text(GRAM_KEY), partial);
+        }
+    }
+
+    @Override
+    public ICsvMapperCfg getMapperCfg() {
+        return RegressionTrainMapper.getClsCsvMapperCfg();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.util.List;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Reducer for closed-form regression, which sums the normal equation terms. The model is solved by the driver, see
+ * NormalEquationSolver.
+ * - input key : GRAM_KEY
+ * - input value : GramPartial containing partial normal equation sums
+ * - output key : GRAM_KEY
+ * - output value : the normal equation sums, see GramPartial.stringify()
+ */
+public class GramMatrixReducer extends AbstractRegressionReducer<Text, GramPartial, Text, Text> {
+
+    private Counters.ReducerCounter counter;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        setSection(REGRESSION_PROP_SECTION);
+
+        super.setup(context);
+
+        counter = getCounter(context, CountersEnum.REGRESSION_REDUCER_COUNT);
+    }
+
+    @Override
+    protected void reduce(Text key, Iterable<GramPartial> values, Context context) throws IOException, InterruptedException {
+
+        addOutputHeader(context, counter, List.of(TRAIN_START_DATE_PROP, TRAIN_END_DATE_PROP), List.of());
+
+        GramPartial summed = new GramPartial(independents.size());
+
+        values.forEach(partial -> {
+            summed.merge(partial);
+
+            counter.increment();
+        });
+
+        if (show(DebugLevel.MEDIUM)) {
+            getLogger().info(key.toString() + " " + summed.toString());
+        }
+
+        context.write(key, new Text(summed.stringify()));
+    }
+
+    @Override
+    protected Text newKey(String key) {
+        return new Text(key);
+    }
+
+    @Override
+    protected Text newValue(String value) {
+        return new Text(value);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_SEPARATOR;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Mergeable partial sums of the normal equation terms, X'X and X'y, for a set of training rows.
+ * The rows of X are augmented with a trailing constant 1, so the last term of the solution is the bias. As X'X is
+ * symmetric, only the upper triangle is stored.
+ */
+public class GramPartial implements Writable {
+
+    private static final String COUNT = "count";
+    private static final String XTX = "xtx";
+    private static final String XTY = "xty";
+    private static final String YTY = "yty";
+
+    private int size;       // number of independents plus 1 for bias
+    private double[] xtx;   // upper triangle of X'X, row major
+    private double[] xty;
+    private double yty;
+    private long count;
+
+    // Default constructor to allow (de)serialization
+    public GramPartial() {
+        this(0);
+    }
+
+    public GramPartial(int numIndependents) {
+        setSize(numIndependents + 1);
+    }
+
+    private void setSize(int size) {
+        this.size = size;
+        this.xtx = new double[triangleSize(size)];
+        this.xty = new double[size];
+        clear();
+    }
+
+    private static int triangleSize(int size) {
+        return size * (size + 1) / 2;
+    }
+
+    private int index(int row, int col) {
+        return (row * size) - (row * (row - 1) / 2) + (col - row);
+    }
+
+    public void clear() {
+        Arrays.fill(xtx, 0.0);
+        Arrays.fill(xty, 0.0);
+        yty = 0.0;
+        count = 0;
+    }
+
+    /**
+     * Accumulate a training row
+     * @param xi    Independent values, indexed as per the independents
+     * @param yi    Dependent value
+     */
+    public void accumulate(double[] xi, double yi) {
+        if (size != xi.length + 1) {
+            throw new IllegalArgumentException("Expected " + (size - 1) + " independents but got " + xi.length);
+        }
+        int bias = size - 1;
+        int k = 0;
+        for (int i = 0; i < bias; i++) {
+            double xii = xi[i];
+            for (int j = i; j < bias; j++) {
+                xtx[k++] += xii * xi[j];
+            }
+            xtx[k++] += xii;    // bias column
+            xty[i] += xii * yi;
+        }
+        xtx[k] += 1.0;          // bias row & column
+        xty[bias] += yi;
+        yty += yi * yi;
+        ++count;
+    }
+
+    /**
+     * Merge another partial into this partial
+     * @param other     Partial to merge
+     */
+    public void merge(GramPartial other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        if (isEmpty() && (size != other.size)) {
+            setSize(other.size);
+        } else if (size != other.size) {
+            throw new IllegalArgumentException("Expected size " + size + " but got " + other.size);
+        }
+        for (int i = 0; i < xtx.length; i++) {
+            xtx[i] += other.xtx[i];
+        }
+        for (int i = 0; i < xty.length; i++) {
+            xty[i] += other.xty[i];
+        }
+        yty += other.yty;
+        count += other.count;
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        WritableUtils.writeVLong(dataOutput, count);
+        WritableUtils.writeVInt(dataOutput, size);
+        for (double value : xtx) {
+            dataOutput.writeDouble(value);
+        }
+        for (double value : xty) {
+            dataOutput.writeDouble(value);
+        }
+        dataOutput.writeDouble(yty);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        long count = WritableUtils.readVLong(dataInput);
+        int size = WritableUtils.readVInt(dataInput);
+        if (this.size != size) {
+            setSize(size);
+        }
+        for (int i = 0; i < xtx.length; i++) {
+            xtx[i] = dataInput.readDouble();
+        }
+        for (int i = 0; i < xty.length; i++) {
+            xty[i] = dataInput.readDouble();
+        }
+        yty = dataInput.readDouble();
+        this.count = count;
+    }
+
+    /**
+     * Get the full X'X matrix
+     * @return  matrix
+     */
+    public double[][] getXtX() {
+        double[][] matrix = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = i; j < size; j++) {
+                double value = xtx[index(i, j)];
+                matrix[i][j] = value;
+                matrix[j][i] = value;
+            }
+        }
+        return matrix;
+    }
+
+    public double[] getXtY() {
+        return Arrays.copyOf(xty, size);
+    }
+
+    public double getYtY() {
+        return yty;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of terms in the solution, i.e. the number of independents plus 1 for bias
+     * @return  size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Convert to a string suitable for text output, see parse()
+     * @return  string
+     */
+    public String stringify() {
+        Map<String, String> map = new HashMap<>();
+        map.put(COUNT, Long.toString(count));
+        map.put(XTX, joinArray(xtx));
+        map.put(XTY, joinArray(xty));
+        map.put(YTY, Double.toString(yty));
+        return MAP_STRINGIFIER.stringify(map);
+    }
+
+    /**
+     * Parse a string generated by stringify()
+     * @param line  String to parse
+     * @return  partial
+     */
+    public static GramPartial parse(String line) {
+        Map<String, String> map = MAP_STRINGIFIER.mapify(line);
+        double[] xty = splitArray(map.get(XTY));
+
+        GramPartial partial = new GramPartial(xty.length - 1);
+        double[] xtx = splitArray(map.get(XTX));
+        if (xtx.length != partial.xtx.length) {
+            throw new IllegalArgumentException("Inconsistent XtX size " + xtx.length + ", expected " + partial.xtx.length);
+        }
+        System.arraycopy(xtx, 0, partial.xtx, 0, xtx.length);
+        System.arraycopy(xty, 0, partial.xty, 0, xty.length);
+        partial.yty = Double.parseDouble(map.get(YTY));
+        partial.count = Long.parseLong(map.get(COUNT));
+        return partial;
+    }
+
+    private static String joinArray(double[] array) {
+        return Arrays.stream(array)
+            .mapToObj(Double::toString)
+            .collect(Collectors.joining(WEIGHT_SEPARATOR));
+    }
+
+    private static double[] splitArray(String value) {
+        return Arrays.stream(value.split(WEIGHT_SEPARATOR))
+            .mapToDouble(Double::parseDouble)
+            .toArray();
+    }
+
+    @Override
+    public String toString() {
+        return "GramPartial{" +
+            "size=" + size +
+            ", count=" + count +
+            ", yty=" + yty +
+            '}';
+    }
+}
@@ -53,6 +53,18 @@ public class LinearRegressor {
         coefficients.putAll(setting);
     }
 
+    public Map<String, Double> getCoefficients() {
+        return coefficients;
+    }
+
+    public double getBias() {
+        return bias;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
     public List<String> getMissingCoefficients(List<String> independents) {
         return independents.stream()
             .filter(i -> !coefficients.containsKey(i))
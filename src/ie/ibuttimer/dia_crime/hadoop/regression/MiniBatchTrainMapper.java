@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.hadoop.stats.StatsConfigReader;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.CURRENT_EPOCH_PROP;
+
+/**
+ * Regression mapper for model generation by mini-batch gradient descent, which trains a model on the rows seen by
+ * the mapper, updating the parameters after every batch. The reducer averages the mapper models.
+ * In sweep mode, a model is trained for each sweep model.
+ * - input key : csv file line number
+ * - input value : csv file line text, or typed columnar row
+ * - output key : the current epoch number, plus model id in sweep mode
+ * - output value : ParameterPartial containing the row count weighted parameter sums
+ */
+public class MiniBatchTrainMapper extends AbstractRegressionMapper<Text, ParameterPartial> {
+
+    private Counters.MapperCounter counter;
+
+    private String epoch;
+
+    private Map<Integer, MiniBatchTrainer> trainers;
+    private double[] xiValues;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+
+        counter = getCounter(context, CountersEnum.REGRESSION_MAPPER_COUNT);
+
+        Configuration conf = context.getConfiguration();
+        StatsConfigReader cfgReader = new StatsConfigReader(getMapperCfg());
+
+        epoch = cfgReader.getConfigProperty(conf, CURRENT_EPOCH_PROP, "1");
+
+        // train every sweep model, or just the configured regressor
+        Map<Integer, LinearRegressor> models = getSweepRegressors(conf, cfgReader);
+        if (models.isEmpty()) {
+            models.put(NO_MODEL, regressor);
+        }
+        trainers = new TreeMap<>();
+        models.forEach((model, modelRegressor) -> {
+            double[] weights = new double[independents.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = modelRegressor.getCoefficients().get(independents.get(i));
+            }
+            trainers.put(model, new MiniBatchTrainer(weights, modelRegressor.getBias(),
+                Optimiser.of(conf, cfgReader, modelRegressor.getLearningRate())));
+        });
+        xiValues = new double[independents.size()];
+    }
+
+    /**
+     * Map lines from file
+     * @param key       Key; line number
+     * @param value     Text for specified line in file
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+
+        FilterResult filterRes = filterDate(key, value, context);
+        if (filterRes.pass) {
+            // collect the value for each property
+            RegressionWritable<String, Value> entry = collectValues();
+
+            double yi = entry.getProperty(dependent).doubleValue();
+            for (int i = 0; i < xiValues.length; i++) {
+                xiValues[i] = entry.getProperty(independents.get(i)).doubleValue();
+            }
+
+            for (MiniBatchTrainer trainer : trainers.values()) {
+                trainer.accumulate(xiValues, yi);
+            }
+
+            counter.increment();
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        // one model per sweep model per mapper
+        for (Map.Entry<Integer, MiniBatchTrainer> entry : trainers.entrySet()) {
+            MiniBatchTrainer trainer = entry.getValue();
+            trainer.flush();
+
+            ParameterPartial partial = new ParameterPartial(independents.size());
+            partial.add(trainer);
+            if (!partial.isEmpty()) {
+                context.write(new Text(getModelKey(epoch, entry.getKey())), partial);
+            }
+        }
+    }
+
+    @Override
+    public ICsvMapperCfg getMapperCfg() {
+        return RegressionTrainMapper.getClsCsvMapperCfg();
+    }
+}
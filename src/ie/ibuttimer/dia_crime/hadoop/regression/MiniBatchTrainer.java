@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import java.util.Arrays;
+
+/**
+ * Mini-batch gradient descent over a stream of training rows, updating the parameters after every batch.
+ * The cost is accumulated from the errors of each row with the parameters in effect when the row is seen.
+ */
+public class MiniBatchTrainer {
+
+    private final double[] params;      // weights followed by bias
+    private final double[] grads;
+    private final Optimiser optimiser;
+    private final int batchSize;
+
+    private int batchCount;
+    private double sqError;
+    private long count;
+
+    /**
+     * Constructor
+     * @param weights   Initial weights, indexed as per the independents
+     * @param bias      Initial bias
+     * @param optimiser Optimiser to update parameters
+     */
+    public MiniBatchTrainer(double[] weights, double bias, Optimiser optimiser) {
+        this.params = Arrays.copyOf(weights, weights.length + 1);
+        this.params[weights.length] = bias;
+        this.grads = new double[params.length];
+        this.optimiser = optimiser;
+        this.batchSize = Math.max(optimiser.getBatchSize(), 1);
+    }
+
+    /**
+     * Accumulate a training row, updating the parameters if the batch is complete
+     * @param xi    Independent values, indexed as per the independents
+     * @param yi    Dependent value
+     */
+    public void accumulate(double[] xi, double yi) {
+        int bias = params.length - 1;
+
+        // error for the row: ei = ((weight * xi) + bias) - yi
+        double ei = params[bias] - yi;
+        for (int i = 0; i < bias; i++) {
+            ei += params[i] * xi[i];
+        }
+        for (int i = 0; i < bias; i++) {
+            grads[i] += xi[i] * ei;
+        }
+        grads[bias] += ei;
+        sqError += ei * ei;
+        ++count;
+
+        if (++batchCount == batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Update the parameters with any partial batch
+     */
+    public void flush() {
+        if (batchCount > 0) {
+            for (int i = 0; i < grads.length; i++) {
+                grads[i] /= batchCount;
+            }
+            optimiser.update(params, grads);
+
+            Arrays.fill(grads, 0.0);
+            batchCount = 0;
+        }
+    }
+
+    public double[] getWeights() {
+        return Arrays.copyOf(params, params.length - 1);
+    }
+
+    public double getWeight(int index) {
+        return params[index];
+    }
+
+    public double getBias() {
+        return params[params.length - 1];
+    }
+
+    public double getSqError() {
+        return sqError;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
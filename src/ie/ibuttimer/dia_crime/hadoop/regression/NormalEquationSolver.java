@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.misc.MapStringifier;
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_KV_SEPARATOR;
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_SEPARATOR;
+import static ie.ibuttimer.dia_crime.misc.Constants.BIAS_PROP;
+import static ie.ibuttimer.dia_crime.misc.Constants.WEIGHT_PROP;
+
+/**
+ * Closed-form ordinary least squares solver, which solves the normal equations (X'X)w = X'y by Cholesky
+ * decomposition.
+ * Highly correlated independents (e.g. stock open/close prices) can make X'X numerically singular, in which case an
+ * increasing ridge term is added to the weight diagonal until the decomposition succeeds.
+ */
+public class NormalEquationSolver {
+
+    private static final Logger logger = Logger.getLogger(NormalEquationSolver.class);
+
+    private static final double INITIAL_RIDGE = 1e-12;
+    private static final double MAX_RIDGE = 1e-2;
+
+    private NormalEquationSolver() {
+        // class can't be externally instantiated
+    }
+
+    /**
+     * Solve the normal equations
+     * @param gram          Normal equation terms
+     * @param independents  Independents, in the same order as the normal equation terms
+     * @return  Map of the weights, bias and cost, in the same format as RegressionTrainReducer output
+     */
+    public static Map<String, String> solve(GramPartial gram, List<String> independents) {
+        int size = gram.getSize();
+        if (size != independents.size() + 1) {
+            throw new IllegalArgumentException("Expected " + (size - 1) + " independents but got " + independents);
+        }
+        if (gram.isEmpty()) {
+            throw new IllegalArgumentException("No training rows");
+        }
+
+        double[][] xtx = gram.getXtX();
+        double[] xty = gram.getXtY();
+
+        // ridge is relative to the mean of the weight diagonal, and is not applied to bias
+        double scale = 0;
+        for (int i = 0; i < size - 1; i++) {
+            scale += xtx[i][i];
+        }
+        scale = (size > 1 ? scale / (size - 1) : 1.0);
+
+        double[][] lower = cholesky(xtx, 0);
+        double ridge = INITIAL_RIDGE;
+        while ((lower == null) && (ridge <= MAX_RIDGE)) {
+            lower = cholesky(xtx, ridge * scale);
+            if (lower != null) {
+                logger.warn(String.format("X'X not positive definite, solved with ridge factor %e", ridge));
+            } else {
+                ridge *= 10;
+            }
+        }
+        if (lower == null) {
+            throw new ArithmeticException("Unable to solve normal equations, X'X is singular");
+        }
+
+        double[] solution = substitute(lower, xty);
+
+        Map<String, Double> weights = new HashMap<>();
+        for (int i = 0; i < independents.size(); i++) {
+            weights.put(independents.get(i), solution[i]);
+        }
+        double bias = solution[size - 1];
+
+        Map<String, String> result = new HashMap<>();
+        result.put(WEIGHT_PROP, MapStringifier.of(WEIGHT_SEPARATOR, WEIGHT_KV_SEPARATOR).stringify(weights));
+        result.put(BIAS_PROP, Double.toString(bias));
+        result.put(RegressionTrainReducer.COST, Double.toString(cost(xtx, xty, gram.getYtY(), solution, gram.getCount())));
+        return result;
+    }
+
+    /**
+     * Cholesky decomposition, A = LL'
+     * @param matrix    Symmetric matrix A
+     * @param ridge     Value to add to the diagonal of the weight terms
+     * @return  Lower triangular matrix L, or null if A is not positive definite
+     */
+    private static double[][] cholesky(double[][] matrix, double ridge) {
+        int size = matrix.length;
+        double[][] lower = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = matrix[i][j];
+                if ((i == j) && (i < size - 1)) {
+                    sum += ridge;
+                }
+                for (int k = 0; k < j; k++) {
+                    sum -= lower[i][k] * lower[j][k];
+                }
+                if (i == j) {
+                    if (!(sum > 0) || !Double.isFinite(sum)) {
+                        return null;
+                    }
+                    lower[i][i] = Math.sqrt(sum);
+                } else {
+                    lower[i][j] = sum / lower[j][j];
+                }
+            }
+        }
+        return lower;
+    }
+
+    /**
+     * Solve LL'x = b by forward then back substitution
+     * @param lower     Lower triangular matrix L
+     * @param b         Right hand side
+     * @return  x
+     */
+    private static double[] substitute(double[][] lower, double[] b) {
+        int size = lower.length;
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= lower[i][k] * y[k];
+            }
+            y[i] = sum / lower[i][i];
+        }
+        double[] x = new double[size];
+        for (int i = size - 1; i >= 0; i--) {
+            double sum = y[i];
+            for (int k = i + 1; k < size; k++) {
+                sum -= lower[k][i] * x[k];
+            }
+            x[i] = sum / lower[i][i];
+        }
+        return x;
+    }
+
+    /**
+     * Calculate the half mean squared error cost from the normal equation terms, as per LinearRegressor.cost()
+     *  sum((y - Xw)^2) = y'y - 2w'X'y + w'X'Xw
+     */
+    private static double cost(double[][] xtx, double[] xty, double yty, double[] w, long count) {
+        double sqError = yty;
+        for (int i = 0; i < w.length; i++) {
+            double xtxw = 0;
+            for (int j = 0; j < w.length; j++) {
+                xtxw += xtx[i][j] * w[j];
+            }
+            sqError += (w[i] * xtxw) - (2 * w[i] * xty[i]);
+        }
+        return Math.max(sqError, 0) / (2 * count);
+    }
+}
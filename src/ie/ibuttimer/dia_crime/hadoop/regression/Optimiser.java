@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.misc.ConfigReader;
+import org.apache.hadoop.conf.Configuration;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Parameter update rule for gradient descent.
+ * Parameters and gradients are arrays of the weights, indexed as per the independents, followed by the bias.
+ * - BATCH : a single update per pass of the training set
+ * - SGD : mini-batch stochastic gradient descent
+ * - MOMENTUM : mini-batch with momentum
+ * - ADAM : mini-batch with adaptive moment estimation
+ */
+public class Optimiser {
+
+    public enum Mode { BATCH, SGD, MOMENTUM, ADAM }
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final double DEFAULT_MOMENTUM = 0.9;
+    public static final double DEFAULT_ADAM_BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    private final Mode mode;
+    private final double learningRate;
+    private final double momentum;      // also Adam beta1
+    private final double beta2;
+    private final int batchSize;
+
+    private double[] velocity;          // also Adam first moment
+    private double[] second;            // Adam second moment
+    private long step;
+
+    public Optimiser(Mode mode, double learningRate, double momentum, double beta2, int batchSize) {
+        this.mode = mode;
+        this.learningRate = learningRate;
+        this.momentum = momentum;
+        this.beta2 = beta2;
+        this.batchSize = batchSize;
+        reset();
+    }
+
+    /**
+     * Read the optimiser settings from the configuration
+     * @param conf          Current configuration
+     * @param cfgReader     Configuration reader
+     * @param learningRate  Learning rate
+     * @return  Optimiser
+     */
+    public static Optimiser of(Configuration conf, ConfigReader cfgReader, double learningRate) {
+        return new Optimiser(
+            getMode(conf, cfgReader),
+            learningRate,
+            cfgReader.getConfigProperty(conf, MOMENTUM_PROP, DEFAULT_MOMENTUM).doubleValue(),
+            cfgReader.getConfigProperty(conf, ADAM_BETA2_PROP, DEFAULT_ADAM_BETA2).doubleValue(),
+            cfgReader.getConfigProperty(conf, BATCH_SIZE_PROP, DEFAULT_BATCH_SIZE).intValue());
+    }
+
+    public static Mode getMode(Configuration conf, ConfigReader cfgReader) {
+        return Mode.valueOf(cfgReader.getConfigProperty(conf, OPTIMISER_PROP, Mode.BATCH.name()).toUpperCase());
+    }
+
+    /**
+     * Get an optimiser with the same settings but a different learning rate, and no update history
+     * @param learningRate  Learning rate
+     * @return  New optimiser
+     */
+    public Optimiser withLearningRate(double learningRate) {
+        return new Optimiser(mode, learningRate, momentum, beta2, batchSize);
+    }
+
+    /**
+     * Clear the update history
+     */
+    public void reset() {
+        velocity = new double[0];
+        second = new double[0];
+        step = 0;
+    }
+
+    /**
+     * Update parameters
+     * @param params    Parameters to update
+     * @param grads     Mean gradients of the cost with respect to the parameters
+     */
+    public void update(double[] params, double[] grads) {
+        if (velocity.length != params.length) {
+            velocity = new double[params.length];
+            second = new double[params.length];
+        }
+        ++step;
+
+        // subtract because the derivatives point in direction of steepest ascent
+        switch (mode) {
+            case MOMENTUM:
+                for (int i = 0; i < params.length; i++) {
+                    velocity[i] = (momentum * velocity[i]) + grads[i];
+                    params[i] -= learningRate * velocity[i];
+                }
+                break;
+            case ADAM:
+                double correction1 = 1 - Math.pow(momentum, step);
+                double correction2 = 1 - Math.pow(beta2, step);
+                for (int i = 0; i < params.length; i++) {
+                    velocity[i] = (momentum * velocity[i]) + ((1 - momentum) * grads[i]);
+                    second[i] = (beta2 * second[i]) + ((1 - beta2) * grads[i] * grads[i]);
+                    params[i] -= learningRate * (velocity[i] / correction1) /
+                                    (Math.sqrt(second[i] / correction2) + EPSILON);
+                }
+                break;
+            default:
+                for (int i = 0; i < params.length; i++) {
+                    params[i] -= learningRate * grads[i];
+                }
+                break;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Check if the parameters are updated multiple times per pass of the training set
+     * @return  true if mini-batch
+     */
+    public boolean isMiniBatch() {
+        return mode != Mode.BATCH;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Optimiser{" +
+            "mode=" + mode +
+            ", learningRate=" + learningRate +
+            ", momentum=" + momentum +
+            ", beta2=" + beta2 +
+            ", batchSize=" + batchSize +
+            ", step=" + step +
+            '}';
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * RegressionWritable which stores the values of schema fields as a presence bitmap and a packed array of doubles.
+ * Values which are not in the schema, or which can't be packed (e.g. strings), are carried by name as per
+ * RegressionWritable.
+ * Instances created by the framework get their schema from the job configuration, see RegressionSchema.
+ */
+public class PackedRegressionWritable extends RegressionWritable<String, Value> implements Configurable {
+
+    private Configuration conf;
+
+    private RegressionSchema schema;
+    private long[] present;
+    private double[] packed;
+
+    // Default constructor to allow (de)serialization
+    public PackedRegressionWritable() {
+        this(RegressionSchema.EMPTY);
+    }
+
+    public PackedRegressionWritable(RegressionSchema schema) {
+        super();
+        setSchema(schema);
+    }
+
+    public static PackedRegressionWritable of(RegressionSchema schema) {
+        return new PackedRegressionWritable(schema);
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        setSchema(RegressionSchema.forConf(conf));
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    public RegressionSchema getSchema() {
+        return schema;
+    }
+
+    public void setSchema(RegressionSchema schema) {
+        if (this.schema != schema) {
+            this.schema = schema;
+            this.present = new long[(schema.size() + Long.SIZE - 1) / Long.SIZE];
+            this.packed = new double[schema.size()];
+            super.clear();
+        }
+    }
+
+    private boolean isPresent(int index) {
+        return (present[index / Long.SIZE] & (1L << index)) != 0;
+    }
+
+    private void setPresent(int index) {
+        present[index / Long.SIZE] |= (1L << index);
+    }
+
+    private void clearPresent(int index) {
+        present[index / Long.SIZE] &= ~(1L << index);
+    }
+
+    private int packedIndex(Object name) {
+        int index = schema.indexOf(name);
+        return ((index >= 0) && isPresent(index) ? index : -1);
+    }
+
+    private boolean canPack(Value value) {
+        return (value != null) && value.isNumber() && !value.isBigNumber() &&
+            (value.isDouble() || schema.isCoerceNumbers());
+    }
+
+    /**
+     * Get a value as a double without creating an intermediate Value
+     * @param name          Name of value
+     * @param defaultValue  Value to return if not present
+     * @return  value
+     */
+    public double getDouble(String name, double defaultValue) {
+        double result;
+        int index = packedIndex(name);
+        if (index >= 0) {
+            result = packed[index];
+        } else {
+            Value value = super.get(name);
+            result = (value != null ? value.doubleValue() : defaultValue);
+        }
+        return result;
+    }
+
+    @Override
+    protected void writeProperties(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(schema.getFingerprint());
+
+        // presence bitmap, then values for present fields
+        int size = schema.size();
+        for (int i = 0; i < size; i += Byte.SIZE) {
+            dataOutput.writeByte((int) (present[i / Long.SIZE] >>> (i % Long.SIZE)));
+        }
+        for (int i = 0; i < size; i++) {
+            if (isPresent(i)) {
+                dataOutput.writeDouble(packed[i]);
+            }
+        }
+
+        super.writeProperties(dataOutput);
+    }
+
+    @Override
+    protected void readProperties(DataInput dataInput) throws IOException {
+        clear();
+
+        int fingerprint = dataInput.readInt();
+        if (fingerprint != schema.getFingerprint()) {
+            throw new IOException("Regression schema mismatch, expected fingerprint " + schema.getFingerprint() +
+                " but read " + fingerprint + ": " + schema);
+        }
+
+        int size = schema.size();
+        for (int i = 0; i < size; i += Byte.SIZE) {
+            present[i / Long.SIZE] |= (dataInput.readByte() & 0xffL) << (i % Long.SIZE);
+        }
+        for (int i = 0; i < size; i++) {
+            if (isPresent(i)) {
+                packed[i] = dataInput.readDouble();
+            }
+        }
+
+        super.readProperties(dataInput);
+    }
+
+    @Override
+    public RegressionWritable<String, Value> getInstance() {
+        return new PackedRegressionWritable(schema);
+    }
+
+    @Override
+    public RegressionWritable<String, Value> copyOf() {
+        RegressionWritable<String, Value> copy = getInstance();
+        copy.set(this);
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        int count = 0;
+        for (long word : present) {
+            count += Long.bitCount(word);
+        }
+        return count + super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        return (packedIndex(o) >= 0) || super.containsKey(o);
+    }
+
+    @Override
+    public boolean containsValue(Object o) {
+        return values().contains(o);
+    }
+
+    @Override
+    public Value get(Object o) {
+        int index = packedIndex(o);
+        return (index >= 0 ? Value.of(packed[index]) : super.get(o));
+    }
+
+    @Override
+    public Value put(String k, Value v) {
+        Value previous;
+        int index = schema.indexOf(k);
+        if ((index >= 0) && canPack(v)) {
+            previous = (isPresent(index) ? Value.of(packed[index]) : super.remove(k));
+            packed[index] = v.doubleValue();
+            setPresent(index);
+        } else {
+            previous = remove(k);
+            super.put(k, v);
+        }
+        return previous;
+    }
+
+    @Override
+    public Value remove(Object o) {
+        Value previous;
+        int index = packedIndex(o);
+        if (index >= 0) {
+            previous = Value.of(packed[index]);
+            clearPresent(index);
+        } else {
+            previous = super.remove(o);
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends Value> map) {
+        map.forEach(this::put);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(present, 0L);
+        super.clear();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Value> action) {
+        for (int i = 0; i < packed.length; i++) {
+            if (isPresent(i)) {
+                action.accept(schema.name(i), Value.of(packed[i]));
+            }
+        }
+        super.entrySet().forEach(es -> action.accept(es.getKey(), es.getValue()));
+    }
+
+    /**
+     * Get a snapshot of the contents; unlike RegressionWritable, modifications of the returned collection are not
+     * reflected in this object
+     * @return  map of contents
+     */
+    private Map<String, Value> snapshot() {
+        Map<String, Value> map = new HashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return snapshot().keySet();
+    }
+
+    @Override
+    public Collection<Value> values() {
+        return snapshot().values();
+    }
+
+    @Override
+    public Set<Entry<String, Value>> entrySet() {
+        return snapshot().entrySet();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
+import ie.ibuttimer.dia_crime.misc.MapStringifier;
+import ie.ibuttimer.dia_crime.misc.Utils;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.*;
+import static ie.ibuttimer.dia_crime.hadoop.regression.RegressionTrainReducer.COST;
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Reducer for mini-batch regression training, which averages the models trained by the mappers weighted by row count
+ * - input key : the current epoch number, plus model id in sweep mode
+ * - input value : ParameterPartial containing partial parameter sums
+ * - output key : the current epoch number, plus model id in sweep mode
+ * - output value : the current model
+ */
+public class ParameterAverageReducer extends AbstractRegressionReducer<Text, ParameterPartial, Text, Text> {
+
+    private Counters.ReducerCounter counter;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        setSection(REGRESSION_PROP_SECTION);
+
+        super.setup(context);
+
+        counter = getCounter(context, CountersEnum.REGRESSION_REDUCER_COUNT);
+    }
+
+    @Override
+    protected void reduce(Text key, Iterable<ParameterPartial> values, Context context) throws IOException, InterruptedException {
+
+        addOutputHeader(context, counter, List.of(TRAIN_START_DATE_PROP, TRAIN_END_DATE_PROP), List.of());
+
+        ParameterPartial summed = new ParameterPartial(independents.size());
+
+        values.forEach(partial -> {
+            summed.merge(partial);
+
+            counter.increment();
+        });
+
+        if (show(DebugLevel.HIGH)) {
+            getLogger().info(key.toString() + " " + summed.toString());
+        }
+
+        // in sweep mode each model has its own key
+        int model = splitModelKey(key.toString()).getRight();
+        LinearRegressor modelRegressor = sweepRegressors.getOrDefault(model, regressor);
+
+        Map<String, Double> weights = new HashMap<>();
+        for (int i = 0; i < independents.size(); i++) {
+            weights.put(independents.get(i), summed.getAverageWeight(i));
+        }
+
+        Map<String, String> result = new HashMap<>();
+        result.put(WEIGHT_PROP, MapStringifier.of(WEIGHT_SEPARATOR, WEIGHT_KV_SEPARATOR).stringify(weights));
+        result.put(BIAS_PROP, Double.toString(summed.getAverageBias()));
+        result.put(COST, Double.toString(modelRegressor.cost(summed.getSqError(), summed.getCount())));
+        if (model != NO_MODEL) {
+            result.put(LEARNING_RATE_PROP, Double.toString(modelRegressor.getLearningRate()));
+        }
+
+        getLogger().info(
+            Utils.getSpacedDialog(
+                List.of("Regression Result",
+                    String.format("%s - %s", key.toString(), result))));
+
+        context.write(key, new Text(MAP_STRINGIFIER.stringify(result)));
+    }
+
+    @Override
+    protected Text newKey(String key) {
+        return new Text(key);
+    }
+
+    @Override
+    protected Text newValue(String value) {
+        return new Text(value);
+    }
+}
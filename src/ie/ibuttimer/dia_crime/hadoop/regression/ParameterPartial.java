@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable row count weighted sums of the parameters trained by mini-batch gradient descent on a subset of the
+ * training set, from which the averaged model is calculated.
+ */
+public class ParameterPartial implements Writable {
+
+    private double[] weightSum;
+    private double biasSum;
+    private double sqError;
+    private long count;
+
+    // Default constructor to allow (de)serialization
+    public ParameterPartial() {
+        this(0);
+    }
+
+    public ParameterPartial(int numIndependents) {
+        weightSum = new double[numIndependents];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(weightSum, 0.0);
+        biasSum = 0.0;
+        sqError = 0.0;
+        count = 0;
+    }
+
+    /**
+     * Add the result of a mini-batch trainer
+     * @param trainer   Trainer
+     */
+    public void add(MiniBatchTrainer trainer) {
+        long rows = trainer.getCount();
+        if (rows > 0) {
+            double[] weights = trainer.getWeights();
+            ensureSize(weights.length);
+            for (int i = 0; i < weights.length; i++) {
+                weightSum[i] += weights[i] * rows;
+            }
+            biasSum += trainer.getBias() * rows;
+            sqError += trainer.getSqError();
+            count += rows;
+        }
+    }
+
+    /**
+     * Merge another partial into this partial
+     * @param other     Partial to merge
+     */
+    public void merge(ParameterPartial other) {
+        ensureSize(other.weightSum.length);
+        for (int i = 0; i < other.weightSum.length; i++) {
+            weightSum[i] += other.weightSum[i];
+        }
+        biasSum += other.biasSum;
+        sqError += other.sqError;
+        count += other.count;
+    }
+
+    private void ensureSize(int size) {
+        if (weightSum.length < size) {
+            weightSum = Arrays.copyOf(weightSum, size);
+        }
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        WritableUtils.writeVLong(dataOutput, count);
+        WritableUtils.writeVInt(dataOutput, weightSum.length);
+        for (double value : weightSum) {
+            dataOutput.writeDouble(value);
+        }
+        dataOutput.writeDouble(biasSum);
+        dataOutput.writeDouble(sqError);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        count = WritableUtils.readVLong(dataInput);
+        int size = WritableUtils.readVInt(dataInput);
+        if (weightSum.length != size) {
+            weightSum = new double[size];
+        }
+        for (int i = 0; i < size; i++) {
+            weightSum[i] = dataInput.readDouble();
+        }
+        biasSum = dataInput.readDouble();
+        sqError = dataInput.readDouble();
+    }
+
+    /**
+     * Get the row count weighted average of a weight
+     * @param index     Index of independent
+     * @return  average
+     */
+    public double getAverageWeight(int index) {
+        return (index < weightSum.length) && (count > 0) ? weightSum[index] / count : 0.0;
+    }
+
+    public double getAverageBias() {
+        return (count > 0 ? biasSum / count : 0.0);
+    }
+
+    public double getSqError() {
+        return sqError;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ParameterPartial{" +
+            "weightSum=" + Arrays.toString(weightSum) +
+            ", biasSum=" + biasSum +
+            ", sqError=" + sqError +
+            ", count=" + count +
+            '}';
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.stats.NameTag;
+import ie.ibuttimer.dia_crime.hadoop.stats.StatsConfigReader;
+import ie.ibuttimer.dia_crime.misc.ConfigReader;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.http.util.TextUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Ordered set of field names used by PackedRegressionWritable to serialise values by index rather than by name.
+ * The schema for a job is resolved once per task from the job configuration (and the output types file where the
+ * variables setting requires it), so the mapper and reducer sides of the shuffle resolve identical schemas.
+ * Resolved schemas are cached per JVM, and re-resolved if the output types file has been modified since.
+ */
+public class RegressionSchema {
+
+    private static final Logger logger = Logger.getLogger(RegressionSchema.class);
+
+    /** Job configuration key for the section the schema is resolved from */
+    public static final String SCHEMA_SECTION = "regression_schema.section";
+
+    public static final RegressionSchema EMPTY = new RegressionSchema(List.of(), false);
+
+    /* schemas and the modification time of the output types file they were resolved with */
+    private static final Map<String, Pair<Long, RegressionSchema>> cache = new ConcurrentHashMap<>();
+
+    private final String[] fields;
+    private final Map<String, Integer> indices;
+    private final boolean coerceNumbers;
+    private final int fingerprint;
+
+    /**
+     * Constructor
+     * @param fields        Field names
+     * @param coerceNumbers Pack all non-big numbers as doubles, otherwise only Double values are packed
+     */
+    private RegressionSchema(Collection<String> fields, boolean coerceNumbers) {
+        this.fields = new TreeSet<>(fields).toArray(new String[0]);
+        this.indices = new HashMap<>();
+        for (int i = 0; i < this.fields.length; i++) {
+            indices.put(this.fields[i], i);
+        }
+        this.coerceNumbers = coerceNumbers;
+        this.fingerprint = Objects.hash(Arrays.hashCode(this.fields), coerceNumbers);
+    }
+
+    public static RegressionSchema of(Collection<String> fields, boolean coerceNumbers) {
+        return new RegressionSchema(fields, coerceNumbers);
+    }
+
+    /**
+     * Set the section the schema for a job is resolved from
+     * @param conf      Job configuration
+     * @param section   Configuration section
+     */
+    public static void configure(Configuration conf, String section) {
+        conf.set(SCHEMA_SECTION, section);
+    }
+
+    /**
+     * Get the schema for a job
+     * @param conf  Job configuration
+     * @return  Schema, or EMPTY if the job has not been configured for a schema
+     */
+    public static RegressionSchema forConf(Configuration conf) {
+        RegressionSchema schema = EMPTY;
+        String section = conf.get(SCHEMA_SECTION);
+        if (section != null) {
+            ConfigReader cfgReader = new ConfigReader(section);
+            String outputTypesPath = cfgReader.getConfigProperty(conf, OUTPUTTYPES_PATH_PROP, "");
+            String cacheKey = String.join("|", section,
+                cfgReader.getConfigProperty(conf, VARIABLES_PROP, ""),
+                outputTypesPath,
+                cfgReader.getConfigProperty(conf, INDEPENDENTS_PROP, ""),
+                cfgReader.getConfigProperty(conf, DEPENDENT_PROP, ""));
+            long modified = getModificationTime(conf, outputTypesPath);
+
+            schema = cache.compute(cacheKey, (key, cached) ->
+                ((cached != null) && (cached.getLeft() == modified) ?
+                    cached : Pair.of(modified, resolve(conf, section)))
+            ).getRight();
+        }
+        return schema;
+    }
+
+    /**
+     * Get the modification time of a file, or the latest of the files matching a glob
+     * @param conf  Configuration
+     * @param path  Path of file, or glob of files
+     * @return  modification time, or -1 if not available
+     */
+    private static long getModificationTime(Configuration conf, String path) {
+        long modified = -1;
+        if (!TextUtils.isEmpty(path)) {
+            try {
+                Path file = new Path(path);
+                FileStatus[] statuses = file.getFileSystem(conf).globStatus(file);
+                if (statuses != null) {
+                    for (FileStatus status : statuses) {
+                        modified = Math.max(modified, status.getModificationTime());
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // no file, resolved without it
+            }
+        }
+        return modified;
+    }
+
+    private static RegressionSchema resolve(Configuration conf, String section) {
+        RegressionSchema schema;
+        try {
+            if (NORMALISE_PROP_SECTION.equals(section)) {
+                // normalised values are doubles, anything else is carried by name
+                schema = of(new StatsConfigReader(section).readVariables(conf), false);
+            } else {
+                ConfigReader cfgReader = new ConfigReader(section);
+                List<String> independents = cfgReader.readCommaSeparatedProperty(conf, INDEPENDENTS_PROP);
+                String dependent = cfgReader.getConfigProperty(conf, DEPENDENT_PROP);
+
+                Set<String> names = new HashSet<>(independents);
+                names.add(dependent);
+                names.add(NameTag.YHAT.getKeyTag(dependent));
+
+                schema = of(names, true);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unable to resolve regression schema for " + section + ", values will be written by name", e);
+            schema = EMPTY;
+        }
+        return schema;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public boolean isEmpty() {
+        return fields.length == 0;
+    }
+
+    /**
+     * Get the index of a field
+     * @param name  Field name
+     * @return  index or -1 if not in schema
+     */
+    public int indexOf(Object name) {
+        Integer index = indices.get(name);
+        return (index == null ? -1 : index);
+    }
+
+    public String name(int index) {
+        return fields[index];
+    }
+
+    public boolean isCoerceNumbers() {
+        return coerceNumbers;
+    }
+
+    /**
+     * Get the schema fingerprint, used to detect reading with a different schema to that written with
+     * @return  fingerprint
+     */
+    public int getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return "RegressionSchema{" +
+            "fields=" + Arrays.toString(fields) +
+            ", coerceNumbers=" + coerceNumbers +
+            '}';
+    }
+}
@@ -26,7 +26,6 @@ package ie.ibuttimer.dia_crime.hadoop.regression;
 import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
 import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
-import ie.ibuttimer.dia_crime.hadoop.stats.NameTag;
 import ie.ibuttimer.dia_crime.hadoop.stats.StatsConfigReader;
 import ie.ibuttimer.dia_crime.misc.ConfigReader;
 import ie.ibuttimer.dia_crime.misc.DebugLevel;
@@ -37,26 +36,28 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 
 /**
- * Regression mapper for model generation
+ * Regression mapper for model generation, which accumulates the gradient terms for all rows seen by the mapper.
+ * In sweep mode, the gradient terms for each model are accumulated and output separately.
  * - input key : csv file line number
- * - input value : csv file line text
- * - output key : the current epoch number
- * - output value : RegressionWritable containing individual values
+ * - input value : csv file line text, or typed columnar row
+ * - output key : the current epoch number, plus model id in sweep mode
+ * - output value : GradientPartial containing the gradient terms sums
  */
-public class RegressionTrainMapper extends AbstractRegressionMapper<Text, String, Value> {
+public class RegressionTrainMapper extends AbstractRegressionMapper<Text, GradientPartial> {
 
     private Counters.MapperCounter counter;
 
     private String epoch;
 
+    private Map<Integer, LinearRegressor> models;
+    private Map<Integer, GradientPartial> partials;
+    private double[] xiValues;
+
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
         super.setup(context);
@@ -67,6 +68,15 @@ public class RegressionTrainMapper extends AbstractRegressionMapper<Text, String
         StatsConfigReader cfgReader = new StatsConfigReader(getMapperCfg());
 
         epoch = cfgReader.getConfigProperty(conf, CURRENT_EPOCH_PROP, "1");
+
+        // evaluate every sweep model per row, or just the configured regressor
+        models = getSweepRegressors(conf, cfgReader);
+        if (models.isEmpty()) {
+            models.put(NO_MODEL, regressor);
+        }
+        partials = new TreeMap<>();
+        models.keySet().forEach(model -> partials.put(model, new GradientPartial(independents.size())));
+        xiValues = new double[independents.size()];
     }
 
     /**
@@ -95,54 +105,49 @@ public class RegressionTrainMapper extends AbstractRegressionMapper<Text, String
                 wind_speed:4.224999
              */
             // collect the value for each property
-            RegressionWritable<String, Value> entry = collectValues(filterRes.value);
+            RegressionWritable<String, Value> entry = collectValues();
 
             double yi = entry.getProperty(dependent).doubleValue();
 
             Map<String, Double> xi = new HashMap<>();
 
-            independents.forEach(indo -> {
-                xi.put(indo, entry.getProperty(indo).doubleValue());
-            });
+            for (int i = 0; i < xiValues.length; i++) {
+                String indo = independents.get(i);
+                xiValues[i] = entry.getProperty(indo).doubleValue();
+                xi.put(indo, xiValues[i]);
+            }
 
-            double ei = regressor.error(yi, xi);
-            double se = regressor.sqError(ei);
-            Map<String, Double> pdw = regressor.partialDerivativeWeight(xi, ei);
-            double pdb = regressor.partialDerivativeBias(ei);
+            // accumulate partial derivatives & squared error for each model
+            // 1 yi=1.0,ei=1.0,06=1.0,total=1.0
+            StringBuffer sb = (show(DebugLevel.HIGH) ? new StringBuffer().append("yi=").append(yi) : null);
+            models.forEach((model, modelRegressor) -> {
+                double ei = modelRegressor.error(yi, xi);
+                partials.get(model).accumulate(xiValues, ei);
 
-            pdw.forEach((indo, val) -> {
-                entry.put(NameTag.PDW.getKeyTag(indo), Value.of(val));
+                if (sb != null) {
+                    sb.append(",ei").append(getModelKey("", model)).append('=').append(ei);
+                }
             });
-            entry.put(NameTag.ERR.getKeyTag(dependent), Value.of(ei));
-            entry.put(NameTag.PDB.getKeyTag(dependent), Value.of(pdb));
-            independents.forEach(indo -> {
-
-                entry.put(NameTag.getKeyTagChain(indo, List.of(NameTag.ERR, NameTag.SQ)), Value.of(se));
 
-                entry.put(NameTag.CNT.getKeyTag(indo), Value.of(counts.get(indo)));
-
-            });
-            if (show(DebugLevel.HIGH)) {
-                // 1 yi=1.0,06=1.0,06-CNT=59.0,06-ERR-SQ=1.0,06-PDW=-2.0,total=1.0,total-ERR=1.0,total-PDB=-2.0
-                StringBuffer sb = new StringBuffer()
-                    .append("yi=").append(yi);
+            if (sb != null) {
                 entry.entrySet().stream()
                     .sorted(Map.Entry.comparingByKey())
-                    .forEach(es -> {
-                        if (sb.length() > 0) {
-                            sb.append(',');
-                        }
-                        sb.append(es.getKey()).append('=').append(es.getValue().doubleValue());
-                    });
+                    .forEach(es -> sb.append(',').append(es.getKey()).append('=').append(es.getValue().doubleValue()));
                 getLogger().info(epoch + " " + sb.toString());
             }
 
-            try {
-                context.write(new Text(epoch), entry);
+            counter.increment();
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
 
-                counter.increment();
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
+        // one partial per model per mapper
+        for (Map.Entry<Integer, GradientPartial> entry : partials.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                context.write(new Text(getModelKey(epoch, entry.getKey())), entry.getValue());
             }
         }
     }
@@ -159,11 +164,20 @@ public class RegressionTrainMapper extends AbstractRegressionMapper<Text, String
         private final Property steadyLimitCostProp = Property.of(STEADY_LIMIT_PROP, "steady limit", "");
         private final Property timeLimitCostProp = Property.of(TARGET_TIME_PROP, "max duration in minutes", "");
         private final Property increaseLimitCostProp = Property.of(INCREASE_LIMIT_PROP, "max number of consecutive cost increases", "");
+        private final Property inMemoryLimitProp = Property.of(IN_MEMORY_LIMIT_PROP, "max MB for in-memory training, 0 to disable", "0");
+        private final Property sweepProp = Property.of(SWEEP_LEARNING_RATES_PROP, "comma separated learning rates to train concurrently", "");
+        private final Property optimiserProp = Property.of(OPTIMISER_PROP, "gradient descent optimiser; BATCH, SGD, MOMENTUM or ADAM", Optimiser.Mode.BATCH.name());
+        private final Property batchSizeProp = Property.of(BATCH_SIZE_PROP, "mini-batch size", Integer.toString(Optimiser.DEFAULT_BATCH_SIZE));
+        private final Property momentumProp = Property.of(MOMENTUM_PROP, "momentum, or Adam first moment decay rate", Double.toString(Optimiser.DEFAULT_MOMENTUM));
+        private final Property adamBeta2Prop = Property.of(ADAM_BETA2_PROP, "Adam second moment decay rate", Double.toString(Optimiser.DEFAULT_ADAM_BETA2));
+        private final Property solverProp = Property.of(SOLVER_PROP, "regression solver; " + SOLVER_GRADIENT_DESCENT + " or " + SOLVER_NORMAL_EQUATION, SOLVER_GRADIENT_DESCENT);
 
         private final List<Property> required = List.of(startProp, endProp);
         private final List<Property> notRequired = List.of(epochLimitProp, currentEpochProp, targetCostProp,
                                                             steadyTargetProp, steadyLimitCostProp, timeLimitCostProp,
-                                                            increaseLimitCostProp);
+                                                            increaseLimitCostProp, inMemoryLimitProp, sweepProp,
+                                                            solverProp, optimiserProp, batchSizeProp, momentumProp,
+                                                            adamBeta2Prop);
 
         @Override
         public List<Property> getAdditionalProps() {
@@ -211,8 +225,20 @@ public class RegressionTrainMapper extends AbstractRegressionMapper<Text, String
             double targetCost = cfgReader.getConfigProperty(conf, TARGET_COST_PROP, 0.0).doubleValue();
             double steadyTarget = cfgReader.getConfigProperty(conf, STEADY_TARGET_PROP, 0.0).doubleValue();
             long steadyLimit = cfgReader.getConfigProperty(conf, STEADY_LIMIT_PROP, 0).intValue();
+            String solver = cfgReader.getConfigProperty(conf, SOLVER_PROP, SOLVER_GRADIENT_DESCENT);
 
-            if (maxEpochs <= 0 && targetCost <= 0 && steadyLimit <= 0) {
+            if (!List.of(SOLVER_GRADIENT_DESCENT, SOLVER_NORMAL_EQUATION).contains(solver)) {
+                errors.add("Error: Unknown regression solver specified: " + solver);
+                resultCode = ECODE_CONFIG_ERROR;
+            }
+            String optimiser = cfgReader.getConfigProperty(conf, OPTIMISER_PROP, Optimiser.Mode.BATCH.name());
+            if (Arrays.stream(Optimiser.Mode.values()).noneMatch(m -> m.name().equalsIgnoreCase(optimiser))) {
+                errors.add("Error: Unknown gradient descent optimiser specified: " + optimiser);
+                resultCode = ECODE_CONFIG_ERROR;
+            }
+            if (SOLVER_NORMAL_EQUATION.equals(solver)) {
+                // closed-form solution, no termination conditions required
+            } else if (maxEpochs <= 0 && targetCost <= 0 && steadyLimit <= 0) {
                 errors.add("Error: No regression termination condition specified");
                 resultCode = ECODE_CONFIG_ERROR;
             }
@@ -25,11 +25,9 @@ package ie.ibuttimer.dia_crime.hadoop.regression;
 
 import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
-import ie.ibuttimer.dia_crime.hadoop.stats.NameTag;
 import ie.ibuttimer.dia_crime.misc.DebugLevel;
 import ie.ibuttimer.dia_crime.misc.MapStringifier;
 import ie.ibuttimer.dia_crime.misc.Utils;
-import ie.ibuttimer.dia_crime.misc.Value;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.io.Text;
 
@@ -38,19 +36,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_KV_SEPARATOR;
-import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.WEIGHT_SEPARATOR;
+import static ie.ibuttimer.dia_crime.hadoop.regression.AbstractRegressionMapper.*;
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
 
 /**
  * Reducer for regression validation
- * - input key : the current epoch number
- * - input value : RegressionWritable containing individual values
- * - output key : the current epoch number
+ * - input key : the current epoch number, plus model id in sweep mode
+ * - input value : GradientPartial containing partial gradient sums
+ * - output key : the current epoch number, plus model id in sweep mode
  * - output value : the current model
  */
-public class RegressionTrainReducer extends AbstractRegressionReducer<Text, RegressionWritable<String, Value>, Text, Text> {
+public class RegressionTrainReducer extends AbstractRegressionReducer<Text, GradientPartial, Text, Text> {
 
     public static final String COST = "cost";
 
@@ -66,61 +63,51 @@ public class RegressionTrainReducer extends AbstractRegressionReducer<Text, Regr
     }
 
     @Override
-    protected void reduce(Text key, Iterable<RegressionWritable<String, Value>> values, Context context) throws IOException, InterruptedException {
+    protected void reduce(Text key, Iterable<GradientPartial> values, Context context) throws IOException, InterruptedException {
 
         addOutputHeader(context, counter, List.of(TRAIN_START_DATE_PROP, TRAIN_END_DATE_PROP), List.of());
 
-        Value sqErrorSummer = Value.of(0.0);
-        Map<String, Value> pdWeightSummer = new HashMap<>();
-        independents.forEach(indo -> pdWeightSummer.put(indo, Value.of(0.0)));
-        Value pdBias = Value.of(0.0);
-        Value countRef = Value.of(0L);
-
-        String errSqTag = NameTag.getKeyTagChain("", List.of(NameTag.ERR, NameTag.SQ));
-
-        values.forEach(writable-> {
-            // 1 yi=1.0,06=1.0,06-CNT=59.0,06-ERR-SQ=1.0,06-PDW=-2.0,total=1.0,total-ERR=1.0,total-PDB=-2.0
-            writable.forEach((name, value) -> {
-                // sum square errors, and pdw
-                // just set count and pdb as same every time
-                if (name.endsWith(errSqTag)) {
-                    sqErrorSummer.add(value);
-                } else if (NameTag.PDW.is(name)) {
-                    pdWeightSummer.get(NameTag.splitKeyTag(name).getLeft()).add(value);
-                } else if (NameTag.PDB.is(name)) {
-                    pdBias.set(value);
-                } else if (NameTag.CNT.is(name)) {
-                    countRef.set(value);
-                }
-            });
+        GradientPartial summed = new GradientPartial(independents.size());
 
-            counter.increment();
+        values.forEach(partial -> {
+            summed.merge(partial);
 
+            counter.increment();
         });
+
         Map<String, Double> pdWeightSummed = new HashMap<>();
-        pdWeightSummer.forEach((indo, value) -> pdWeightSummed.put(indo, value.doubleValue()));
+        for (int i = 0; i < independents.size(); i++) {
+            pdWeightSummed.put(independents.get(i), summed.getPdWeight(i));
+        }
 
         if (show(DebugLevel.HIGH)) {
             StringBuilder sb = new StringBuilder()
-                .append("sqErr=").append(sqErrorSummer.doubleValue()).append(',')
-                .append("pdBias=").append(pdBias.doubleValue()).append(',')
+                .append("sqErr=").append(summed.getSqError()).append(',')
+                .append("pdBias=").append(summed.getPdBias()).append(',')
                 .append("pdWeight=");
             pdWeightSummed.forEach((indo, value) -> {
                 sb.append(indo).append(':').append(value).append(',');
             });
-            sb.append("count=").append(countRef.longValue());
+            sb.append("count=").append(summed.getCount());
             getLogger().info(key.toString() + " " + sb.toString());
         }
 
-        long count = countRef.longValue();
-        double cost = regressor.cost(sqErrorSummer.doubleValue(), count);
-        Pair<Map<String, Double>, Double> updated = regressor.calcUpdatedWeights(
-                                                        pdWeightSummed, pdBias.doubleValue(), count);
+        // in sweep mode each model has its own key
+        int model = splitModelKey(key.toString()).getRight();
+        LinearRegressor modelRegressor = sweepRegressors.getOrDefault(model, regressor);
+
+        long count = summed.getCount();
+        double cost = modelRegressor.cost(summed.getSqError(), count);
+        Pair<Map<String, Double>, Double> updated = modelRegressor.calcUpdatedWeights(
+                                                        pdWeightSummed, summed.getPdBias(), count);
 
         Map<String, String> result = new HashMap<>();
         result.put(WEIGHT_PROP, MapStringifier.of(WEIGHT_SEPARATOR, WEIGHT_KV_SEPARATOR).stringify(updated.getLeft()));
         result.put(BIAS_PROP, updated.getRight().toString());
         result.put(COST, Double.toString(cost));
+        if (model != NO_MODEL) {
+            result.put(LEARNING_RATE_PROP, Double.toString(modelRegressor.getLearningRate()));
+        }
 
         getLogger().info(
             Utils.getSpacedDialog(
@@ -44,13 +44,13 @@ import java.util.Map;
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 
 /**
- * Mapper for regression validation
+ * Mapper for regression validation, which accumulates the validation statistics for all rows seen by the mapper
  * - input key : csv file line number
- * - input value : csv file line text
+ * - input value : csv file line text, or typed columnar row
  * - output key : dependent variable
- * - output value : RegressionWritable containing values for y and y-hat
+ * - output value : ValidationStats containing statistics for y and y-hat
  */
-public class RegressionValidateMapper extends AbstractRegressionMapper<Text, String, Value> {
+public class RegressionValidateMapper extends AbstractRegressionMapper<Text, ValidationStats> {
 
     private Counters.MapperCounter counter;
 
@@ -58,6 +58,8 @@ public class RegressionValidateMapper extends AbstractRegressionMapper<Text, Str
 
     private Text keyOut;
 
+    private ValidationStats stats;
+
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
         super.setup(context);
@@ -69,6 +71,8 @@ public class RegressionValidateMapper extends AbstractRegressionMapper<Text, Str
         // use dependent as out key
         keyOut = new Text(dependent);
 
+        stats = new ValidationStats();
+
         // get validate date filter
         validateFilter = new DateFilter(conf.get(getPropertyPath(VALIDATE_START_DATE_PROP), ""),
             conf.get(getPropertyPath(VALIDATE_END_DATE_PROP), ""));
@@ -103,7 +107,7 @@ public class RegressionValidateMapper extends AbstractRegressionMapper<Text, Str
             if (validateFilter.filter(filterRes.date)) {
 
                 // collect the value for each property
-                RegressionWritable<String, Value> entry = collectValues(filterRes.value);
+                RegressionWritable<String, Value> entry = collectValues();
 
                 double yi = entry.getProperty(dependent).doubleValue();
                 entry.put(dependent, Value.of(yi));
@@ -130,17 +134,23 @@ public class RegressionValidateMapper extends AbstractRegressionMapper<Text, Str
                     getLogger().info(keyOut + " " + sb.toString());
                 }
 
-                try {
-                    context.write(keyOut, entry);
+                stats.add(yi, yhati);
 
-                    counter.increment();
-                } catch (IOException | InterruptedException e) {
-                    e.printStackTrace();
-                }
+                counter.increment();
             }
         }
     }
 
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        // one set of statistics per mapper
+        if (!stats.isEmpty()) {
+            context.write(keyOut, stats);
+        }
+    }
+
     // configuration object
     private static final ICsvMapperCfg sCfgChk = new RegressionMapperCfg(VERIFICATION_PROP_SECTION)  {
 
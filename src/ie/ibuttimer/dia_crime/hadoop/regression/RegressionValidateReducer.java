@@ -25,35 +25,30 @@ package ie.ibuttimer.dia_crime.hadoop.regression;
 
 import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
 import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
-import ie.ibuttimer.dia_crime.hadoop.stats.NameTag;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
 import ie.ibuttimer.dia_crime.misc.Utils;
-import ie.ibuttimer.dia_crime.misc.Value;
 import org.apache.hadoop.io.Text;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static ie.ibuttimer.dia_crime.misc.Constants.*;
 import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
 
 /**
- * Reducer for regression validation
+ * Reducer for regression validation, which merges the streaming validation statistics and calculates the model
+ * verification result
  * - input key : dependent variable
- * - input value : RegressionWritable containing values for y and y-hat
+ * - input value : ValidationStats containing partial statistics for y and y-hat
  * - output key : dependent variable
  * - output value : model verification result
  */
-public class RegressionValidateReducer extends AbstractRegressionReducer<Text, RegressionWritable<String, Value>, Text, Text> {
+public class RegressionValidateReducer extends AbstractRegressionReducer<Text, ValidationStats, Text, Text> {
 
     private Counters.ReducerCounter counter;
 
-    private List<CacheEntry> yYhatCache;
-
-    private Text keyOut = new Text(COMMENT_PREFIX);
     private Text valueOut = new Text();
 
     @Override
@@ -63,76 +58,33 @@ public class RegressionValidateReducer extends AbstractRegressionReducer<Text, R
         super.setup(context);
 
         counter = getCounter(context, CountersEnum.REGRESSION_REDUCER_COUNT);
-
-        yYhatCache = new ArrayList<>();
     }
 
     @Override
-    protected void reduce(Text key, Iterable<RegressionWritable<String, Value>> values, Context context) throws IOException, InterruptedException {
+    protected void reduce(Text key, Iterable<ValidationStats> values, Context context) throws IOException, InterruptedException {
 
         addOutputHeader(context, counter, List.of(VALIDATE_START_DATE_PROP, VALIDATE_END_DATE_PROP), List.of(
             String.format("model : %s", regressor)
         ));
 
-        Value summer = Value.of(0.0);
-        Value regSummer = Value.of(0.0);    // SSR
-        Value errSummer = Value.of(0.0);    // SSE
-        Value totalSummer = Value.of(0.0);  // SST
-
-        String yhatTag = NameTag.YHAT.getKeyTag(dependent);
-
-        AtomicInteger numVariables = new AtomicInteger(0);
-        values.forEach(writable-> {
-            if (writable.containsKey(dependent) && writable.containsKey(yhatTag)) {
-
-                // num independents is writable size minus dependent & yhat entries
-                numVariables.set(writable.size() - 2);
+        ValidationStats stats = new ValidationStats();
+        values.forEach(partial -> {
+            stats.merge(partial);
 
-                double yi = writable.get(dependent).doubleValue();
-                double yhati = writable.get(yhatTag).doubleValue();
-
-                yYhatCache.add(CacheEntry.of(yi, yhati));
-
-                counter.increment();
-
-                summer.add(yi);
-            }
+            counter.increment();
         });
 
-        // calc mean of sample
-        summer.divide(yYhatCache.size());
-        double mean = summer.doubleValue();
-
-        StringBuilder sb = new StringBuilder();
-
-        // calc stats
-        yYhatCache.forEach(pair -> {
-            double ssr = regressor.regressionSum(pair.yhat, mean);
-            double sse = regressor.errorSum(pair.y, pair.yhat);
-            double sst = regressor.totalSum(pair.y, mean);
-            regSummer.add(ssr);
-            errSummer.add(sse);
-            totalSummer.add(sst);
-
-            sb.delete(0, sb.length());
-            valueOut.set(
-                sb.append("yi=").append(pair.y)
-                    .append(",yhati=").append(pair.yhat)
-                    .append(",ssr=").append(ssr)
-                    .append(",sse=").append(sse)
-                    .append(",sst=").append(sst)
-                    .toString());
-            try {
-                context.write(keyOut, valueOut);
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
-            }
-        });
+        if (show(DebugLevel.MEDIUM)) {
+            getLogger().info(key.toString() + " " + stats.toString());
+        }
+
+        long count = stats.getCount();
+        int numVariables = independents.size();
 
         Map<String, Double> result = new HashMap<>();
-        double rSquared = regressor.calcRSquared(regSummer.doubleValue(), totalSummer.doubleValue());
-        double rBarSquared = regressor.calcRBarSquared(rSquared, yYhatCache.size(), numVariables.get());
-        double stdError = regressor.stdErrorOfRegression(errSummer.doubleValue(), yYhatCache.size(), numVariables.get());
+        double rSquared = regressor.calcRSquared(stats.getSSR(), stats.getSST());
+        double rBarSquared = regressor.calcRBarSquared(rSquared, count, numVariables);
+        double stdError = regressor.stdErrorOfRegression(stats.getSSE(), count, numVariables);
 
         result.put("r_squared", rSquared);
         result.put("r_bar_squared", rBarSquared);
@@ -147,21 +99,6 @@ public class RegressionValidateReducer extends AbstractRegressionReducer<Text, R
         context.write(key, valueOut);
     }
 
-    static class CacheEntry {
-
-        public final Double y;
-        public final Double yhat;
-
-        public CacheEntry(Double y, Double yhat) {
-            this.y = y;
-            this.yhat = yhat;
-        }
-
-        public static CacheEntry of(Double y, Double yhat) {
-            return new CacheEntry(y, yhat);
-        }
-    }
-
     @Override
     protected Text newKey(String key) {
         return new Text(key);
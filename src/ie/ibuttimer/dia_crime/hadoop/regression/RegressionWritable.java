@@ -57,6 +57,15 @@ public class RegressionWritable<K, V extends Writable> extends AbstractBaseWrita
     public void write(DataOutput dataOutput) throws IOException {
         super.write(dataOutput);
 
+        writeProperties(dataOutput);
+    }
+
+    /**
+     * Write the properties
+     * @param dataOutput    Output to write to
+     * @throws IOException
+     */
+    protected void writeProperties(DataOutput dataOutput) throws IOException {
         dataOutput.writeInt(properties.size());
         properties.forEach(exceptionLoggingBiConsumer((key, value) -> {
             Text.writeString(dataOutput, key.toString());
@@ -68,6 +77,15 @@ public class RegressionWritable<K, V extends Writable> extends AbstractBaseWrita
     public void readFields(DataInput dataInput) throws IOException {
         super.readFields(dataInput);
 
+        readProperties(dataInput);
+    }
+
+    /**
+     * Read the properties
+     * @param dataInput     Input to read from
+     * @throws IOException
+     */
+    protected void readProperties(DataInput dataInput) throws IOException {
         for (int size = dataInput.readInt(); size > 0; --size) {
             // TODO sort out generics, atm keys can only be String
             String key = Text.readString(dataInput);
@@ -80,11 +98,11 @@ public class RegressionWritable<K, V extends Writable> extends AbstractBaseWrita
     }
 
     public void setProperty(K name, V value) {
-        properties.put(name, value);
+        put(name, value);
     }
 
     public V getProperty(K name) {
-        return properties.get(name);
+        return get(name);
     }
 
     @Override
@@ -95,7 +113,7 @@ public class RegressionWritable<K, V extends Writable> extends AbstractBaseWrita
     @Override
     public void set(RegressionWritable<K, V> other) {
         super.set(other);
-        properties.putAll(other.properties);
+        putAll(other);
     }
 
     @Override
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Mergeable streaming accumulator of actual (y) and predicted (y-hat) values for regression validation.
+ * Means and sums of squared deviations are updated per value using Welford's algorithm, and partitions are merged
+ * using the pairwise update of Chan et al., so SSR, SSE and SST are available after a single pass.
+ */
+public class ValidationStats implements Writable {
+
+    private long count;
+    private double meanY;
+    private double meanYhat;
+    private double m2Y;         // sum((yi - ymean)^2)
+    private double m2Yhat;      // sum((yhati - yhatmean)^2)
+    private double coMoment;    // sum((yi - ymean) * (yhati - yhatmean))
+    private double sse;         // sum((yi - yhati)^2)
+
+    public ValidationStats() {
+        clear();
+    }
+
+    public void clear() {
+        count = 0;
+        meanY = 0.0;
+        meanYhat = 0.0;
+        m2Y = 0.0;
+        m2Yhat = 0.0;
+        coMoment = 0.0;
+        sse = 0.0;
+    }
+
+    /**
+     * Add a value pair
+     * @param yi        Actual value
+     * @param yhati     Predicted value
+     */
+    public void add(double yi, double yhati) {
+        ++count;
+        double deltaY = yi - meanY;
+        meanY += deltaY / count;
+        double deltaYhat = yhati - meanYhat;
+        meanYhat += deltaYhat / count;
+
+        m2Y += deltaY * (yi - meanY);
+        m2Yhat += deltaYhat * (yhati - meanYhat);
+        coMoment += deltaY * (yhati - meanYhat);
+
+        double error = yi - yhati;
+        sse += error * error;
+    }
+
+    /**
+     * Merge another accumulator into this accumulator
+     * @param other     Accumulator to merge
+     */
+    public void merge(ValidationStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double deltaY = other.meanY - meanY;
+        double deltaYhat = other.meanYhat - meanYhat;
+        double factor = ((double) count * other.count) / total;
+
+        m2Y += other.m2Y + (deltaY * deltaY * factor);
+        m2Yhat += other.m2Yhat + (deltaYhat * deltaYhat * factor);
+        coMoment += other.coMoment + (deltaY * deltaYhat * factor);
+        meanY += deltaY * other.count / total;
+        meanYhat += deltaYhat * other.count / total;
+        sse += other.sse;
+        count = total;
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        WritableUtils.writeVLong(dataOutput, count);
+        dataOutput.writeDouble(meanY);
+        dataOutput.writeDouble(meanYhat);
+        dataOutput.writeDouble(m2Y);
+        dataOutput.writeDouble(m2Yhat);
+        dataOutput.writeDouble(coMoment);
+        dataOutput.writeDouble(sse);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        count = WritableUtils.readVLong(dataInput);
+        meanY = dataInput.readDouble();
+        meanYhat = dataInput.readDouble();
+        m2Y = dataInput.readDouble();
+        m2Yhat = dataInput.readDouble();
+        coMoment = dataInput.readDouble();
+        sse = dataInput.readDouble();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getMeanY() {
+        return meanY;
+    }
+
+    /**
+     * Get the Regression Sum of Squares, sum((yhati - ymean)^2)
+     * @return  SSR
+     */
+    public double getSSR() {
+        double delta = meanYhat - meanY;
+        return m2Yhat + (count * delta * delta);
+    }
+
+    /**
+     * Get the Error Sum of Squares, sum((yi - yhati)^2)
+     * @return  SSE
+     */
+    public double getSSE() {
+        return sse;
+    }
+
+    /**
+     * Get the Total Sum of Squares, sum((yi - ymean)^2)
+     * @return  SST
+     */
+    public double getSST() {
+        return m2Y;
+    }
+
+    /**
+     * Get the Pearson correlation coefficient of y and y-hat
+     * @return  correlation
+     */
+    public double getCorrelation() {
+        return coMoment / Math.sqrt(m2Y * m2Yhat);
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationStats{" +
+            "count=" + count +
+            ", meanY=" + meanY +
+            ", meanYhat=" + meanYhat +
+            ", ssr=" + getSSR() +
+            ", sse=" + sse +
+            ", sst=" + m2Y +
+            '}';
+    }
+}
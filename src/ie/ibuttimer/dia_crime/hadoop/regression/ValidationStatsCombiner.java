@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.regression;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractReducer;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.VERIFICATION_PROP_SECTION;
+
+/**
+ * Combiner for regression validation, which merges partial validation statistics
+ * - input key : dependent variable
+ * - input value : partial validation statistics
+ * - output key : dependent variable
+ * - output value : partial validation statistics
+ */
+public class ValidationStatsCombiner extends AbstractReducer<Text, ValidationStats, Text, ValidationStats> {
+
+    private final ValidationStats combined = new ValidationStats();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        setSection(VERIFICATION_PROP_SECTION);
+
+        super.setup(context);
+        setLogger(getClass());
+    }
+
+    /**
+     * Combine the values for a key
+     * @param key       Key value; dependent variable
+     * @param values    Values for the specified key
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    protected void reduce(Text key, Iterable<ValidationStats> values, Context context) throws IOException, InterruptedException {
+        combined.clear();
+        values.forEach(combined::merge);
+        if (!combined.isEmpty()) {
+            write(context, key, combined);
+        }
+    }
+
+    @Override
+    protected Text newKey(String key) {
+        return new Text(key);
+    }
+
+    @Override
+    protected ValidationStats newValue(String value) {
+        return new ValidationStats();
+    }
+}
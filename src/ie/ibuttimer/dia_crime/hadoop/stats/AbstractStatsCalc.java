@@ -23,29 +23,28 @@
 
 package ie.ibuttimer.dia_crime.hadoop.stats;
 
-import com.google.common.base.Charsets;
 import ie.ibuttimer.dia_crime.hadoop.io.FileUtil;
 import ie.ibuttimer.dia_crime.misc.DebugLevel;
 import ie.ibuttimer.dia_crime.misc.Functional;
 import ie.ibuttimer.dia_crime.misc.MapStringifier;
 import ie.ibuttimer.dia_crime.misc.Value;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.http.util.TextUtils;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -86,14 +85,20 @@ public abstract class AbstractStatsCalc {
     protected static final String SUMOFYSQ = "sumOfYSq";
     protected static final String COUNTOFXY = "countOfYSq";
 
+    private Path path;
+    private Configuration conf;
     private String filename;
     private FileUtil fileUtil;
     private Logger logger;
+    private StatsIndex index;
 
     public AbstractStatsCalc(Path path, Configuration conf, String filename, Logger logger) {
+        this.path = path;
+        this.conf = conf;
         this.filename = filename;
         this.fileUtil = new FileUtil(path, conf);
         this.logger = logger;
+        this.index = null;
     }
 
     /**
@@ -295,6 +300,64 @@ public abstract class AbstractStatsCalc {
         return results;
     }
 
+    /**
+     * Calculate correlation for all pairs of properties in parallel
+     * @param ids           Properties to calculate correlations for; the result is indexed in this order
+     * @param fields
+     * @param parallelism   Parallelism level for the fork-join pool
+     * @param logger        Logger for progress, or <code>null</code>
+     * @return  Index-addressed results, with the same result at [i][j] and [j][i], and null on the diagonal
+     * @throws IOException
+     */
+    public Result[][] calcCorrelationMatrix(List<String> ids, List<String> fields, int parallelism, Logger logger)
+                                                                                            throws IOException {
+        int count = ids.size();
+        Result[][] results = new Result[count][count];
+
+        // load stats before going parallel
+        if (getIndex() == null) {
+            return results;
+        }
+
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            for (int j = i + 1; j < count; ++j) {
+                pairs.add(new int[] { i, j });
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.submit(() ->
+                pairs.parallelStream().forEach(pair -> {
+                    String id1 = ids.get(pair[0]);
+                    String id2 = ids.get(pair[1]);
+
+                    if (logger != null) {
+                        logger.info("- " + id1 + " " + id2);
+                    }
+
+                    try {
+                        Result result = calcCorrelation(id1, id2, fields).get(NameTag.getKeyPair(id1, id2));
+                        // each pair has its own slots so no synchronisation required
+                        results[pair[0]][pair[1]] = result;
+                        results[pair[1]][pair[0]] = result;
+                    } catch (IOException | RuntimeException e) {
+                        this.logger.warn("Unable to calculate correlation for " + id1 + " and " + id2, e);
+                    }
+                })
+            ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Correlation calculation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Correlation calculation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
     public Result.Set calcAll(String id, List<String> fields) throws IOException {
         return calcStat(id, Arrays.asList(Stat.values()), fields);
     }
@@ -308,25 +371,15 @@ public abstract class AbstractStatsCalc {
     }
 
     /**
-     * Get all the lines for the specified property
-     * @param id
-     * @return
+     * Get the statistics index, which is loaded on first use
+     * @return  index, or <code>null</code> if the statistics job was not successful
      * @throws IOException
      */
-    protected List<String> getLines(String id) throws IOException {
-        List<String> lines = null;
-        if (fileUtil.wasSuccess()) {
-            FSDataInputStream stream = fileUtil.fileReadOpen(filename);
-
-            try (InputStreamReader inputStream = new InputStreamReader(stream, Charsets.UTF_8);
-                    BufferedReader reader = new BufferedReader(inputStream)
-            ) {
-                lines = reader.lines()
-                    .filter(l -> l.startsWith(id))
-                    .collect(Collectors.toList());
-            }
+    protected synchronized StatsIndex getIndex() throws IOException {
+        if (index == null && fileUtil.wasSuccess()) {
+            index = StatsIndex.load(new Path(path, filename), conf);
         }
-        return lines;
+        return index;
     }
 
     public long readLong(List<String> lines, String lineTag, String valueTag) {
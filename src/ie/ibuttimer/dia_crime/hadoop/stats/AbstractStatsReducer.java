@@ -0,0 +1,247 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractReducer;
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.*;
+
+/**
+ * Base class for statistics reducers, which output sum of values etc. from partial aggregates
+ * - input key : statistics key
+ * - input value : partial aggregate
+ * - output key : property name plus specific identifier for the statistic
+ * - output value : value
+ * The partial aggregates are also written to the 'aggregate' named output, so the statistics of separate runs may be
+ * merged without re-reading their inputs. If aggregating by month, the input keys are prefixed with the month and
+ * only the partial aggregates are written, to '<yyyy>/<MM>/aggregate-r-nnnnn' in the output folder.
+ * @param <VI>  Reducer values input class
+ */
+public abstract class AbstractStatsReducer<VI> extends AbstractReducer<Text, VI, Text, Text> {
+
+    private Counters.ReducerCounter counter;
+    private Counters.ReducerCounter statsInCounter;
+    private Counters.ReducerCounter statsOutCounter;
+
+    private Map<String, IOutputType.OpTypeEntry> outputTypes;
+
+    private List<String> variables;
+
+    private MultipleOutputs<Text, Text> mos;
+    private boolean byMonth;
+
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+
+        counter = getCounter(context, CountersEnum.STATS_REDUCER_COUNT);
+        statsInCounter = getCounter(context, CountersEnum.STATS_REDUCER_GROUP_IN_COUNT);
+        statsOutCounter = getCounter(context, CountersEnum.STATS_REDUCER_GROUP_OUT_COUNT);
+
+        Configuration conf = context.getConfiguration();
+        StatsConfigReader cfgReader = new StatsConfigReader(StatsMapper.getClsCsvMapperCfg());
+
+        variables = cfgReader.readVariables(conf);
+        outputTypes = cfgReader.readOutputTypes(conf);
+
+        mos = new MultipleOutputs<>(context);
+        byMonth = conf.getBoolean(generatePropertyName(STATS_PROP_SECTION, AGGREGATE_BY_MONTH_PROP), false);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+        mos.close();
+    }
+
+    /**
+     * Count an input group, writing the parameter tags before the first group
+     * @param context   Current context
+     */
+    protected void inputGroup(Context context) {
+
+        Optional<Long> inCount = statsInCounter.getCount();
+        inCount.ifPresent(count -> {
+            if (count == 0) {
+                Configuration conf = context.getConfiguration();
+
+                getTagStrings(conf, STATS_PROP_SECTION).forEach(tagLine -> {
+                    try {
+                        context.write(new Text(COMMENT_PREFIX), new Text(tagLine));
+                    } catch (IOException | InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                });
+            }
+        });
+
+        statsInCounter.increment();
+    }
+
+    /**
+     * Write the statistics for a partial aggregate
+     * @param context   Current context
+     * @param keyStr    Property name or property pair product identifier
+     * @param partial   Partial aggregate
+     */
+    protected void writePartial(Context context, String keyStr, StatsPartial partial) {
+
+        if (partial.isEmpty()) {
+            return;
+        }
+        counter.incrementValue(partial.getCount());
+
+        try {
+            if (byMonth) {
+                Pair<String, String> monthKey = StatsAggregates.splitMonthKey(keyStr);
+                mos.write(AGGREGATE_NAMED_OP, new Text(monthKey.getRight()), partial,
+                    monthKey.getLeft() + "/" + AGGREGATE_NAMED_OP);
+            } else {
+                writeOutput(context, getStatistics(keyStr, partial));
+                mos.write(AGGREGATE_NAMED_OP, new Text(keyStr), partial);
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the month prefix of an input key
+     * @param key   Input key
+     * @return  month prefix including the separator, or an empty string if not aggregating by month
+     */
+    protected String getMonthPrefix(String key) {
+        String prefix = "";
+        if (byMonth) {
+            String month = StatsAggregates.splitMonthKey(key).getLeft();
+            if (!month.isEmpty()) {
+                prefix = key.substring(0, month.length() + 1);
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Get the statistics for a partial aggregate
+     * @param keyStr    Property name or property pair product identifier
+     * @param partial   Partial aggregate
+     * @return  List of statistic keys and values
+     */
+    public static List<Pair<Text, Value>> getStatistics(String keyStr, StatsPartial partial) {
+
+        List<Pair<Text, Value>> outputList = new ArrayList<>();
+
+        if (NameTag.isStandardKey(keyStr)) {
+            /* output following key/values:
+                <key>-MIN - min value
+                <key>-MAX - max value
+             */
+            outputList.addAll(List.of(
+                Pair.of(new Text(NameTag.MIN.getKeyTag(keyStr)), partial.getMin()),
+                Pair.of(new Text(NameTag.MAX.getKeyTag(keyStr)), partial.getMax())
+            ));
+        }
+
+        /* always output following key/values:
+            <key>-SUM - sum of values
+            <key>-CNT - count of values
+            <key>-ZERO - count of zero values
+            <key>-MEAN - mean value
+         */
+        Value count = Value.of(partial.getCount());
+        Value zeroCnt = Value.of(partial.getZeroCount());
+        addTotals(outputList, keyStr, partial.getSum(), count, zeroCnt);
+
+        /* squared values are accumulated with the value, so output following key/values:
+            <key>-SQ-SUM - sum of squared values
+            <key>-SQ-CNT - count of squared values
+            <key>-SQ-ZERO - count of zero squared values
+            <key>-SQ-MEAN - mean squared value
+         */
+        partial.getSumOfSq().ifPresent(sumOfSq ->
+            addTotals(outputList, NameTag.SQ.getKeyTag(keyStr), sumOfSq, count, zeroCnt));
+
+        return outputList;
+    }
+
+    private static void addTotals(List<Pair<Text, Value>> outputList, String keyStr, Value sum, Value count, Value zeroCnt) {
+        Value mean = sum.copyOf();
+        mean.divide(count);
+
+        outputList.addAll(List.of(
+            Pair.of(new Text(NameTag.SUM.getKeyTag(keyStr)), sum),
+            Pair.of(new Text(NameTag.CNT.getKeyTag(keyStr)), count),
+            Pair.of(new Text(NameTag.ZERO.getKeyTag(keyStr)), zeroCnt),
+            Pair.of(new Text(NameTag.MEAN.getKeyTag(keyStr)), mean)
+        ));
+    }
+
+    private void writeOutput(Context context, List<Pair<Text, Value>> stream) {
+        stream.forEach(pair -> {
+            writeOutput(context, pair.getLeft(), new Text(pair.getRight().value().toString()));
+        });
+    }
+
+    private void writeOutput(Context context, Text key, Text value) {
+        try {
+            context.write(key, value);
+
+            statsOutCounter.increment();
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public Map<String, IOutputType.OpTypeEntry> getOutputTypes() {
+        return outputTypes;
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    @Override
+    protected Text newKey(String key) {
+        return new Text(key);
+    }
+
+    @Override
+    protected Text newValue(String value) {
+        return new Text(value);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.hadoop.ingest.PartitionManifest;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+
+/**
+ * Merged partial aggregates of statistics, read from the 'aggregate' output of statistics jobs.
+ * Folding the aggregates of separate runs, e.g. over separate months, gives the same statistics as a single run over
+ * all their inputs.
+ */
+public class StatsAggregates {
+
+    private static final char MONTH_SEPARATOR = '/';
+
+    private final Map<String, StatsPartial> aggregates;
+
+    private StatsAggregates() {
+        this.aggregates = new TreeMap<>();
+    }
+
+    public static StatsAggregates of() {
+        return new StatsAggregates();
+    }
+
+    /**
+     * Merge a partial aggregate
+     * @param key       Property name or property pair product identifier
+     * @param partial   Partial aggregate
+     */
+    public void merge(String key, StatsPartial partial) {
+        aggregates.computeIfAbsent(key, k -> new StatsPartial()).merge(partial);
+    }
+
+    /**
+     * Merge the partial aggregates in a sequence file
+     * @param conf  Configuration
+     * @param file  File to read
+     * @throws IOException
+     */
+    public void read(Configuration conf, Path file) throws IOException {
+        try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file))) {
+            Text key = new Text();
+            StatsPartial partial = new StatsPartial();
+            while (reader.next(key, partial)) {
+                merge(key.toString(), partial);
+            }
+        }
+    }
+
+    /**
+     * Prefix a statistics key with the month partition folder of a date, e.g. '2001/01/total'
+     * @param date  Date
+     * @param key   Statistics key
+     * @return  month key
+     */
+    public static String monthKey(LocalDate date, String key) {
+        return PartitionManifest.getPartitionDir(date) + MONTH_SEPARATOR + key;
+    }
+
+    /**
+     * Split a month key into the month partition folder and statistics key
+     * @param key   Month key
+     * @return  month partition folder and statistics key, folder is empty if the key has no month
+     */
+    public static Pair<String, String> splitMonthKey(String key) {
+        int year = key.indexOf(MONTH_SEPARATOR);
+        int month = (year < 0 ? -1 : key.indexOf(MONTH_SEPARATOR, year + 1));
+        return (month < 0 ? Pair.of("", key) : Pair.of(key.substring(0, month), key.substring(month + 1)));
+    }
+
+    public int size() {
+        return aggregates.size();
+    }
+
+    /**
+     * Write the statistics in the same format as the output of a statistics job
+     * @param conf  Configuration
+     * @param file  File to write
+     * @param tags  Parameter tags to write before the statistics
+     * @throws IOException
+     */
+    public void write(Configuration conf, Path file, List<String> tags) throws IOException {
+        FileSystem fs = file.getFileSystem(conf);
+        try (FSDataOutputStream stream = fs.create(file, true)) {
+            StringBuilder sb = new StringBuilder();
+            tags.forEach(tag -> sb.append(HADOOP_KEY_VAL.stringifyElement(COMMENT_PREFIX, tag)).append('\n'));
+            aggregates.forEach((key, partial) -> {
+                if (!partial.isEmpty()) {
+                    for (Pair<Text, Value> pair : AbstractStatsReducer.getStatistics(key, partial)) {
+                        sb.append(HADOOP_KEY_VAL.stringifyElement(pair.getLeft().toString(),
+                            pair.getRight().value().toString())).append('\n');
+                    }
+                }
+            });
+            stream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
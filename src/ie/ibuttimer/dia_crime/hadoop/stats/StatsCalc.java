@@ -28,7 +28,6 @@ import ie.ibuttimer.dia_crime.misc.Value;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
-import org.apache.http.util.TextUtils;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
@@ -71,8 +70,8 @@ public class StatsCalc extends AbstractStatsCalc {
 
         setZero(fields);
 
-        List<String> lines = getLines(id);
-        if (lines != null) {
+        StatsIndex index = getIndex();
+        if (index != null) {
             Set<NameTag> req = new HashSet<>();
             stats.forEach(stat -> {
                 switch (stat) {
@@ -98,20 +97,20 @@ public class StatsCalc extends AbstractStatsCalc {
                 }
             });
 
-            AtomicReference<Value> sum = new AtomicReference<>();
-            AtomicReference<Value> sumOfSq = new AtomicReference<>();
-            AtomicReference<Value> min = new AtomicReference<>();
-            AtomicReference<Value> max = new AtomicReference<>();
-            AtomicReference<Value> count = new AtomicReference<>();
-            AtomicReference<Value> zero = new AtomicReference<>();
+            AtomicReference<Value> sum = new AtomicReference<>(Value.of());
+            AtomicReference<Value> sumOfSq = new AtomicReference<>(Value.of());
+            AtomicReference<Value> min = new AtomicReference<>(Value.of());
+            AtomicReference<Value> max = new AtomicReference<>(Value.of());
+            AtomicReference<Value> count = new AtomicReference<>(Value.of());
+            AtomicReference<Value> zero = new AtomicReference<>(Value.of());
             for (NameTag key : req) {
                 switch (key) {
-                    case SQ:    readEntry(lines, key.getKeyTag(id)).ifPresent(sumOfSq::set);    break;
-                    case SUM:   readEntry(lines, key.getKeyTag(id)).ifPresent(sum::set);        break;
-                    case CNT:   readEntry(lines, key.getKeyTag(id)).ifPresent(count::set);      break;
-                    case MIN:   readEntry(lines, key.getKeyTag(id)).ifPresent(min::set);        break;
-                    case MAX:   readEntry(lines, key.getKeyTag(id)).ifPresent(max::set);        break;
-                    case ZERO:  readEntry(lines, key.getKeyTag(id)).ifPresent(zero::set);       break;
+                    case SQ:    index.get(id, List.of(NameTag.SQ, NameTag.SUM)).ifPresent(sumOfSq::set);  break;
+                    case SUM:   index.get(id, key).ifPresent(sum::set);        break;
+                    case CNT:   index.get(id, key).ifPresent(count::set);      break;
+                    case MIN:   index.get(id, key).ifPresent(min::set);        break;
+                    case MAX:   index.get(id, key).ifPresent(max::set);        break;
+                    case ZERO:  index.get(id, key).ifPresent(zero::set);       break;
                 }
             }
 
@@ -169,11 +168,9 @@ public class StatsCalc extends AbstractStatsCalc {
 
         String keyPairXY = NameTag.getKeyPair(idX, idY);
         String keyPairYX = NameTag.getKeyPair(idY, idX);
-        List<String> lines = new ArrayList<>();
-        lines.addAll(getLines(idX));
-        lines.addAll(getLines(idY));
+        StatsIndex index = getIndex();
 
-        if (lines.size() > 0) {
+        if (index != null && !index.isEmpty()) {
             Set<String> req = new HashSet<>();
             Map<String, String> corTags = new HashMap<>();
             stats.forEach(stat -> {
@@ -218,7 +215,7 @@ public class StatsCalc extends AbstractStatsCalc {
 
             Map<String, Value> valueMap = new HashMap<>();
             for (String key : req) {
-                readEntry(lines, key).ifPresent(v -> valueMap.put(key, v));
+                index.get(key).ifPresent(v -> valueMap.put(key, v));
             }
 
             Result result = new Result();
@@ -272,22 +269,4 @@ public class StatsCalc extends AbstractStatsCalc {
         return resultSet;
     }
 
-    private Optional<Value> readEntry(List<String> lines, String keyTag) {
-        AtomicReference<Optional<Value>> entry = new AtomicReference<>(Value.empty());
-        lines.stream()
-            .filter(l -> l.startsWith(keyTag))
-            .findFirst()
-            .ifPresent(l -> {
-                String line = getValueFromLine(l);
-                if (!TextUtils.isEmpty(line)) {
-                    entry.set(Optional.of(
-                        Value.of(
-                            Double.valueOf(line)
-                        )
-                    ));
-                }
-            });
-        return entry.get();
-    }
-
 }
@@ -176,7 +176,7 @@ public class StatsConfigReader extends ConfigReader {
      * @param cls
      * @return
      */
-    private boolean isNumericClass(Class<?> cls) {
+    public static boolean isNumericClass(Class<?> cls) {
         return (cls.equals(Integer.class) || cls.equals(Long.class) || cls.equals(Float.class) ||
             cls.equals(Double.class) || cls.equals(BigInteger.class) || cls.equals(BigDecimal.class));
     }
@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.hadoop.io.FileReader;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.http.util.TextUtils;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.COMMENT_PREFIX;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+
+/**
+ * Index of statistics job output, read once and keyed by the exact key tag, e.g. 'temp-SQ-SUM'.
+ * Integer values are indexed as Long and all other values as Double.
+ */
+public class StatsIndex {
+
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
+
+    private final Map<String, Value> index;
+
+    private StatsIndex() {
+        this.index = new HashMap<>();
+    }
+
+    public static StatsIndex empty() {
+        return new StatsIndex();
+    }
+
+    /**
+     * Load the statistics from a file
+     * @param path  Path to statistics file
+     * @param conf  Configuration
+     * @return  index
+     * @throws IOException
+     */
+    public static StatsIndex load(Path path, Configuration conf) throws IOException {
+        StatsIndex statsIndex = new StatsIndex();
+        FileReader fileReader = new FileReader(path, conf);
+        try {
+            List<String> lines = fileReader.open().getAllLines(l -> !l.startsWith(COMMENT_PREFIX));
+            if (lines != null) {
+                lines.forEach(statsIndex::add);
+            }
+        } finally {
+            fileReader.close();
+        }
+        return statsIndex;
+    }
+
+    /**
+     * Load the statistics from a file
+     * @param path  Path to statistics file
+     * @param conf  Configuration
+     * @return  index
+     * @throws IOException
+     */
+    public static StatsIndex load(String path, Configuration conf) throws IOException {
+        return load(new Path(path), conf);
+    }
+
+    /**
+     * Add a statistics output line to the index
+     * @param line  Line to add; key tag and value separated by a tab
+     */
+    public void add(String line) {
+        Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(line);
+        String key = keyVal.getLeft();
+        String value = keyVal.getRight();
+        if (!TextUtils.isEmpty(key) && !TextUtils.isEmpty(value)) {
+            try {
+                Value parsed;
+                if (INTEGER.matcher(value).matches()) {
+                    parsed = parseInteger(value);
+                } else {
+                    parsed = Value.of(Double.valueOf(value));
+                }
+                index.put(key, parsed);
+            } catch (NumberFormatException e) {
+                // not a numeric statistic, ignore
+            }
+        }
+    }
+
+    /**
+     * Parse an integer statistic, large sums and squared sums may overflow long
+     * @param value Integer text
+     * @return  value
+     */
+    private static Value parseInteger(String value) {
+        Value parsed;
+        try {
+            parsed = Value.of(Long.valueOf(value));
+        } catch (NumberFormatException e) {
+            parsed = Value.of(new BigInteger(value));
+        }
+        return parsed;
+    }
+
+    /**
+     * Get the value for a key tag
+     * @param keyTag    Key tag, e.g. 'temp-SUM'
+     * @return  value if present
+     */
+    public Optional<Value> get(String keyTag) {
+        return Optional.ofNullable(index.get(keyTag));
+    }
+
+    /**
+     * Get the value for a key and tag
+     * @param key   Property name
+     * @param tag   Tag
+     * @return  value if present
+     */
+    public Optional<Value> get(String key, NameTag tag) {
+        return get(tag.getKeyTag(key));
+    }
+
+    /**
+     * Get the value for a key and tag chain
+     * @param key   Property name
+     * @param tags  Tags
+     * @return  value if present
+     */
+    public Optional<Value> get(String key, List<NameTag> tags) {
+        return get(NameTag.getKeyTagChain(key, tags));
+    }
+
+    public Optional<Double> getDouble(String keyTag) {
+        return get(keyTag).map(Value::doubleValue);
+    }
+
+    public boolean contains(String keyTag) {
+        return index.containsKey(keyTag);
+    }
+
+    /**
+     * Get the values for the specified tags of the specified properties
+     * @param tags  Tags
+     * @param keys  Property names
+     * @return  map of key tag and value
+     */
+    public Map<String, Double> getDoubles(List<NameTag> tags, List<String> keys) {
+        Map<String, Double> values = new HashMap<>();
+        keys.forEach(key -> tags.forEach(tag -> {
+            String keyTag = tag.getKeyTag(key);
+            getDouble(keyTag).ifPresent(v -> values.put(keyTag, v));
+        }));
+        return values;
+    }
+
+    /**
+     * Get the values for the specified tag of the specified properties
+     * @param tag   Tag
+     * @param keys  Property names
+     * @return  map of property name and value
+     */
+    public Map<String, Double> getDoubles(NameTag tag, List<String> keys) {
+        Map<String, Double> values = new HashMap<>();
+        keys.forEach(key -> getDouble(tag.getKeyTag(key)).ifPresent(v -> values.put(key, v)));
+        return values;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+}
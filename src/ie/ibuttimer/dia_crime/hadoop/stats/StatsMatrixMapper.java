@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
+import ie.ibuttimer.dia_crime.misc.LazyRecord;
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Statistics mapper that accumulates property values, squared values and property pair product values in dense
+ * arrays, and outputs a single partial aggregate (or one per month if aggregating by month) in cleanup
+ * - input key : csv file line number
+ * - input value : csv file line text
+ * - output key : matrix key, prefixed with the month if aggregating by month
+ * - output value : dense partial aggregate
+ */
+public class StatsMatrixMapper extends AbstractStatsMapper<StatsMatrixPartial> {
+
+    public static final String MATRIX_KEY = "matrix";
+
+    private List<String> names;
+    private List<Class<?>> classes;
+    private int[] indices;
+    private double[] values;
+
+    private Map<String, StatsMatrixPartial> accumulators;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+
+        Map<String, IOutputType.OpTypeEntry> outputTypes = getOutputTypes();
+
+        // non-numeric values are ignored by the sparse partials, so only numeric properties are accumulated
+        names = outputTypes.entrySet().stream()
+            .filter(entry -> StatsConfigReader.isNumericClass(entry.getValue().getCls()))
+            .map(Map.Entry::getKey)
+            .sorted()
+            .collect(Collectors.toList());
+        classes = names.stream().map(name -> outputTypes.get(name).getCls()).collect(Collectors.toList());
+        indices = names.stream().mapToInt(this::getRecordIndex).toArray();
+        values = new double[names.size()];
+
+        accumulators = new TreeMap<>();
+    }
+
+    @Override
+    protected void mapValues(LazyRecord record, Context context) {
+        for (int i = 0; i < values.length; ++i) {
+            Class<?> cls = classes.get(i);
+            Value wrapped = record.getValue(indices[i], cls, Value.getDefaultValueStr(cls),
+                getDateTimeFormatter(), getLogger());
+            values[i] = wrapped.isNumber() ? wrapped.doubleValue() : 0.0;
+        }
+        // a matrix per output key, i.e. per month if aggregating by month
+        accumulators.computeIfAbsent(getStatsKey(MATRIX_KEY), key -> new StatsMatrixPartial(names))
+            .accumulate(values);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        for (Map.Entry<String, StatsMatrixPartial> entry : accumulators.entrySet()) {
+            StatsMatrixPartial accumulator = entry.getValue();
+            if (!accumulator.isEmpty()) {
+                if (show(DebugLevel.HIGH)) {
+                    getLogger().info(String.format("Writing %s of %d properties, %d lines",
+                        entry.getKey(), names.size(), accumulator.getCount()));
+                }
+                write(context, new Text(entry.getKey()), accumulator);
+            }
+        }
+        super.cleanup(context);
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Mergeable dense partial aggregate of the values of a list of properties.
+ * Holds the sum, sum of squares, zero count, min and max of each property, and the upper-triangular sum of products,
+ * product zero count, and min and max product of each property pair, in primitive arrays indexed by property.
+ * All values are accumulated as doubles, min and max values are converted back to the class of the property.
+ */
+public class StatsMatrixPartial implements Writable {
+
+    private String[] names;
+    private long count;
+    private double[] sum;
+    private double[] sumOfSq;
+    private double[] min;
+    private double[] max;
+    private long[] zeroCount;
+    private double[] product;           // upper-triangular, row major
+    private long[] productZeroCount;    // upper-triangular, row major
+    private double[] productMin;        // upper-triangular, row major
+    private double[] productMax;        // upper-triangular, row major
+
+    // Default constructor to allow (de)serialization
+    public StatsMatrixPartial() {
+        this(new String[0]);
+    }
+
+    public StatsMatrixPartial(List<String> names) {
+        this(names.toArray(new String[0]));
+    }
+
+    private StatsMatrixPartial(String[] names) {
+        init(names);
+    }
+
+    private void init(String[] names) {
+        int size = names.length;
+        int pairs = numPairs(size);
+        this.names = names;
+        this.count = 0;
+        this.sum = new double[size];
+        this.sumOfSq = new double[size];
+        this.min = new double[size];
+        this.max = new double[size];
+        this.zeroCount = new long[size];
+        this.product = new double[pairs];
+        this.productZeroCount = new long[pairs];
+        this.productMin = new double[pairs];
+        this.productMax = new double[pairs];
+        Arrays.fill(min, Double.MAX_VALUE);
+        Arrays.fill(max, -Double.MAX_VALUE);
+        Arrays.fill(productMin, Double.MAX_VALUE);
+        Arrays.fill(productMax, -Double.MAX_VALUE);
+    }
+
+    public static StatsMatrixPartial read(DataInput dataInput) throws IOException {
+        StatsMatrixPartial partial = new StatsMatrixPartial();
+        partial.readFields(dataInput);
+        return partial;
+    }
+
+    private static int numPairs(int size) {
+        return (size * (size - 1)) / 2;
+    }
+
+    /**
+     * Clear all accumulated values, retaining the property names
+     */
+    public void clear() {
+        init(names);
+    }
+
+    /**
+     * Accumulate the values of a line
+     * @param values    Values in property name order
+     */
+    public void accumulate(double[] values) {
+        if (values.length != names.length) {
+            throw new IllegalArgumentException("Expected " + names.length + " values but got " + values.length);
+        }
+        int pair = 0;
+        for (int i = 0; i < values.length; ++i) {
+            double value = values[i];
+            boolean zero = (value == 0.0);
+            sum[i] += value;
+            sumOfSq[i] += value * value;
+            if (value < min[i]) {
+                min[i] = value;
+            }
+            if (value > max[i]) {
+                max[i] = value;
+            }
+            if (zero) {
+                ++zeroCount[i];
+            }
+            for (int j = i + 1; j < values.length; ++j, ++pair) {
+                double prd = value * values[j];
+                product[pair] += prd;
+                if (prd == 0.0) {
+                    ++productZeroCount[pair];
+                }
+                if (prd < productMin[pair]) {
+                    productMin[pair] = prd;
+                }
+                if (prd > productMax[pair]) {
+                    productMax[pair] = prd;
+                }
+            }
+        }
+        ++count;
+    }
+
+    /**
+     * Merge another partial into this partial, element-wise
+     * @param other     Partial to merge
+     */
+    public void merge(StatsMatrixPartial other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0 && !Arrays.equals(names, other.names)) {
+            init(Arrays.copyOf(other.names, other.names.length));
+        } else if (!Arrays.equals(names, other.names)) {
+            throw new IllegalArgumentException("Property mismatch: " + Arrays.toString(names) + " and " +
+                Arrays.toString(other.names));
+        }
+        count += other.count;
+        for (int i = 0; i < names.length; ++i) {
+            sum[i] += other.sum[i];
+            sumOfSq[i] += other.sumOfSq[i];
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+            zeroCount[i] += other.zeroCount[i];
+        }
+        for (int i = 0; i < product.length; ++i) {
+            product[i] += other.product[i];
+            productZeroCount[i] += other.productZeroCount[i];
+            productMin[i] = Math.min(productMin[i], other.productMin[i]);
+            productMax[i] = Math.max(productMax[i], other.productMax[i]);
+        }
+    }
+
+    /**
+     * Apply an action to the partial aggregate equivalent of each property and property pair; the keys are
+     * the property name and the property pair product identifier.
+     * @param classOf   Function returning the class of a property, min and max values are converted to it
+     * @param action    Action to apply
+     */
+    public void forEachPartial(Function<String, Class<?>> classOf, BiConsumer<String, StatsPartial> action) {
+        if (count == 0) {
+            return;
+        }
+        int pair = 0;
+        for (int i = 0; i < names.length; ++i) {
+            Class<?> cls = classOf.apply(names[i]);
+            action.accept(names[i], StatsPartial.of(Value.of(sum[i]), Value.of(sumOfSq[i]),
+                wrap(min[i], cls), wrap(max[i], cls), count, zeroCount[i]));
+
+            for (int j = i + 1; j < names.length; ++j, ++pair) {
+                action.accept(NameTag.PRD.getKeyTag(NameTag.getKeyPair(names[i], names[j])),
+                    StatsPartial.of(Value.of(product[pair]), null, Value.of(productMin[pair]),
+                        Value.of(productMax[pair]), count, productZeroCount[pair]));
+            }
+        }
+    }
+
+    /**
+     * Convert an accumulated value to the class of its property
+     * @param value Value
+     * @param cls   Class of property
+     * @return  value
+     */
+    private static Value wrap(double value, Class<?> cls) {
+        Object converted;
+        if (cls.equals(Integer.class)) {
+            converted = (int) value;
+        } else if (cls.equals(Long.class)) {
+            converted = (long) value;
+        } else if (cls.equals(Float.class)) {
+            converted = (float) value;
+        } else if (cls.equals(BigInteger.class)) {
+            converted = BigDecimal.valueOf(value).toBigInteger();
+        } else if (cls.equals(BigDecimal.class)) {
+            converted = BigDecimal.valueOf(value);
+        } else {
+            converted = value;
+        }
+        return Value.of(converted);
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        WritableUtils.writeVInt(dataOutput, names.length);
+        for (String name : names) {
+            Text.writeString(dataOutput, name);
+        }
+        WritableUtils.writeVLong(dataOutput, count);
+        if (count > 0) {
+            for (int i = 0; i < names.length; ++i) {
+                dataOutput.writeDouble(sum[i]);
+                dataOutput.writeDouble(sumOfSq[i]);
+                dataOutput.writeDouble(min[i]);
+                dataOutput.writeDouble(max[i]);
+                WritableUtils.writeVLong(dataOutput, zeroCount[i]);
+            }
+            for (int i = 0; i < product.length; ++i) {
+                dataOutput.writeDouble(product[i]);
+                WritableUtils.writeVLong(dataOutput, productZeroCount[i]);
+                dataOutput.writeDouble(productMin[i]);
+                dataOutput.writeDouble(productMax[i]);
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        int size = WritableUtils.readVInt(dataInput);
+        String[] readNames = new String[size];
+        for (int i = 0; i < size; ++i) {
+            readNames[i] = Text.readString(dataInput);
+        }
+        init(readNames);
+        count = WritableUtils.readVLong(dataInput);
+        if (count > 0) {
+            for (int i = 0; i < size; ++i) {
+                sum[i] = dataInput.readDouble();
+                sumOfSq[i] = dataInput.readDouble();
+                min[i] = dataInput.readDouble();
+                max[i] = dataInput.readDouble();
+                zeroCount[i] = WritableUtils.readVLong(dataInput);
+            }
+            for (int i = 0; i < product.length; ++i) {
+                product[i] = dataInput.readDouble();
+                productZeroCount[i] = WritableUtils.readVLong(dataInput);
+                productMin[i] = dataInput.readDouble();
+                productMax[i] = dataInput.readDouble();
+            }
+        }
+    }
+
+    public List<String> getNames() {
+        return List.of(names);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "names=" + Arrays.toString(names) +
+            ", count=" + count +
+            ", sum=" + Arrays.toString(sum) +
+            ", sumOfSq=" + Arrays.toString(sumOfSq) +
+            ", min=" + Arrays.toString(min) +
+            ", max=" + Arrays.toString(max) +
+            ", zeroCount=" + Arrays.toString(zeroCount) +
+            ", product=" + Arrays.toString(product) +
+            ", productZeroCount=" + Arrays.toString(productZeroCount) +
+            ", productMin=" + Arrays.toString(productMin) +
+            ", productMax=" + Arrays.toString(productMax) +
+            '}';
+    }
+}
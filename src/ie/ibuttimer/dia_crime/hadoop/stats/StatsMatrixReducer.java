@@ -0,0 +1,57 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+
+/**
+ * Reducer for statistics, which adds dense partial aggregates element-wise to output sum of values etc.
+ * - input key : matrix key
+ * - input value : dense partial aggregate
+ * - output key : property name plus specific identifier for the statistic
+ * - output value : value
+ */
+public class StatsMatrixReducer extends AbstractStatsReducer<StatsMatrixPartial> {
+
+    private final StatsMatrixPartial merged = new StatsMatrixPartial();
+
+    @Override
+    protected void reduce(Text key, Iterable<StatsMatrixPartial> values, Context context) throws IOException, InterruptedException {
+
+        merged.clear();
+        values.forEach(merged::merge);
+        String monthPrefix = getMonthPrefix(key.toString());
+
+        // output the same keys as the sparse reducer, with min/max in the class of the property
+        merged.forEachPartial(name -> {
+            IOutputType.OpTypeEntry typeEntry = getOutputTypes().get(name);
+            return (typeEntry == null ? Double.class : typeEntry.getCls());
+        }, (keyStr, partial) -> {
+            inputGroup(context);
+            writePartial(context, monthPrefix + keyStr, partial);
+        });
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package ie.ibuttimer.dia_crime.hadoop.stats;
+
+import ie.ibuttimer.dia_crime.misc.Value;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Mergeable partial aggregate of the values for a statistics key.
+ * Holds the sum, sum of squares, count, zero count, min and max of the values seen, all of which may be
+ * merged in any order, so partials may be combined map-side before the shuffle.
+ */
+public class StatsPartial implements Writable {
+
+    private Value sum;
+    private Value sumOfSq;      // optional, not required for product values
+    private Value min;
+    private Value max;
+    private long count;
+    private long zeroCount;
+
+    // Default constructor to allow (de)serialization
+    public StatsPartial() {
+        clear();
+    }
+
+    /**
+     * Create a partial for a single value
+     * @param value     Value
+     * @param withSq    Accumulate sum of squares
+     * @return  new partial
+     */
+    public static StatsPartial of(Value value, boolean withSq) {
+        StatsPartial partial = new StatsPartial();
+        partial.accumulate(value, withSq);
+        return partial;
+    }
+
+    /**
+     * Create a partial for a single value, with sum of squares
+     * @param value     Value
+     * @return  new partial
+     */
+    public static StatsPartial of(Value value) {
+        return of(value, true);
+    }
+
+    /**
+     * Create a partial from its components
+     * @param sum       Sum of values
+     * @param sumOfSq   Sum of squared values, or <code>null</code> if not required
+     * @param min       Min value
+     * @param max       Max value
+     * @param count     Count of values
+     * @param zeroCount Count of zero values
+     * @return  new partial
+     */
+    public static StatsPartial of(Value sum, Value sumOfSq, Value min, Value max, long count, long zeroCount) {
+        StatsPartial partial = new StatsPartial();
+        if (count > 0) {
+            partial.merge(sum, sumOfSq, min, max, count, zeroCount);
+        }
+        return partial;
+    }
+
+    public static StatsPartial read(DataInput dataInput) throws IOException {
+        StatsPartial partial = new StatsPartial();
+        partial.readFields(dataInput);
+        return partial;
+    }
+
+    public void clear() {
+        sum = null;
+        sumOfSq = null;
+        min = null;
+        max = null;
+        count = 0;
+        zeroCount = 0;
+    }
+
+    /**
+     * Accumulate a single value, non-numeric values are ignored
+     * @param value     Value
+     * @param withSq    Accumulate sum of squares
+     */
+    public void accumulate(Value value, boolean withSq) {
+        if (!value.isNumber()) {
+            return;
+        }
+        Value squared = null;
+        if (withSq) {
+            squared = value.copyOf();
+            squared.pow(2);
+        }
+        merge(sumValue(value), squared == null ? null : sumValue(squared), value, value, 1,
+            value.doubleValue() == 0.0 ? 1 : 0);
+    }
+
+    /**
+     * Merge another partial into this partial
+     * @param other     Partial to merge
+     */
+    public void merge(StatsPartial other) {
+        if (other.count > 0) {
+            merge(other.sum, other.sumOfSq, other.min, other.max, other.count, other.zeroCount);
+        }
+    }
+
+    private void merge(Value oSum, Value oSumOfSq, Value oMin, Value oMax, long oCount, long oZeroCount) {
+        if (count == 0) {
+            // copy as hadoop reuses writables
+            sum = oSum.copyOf();
+            sumOfSq = (oSumOfSq == null ? null : oSumOfSq.copyOf());
+            min = oMin.copyOf();
+            max = oMax.copyOf();
+        } else {
+            sum.add(oSum);
+            if (sumOfSq != null && oSumOfSq != null) {
+                sumOfSq.add(oSumOfSq);
+            } else {
+                sumOfSq = null;
+            }
+            min.min(oMin);
+            max.max(oMax);
+        }
+        count += oCount;
+        zeroCount += oZeroCount;
+    }
+
+    /**
+     * Get a value to use as a sum; integer and floating point values are summed as doubles, big numbers as is
+     * @param value     Value
+     * @return  Sum value
+     */
+    private static Value sumValue(Value value) {
+        return value.isBigNumber() ? value.copyOf() : Value.of(value.doubleValue());
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        WritableUtils.writeVLong(dataOutput, count);
+        if (count > 0) {
+            WritableUtils.writeVLong(dataOutput, zeroCount);
+            sum.write(dataOutput);
+            min.write(dataOutput);
+            max.write(dataOutput);
+            dataOutput.writeBoolean(sumOfSq != null);
+            if (sumOfSq != null) {
+                sumOfSq.write(dataOutput);
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        clear();
+        count = WritableUtils.readVLong(dataInput);
+        if (count > 0) {
+            zeroCount = WritableUtils.readVLong(dataInput);
+            sum = readValue(dataInput);
+            min = readValue(dataInput);
+            max = readValue(dataInput);
+            if (dataInput.readBoolean()) {
+                sumOfSq = readValue(dataInput);
+            }
+        }
+    }
+
+    private static Value readValue(DataInput dataInput) throws IOException {
+        Value value = Value.of();
+        value.readFields(dataInput);
+        return value;
+    }
+
+    public Value getSum() {
+        return sum;
+    }
+
+    public Optional<Value> getSumOfSq() {
+        return Optional.ofNullable(sumOfSq);
+    }
+
+    public Value getMin() {
+        return min;
+    }
+
+    public Value getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public StatsPartial copyOf() {
+        StatsPartial other = new StatsPartial();
+        other.merge(this);
+        return other;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "sum=" + sum +
+            ", sumOfSq=" + sumOfSq +
+            ", min=" + min +
+            ", max=" + max +
+            ", count=" + count +
+            ", zeroCount=" + zeroCount +
+            '}';
+    }
+}
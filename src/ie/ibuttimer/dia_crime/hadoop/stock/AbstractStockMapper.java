@@ -54,6 +54,7 @@ public abstract class AbstractStockMapper<VO>
 
     private Map<String, Integer> indices = new HashMap<>();
     private int maxIndex = -1;
+    private String[] splits;
 
     public static final List<String> STOCK_PROPERTY_INDICES = Arrays.asList(
         DATE_PROP, OPEN_PROP, HIGH_PROP, LOW_PROP, CLOSE_PROP, ADJCLOSE_PROP, VOLUME_PROP
@@ -86,6 +87,7 @@ public abstract class AbstractStockMapper<VO>
 
         indices = getIndices();
         maxIndex = getMaxIndex();
+        splits = new String[maxIndex + 1];
 
         counter = getCounter(context);
 
@@ -116,11 +118,11 @@ public abstract class AbstractStockMapper<VO>
         if (!skip(key, value)) {
             /* Date,Open,High,Low,Close,Adj Close,Volume
              */
-            String line = value.toString();
-            String[] splits = line.split(getSeparator());
-            // if the line ends with separators, they are ignored and consequently the num of splits doesn't match
-            // num of columns in csv file
-            if (splits.length > maxIndex) {
+            int columns = tokenize(value);
+            if (columns > maxIndex) {
+                // only the required columns are set
+                getFields(splits, indices.values());
+
                 Pair<Boolean, LocalDate> filterRes = getDateAndFilter(splits[indices.get(DATE_PROP)]);
 
                 if (filterRes.getLeft()) {
@@ -133,7 +135,7 @@ public abstract class AbstractStockMapper<VO>
                     writeOutput(context, entry, keyOut, id, keyOutType);
                 }
             } else {
-                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + splits.length);
+                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + columns);
             }
         }
     }
@@ -199,6 +201,7 @@ public abstract class AbstractStockMapper<VO>
     public static class StockMapperCfg extends AbstractCsvMapperCfg {
 
         private static Property tagProp = Property.of(STOCK_TAG_PROP, "stock tag", "");
+        private static Property dailyInPathProp = Property.of(DAILY_IN_PATH_PROP, "path to daily stocks input file", "");
 
         public StockMapperCfg(String propertyRoot) {
             super(propertyRoot);
@@ -207,7 +210,7 @@ public abstract class AbstractStockMapper<VO>
         @Override
         public List<Property> getAdditionalProps() {
             List<Property> list = new ArrayList<>(getPropertyList(List.of(FACTOR_PROP)));
-            list.addAll(List.of(tagProp));
+            list.addAll(List.of(tagProp, dailyInPathProp));
             return list;
         }
 
@@ -54,6 +54,27 @@ public abstract class AbstractWeatherMapper<VO> extends AbstractCsvMapper<DateWr
     private Map<String, Integer> indices;
     private int maxIndex = -1;
 
+    // column indices resolved at setup
+    private int dateIndex;
+    private int epochIndex;     // unix epoch time column to use for date, or -1 to parse date column
+    private int lastIndex;      // last column required
+    private int tempIndex;
+    private int feelsLikeIndex;
+    private int tempMinIndex;
+    private int tempMaxIndex;
+    private int pressureIndex;
+    private int humidityIndex;
+    private int windSpeedIndex;
+    private int windDegIndex;
+    private int rain1hIndex;
+    private int rain3hIndex;
+    private int snow1hIndex;
+    private int snow3hIndex;
+    private int cloudsIndex;
+    private int weatherIdIndex;
+    private int weatherMainIndex;
+    private int weatherDescIndex;
+
     public static final List<String> WEATHER_PROPERTY_INDICES = WeatherWritable.FIELDS;
 
     private final DateWritable keyOut = new DateWritable();
@@ -68,6 +89,26 @@ public abstract class AbstractWeatherMapper<VO> extends AbstractCsvMapper<DateWr
         indices = getIndices();
         maxIndex = getMaxIndex();
 
+        dateIndex = indices.get(DATE_PROP);
+        epochIndex = context.getConfiguration().getInt(getPropertyPath(EPOCH_DATE_PROP), -1);
+        lastIndex = Math.max(maxIndex, epochIndex);
+        tempIndex = indices.get(TEMP_PROP);
+        feelsLikeIndex = indices.get(FEELS_LIKE_PROP);
+        tempMinIndex = indices.get(TEMP_MIN_PROP);
+        tempMaxIndex = indices.get(TEMP_MAX_PROP);
+        pressureIndex = indices.get(PRESSURE_PROP);
+        humidityIndex = indices.get(HUMIDITY_PROP);
+        windSpeedIndex = indices.get(WIND_SPEED_PROP);
+        windDegIndex = indices.get(WIND_DEG_PROP);
+        rain1hIndex = indices.get(RAIN_1H_PROP);
+        rain3hIndex = indices.get(RAIN_3H_PROP);
+        snow1hIndex = indices.get(SNOW_1H_PROP);
+        snow3hIndex = indices.get(SNOW_3H_PROP);
+        cloudsIndex = indices.get(CLOUDS_ALL_PROP);
+        weatherIdIndex = indices.get(WEATHER_ID_PROP);
+        weatherMainIndex = indices.get(WEATHER_MAIN_PROP);
+        weatherDescIndex = indices.get(WEATHER_DESC_PROP);
+
         builder = WeatherWritable.getBuilder();
 
         counter = getCounter(context, CountersEnum.WEATHER_MAPPER_COUNT);
@@ -90,34 +131,33 @@ public abstract class AbstractWeatherMapper<VO> extends AbstractCsvMapper<DateWr
             /* dt,dt_iso,timezone,city_name,lat,lon,temp,feels_like,temp_min,temp_max,pressure,sea_level,grnd_level,humidity,
                 wind_speed,wind_deg,rain_1h,rain_3h,snow_1h,snow_3h,clouds_all,weather_id,weather_main,weather_description,weather_icon
              */
-            String line = value.toString();
-            String[] splits = line.split(getSeparator());
-            // if the line ends with separators, they are ignored and consequently the num of splits doesn't match
-            // num of columns in csv file
-            if (splits.length > maxIndex) {
-                Pair<Boolean, LocalDateTime> filterRes = getZonedDateTimeAndFilter(splits[indices.get(DATE_PROP)]);
+            int columns = tokenize(value, lastIndex);
+            if (columns > lastIndex) {
+                // epoch time is UTC, as is the date column
+                Pair<Boolean, LocalDateTime> filterRes = (epochIndex >= 0 ?
+                    getEpochDateTimeAndFilter(getLongField(epochIndex)) : getDateTimeFieldAndFilter(dateIndex, true));
 
                 if (filterRes.getLeft()) {
                     LocalDateTime dateTime = filterRes.getRight();
 
                     WeatherWritable entry = builder.clear()
                         .setLocalDateTime(dateTime)
-                        .setTemp(splits[indices.get(TEMP_PROP)])
-                        .setFeelsLike(splits[indices.get(FEELS_LIKE_PROP)])
-                        .setTempMin(splits[indices.get(TEMP_MIN_PROP)])
-                        .setTempMax(splits[indices.get(TEMP_MAX_PROP)])
-                        .setPressure(splits[indices.get(PRESSURE_PROP)])
-                        .setHumidity(splits[indices.get(HUMIDITY_PROP)])
-                        .setWindSpeed(splits[indices.get(WIND_SPEED_PROP)])
-                        .setWindDeg(splits[indices.get(WIND_DEG_PROP)])
-                        .setRain1h(splits[indices.get(RAIN_1H_PROP)])
-                        .setRain3h(splits[indices.get(RAIN_3H_PROP)])
-                        .setSnow1h(splits[indices.get(SNOW_1H_PROP)])
-                        .setSnow3h(splits[indices.get(SNOW_3H_PROP)])
-                        .setClouds(splits[indices.get(CLOUDS_ALL_PROP)])
-                        .setWeatherId(splits[indices.get(WEATHER_ID_PROP)])
-                        .setWeatherMain(splits[indices.get(WEATHER_MAIN_PROP)])
-                        .setWeatherDescription(splits[indices.get(WEATHER_DESC_PROP)])
+                        .setTemp(getFloatField(tempIndex))
+                        .setFeelsLike(getFloatField(feelsLikeIndex))
+                        .setTempMin(getFloatField(tempMinIndex))
+                        .setTempMax(getFloatField(tempMaxIndex))
+                        .setPressure(getIntField(pressureIndex))
+                        .setHumidity(getIntField(humidityIndex))
+                        .setWindSpeed(getFloatField(windSpeedIndex))
+                        .setWindDeg(getIntField(windDegIndex))
+                        .setRain1h(getFloatField(rain1hIndex))
+                        .setRain3h(getFloatField(rain3hIndex))
+                        .setSnow1h(getFloatField(snow1hIndex))
+                        .setSnow3h(getFloatField(snow3hIndex))
+                        .setClouds(getIntField(cloudsIndex))
+                        .setWeatherId(getIntField(weatherIdIndex))
+                        .setWeatherMain(getField(weatherMainIndex))
+                        .setWeatherDescription(getField(weatherDescIndex))
                         .build();
 
                     counter.increment();
@@ -129,7 +169,7 @@ public abstract class AbstractWeatherMapper<VO> extends AbstractCsvMapper<DateWr
                     writeOutput(context, keyOut, entry);
                 }
             } else {
-                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + splits.length);
+                getLogger().warn("Line " + key.get() + " ignored, insufficient columns: " + columns);
             }
         }
     }
@@ -142,6 +182,11 @@ public abstract class AbstractWeatherMapper<VO> extends AbstractCsvMapper<DateWr
         public List<Property> getAdditionalProps() {
             List<Property> list = new ArrayList<>(super.getAdditionalProps());
             list.add(Property.of(WIDS_PATH_PROP, "path to weather ids input file", ""));
+            list.add(Property.of(DAILY_IN_PATH_PROP, "path to daily weather averages input file", ""));
+            list.add(Property.of(EPOCH_DATE_PROP, "index of unix epoch time column to use for date", "-1"));
+            list.add(Property.of(IN_MAPPER_AGGREGATION_PROP, "aggregate daily partial sums in mapper", "false"));
+            list.add(Property.of(AGGREGATION_THRESHOLD_PROP, "max number of days to cache in mapper",
+                Integer.toString(WeatherPartialMapper.DEFAULT_AGGREGATION_THRESHOLD)));
             return list;
         }
 
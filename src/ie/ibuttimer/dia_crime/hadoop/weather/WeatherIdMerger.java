@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.hadoop.weather;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.WEATHER_ID_NAMED_OP;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+
+/**
+ * Merges the weather ids output of a weather job run with date range partitioning over multiple reducers.
+ * Each reducer saves the ids it saw, numbered from 0, to its own '<named output>-r-<n>' file. The distinct ids from
+ * all the files are renumbered in ascending order and written to the first file, in the same format as the named
+ * output, and the other files are removed.
+ */
+public class WeatherIdMerger {
+
+    private static final Logger logger = Logger.getLogger(WeatherIdMerger.class);
+
+    private WeatherIdMerger() {
+        // class can't be externally instantiated
+    }
+
+    /**
+     * Merge and renumber the weather ids from a weather job
+     * @param conf          Job configuration
+     * @param outputDir     Job output directory
+     * @return  number of weather ids
+     * @throws IOException
+     */
+    public static int merge(Configuration conf, Path outputDir) throws IOException {
+
+        FileSystem fs = outputDir.getFileSystem(conf);
+
+        FileStatus[] statuses = fs.globStatus(new Path(outputDir, WEATHER_ID_NAMED_OP + "-r-*"));
+        if (statuses == null || statuses.length == 0) {
+            return 0;
+        }
+        Arrays.sort(statuses, Comparator.comparing(FileStatus::getPath));
+
+        String key = null;
+        Set<String> tags = new LinkedHashSet<>();
+        TreeSet<Integer> weatherIDs = new TreeSet<>();
+        for (FileStatus status : statuses) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fs.open(status.getPath()), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    Pair<String, String> keyVal = HADOOP_KEY_VAL.destringifyElement(line);
+                    Integer wid = (keyVal.getRight() != null ? getWeatherId(keyVal.getRight()) : null);
+                    if (wid != null) {
+                        key = keyVal.getLeft();
+                        weatherIDs.add(wid);
+                    } else {
+                        tags.add(line);
+                    }
+                }
+            }
+        }
+
+        Path mergedPath = statuses[0].getPath();
+        try (FSDataOutputStream out = fs.create(mergedPath, true)) {
+            StringBuilder sb = new StringBuilder();
+            tags.forEach(tag -> sb.append(tag).append('\n'));
+            int count = 0;
+            for (Integer wid : weatherIDs) {
+                sb.append(key).append('\t').append(wid).append(',').append(count++).append('\n');
+            }
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 1; i < statuses.length; i++) {
+            fs.delete(statuses[i].getPath(), false);
+        }
+
+        return weatherIDs.size();
+    }
+
+    /**
+     * Get the weather id from a '<weather id>,<ordinal>' entry
+     * @param value     Entry value
+     * @return  weather id or <code>null</code> if not a weather id entry
+     */
+    private static Integer getWeatherId(String value) {
+        Integer wid = null;
+        String[] splits = value.split(",");
+        if (splits.length == 2) {
+            try {
+                wid = Integer.valueOf(splits[0].trim());
+                Integer.parseInt(splits[1].trim());
+            } catch (NumberFormatException nfe) {
+                logger.warn("Ignoring unrecognised weather id entry: " + value);
+                wid = null;
+            }
+        }
+        return wid;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.weather;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractReducer;
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+
+import java.io.IOException;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.WEATHER_PROP_SECTION;
+
+/**
+ * Combiner for weather partial sums
+ * - input key : date
+ * - input value : WeatherPartialWritable
+ * - output key : date
+ * - output value : WeatherPartialWritable
+ */
+public class WeatherPartialCombiner extends AbstractReducer<DateWritable, WeatherPartialWritable, DateWritable, WeatherPartialWritable> {
+
+    private final WeatherPartialWritable combined = new WeatherPartialWritable();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        setSection(WEATHER_PROP_SECTION);
+
+        super.setup(context);
+        setLogger(getClass());
+    }
+
+    /**
+     * Combine the values for a key
+     * @param key       Key value; date
+     * @param values    Values for the specified key
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    protected void reduce(DateWritable key, Iterable<WeatherPartialWritable> values, Context context) throws IOException, InterruptedException {
+        combined.clear();
+        combined.setLocalDate(key.getLocalDate());
+        for (WeatherPartialWritable value : values) {
+            combined.add(value);
+        }
+        write(context, key, combined);
+    }
+
+    @Override
+    protected DateWritable newKey(String key) {
+        return DateWritable.ofDate(key);
+    }
+
+    @Override
+    protected WeatherPartialWritable newValue(String value) {
+        return new WeatherPartialWritable();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.weather;
+
+import ie.ibuttimer.dia_crime.hadoop.ICsvMapperCfg;
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import ie.ibuttimer.dia_crime.misc.DebugLevel;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.AGGREGATION_THRESHOLD_PROP;
+
+/**
+ * Mapper for weather entries performing in-mapper aggregation. Parses input line and accumulates the partial sums of
+ * the hourly readings per day, which are emitted when the cache size threshold is reached and in cleanup.
+ * - input key : csv file line number
+ * - input value : csv file line text
+ * - output key : date
+ * - output value : WeatherPartialWritable
+ */
+public class WeatherPartialMapper extends AbstractWeatherMapper<WeatherPartialWritable> {
+
+    public static final int DEFAULT_AGGREGATION_THRESHOLD = 10000;
+
+    private final Map<LocalDate, WeatherPartialWritable> cache = new HashMap<>();
+
+    /** max number of days to hold in the cache before flushing */
+    private int threshold;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        setLogger(getClass());
+
+        threshold = context.getConfiguration().getInt(
+            getPropertyPath(AGGREGATION_THRESHOLD_PROP), DEFAULT_AGGREGATION_THRESHOLD);
+    }
+
+    @Override
+    protected void writeOutput(Context context, DateWritable key, WeatherWritable value) throws IOException, InterruptedException {
+        LocalDate date = key.getLocalDate();
+        WeatherPartialWritable partial = cache.get(date);
+        if (partial == null) {
+            partial = new WeatherPartialWritable();
+            partial.setLocalDate(date);
+            cache.put(date, partial);
+        }
+
+        partial.accumulate(value);
+
+        if (cache.size() >= threshold) {
+            flush(context);
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        flush(context);
+        super.cleanup(context);
+    }
+
+    /**
+     * Write the cached partial sums
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void flush(Context context) throws IOException, InterruptedException {
+        if (show(DebugLevel.HIGH)) {
+            getLogger().info(String.format("Flushing %d days", cache.size()));
+        }
+        for (Map.Entry<LocalDate, WeatherPartialWritable> entry : cache.entrySet()) {
+            // return the day as the key and the partial sums as the value
+            write(context, getDateOutKey(entry.getKey()), entry.getValue());
+        }
+        cache.clear();
+    }
+
+    public static ICsvMapperCfg getClsCsvMapperCfg() {
+        return AbstractWeatherMapper.getClsCsvMapperCfg();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.weather;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractReducer;
+import ie.ibuttimer.dia_crime.hadoop.CountersEnum;
+import ie.ibuttimer.dia_crime.hadoop.misc.Counters;
+import ie.ibuttimer.dia_crime.hadoop.misc.DateWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static ie.ibuttimer.dia_crime.misc.Constants.WEATHER_ID_NAMED_OP;
+import static ie.ibuttimer.dia_crime.misc.Constants.WEATHER_PROP_SECTION;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.MAP_STRINGIFIER;
+
+/**
+ * Reducer for weather partial sums, producing the same output as WeatherReducer
+ * - input key : date
+ * - input value : WeatherPartialWritable
+ * - output key : date
+ * - output value : value string of <field>:<value> separated by ','
+ */
+public class WeatherPartialReducer extends AbstractReducer<DateWritable, WeatherPartialWritable, DateWritable, Text> {
+
+    private final Set<Integer> weatherIDs = new TreeSet<>();
+
+    private MultipleOutputs<DateWritable, Text> mos;
+
+    private final WeatherPartialWritable combined = new WeatherPartialWritable();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        setSection(WEATHER_PROP_SECTION);
+
+        super.setup(context);
+        setLogger(getClass());
+
+        mos = new MultipleOutputs<>(context);
+    }
+
+    /**
+     * Reduce the values for a key
+     * @param key       Key value; date string
+     * @param values    Values for the specified key
+     * @param context   Current context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    protected void reduce(DateWritable key, Iterable<WeatherPartialWritable> values, Context context) throws IOException, InterruptedException {
+
+        Counters.ReducerCounter counter = getCounter(context, CountersEnum.WEATHER_REDUCER_COUNT);
+
+        combined.clear();
+        combined.setLocalDate(key.getLocalDate());
+        for (WeatherPartialWritable value : values) {
+            combined.add(value);
+        }
+
+        weatherIDs.addAll(combined.getWeatherIds());
+        counter.incrementValue(combined.getCount());
+
+        // create value string of <field>:<value> separated by ','
+        write(context, key, new Text(MAP_STRINGIFIER.stringify(combined.toAverage().toMap())));
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        if (context.getProgress() == 1.0) {
+            // ids are numbered per reducer, the driver merges and renumbers them with date range partitioning
+            int count = 0;
+            for (Integer wid : weatherIDs) {
+                write(mos, WEATHER_ID_NAMED_OP, DateWritable.COMMENT_KEY, new Text(wid + "," + count++));
+            }
+        }
+
+        mos.close();
+    }
+
+    @Override
+    protected DateWritable newKey(String key) {
+        return DateWritable.ofDate(key);
+    }
+
+    @Override
+    protected Text newValue(String value) {
+        return new Text(value);
+    }
+}
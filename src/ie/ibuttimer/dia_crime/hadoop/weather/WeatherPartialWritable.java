@@ -0,0 +1,284 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package ie.ibuttimer.dia_crime.hadoop.weather;
+
+import ie.ibuttimer.dia_crime.hadoop.AbstractBaseWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Combinable custom writable for the partial sums of weather readings for a single day. Holds per-field sums of the
+ * WeatherWritable float and int fields, the number of readings, and the number of readings per weather id, from
+ * which the daily averages and most frequent weather description are calculated.
+ */
+public class WeatherPartialWritable extends AbstractBaseWritable<WeatherPartialWritable> implements Writable {
+
+    // indices of sums of WeatherWritable float fields
+    private static final int TEMP = 0;
+    private static final int FEELS_LIKE = 1;
+    private static final int TEMP_MIN = 2;
+    private static final int TEMP_MAX = 3;
+    private static final int WIND_SPEED = 4;
+    private static final int RAIN_1H = 5;
+    private static final int RAIN_3H = 6;
+    private static final int SNOW_1H = 7;
+    private static final int SNOW_3H = 8;
+    private static final int NUM_FLOAT_SUMS = 9;
+
+    // indices of sums of WeatherWritable int fields; weather id is counted not summed
+    private static final int PRESSURE = 0;
+    private static final int HUMIDITY = 1;
+    private static final int WIND_DEG = 2;
+    private static final int CLOUDS = 3;
+    private static final int NUM_INT_SUMS = 4;
+
+    private final double[] floatSums;
+    private final long[] intSums;
+    private int count;
+
+    // weather id and its description/count, ordered by id
+    private final Map<Integer, Description> descriptions;
+
+    // Default constructor to allow (de)serialization
+    public WeatherPartialWritable() {
+        super();
+        this.floatSums = new double[NUM_FLOAT_SUMS];
+        this.intSums = new long[NUM_INT_SUMS];
+        this.count = 0;
+        this.descriptions = new TreeMap<>();
+    }
+
+    @Override
+    public WeatherPartialWritable getInstance() {
+        return new WeatherPartialWritable();
+    }
+
+    public static WeatherPartialWritable read(DataInput dataInput) throws IOException {
+        WeatherPartialWritable writable = new WeatherPartialWritable();
+        writable.readFields(dataInput);
+        return writable;
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        super.write(dataOutput);
+        WritableUtils.writeVInt(dataOutput, count);
+        for (double sum : floatSums) {
+            dataOutput.writeDouble(sum);
+        }
+        for (long sum : intSums) {
+            WritableUtils.writeVLong(dataOutput, sum);
+        }
+        WritableUtils.writeVInt(dataOutput, descriptions.size());
+        for (Map.Entry<Integer, Description> entry : descriptions.entrySet()) {
+            Description description = entry.getValue();
+            WritableUtils.writeVInt(dataOutput, entry.getKey());
+            WritableUtils.writeVInt(dataOutput, description.count);
+            Text.writeString(dataOutput, description.main);
+            Text.writeString(dataOutput, description.description);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        super.readFields(dataInput);
+        count = WritableUtils.readVInt(dataInput);
+        for (int i = 0; i < floatSums.length; i++) {
+            floatSums[i] = dataInput.readDouble();
+        }
+        for (int i = 0; i < intSums.length; i++) {
+            intSums[i] = WritableUtils.readVLong(dataInput);
+        }
+        descriptions.clear();
+        int size = WritableUtils.readVInt(dataInput);
+        for (int i = 0; i < size; i++) {
+            int weatherId = WritableUtils.readVInt(dataInput);
+            int idCount = WritableUtils.readVInt(dataInput);
+            String main = Text.readString(dataInput);
+            descriptions.put(weatherId, new Description(main, Text.readString(dataInput), idCount));
+        }
+    }
+
+    /**
+     * Add a weather reading to the partial sums
+     * @param reading   Reading to add
+     */
+    public void accumulate(WeatherWritable reading) {
+        floatSums[TEMP] += reading.getTemp();
+        floatSums[FEELS_LIKE] += reading.getFeelsLike();
+        floatSums[TEMP_MIN] += reading.getTempMin();
+        floatSums[TEMP_MAX] += reading.getTempMax();
+        floatSums[WIND_SPEED] += reading.getWindSpeed();
+        floatSums[RAIN_1H] += reading.getRain1h();
+        floatSums[RAIN_3H] += reading.getRain3h();
+        floatSums[SNOW_1H] += reading.getSnow1h();
+        floatSums[SNOW_3H] += reading.getSnow3h();
+
+        intSums[PRESSURE] += reading.getPressure();
+        intSums[HUMIDITY] += reading.getHumidity();
+        intSums[WIND_DEG] += reading.getWindDeg();
+        intSums[CLOUDS] += reading.getClouds();
+
+        ++count;
+
+        countDescription(reading.getWeatherId(), reading.getWeatherMain(), reading.getWeatherDescription(), 1);
+    }
+
+    private void countDescription(int weatherId, String main, String description, int idCount) {
+        Description entry = descriptions.get(weatherId);
+        if (entry == null) {
+            descriptions.put(weatherId, new Description(main, description, idCount));
+        } else {
+            entry.count += idCount;
+        }
+    }
+
+    @Override
+    public void add(WeatherPartialWritable other) {
+        for (int i = 0; i < floatSums.length; i++) {
+            floatSums[i] += other.floatSums[i];
+        }
+        for (int i = 0; i < intSums.length; i++) {
+            intSums[i] += other.intSums[i];
+        }
+        count += other.count;
+        other.descriptions.forEach((weatherId, description) ->
+            countDescription(weatherId, description.main, description.description, description.count));
+    }
+
+    /**
+     * Get the daily averages, equivalent to WeatherReducer.reduceToAverages()
+     * @return  Average weather; the weather id/main/description are those of the most frequent weather id, with
+     *          ties resolved in favour of the lowest id
+     */
+    public WeatherWritable toAverage() {
+        WeatherWritable average = new WeatherWritable();
+        average.setLocalDate(getLocalDate());
+
+        if (count > 0) {
+            average.setTemp((float) (floatSums[TEMP] / count));
+            average.setFeelsLike((float) (floatSums[FEELS_LIKE] / count));
+            average.setTempMin((float) (floatSums[TEMP_MIN] / count));
+            average.setTempMax((float) (floatSums[TEMP_MAX] / count));
+            average.setWindSpeed((float) (floatSums[WIND_SPEED] / count));
+            average.setRain1h((float) (floatSums[RAIN_1H] / count));
+            average.setRain3h((float) (floatSums[RAIN_3H] / count));
+            average.setSnow1h((float) (floatSums[SNOW_1H] / count));
+            average.setSnow3h((float) (floatSums[SNOW_3H] / count));
+
+            // int fields are truncated, as per WeatherWritable.divide()
+            average.setPressure((int) (intSums[PRESSURE] / count));
+            average.setHumidity((int) (intSums[HUMIDITY] / count));
+            average.setWindDeg((int) (intSums[WIND_DEG] / count));
+            average.setClouds((int) (intSums[CLOUDS] / count));
+        }
+
+        int highest = 0;
+        for (Map.Entry<Integer, Description> entry : descriptions.entrySet()) {
+            Description description = entry.getValue();
+            if (description.count > highest) {
+                highest = description.count;
+                average.setWeatherId(entry.getKey());
+                average.setWeatherMain(description.main);
+                average.setWeatherDescription(description.description);
+            }
+        }
+        return average;
+    }
+
+    /**
+     * Get the number of readings
+     * @return  number of readings
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the weather ids of the readings
+     * @return  weather ids
+     */
+    public Set<Integer> getWeatherIds() {
+        return descriptions.keySet();
+    }
+
+    public void clear() {
+        Arrays.fill(floatSums, 0);
+        Arrays.fill(intSums, 0);
+        count = 0;
+        descriptions.clear();
+    }
+
+    @Override
+    public void set(WeatherPartialWritable other) {
+        super.set(other);
+        clear();
+        add(other);
+    }
+
+    @Override
+    public WeatherPartialWritable copyOf() {
+        WeatherPartialWritable other = new WeatherPartialWritable();
+        other.set(this);
+        return other;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                super.toString() +
+                ", floatSums=" + Arrays.toString(floatSums) +
+                ", intSums=" + Arrays.toString(intSums) +
+                ", count=" + count +
+                ", descriptions=" + descriptions +
+                '}';
+    }
+
+    private static class Description {
+        final String main;
+        final String description;
+        int count;
+
+        Description(String main, String description, int count) {
+            this.main = main;
+            this.description = description;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return main + "/" + description + "=" + count;
+        }
+    }
+}
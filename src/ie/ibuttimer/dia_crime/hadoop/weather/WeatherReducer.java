@@ -147,6 +147,7 @@ public class WeatherReducer extends AbstractReducer<DateWritable, MapWritable, D
         super.cleanup(context);
 
         if (context.getProgress() == 1.0) {
+            // ids are numbered per reducer, the driver merges and renumbers them with date range partitioning
             AtomicInteger count = new AtomicInteger(0);
             weatherIDs.stream()
                 .sorted()
@@ -657,71 +657,141 @@ public class WeatherWritable extends AbstractBaseWritable<WeatherWritable> imple
             return getThis();
         }
 
+        public WeatherWritableBuilder setTemp(float temp) {
+            getWritable().setTemp(temp);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setFeelsLike(String feelsLike) {
             getWritable().setFeelsLike(getFloat(feelsLike));
             return getThis();
         }
 
+        public WeatherWritableBuilder setFeelsLike(float feelsLike) {
+            getWritable().setFeelsLike(feelsLike);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setTempMin(String tempMin) {
             getWritable().setTempMin(getFloat(tempMin));
             return getThis();
         }
 
+        public WeatherWritableBuilder setTempMin(float tempMin) {
+            getWritable().setTempMin(tempMin);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setTempMax(String tempMax) {
             getWritable().setTempMax(getFloat(tempMax));
             return getThis();
         }
 
+        public WeatherWritableBuilder setTempMax(float tempMax) {
+            getWritable().setTempMax(tempMax);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setPressure(String pressure) {
             getWritable().setPressure(getInt(pressure));
             return getThis();
         }
 
+        public WeatherWritableBuilder setPressure(int pressure) {
+            getWritable().setPressure(pressure);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setHumidity(String humidity) {
             getWritable().setHumidity(getInt(humidity));
             return getThis();
         }
 
+        public WeatherWritableBuilder setHumidity(int humidity) {
+            getWritable().setHumidity(humidity);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setWindSpeed(String windSpeed) {
             getWritable().setWindSpeed(getFloat(windSpeed));
             return getThis();
         }
 
+        public WeatherWritableBuilder setWindSpeed(float windSpeed) {
+            getWritable().setWindSpeed(windSpeed);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setWindDeg(String windDeg) {
             getWritable().setWindDeg(getInt(windDeg));
             return getThis();
         }
 
+        public WeatherWritableBuilder setWindDeg(int windDeg) {
+            getWritable().setWindDeg(windDeg);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setRain1h(String rain1h) {
             getWritable().setRain1h(getFloat(rain1h));
             return getThis();
         }
 
+        public WeatherWritableBuilder setRain1h(float rain1h) {
+            getWritable().setRain1h(rain1h);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setRain3h(String rain3h) {
             getWritable().setRain3h(getFloat(rain3h));
             return getThis();
         }
 
+        public WeatherWritableBuilder setRain3h(float rain3h) {
+            getWritable().setRain3h(rain3h);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setSnow1h(String snow1h) {
             getWritable().setSnow1h(getFloat(snow1h));
             return getThis();
         }
 
+        public WeatherWritableBuilder setSnow1h(float snow1h) {
+            getWritable().setSnow1h(snow1h);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setSnow3h(String snow3h) {
             getWritable().setSnow3h(getFloat(snow3h));
             return getThis();
         }
 
+        public WeatherWritableBuilder setSnow3h(float snow3h) {
+            getWritable().setSnow3h(snow3h);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setClouds(String clouds) {
             getWritable().setClouds(getInt(clouds));
             return getThis();
         }
 
+        public WeatherWritableBuilder setClouds(int clouds) {
+            getWritable().setClouds(clouds);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setWeatherId(String weatherId) {
             getWritable().setWeatherId(getInt(weatherId));
             return getThis();
         }
 
+        public WeatherWritableBuilder setWeatherId(int weatherId) {
+            getWritable().setWeatherId(weatherId);
+            return getThis();
+        }
+
         public WeatherWritableBuilder setWeatherMain(String main) {
             getWritable().setWeatherMain(main);
             return getThis();
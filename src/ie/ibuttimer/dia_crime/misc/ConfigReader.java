@@ -29,12 +29,12 @@ import ie.ibuttimer.dia_crime.hadoop.crime.IOutputType;
 import ie.ibuttimer.dia_crime.hadoop.io.FileUtil;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.http.util.TextUtils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
@@ -159,7 +159,7 @@ public class ConfigReader implements IPropertyWrangler {
      * Read a list of type classes from a Hadoop output file
      * e.g. '#	01A,Double,crime'
      * @param conf
-     * @param property  Property containing path to file to read
+     * @param property  Property containing path to file to read, or glob of files to read
      * @param classes
      * @return
      */
@@ -169,7 +169,7 @@ public class ConfigReader implements IPropertyWrangler {
         Map<String, Pair<String, String>> entries = new HashMap<>();
         FileUtil fileUtil = new FileUtil(new Path(typesPath), conf);
 
-        try (FSDataInputStream stream = fileUtil.fileReadOpen();
+        try (InputStream stream = fileUtil.fileReadOpenAll();
              InputStreamReader inputStream = new InputStreamReader(stream, Charsets.UTF_8);
              BufferedReader reader = new BufferedReader(inputStream)) {
 
@@ -205,7 +205,7 @@ public class ConfigReader implements IPropertyWrangler {
      * Read a list of comma separated values from a Hadoop output file
      * e.g. '#	300,0'
      * @param conf
-     * @param property  Property containing path to file to read
+     * @param property  Property containing path to file to read, or glob of files to read
      * @return
      */
     public List<List<String>> readCommaSeparatedFile(Configuration conf, String property) {
@@ -214,7 +214,7 @@ public class ConfigReader implements IPropertyWrangler {
         List<List<String>> entries = new ArrayList<>();
         FileUtil fileUtil = new FileUtil(new Path(filePath), conf);
 
-        try (FSDataInputStream stream = fileUtil.fileReadOpen();
+        try (InputStream stream = fileUtil.fileReadOpenAll();
              InputStreamReader inputStream = new InputStreamReader(stream, Charsets.UTF_8);
              BufferedReader reader = new BufferedReader(inputStream)) {
 
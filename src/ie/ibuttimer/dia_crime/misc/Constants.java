@@ -59,6 +59,8 @@ public class Constants {
     public static final String NORMALISE_PROP_SECTION = "normalise";
     public static final String MATRIX_PROP_1_SECTION = "matrix1";
     public static final String MATRIX_PROP_2_SECTION = "matrix2";
+    public static final String INGEST_PROP_SECTION = "ingest";
+    public static final String STAGE_PROP_SECTION = "stage";   // multi-job stage declarations, "stage.<job>.<property>"
 
     // common properties
     public static final String DEBUG_PROP = "debug";
@@ -68,6 +70,7 @@ public class Constants {
     public static final String SEPARATOR_PROP = "separator";
     public static final String HAS_HEADER_PROP = "has_header";
     public static final String NUM_INDICES_PROP = "num_indices";
+    public static final String NUM_REDUCERS_PROP = "num_reducers";
 
     public static final String FILTER_START_DATE_PROP = "filter_start_date";
     public static final String FILTER_END_DATE_PROP = "filter_end_date";
@@ -75,6 +78,7 @@ public class Constants {
     public static final String OUT_KEY_DATE_FORMAT_PROP = "out_key_date_format";
 
     public static final String DATE_FORMAT_PROP = "date_format";
+    public static final String DATE_CACHE_SIZE_PROP = "date_cache_size";   // size of parsed date cache
     public static final String DATE_PROP = "date";
 
     public static final String STATS_PATH_PROP = "stats_path";  // path for stats output file
@@ -86,6 +90,12 @@ public class Constants {
     public static final String IUCR_PROP = "iucr";
     public static final String FBICODE_PROP = "fbicode";
     public static final String TOTAL_PROP = "total";    // total count, generated from data
+    public static final String IN_MAPPER_AGGREGATION_PROP = "in_mapper_aggregation";
+    public static final String AGGREGATION_THRESHOLD_PROP = "aggregation_threshold";
+    public static final String DENSE_ACCUMULATOR_PROP = "dense_accumulator";
+    public static final String AGGREGATE_BY_MONTH_PROP = "aggregate_by_month";  // key stats aggregates by month
+    public static final String PROJECTION_PROP = "projection";      // crime fields to read, all if not specified
+    public static final String EPOCH_DATE_PROP = "epoch_date";      // index of unix epoch time column to use for date
 
     public static final String OUTPUTTYPES_PATH_PROP = "outputtypes_path";  // path for output types file (for input)
 
@@ -122,6 +132,9 @@ public class Constants {
 
     public static final String WIDS_PATH_PROP = "wids_path";  // path for weather ids file (for input)
 
+    // merge specific properties
+    public static final String DAILY_IN_PATH_PROP = "daily_in_path";  // path for daily output of a previous job (for input)
+
     // regression specific properties
     public static final String INDEPENDENTS_PROP = "independents";
     public static final String DEPENDENT_PROP = "dependent";
@@ -137,6 +150,17 @@ public class Constants {
     public static final String WEIGHT_PROP = "weight";
     public static final String BIAS_PROP = "bias";
     public static final String CURRENT_EPOCH_PROP = "current_epoch";
+    public static final String IN_MEMORY_LIMIT_PROP = "in_memory_limit";    // max MB for in-memory training
+    public static final String SWEEP_LEARNING_RATES_PROP = "sweep_learning_rates";
+    public static final String SWEEP_MODELS_PROP = "sweep_models";      // ids of active sweep models, set by driver
+    public static final String SWEEP_MODEL_PROP_PREFIX = "sweep_model_"; // sweep model settings, set by driver
+    public static final String SOLVER_PROP = "solver";
+    public static final String SOLVER_GRADIENT_DESCENT = "gradient_descent";
+    public static final String SOLVER_NORMAL_EQUATION = "normal_equation";
+    public static final String OPTIMISER_PROP = "optimiser";
+    public static final String BATCH_SIZE_PROP = "batch_size";
+    public static final String MOMENTUM_PROP = "momentum";
+    public static final String ADAM_BETA2_PROP = "adam_beta2";
 
     public static final String TRAIN_START_DATE_PROP = "train_start_date";
     public static final String TRAIN_END_DATE_PROP = "train_end_date";
@@ -158,12 +182,31 @@ public class Constants {
     public static final String CSW_IN_PATH_PROP = "csw_in_path";
     public static final String CS_IN_PATH_PROP = "cs_in_path";
     public static final String CW_IN_PATH_PROP = "cw_in_path";
+    public static final String PARTITIONED_PATH_PROP = "partitioned_path";  // root of date partitioned input layout
+    public static final String OUT_FORMAT_PROP = "out_format";  // intermediate output format; columnar or text
+
+    // ingest specific properties
+    public static final String SOURCES_PROP = "sources";    // sections whose input files are ingested
+    public static final String HEADER_PROP = "header";      // header line of input file being ingested
+    public static final String MANIFEST_FILE = "_manifest"; // manifest of date partitioned input layout
+
+    // multi-job stage specific properties
+    public static final String STAGE_INPUTS_PROP = "inputs";    // paths read by a job
+    public static final String STAGE_OUTPUTS_PROP = "outputs";  // paths written by a job
+
+    // incremental run specific properties
+    public static final String INCREMENTAL_PROP = "incremental";    // only recompute new or changed months
+    public static final String INCREMENTAL_LOOKBACK_PROP = "incremental_lookback_days";  // days read before a month
+    public static final String WATERMARK_FILE = "_watermark";      // record of the months in a partitioned output
 
     // verification specific properties
     public static final String VERIFY_OUTPUT_PATH_PROP = "verify_output_path";
 
+    public static final String DEFAULT_NAMED_OP = "part";    // base name of the default job output
     public static final String TYPES_NAMED_OP = "types";
     public static final String WEATHER_ID_NAMED_OP = "wids";
+    public static final String BOUNDARY_NAMED_OP = "boundary";
+    public static final String AGGREGATE_NAMED_OP = "aggregate";
 
 
     public static final int ECODE_CONFIG_ERROR = -1;
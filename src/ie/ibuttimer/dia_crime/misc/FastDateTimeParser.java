@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.misc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Hand-rolled parser for the fixed date and time layouts of the input files, as an alternative to a full
+ * DateTimeFormatter parse.
+ * Recently parsed dates are held in a small LRU cache keyed by the date digits, so rows from the same day reuse the
+ * LocalDate. Text which does not exactly match the layout, or which the formatter would resolve differently (e.g. an
+ * invalid day of month or a non-UTC offset), is not parsed and the caller should use the formatter instead.
+ */
+public class FastDateTimeParser {
+
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    /**
+     * Supported layouts
+     */
+    public enum Layout {
+        /** e.g. '01/23/2020 10:30:00 PM' */
+        US_12_HOUR(22, "MM/dd/uuuu hh:mm:ss a", "MM/dd/yyyy hh:mm:ss a"),
+        /** e.g. '2020-01-23 22:30:00 +0000 UTC', only UTC is supported */
+        ISO_UTC(29, "uuuu-MM-dd HH:mm:ss Z z", "yyyy-MM-dd HH:mm:ss Z z"),
+        /** e.g. '2020-01-23 22:30:00' */
+        ISO_LOCAL(19, "uuuu-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm:ss");
+
+        final int length;
+        final String[] patterns;
+
+        Layout(int length, String... patterns) {
+            this.length = length;
+            this.patterns = patterns;
+        }
+
+        public static Optional<Layout> of(String pattern) {
+            return Arrays.stream(values())
+                .filter(l -> Arrays.asList(l.patterns).contains(pattern.trim()))
+                .findFirst();
+        }
+    }
+
+    private static final byte[] UTC_SUFFIX = " +0000 UTC".getBytes(StandardCharsets.US_ASCII);
+
+    private final Layout layout;
+
+    private final Map<Integer, LocalDate> cache;
+    private int lastKey = -1;
+    private LocalDate lastDate = null;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor
+     * @param layout    Layout to parse
+     * @param cacheSize Max number of dates to cache
+     */
+    public FastDateTimeParser(Layout layout, int cacheSize) {
+        this.layout = layout;
+        int maxSize = Math.max(cacheSize, 1);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LocalDate> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a parser for a DateTimeFormatter pattern
+     * @param pattern   DateTimeFormatter pattern
+     * @param cacheSize Max number of dates to cache
+     * @return  parser or empty if the pattern is not supported
+     */
+    public static Optional<FastDateTimeParser> of(String pattern, int cacheSize) {
+        return Layout.of(pattern)
+            .filter(l -> (l != Layout.US_12_HOUR) || isAmPmText())
+            .map(l -> new FastDateTimeParser(l, cacheSize));
+    }
+
+    /**
+     * Check the formatter's AM/PM text in the default locale is 'AM'/'PM', as expected by the parser
+     * @return  True if 'AM'/'PM'
+     */
+    private static boolean isAmPmText() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("a");
+        return "AM".equals(formatter.format(LocalTime.of(1, 0))) && "PM".equals(formatter.format(LocalTime.of(13, 0)));
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Parse date and time text
+     * @param text  Text to parse
+     * @return  date and time, or null if the text could not be parsed
+     */
+    public LocalDateTime parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parse date and time text, as ASCII bytes
+     * @param bytes     Text bytes
+     * @param start     Start offset of text
+     * @param length    Length of text
+     * @return  date and time, or null if the text could not be parsed
+     */
+    public LocalDateTime parse(byte[] bytes, int start, int length) {
+        LocalDateTime dateTime = null;
+        if (length == layout.length) {
+            switch (layout) {
+                case US_12_HOUR:    dateTime = parseUs12Hour(bytes, start);   break;
+                case ISO_UTC:       dateTime = parseIsoUtc(bytes, start);     break;
+                case ISO_LOCAL:     dateTime = parseIsoLocal(bytes, start);   break;
+                default:            break;
+            }
+        }
+        return dateTime;
+    }
+
+    /* MM/dd/uuuu hh:mm:ss a */
+    private LocalDateTime parseUs12Hour(byte[] bytes, int start) {
+        LocalDateTime dateTime = null;
+        if ((bytes[start + 2] == '/') && (bytes[start + 5] == '/') && (bytes[start + 10] == ' ') &&
+                (bytes[start + 13] == ':') && (bytes[start + 16] == ':') && (bytes[start + 19] == ' ')) {
+            int month = digits(bytes, start, 2);
+            int day = digits(bytes, start + 3, 2);
+            int year = digits(bytes, start + 6, 4);
+            int hour = digits(bytes, start + 11, 2);
+            int minute = digits(bytes, start + 14, 2);
+            int second = digits(bytes, start + 17, 2);
+            int amPm = amPm(bytes, start + 20);
+            if ((hour >= 1) && (hour <= 12) && (amPm >= 0)) {
+                hour = (hour % 12) + (amPm * 12);
+                dateTime = toDateTime(year, month, day, hour, minute, second);
+            }
+        }
+        return dateTime;
+    }
+
+    /* uuuu-MM-dd HH:mm:ss Z z */
+    private LocalDateTime parseIsoUtc(byte[] bytes, int start) {
+        LocalDateTime dateTime = null;
+        boolean utc = true;
+        for (int i = 0, j = start + Layout.ISO_LOCAL.length; utc && (i < UTC_SUFFIX.length); ++i, ++j) {
+            utc = (bytes[j] == UTC_SUFFIX[i]);   // case sensitive, as per the formatter
+        }
+        if (utc) {
+            dateTime = parseIsoLocal(bytes, start);
+        }
+        return dateTime;
+    }
+
+    /* uuuu-MM-dd HH:mm:ss */
+    private LocalDateTime parseIsoLocal(byte[] bytes, int start) {
+        LocalDateTime dateTime = null;
+        if ((bytes[start + 4] == '-') && (bytes[start + 7] == '-') && (bytes[start + 10] == ' ') &&
+                (bytes[start + 13] == ':') && (bytes[start + 16] == ':')) {
+            int year = digits(bytes, start, 4);
+            int month = digits(bytes, start + 5, 2);
+            int day = digits(bytes, start + 8, 2);
+            int hour = digits(bytes, start + 11, 2);
+            int minute = digits(bytes, start + 14, 2);
+            int second = digits(bytes, start + 17, 2);
+            if ((hour >= 0) && (hour <= 23)) {
+                dateTime = toDateTime(year, month, day, hour, minute, second);
+            }
+        }
+        return dateTime;
+    }
+
+    private LocalDateTime toDateTime(int year, int month, int day, int hour, int minute, int second) {
+        LocalDateTime dateTime = null;
+        if ((year >= 1) && (month >= 0) && (day >= 0) &&
+                (minute >= 0) && (minute <= 59) && (second >= 0) && (second <= 59)) {
+            LocalDate date = getDate(year, month, day);
+            if (date != null) {
+                dateTime = date.atTime(hour, minute, second);
+            }
+        }
+        return dateTime;
+    }
+
+    /**
+     * Get a date, from the cache if possible
+     * @return  date or null if invalid
+     */
+    private LocalDate getDate(int year, int month, int day) {
+        int key = (year * 10000) + (month * 100) + day;
+        LocalDate date;
+        if (key == lastKey) {
+            date = lastDate;
+            ++hits;
+        } else {
+            date = cache.get(key);
+            if (date != null) {
+                ++hits;
+            } else {
+                ++misses;
+                try {
+                    date = LocalDate.of(year, month, day);
+                } catch (DateTimeException dte) {
+                    // invalid date, leave it to the formatter's resolver
+                    return null;
+                }
+                cache.put(key, date);
+            }
+            lastKey = key;
+            lastDate = date;
+        }
+        return date;
+    }
+
+    /**
+     * Parse decimal digits
+     * @return  value or -1 if not all digits
+     */
+    private static int digits(byte[] bytes, int start, int count) {
+        int value = 0;
+        for (int i = start, end = start + count; i < end; ++i) {
+            int digit = bytes[i] - '0';
+            if ((digit < 0) || (digit > 9)) {
+                return -1;
+            }
+            value = (value * 10) + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parse an AM/PM marker, case sensitive as per the formatter, so other cases are left to the formatter
+     * @return  0 for AM, 1 for PM or -1 if invalid
+     */
+    private static int amPm(byte[] bytes, int start) {
+        int result = -1;
+        if (bytes[start + 1] == 'M') {
+            if (bytes[start] == 'A') {
+                result = 0;
+            } else if (bytes[start] == 'P') {
+                result = 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2020 Ian Buttimer
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package ie.ibuttimer.dia_crime.misc;
+
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarFormat;
+import ie.ibuttimer.dia_crime.hadoop.io.ColumnarRow;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.ElementStringify.HADOOP_KEY_VAL;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.KVP_SEPARATOR;
+import static ie.ibuttimer.dia_crime.misc.MapStringifier.KV_SEPARATOR;
+
+/**
+ * Projection-aware reader for "key:value,key:value" strings.
+ * The fields required are resolved to indices when the record is created. Each line is scanned once, recording the
+ * offsets of the values of the required fields only, and values are only extracted when requested, so a job reading
+ * 5 fields from a 60 field line does not pay for the other 55.
+ * The result is the same as looking up the fields in the map produced by
+ * {@link MapStringifier#mapify(String)} with the default separators.
+ * A record may also be reset to a {@link ColumnarRow}, in which case the values are read from its decoded columns,
+ * and typed values are converted directly by {@link #getValue(int, Class, String, DateTimeFormatter, Logger)}
+ * without rendering and parsing their text.
+ */
+public class LazyRecord {
+
+    private static final char PAIR_SEPARATOR = KVP_SEPARATOR.charAt(0);
+    private static final char KEY_VALUE_SEPARATOR = KV_SEPARATOR.charAt(0);
+
+    private final String[] fields;
+    private final Map<String, Integer> indices;
+
+    // open addressing table of field name hash to field index
+    private final int[] slotHashes;
+    private final int[] slotFields;
+    private final int mask;
+
+    private String key;
+    private String line;
+    private final int[] starts;
+    private final int[] ends;
+
+    // columnar row, and the column index of each field in its schema
+    private ColumnarRow row;
+    private final int[] columns;
+    private long schemaId;
+
+    private LazyRecord(Collection<String> fields) {
+        this.fields = new LinkedHashSet<>(fields).toArray(new String[0]);
+        this.indices = new HashMap<>();
+
+        int capacity = Integer.highestOneBit(Math.max(this.fields.length, 1) * 2) * 2;
+        this.slotHashes = new int[capacity];
+        this.slotFields = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slotFields, -1);
+
+        for (int i = 0; i < this.fields.length; i++) {
+            String field = this.fields[i];
+            indices.put(field, i);
+
+            int hash = field.hashCode();
+            int slot = spread(hash) & mask;
+            while (slotFields[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            slotHashes[slot] = hash;
+            slotFields[slot] = i;
+        }
+
+        this.starts = new int[this.fields.length];
+        this.ends = new int[this.fields.length];
+        this.line = "";
+        Arrays.fill(starts, -1);
+
+        this.columns = new int[this.fields.length];
+        this.schemaId = -1;
+    }
+
+    /**
+     * Create a record reader
+     * @param fields    Names of the fields to read
+     * @return  record
+     */
+    public static LazyRecord of(Collection<String> fields) {
+        return new LazyRecord(fields);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Get the number of fields read
+     * @return  number of fields
+     */
+    public int size() {
+        return fields.length;
+    }
+
+    /**
+     * Get the name of a field
+     * @param index Field index
+     * @return  name
+     */
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Get the index of a field
+     * @param field Field name
+     * @return  index or -1 if not read
+     */
+    public int indexOf(String field) {
+        Integer index = indices.get(field);
+        return (index == null ? -1 : index);
+    }
+
+    /**
+     * Read an input line, in either intermediate format
+     * @param value Columnar row or "key\tkey:value,key:value" line
+     * @return  this record
+     */
+    public LazyRecord reset(Text value) {
+        LazyRecord record;
+        if (ColumnarRow.isTyped(value)) {
+            record = reset((ColumnarRow) value);
+        } else {
+            Pair<String, String> hKeyVal = HADOOP_KEY_VAL.destringifyElement(value.toString());
+            record = reset(hKeyVal.getRight() == null ? "" : hKeyVal.getRight());
+            key = hKeyVal.getLeft();
+        }
+        return record;
+    }
+
+    /**
+     * Read the values of a columnar row
+     * @param row   Row
+     * @return  this record
+     */
+    public LazyRecord reset(ColumnarRow row) {
+        this.row = row;
+        this.key = row.getKey();
+        if (row.getSchemaId() != schemaId) {
+            schemaId = row.getSchemaId();
+            for (int i = 0; i < fields.length; i++) {
+                columns[i] = row.indexOf(fields[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Scan a line, recording the location of the values of the fields read
+     * @param line  "key:value,key:value" string
+     * @return  this record
+     */
+    public LazyRecord reset(String line) {
+        this.row = null;
+        this.key = null;
+        this.line = line;
+        Arrays.fill(starts, -1);
+
+        int length = line.length();
+        int pos = 0;
+        while (pos < length) {
+            pos = scanPair(pos, length) + 1;
+        }
+        return this;
+    }
+
+    /**
+     * Scan a key/value pair, only the key is examined unless it is one of the fields read
+     * @param start     Start index of the pair in the line
+     * @param length    Length of the line
+     * @return  index of the end of the pair
+     */
+    private int scanPair(int start, int length) {
+        // trim leading whitespace
+        while ((start < length) && (line.charAt(start) <= ' ')) {
+            ++start;
+        }
+
+        // hash the key, same as String.hashCode()
+        int hash = 0;
+        int separator = start;
+        char chr = 0;
+        for (; separator < length; separator++) {
+            chr = line.charAt(separator);
+            if ((chr == KEY_VALUE_SEPARATOR) || (chr == PAIR_SEPARATOR)) {
+                break;
+            }
+            hash = 31 * hash + chr;
+        }
+        if ((separator == length) || (chr == PAIR_SEPARATOR)) {
+            return separator;   // no key/value separator, not a key/value pair
+        }
+
+        int end = line.indexOf(PAIR_SEPARATOR, separator + 1);
+        if (end < 0) {
+            end = length;
+        }
+
+        int index = find(hash, start, separator - start);
+        if (index >= 0) {
+            // trim trailing whitespace, and trailing separators which are ignored by String.split()
+            int valueEnd = end;
+            while ((valueEnd > separator) && (line.charAt(valueEnd - 1) <= ' ')) {
+                --valueEnd;
+            }
+            while ((valueEnd > separator) && (line.charAt(valueEnd - 1) == KEY_VALUE_SEPARATOR)) {
+                --valueEnd;
+            }
+            // must be a single separator followed by a value
+            int next = line.indexOf(KEY_VALUE_SEPARATOR, separator + 1);
+            if ((valueEnd > separator + 1) && ((next < 0) || (next >= valueEnd))) {
+                starts[index] = separator + 1;
+                ends[index] = valueEnd;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Find the index of a field
+     * @param hash      Hash of the key
+     * @param start     Start index of the key in the line
+     * @param keyLength Length of the key
+     * @return  index or -1 if not a field read
+     */
+    private int find(int hash, int start, int keyLength) {
+        int found = -1;
+        int slot = spread(hash) & mask;
+        for (int index = slotFields[slot]; index >= 0; slot = (slot + 1) & mask, index = slotFields[slot]) {
+            if ((slotHashes[slot] == hash) && (fields[index].length() == keyLength) &&
+                    line.regionMatches(start, fields[index], 0, keyLength)) {
+                found = index;
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the key of the line, if it was reset from an input line
+     * @return  key or <code>null</code>
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the text of the value of a field of a columnar row, as it would be read from the text of the row
+     * @param index Field index
+     * @return  value or <code>null</code> if the row does not have a value for the field
+     */
+    private String getColumnValue(int index) {
+        String value = null;
+        int column = columns[index];
+        if ((column >= 0) && row.has(column)) {
+            value = row.getString(column);
+            if (row.getType(column) == ColumnarFormat.ColumnType.STRING) {
+                // trim as per scanPair()
+                int valueEnd = value.length();
+                while ((valueEnd > 0) && (value.charAt(valueEnd - 1) <= ' ')) {
+                    --valueEnd;
+                }
+                while ((valueEnd > 0) && (value.charAt(valueEnd - 1) == KEY_VALUE_SEPARATOR)) {
+                    --valueEnd;
+                }
+                value = value.substring(0, valueEnd);
+                if (value.isEmpty() || (value.indexOf(KEY_VALUE_SEPARATOR) >= 0)) {
+                    value = null;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Check if the line has a value for a field
+     * @param index Field index
+     * @return  True if has value
+     */
+    public boolean has(int index) {
+        return (row == null ? starts[index] >= 0 : getColumnValue(index) != null);
+    }
+
+    /**
+     * Get the value of a field
+     * @param index Field index
+     * @return  value or <code>null</code> if the line does not have a value for the field
+     */
+    public String get(int index) {
+        return getOrDefault(index, null);
+    }
+
+    /**
+     * Get the value of a field
+     * @param index         Field index
+     * @param defaultValue  Value to return if the line does not have a value for the field
+     * @return  value
+     */
+    public String getOrDefault(int index, String defaultValue) {
+        String value;
+        if (row == null) {
+            value = (starts[index] >= 0 ? line.substring(starts[index], ends[index]) : defaultValue);
+        } else {
+            value = getColumnValue(index);
+            if (value == null) {
+                value = defaultValue;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of a field, converted to a class as per
+     * {@link Value#of(String, Class, DateTimeFormatter, Logger)}. Typed values of a columnar row are converted
+     * directly when the result is the same as converting their text.
+     * @param index         Field index
+     * @param cls           Class of value
+     * @param defaultValue  Text to convert if the line does not have a value for the field
+     * @param formatter     Date/time formatter
+     * @param logger        Logger for conversion errors, or <code>null</code>
+     * @return  value
+     */
+    public Value getValue(int index, Class<?> cls, String defaultValue, DateTimeFormatter formatter, Logger logger) {
+        Value value = null;
+        if (row != null) {
+            int column = columns[index];
+            if ((column >= 0) && row.has(column)) {
+                switch (row.getType(column)) {
+                    case LONG:
+                        value = convert(row.getLong(column), cls);
+                        break;
+                    case DOUBLE:
+                        value = convert(row.getDouble(column), cls);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (value == null) {
+            value = Value.of(getOrDefault(index, defaultValue), cls, formatter, logger);
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of a field, converted to a class as per
+     * {@link Value#of(String, Class, DateTimeFormatter, Logger)}
+     * @param field         Field name
+     * @param cls           Class of value
+     * @param defaultValue  Text to convert if the line does not have a value for the field, or the field is not read
+     * @param formatter     Date/time formatter
+     * @param logger        Logger for conversion errors, or <code>null</code>
+     * @return  value
+     */
+    public Value getValue(String field, Class<?> cls, String defaultValue, DateTimeFormatter formatter,
+                          Logger logger) {
+        int index = indexOf(field);
+        return (index < 0 ? Value.of(defaultValue, cls, formatter, logger) :
+            getValue(index, cls, defaultValue, formatter, logger));
+    }
+
+    /**
+     * Convert a long value to a class
+     * @param value Value
+     * @param cls   Class
+     * @return  value or <code>null</code> if the conversion would differ from converting the text of the value
+     */
+    private static Value convert(long value, Class<?> cls) {
+        Object converted = null;
+        if (cls.equals(Long.class)) {
+            converted = value;
+        } else if (cls.equals(Integer.class)) {
+            if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE)) {
+                converted = (int) value;
+            }
+        } else if (cls.equals(Double.class)) {
+            converted = (double) value;
+        } else if (cls.equals(Float.class)) {
+            converted = (float) value;
+        } else if (cls.equals(BigDecimal.class)) {
+            converted = BigDecimal.valueOf(value);
+        } else if (cls.equals(BigInteger.class)) {
+            converted = BigInteger.valueOf(value);
+        }
+        return (converted == null ? null : Value.of(converted));
+    }
+
+    /**
+     * Convert a double value to a class
+     * @param value Value
+     * @param cls   Class
+     * @return  value or <code>null</code> if the conversion would differ from converting the text of the value
+     */
+    private static Value convert(double value, Class<?> cls) {
+        Object converted = null;
+        if (cls.equals(Double.class)) {
+            converted = value;
+        } else if (cls.equals(BigDecimal.class)) {
+            if (Double.isFinite(value)) {
+                converted = BigDecimal.valueOf(value);
+            }
+        }
+        return (converted == null ? null : Value.of(converted));
+    }
+
+    /**
+     * Get the value of a field
+     * @param field         Field name
+     * @param defaultValue  Value to return if the line does not have a value for the field, or the field is not read
+     * @return  value
+     */
+    public String getOrDefault(String field, String defaultValue) {
+        int index = indexOf(field);
+        return (index < 0 ? defaultValue : getOrDefault(index, defaultValue));
+    }
+}
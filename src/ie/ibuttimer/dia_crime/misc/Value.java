@@ -24,8 +24,11 @@
 package ie.ibuttimer.dia_crime.misc;
 
 import ie.ibuttimer.dia_crime.hadoop.stats.IStatOps;
+import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.log4j.Logger;
 
 import java.io.DataInput;
@@ -49,7 +52,7 @@ import static ie.ibuttimer.dia_crime.misc.Utils.getLogger;
 /**
  * A value wrapper class
  */
-public class Value implements IStatOps<Value>, Writable {
+public class Value implements IStatOps<Value>, WritableComparable<Value> {
 
     // not really but something to work with
     public static final BigDecimal MAX_BIG_DECIMAL = new BigDecimal(Double.MAX_VALUE);
@@ -565,16 +568,197 @@ public class Value implements IStatOps<Value>, Writable {
         map.put(key, (V) value);
     }
 
+    /* Binary encoding; a one-byte tag of encoding version (high nibble) and type code (low nibble), followed by
+        Integer         : vint
+        Long            : vlong
+        Float           : 4 bytes
+        Double          : vlong if integral, otherwise 8 bytes
+        String          : Text
+        BigDecimal      : vint scale, vint length, unscaled value bytes
+        BigInteger      : vint length, value bytes
+        LocalDate       : vlong epoch day
+        LocalDateTime   : vlong epoch second
+       Legacy encoding (class simple name followed by raw value) is still readable, as its first byte is the length
+       of the class name which is less than the lowest version 1 tag.
+     */
+    public static final int ENCODING_VERSION = 1;
+
+    private static final int VERSION_SHIFT = 4;
+    private static final int TYPE_MASK = 0x0f;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_INTEGER = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_FLOAT = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_INTEGRAL_DOUBLE = 5;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_BIG_DECIMAL = 7;
+    private static final int TYPE_BIG_INTEGER = 8;
+    private static final int TYPE_LOCAL_DATE = 9;
+    private static final int TYPE_LOCAL_DATE_TIME = 10;
+
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+    private static final double MAX_INTEGRAL_DOUBLE = 1L << 53;
+
+    static {
+        WritableComparator.define(Value.class, new Comparator());
+    }
+
+    private static int typeCode(Object value) {
+        int code;
+        if (value == null) {
+            code = TYPE_NULL;
+        } else if (isInteger(value)) {
+            code = TYPE_INTEGER;
+        } else if (isLong(value)) {
+            code = TYPE_LONG;
+        } else if (isFloat(value)) {
+            code = TYPE_FLOAT;
+        } else if (isDouble(value)) {
+            code = (isIntegral((Double) value) ? TYPE_INTEGRAL_DOUBLE : TYPE_DOUBLE);
+        } else if (isString(value)) {
+            code = TYPE_STRING;
+        } else if (isBigDecimal(value)) {
+            code = TYPE_BIG_DECIMAL;
+        } else if (isBigInteger(value)) {
+            code = TYPE_BIG_INTEGER;
+        } else if (isLocalDate(value)) {
+            code = TYPE_LOCAL_DATE;
+        } else if (isLocalDateTime(value)) {
+            code = TYPE_LOCAL_DATE_TIME;
+        } else {
+            throw new UnsupportedOperationException("Unsupported class: " + value.getClass());
+        }
+        return code;
+    }
+
+    private static boolean isIntegral(double value) {
+        return (value == Math.rint(value)) && (Math.abs(value) <= MAX_INTEGRAL_DOUBLE) &&
+            (Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS);
+    }
+
+    private static int tag(int typeCode) {
+        return (ENCODING_VERSION << VERSION_SHIFT) | typeCode;
+    }
+
+    private static boolean isTag(int tag) {
+        return (tag >> VERSION_SHIFT) == ENCODING_VERSION;
+    }
+
     @Override
     public void write(DataOutput dataOutput) throws IOException {
-        Text.writeString(dataOutput, value.getClass().getSimpleName());
-        writeRaw(dataOutput);
+        int code = typeCode(value);
+        dataOutput.writeByte(tag(code));
+        switch (code) {
+            case TYPE_INTEGER:
+                WritableUtils.writeVInt(dataOutput, (Integer) value);
+                break;
+            case TYPE_LONG:
+                WritableUtils.writeVLong(dataOutput, (Long) value);
+                break;
+            case TYPE_FLOAT:
+                dataOutput.writeFloat((Float) value);
+                break;
+            case TYPE_DOUBLE:
+                dataOutput.writeDouble((Double) value);
+                break;
+            case TYPE_INTEGRAL_DOUBLE:
+                WritableUtils.writeVLong(dataOutput, ((Double) value).longValue());
+                break;
+            case TYPE_STRING:
+                Text.writeString(dataOutput, (String) value);
+                break;
+            case TYPE_BIG_DECIMAL:
+                BigDecimal bigDecimal = (BigDecimal) value;
+                WritableUtils.writeVInt(dataOutput, bigDecimal.scale());
+                writeBytes(dataOutput, bigDecimal.unscaledValue().toByteArray());
+                break;
+            case TYPE_BIG_INTEGER:
+                writeBytes(dataOutput, ((BigInteger) value).toByteArray());
+                break;
+            case TYPE_LOCAL_DATE:
+                WritableUtils.writeVLong(dataOutput, ((LocalDate) value).toEpochDay());
+                break;
+            case TYPE_LOCAL_DATE_TIME:
+                WritableUtils.writeVLong(dataOutput, ((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+                break;
+            default:
+                break;
+        }
     }
 
     @Override
     public void readFields(DataInput dataInput) throws IOException {
-        String className = Text.readString(dataInput);
-        readRaw(dataInput, className);
+        int tag = dataInput.readByte();
+        if (isTag(tag)) {
+            switch (tag & TYPE_MASK) {
+                case TYPE_NULL:
+                    value = null;
+                    break;
+                case TYPE_INTEGER:
+                    value = WritableUtils.readVInt(dataInput);
+                    break;
+                case TYPE_LONG:
+                    value = WritableUtils.readVLong(dataInput);
+                    break;
+                case TYPE_FLOAT:
+                    value = dataInput.readFloat();
+                    break;
+                case TYPE_DOUBLE:
+                    value = dataInput.readDouble();
+                    break;
+                case TYPE_INTEGRAL_DOUBLE:
+                    value = (double) WritableUtils.readVLong(dataInput);
+                    break;
+                case TYPE_STRING:
+                    value = Text.readString(dataInput);
+                    break;
+                case TYPE_BIG_DECIMAL:
+                    int scale = WritableUtils.readVInt(dataInput);
+                    value = new BigDecimal(new BigInteger(readBytes(dataInput)), scale);
+                    break;
+                case TYPE_BIG_INTEGER:
+                    value = new BigInteger(readBytes(dataInput));
+                    break;
+                case TYPE_LOCAL_DATE:
+                    value = LocalDate.ofEpochDay(WritableUtils.readVLong(dataInput));
+                    break;
+                case TYPE_LOCAL_DATE_TIME:
+                    value = LocalDateTime.ofEpochSecond(WritableUtils.readVLong(dataInput), 0, ZoneOffset.UTC);
+                    break;
+                default:
+                    throw new IOException("Unsupported Value type code: " + (tag & TYPE_MASK));
+            }
+        } else if (tag > 0 && tag < tag(TYPE_NULL)) {
+            // legacy encoding; tag is the length of the class name
+            byte[] className = new byte[tag];
+            dataInput.readFully(className);
+            readRaw(dataInput, Text.decode(className));
+        } else {
+            throw new IOException("Unsupported Value encoding: " + tag);
+        }
+    }
+
+    /**
+     * Write using the legacy encoding of class simple name followed by raw value
+     * @param dataOutput    Output to write to
+     * @throws IOException
+     */
+    public void writeLegacy(DataOutput dataOutput) throws IOException {
+        Text.writeString(dataOutput, value.getClass().getSimpleName());
+        writeRaw(dataOutput);
+    }
+
+    private static void writeBytes(DataOutput dataOutput, byte[] bytes) throws IOException {
+        WritableUtils.writeVInt(dataOutput, bytes.length);
+        dataOutput.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput dataInput) throws IOException {
+        byte[] bytes = new byte[WritableUtils.readVInt(dataInput)];
+        dataInput.readFully(bytes);
+        return bytes;
     }
 
     public void writeRaw(DataOutput dataOutput) {
@@ -750,6 +934,113 @@ public class Value implements IStatOps<Value>, Writable {
         return Value.of(value);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareTo(Value other) {
+        int result;
+        Object otherValue = other.value;
+        if (value == null || otherValue == null) {
+            result = Boolean.compare(value != null, otherValue != null);
+        } else if (isNumber() && other.isNumber()) {
+            if (isBigNumber() || other.isBigNumber()) {
+                result = bigDecimalValue().compareTo(other.bigDecimalValue());
+            } else if (isIntegral(value) && isIntegral(otherValue)) {
+                result = Long.compare(longValue(), other.longValue());
+            } else {
+                result = Double.compare(doubleValue(), other.doubleValue());
+            }
+        } else if (value.getClass().equals(otherValue.getClass()) && (value instanceof Comparable)) {
+            result = ((Comparable<Object>) value).compareTo(otherValue);
+        } else {
+            result = Integer.compare(typeCode(value), typeCode(otherValue));
+        }
+        return result;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return isInteger(value) || isLong(value) || (isDouble(value) && isIntegral((double) (Double) value));
+    }
+
+    /**
+     * Raw comparator for Value, comparing the binary encoding without deserialising where possible
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(Value.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int tag1 = b1[s1];
+            int tag2 = b2[s2];
+            int result;
+            try {
+                if (isTag(tag1) && isTag(tag2)) {
+                    int code1 = tag1 & TYPE_MASK;
+                    int code2 = tag2 & TYPE_MASK;
+                    if (isLongCode(code1) && isLongCode(code2)) {
+                        result = Long.compare(readLongCode(code1, b1, s1 + 1), readLongCode(code2, b2, s2 + 1));
+                    } else if (isPrimitiveCode(code1) && isPrimitiveCode(code2)) {
+                        result = Double.compare(readDoubleCode(code1, b1, s1 + 1), readDoubleCode(code2, b2, s2 + 1));
+                    } else if (code1 == TYPE_STRING && code2 == TYPE_STRING) {
+                        int n1 = WritableUtils.decodeVIntSize(b1[s1 + 1]);
+                        int n2 = WritableUtils.decodeVIntSize(b2[s2 + 1]);
+                        result = compareBytes(b1, s1 + 1 + n1, l1 - 1 - n1, b2, s2 + 1 + n2, l2 - 1 - n2);
+                    } else if (isDateCode(code1) && code1 == code2) {
+                        result = Long.compare(readVLong(b1, s1 + 1), readVLong(b2, s2 + 1));
+                    } else {
+                        result = compare(read(b1, s1, l1), read(b2, s2, l2));
+                    }
+                } else {
+                    result = compare(read(b1, s1, l1), read(b2, s2, l2));
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+            return result;
+        }
+
+        @Override
+        public int compare(Object a, Object b) {
+            return ((Value) a).compareTo((Value) b);
+        }
+
+        private static boolean isLongCode(int code) {
+            return (code == TYPE_INTEGER) || (code == TYPE_LONG) || (code == TYPE_INTEGRAL_DOUBLE);
+        }
+
+        private static boolean isPrimitiveCode(int code) {
+            return isLongCode(code) || (code == TYPE_FLOAT) || (code == TYPE_DOUBLE);
+        }
+
+        private static boolean isDateCode(int code) {
+            return (code == TYPE_LOCAL_DATE) || (code == TYPE_LOCAL_DATE_TIME);
+        }
+
+        private static long readLongCode(int code, byte[] bytes, int start) throws IOException {
+            return (code == TYPE_INTEGER ? readVInt(bytes, start) : readVLong(bytes, start));
+        }
+
+        private static double readDoubleCode(int code, byte[] bytes, int start) throws IOException {
+            double result;
+            switch (code) {
+                case TYPE_FLOAT:    result = readFloat(bytes, start);   break;
+                case TYPE_DOUBLE:   result = readDouble(bytes, start);  break;
+                default:            result = readLongCode(code, bytes, start);  break;
+            }
+            return result;
+        }
+
+        private static Value read(byte[] bytes, int start, int length) throws IOException {
+            DataInputBuffer buffer = new DataInputBuffer();
+            buffer.reset(bytes, start, length);
+            Value value = new Value();
+            value.readFields(buffer);
+            return value;
+        }
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer("Value{");